@@ -0,0 +1,166 @@
+package edu.newsbot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the NewsBot benchmarks, writes the results as JMH JSON and optionally compares them with a baseline.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -jar target/benchmarks.jar [--include REGEX] [--result FILE] [--baseline FILE] [--threshold PERCENT] [--gc]
+ * </pre>
+ * <ul>
+ *     <li>{@code --include} selects benchmarks by regular expression (default: all).</li>
+ *     <li>{@code --result} is the JSON result file (default: {@code target/jmh-result.json}).
+ *         Keep a result of the main branch as the baseline of later runs.</li>
+ *     <li>{@code --baseline} compares every score with the same benchmark (and parameters) in the given
+ *         JMH JSON file and exits with status 1 if any benchmark got slower by more than the threshold.</li>
+ *     <li>{@code --threshold} is the allowed slowdown in percent (default: 10).</li>
+ *     <li>{@code --gc} adds the GC profiler, reporting allocation per operation.</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Default constructor.
+     * The runner is used through its main method only.
+     */
+    public BenchmarkRunner() {
+        super();
+    }
+
+    /**
+     * Runs the benchmarks and the optional baseline comparison.
+     *
+     * @param args Command-line arguments, see the class documentation.
+     * @throws RunnerException if JMH fails to run the benchmarks.
+     * @throws IOException if the baseline cannot be read.
+     */
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = "edu\\.newsbot\\..*Benchmark.*";
+        String result = "target/jmh-result.json";
+        String baseline = null;
+        double threshold = 10.0;
+        boolean gcProfiler = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--include" -> include = args[++i];
+                case "--result" -> result = args[++i];
+                case "--baseline" -> baseline = args[++i];
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+                case "--gc" -> gcProfiler = true;
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        Path resultPath = Path.of(result);
+        if (resultPath.getParent() != null) {
+            Files.createDirectories(resultPath.getParent());
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .shouldFailOnError(true);
+        if (gcProfiler) {
+            options.addProfiler("gc");
+        }
+        Collection<RunResult> results = new Runner(options.build()).run();
+
+        if (baseline != null) {
+            List<String> regressions = compareWithBaseline(results, Path.of(baseline), threshold);
+            if (!regressions.isEmpty()) {
+                System.err.println("Performance regressions (more than " + threshold + "% slower than " + baseline + "):");
+                regressions.forEach(regression -> System.err.println("  " + regression));
+                System.exit(1);
+            }
+            System.out.println("No regressions against " + baseline);
+        }
+    }
+
+    /**
+     * Compares the results of this run with a baseline JMH JSON file.
+     *
+     * @param results The results of this run.
+     * @param baseline The baseline result file.
+     * @param threshold The allowed slowdown in percent.
+     * @return A description of every benchmark that regressed by more than the threshold.
+     * @throws IOException if the baseline cannot be read.
+     */
+    static List<String> compareWithBaseline(Collection<RunResult> results, Path baseline, double threshold) throws IOException {
+        Map<String, Double> baselineScores = readBaselineScores(baseline);
+        List<String> regressions = new ArrayList<>();
+
+        for (RunResult runResult : results) {
+            Map<String, String> params = new TreeMap<>();
+            for (String key : runResult.getParams().getParamsKeys()) {
+                params.put(key, runResult.getParams().getParam(key));
+            }
+            String key = runResult.getParams().getBenchmark() + params;
+            Double baselineScore = baselineScores.get(key);
+            if (baselineScore == null || baselineScore == 0) {
+                continue;
+            }
+
+            double score = runResult.getPrimaryResult().getScore();
+            // Throughput: higher is better; time modes: lower is better
+            boolean higherIsBetter = runResult.getParams().getMode() == Mode.Throughput;
+            double slowdown = higherIsBetter
+                    ? (baselineScore - score) / baselineScore * 100
+                    : (score - baselineScore) / baselineScore * 100;
+
+            if (slowdown > threshold) {
+                regressions.add(String.format("%s: %.3f -> %.3f %s (%.1f%% slower)",
+                        key, baselineScore, score, runResult.getPrimaryResult().getScoreUnit(), slowdown));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Reads the primary scores of a JMH JSON result file, keyed by benchmark name and parameters.
+     *
+     * @param baseline The baseline result file.
+     * @return The scores by benchmark key.
+     * @throws IOException if the file cannot be read.
+     */
+    private static Map<String, Double> readBaselineScores(Path baseline) throws IOException {
+        Map<String, Double> scores = new HashMap<>();
+        JsonArray entries = JsonParser.parseString(Files.readString(baseline, StandardCharsets.UTF_8)).getAsJsonArray();
+        for (JsonElement element : entries) {
+            JsonObject entry = element.getAsJsonObject();
+            Map<String, String> params = new TreeMap<>();
+            if (entry.has("params")) {
+                for (Map.Entry<String, JsonElement> param : entry.getAsJsonObject("params").entrySet()) {
+                    params.put(param.getKey(), param.getValue().getAsString());
+                }
+            }
+            double score = entry.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+            scores.put(entry.get("benchmark").getAsString() + params, score);
+        }
+        return scores;
+    }
+}
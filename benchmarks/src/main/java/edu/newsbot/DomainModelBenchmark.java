@@ -0,0 +1,98 @@
+package edu.newsbot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the typed {@link Article} record with the {@code HashMap<String, String>} representation
+ * articles used to travel in: building an article, reading the fields of the "Next Article" view and
+ * carrying the unread count. Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DomainModelBenchmark {
+
+    private String title;
+    private String summary;
+    private String link;
+    private String fullStory;
+    private int unreadCount;
+    private Map<String, String> articleMap;
+    private UnreadArticle unreadArticle;
+
+    @Setup
+    public void setUp() {
+        title = "Ancient river networks shaped early Mars climate";
+        summary = "Researchers mapped hundreds of ancient river channels on Mars.";
+        link = "https://www.sciencedaily.com/releases/2024/05/240514120000.htm";
+        fullStory = "The channels, preserved as raised ridges after billions of years of erosion...";
+        unreadCount = 12;
+        articleMap = buildMap();
+        unreadArticle = buildRecord();
+    }
+
+    @Benchmark
+    public Map<String, String> buildMap() {
+        Map<String, String> article = new HashMap<>();
+        article.put("id", String.valueOf(42L));
+        article.put("title", title);
+        article.put("summary", summary);
+        article.put("link", link);
+        article.put("datetime", null);
+        article.put("full_story", fullStory);
+        article.put("source", "University of Example");
+        article.put("related_topics", "Mars; Climate");
+        article.put("related_terms", "Mars; River");
+        article.put("journal_reference", "Nature Geoscience, 2024");
+        article.put("cite_page_mla", "MLA");
+        article.put("cite_page_apa", "APA");
+        article.put("cite_page_chicago", "Chicago");
+        article.put("related_stories_links", "/releases/2024/04/240418101010.htm");
+        article.put("unread_number", String.valueOf(unreadCount));
+        return article;
+    }
+
+    @Benchmark
+    public UnreadArticle buildRecord() {
+        return new UnreadArticle(new Article(42L, title, summary, link, null, fullStory, "University of Example",
+                "Mars; Climate", "Mars; River", "Nature Geoscience, 2024", "MLA", "APA", "Chicago",
+                "/releases/2024/04/240418101010.htm"), unreadCount);
+    }
+
+    @Benchmark
+    public void readMap(Blackhole blackhole) {
+        String unreadNumber = articleMap.get("unread_number");
+        blackhole.consume(!unreadNumber.equals("0"));
+        blackhole.consume(Integer.parseInt(unreadNumber));
+        blackhole.consume(articleMap.get("title"));
+        blackhole.consume(articleMap.get("summary"));
+        blackhole.consume(articleMap.get("link"));
+    }
+
+    @Benchmark
+    public void readRecord(Blackhole blackhole) {
+        blackhole.consume(unreadArticle.hasUnread());
+        blackhole.consume(unreadArticle.unreadNumber());
+        Article article = unreadArticle.article();
+        blackhole.consume(article.title());
+        blackhole.consume(article.summary());
+        blackhole.consume(article.link());
+    }
+}
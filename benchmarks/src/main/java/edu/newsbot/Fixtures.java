@@ -0,0 +1,37 @@
+package edu.newsbot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the recorded ScienceDaily and Telegram payloads bundled with the benchmarks
+ * (see {@code src/main/resources/fixtures}).
+ */
+final class Fixtures {
+
+    static final String SCIENCEDAILY_FEED = "sciencedaily-all.xml";
+    static final String SCIENCEDAILY_ARTICLE = "sciencedaily-article.html";
+    static final String TELEGRAM_UPDATES = "telegram-getUpdates.json";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Reads a fixture from the classpath.
+     *
+     * @param name The file name of the fixture.
+     * @return The content of the fixture.
+     */
+    static String read(String name) {
+        try (InputStream input = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (input == null) {
+                throw new IllegalStateException("Missing fixture: " + name);
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
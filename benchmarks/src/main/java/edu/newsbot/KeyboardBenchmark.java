@@ -0,0 +1,50 @@
+package edu.newsbot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the keyboard builders of {@link NewsBot}, which run for every message the bot sends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyboardBenchmark {
+
+    @Benchmark
+    public String newsKeyboard() {
+        return NewsBot.getNewsKeyboardArray(false, false, false);
+    }
+
+    @Benchmark
+    public String settingsKeyboard() {
+        return NewsBot.getNewsKeyboardArray(false, true, true);
+    }
+
+    @Benchmark
+    public String languageKeyboard() {
+        return NewsBot.getLanguageKeyboardArray();
+    }
+
+    @Benchmark
+    public String ageKeyboard() {
+        return NewsBot.getAgeKeyboardArray();
+    }
+
+    @Benchmark
+    public String deltaTimeKeyboard() {
+        return NewsBot.getDeltaTimeKeyboardArray();
+    }
+}
@@ -0,0 +1,66 @@
+package edu.newsbot;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parsing hot paths of {@link Parser} on recorded ScienceDaily pages:
+ * category extraction from a detailed page, full article extraction and RSS item diffing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"full_story", "related_topics", "related_terms", "story_source", "journal_reference",
+            "citation_mla", "citation_apa", "citation_chicago", "related_stories"})
+    public String category;
+
+    private String articleHtml;
+    private Document articleDocument;
+    private Elements feedItems;
+    private FeedItem feedItem;
+
+    @Setup
+    public void setUp() {
+        articleHtml = Fixtures.read(Fixtures.SCIENCEDAILY_ARTICLE);
+        articleDocument = Jsoup.parse(articleHtml, "https://www.sciencedaily.com/");
+        feedItems = Jsoup.parse(Fixtures.read(Fixtures.SCIENCEDAILY_FEED), "", org.jsoup.parser.Parser.xmlParser()).select("item");
+        feedItem = new FeedItem("Ancient river networks shaped early Mars climate", "https://www.sciencedaily.com/releases/2024/05/240514120000.htm",
+                "Researchers mapped hundreds of ancient river channels on Mars.", "https://www.sciencedaily.com/releases/2024/05/240514120000.htm", null);
+    }
+
+    @Benchmark
+    public String parseCategory() {
+        return Parser.parseCategory(articleDocument, category);
+    }
+
+    @Benchmark
+    public Article parseAndExtractArticle() {
+        return Parser.extractArticle(feedItem, Jsoup.parse(articleHtml, "https://www.sciencedaily.com/"));
+    }
+
+    @Benchmark
+    public List<FeedItem> findNewItems() {
+        // The feed is never advanced, so every item counts as new: the full diff cost of a feed
+        return Parser.findNewItems("benchmark://sciencedaily-all.xml", feedItems);
+    }
+}
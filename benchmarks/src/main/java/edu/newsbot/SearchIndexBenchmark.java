@@ -0,0 +1,84 @@
+package edu.newsbot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks {@link SearchIndex#search(String, int)} on synthetic indexes of different sizes, built in a temporary
+ * directory. Words are drawn from a skewed vocabulary, so common query terms have long posting lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+    private static final int VOCABULARY = 50_000;
+    private static final String[] QUERIES = {"w1 w2", "w17", "w250 w3000", "w12000 w45000", "w5 w80 w900"};
+
+    @Param({"100000", "1000000"})
+    public int documents;
+
+    private Path directory;
+    private SearchIndex index;
+    private int query;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("search-index-benchmark");
+        index = new SearchIndex(directory, 10_000);
+        Random random = new Random(42);
+        for (int i = 0; i < documents; i++) {
+            Article article = new Article(i, words(random, 8), words(random, 40), "https://example.org/" + i, null,
+                    words(random, 200), null, words(random, 5), words(random, 5), null, null, null, null, null);
+            index.add("example.org/" + i, article);
+        }
+        index.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> search() {
+        query = (query + 1) % QUERIES.length;
+        return index.search(QUERIES[query], 40);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            // Roughly Zipf-distributed word ranks
+            int rank = (int) Math.pow(VOCABULARY, random.nextDouble());
+            text.append('w').append(rank).append(' ');
+        }
+        return text.toString();
+    }
+}
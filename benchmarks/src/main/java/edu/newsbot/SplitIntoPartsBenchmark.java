@@ -0,0 +1,50 @@
+package edu.newsbot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.jsoup.Jsoup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link NewsBot#splitIntoParts(String)} on "More Info" messages of different lengths,
+ * built from the full story of the recorded ScienceDaily article.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplitIntoPartsBenchmark {
+
+    @Param({"2000", "10000", "50000"})
+    public int messageLength;
+
+    private String message;
+
+    @Setup
+    public void setUp() {
+        String fullStory = Parser.parseCategory(Jsoup.parse(Fixtures.read(Fixtures.SCIENCEDAILY_ARTICLE)), "full_story");
+        StringBuilder builder = new StringBuilder("*Fresh News available (12)*\n\n*Ancient river networks shaped early Mars climate*\n\n*Full Story:* ");
+        while (builder.length() < messageLength) {
+            builder.append(fullStory).append("\n\n");
+        }
+        message = builder.substring(0, messageLength);
+    }
+
+    @Benchmark
+    public List<String> splitIntoParts() {
+        return NewsBot.splitIntoParts(message);
+    }
+}
@@ -0,0 +1,201 @@
+package edu.newsbot;
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap footprint of the per-user structures of the bot, per million users, with boxed maps
+ * (as the bot kept them before {@link LongIntMap}) and with the primitive structures it uses now:
+ * <ul>
+ *     <li>scheduled task by user ({@code ParsingSendingScheduler}),</li>
+ *     <li>feeds by user and subscribers by feed ({@code SubscriptionIndex}),</li>
+ *     <li>delivery interval by subscriber of each feed ({@code AdaptiveFeedScheduler}).</li>
+ * </ul>
+ * Each user is subscribed to one to three of {@value #FEEDS} feeds. A structure's footprint is the growth of the
+ * used heap after full garbage collections while it is reachable; values shared by both variants (the task
+ * objects, the feed ID arrays) are a single placeholder or counted in both. This is not a JMH benchmark, since JMH
+ * measures time:
+ * <pre>
+ * java -cp target/benchmarks.jar edu.newsbot.SubscriberIndexFootprint [USERS]
+ * </pre>
+ * Run it with a heap large enough for the boxed maps, e.g. {@code -Xmx4g} for the default of 1,000,000 users.
+ */
+public class SubscriberIndexFootprint {
+
+    private static final int FEEDS = 20;
+    private static final Object TASK = new Object();
+
+    /**
+     * Default constructor.
+     * The benchmark is used through its main method only.
+     */
+    public SubscriberIndexFootprint() {
+        super();
+    }
+
+    /**
+     * Builds each structure for the given number of users and prints its footprint.
+     *
+     * @param args The number of users (default: 1,000,000).
+     */
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // Telegram IDs are large and sparse; every user gets 1-3 distinct feeds
+        Random random = new Random(42);
+        long[] userIds = new long[users];
+        int[][] userFeeds = new int[users][];
+        for (int i = 0; i < users; i++) {
+            userIds[i] = 100_000_000L + random.nextInt(1 << 30) * 8L + i % 8;
+            userFeeds[i] = random.ints(0, FEEDS).distinct().limit(1 + random.nextInt(3)).toArray();
+        }
+
+        System.out.printf("%,d users, %d feeds; MB per million users%n", users, FEEDS);
+        System.out.printf("%-22s %10s %10s%n", "structure", "boxed", "primitive");
+        compare("task by user", users,
+                () -> boxedTasks(userIds),
+                () -> primitiveTasks(userIds));
+        compare("feeds by user", users,
+                () -> boxedFeedsByUser(userIds, userFeeds),
+                () -> primitiveFeedsByUser(userIds, userFeeds));
+        compare("subscribers by feed", users,
+                () -> boxedSubscribers(userIds, userFeeds),
+                () -> primitiveSubscribers(userIds, userFeeds));
+        compare("intervals by feed", users,
+                () -> boxedIntervals(userIds, userFeeds),
+                () -> primitiveIntervals(userIds, userFeeds));
+    }
+
+    private static void compare(String name, int users, Supplier<Object> boxed, Supplier<Object> primitive) {
+        double perMillion = 1_000_000.0 / users / (1024 * 1024);
+        System.out.printf("%-22s %10.1f %10.1f%n", name, footprint(boxed) * perMillion, footprint(primitive) * perMillion);
+    }
+
+    private static long footprint(Supplier<Object> builder) {
+        long before = usedHeap();
+        Object structure = builder.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(structure);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Several collections, until the used heap stops shrinking
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    private static Object boxedTasks(long[] userIds) {
+        ConcurrentHashMap<Long, Object> tasks = new ConcurrentHashMap<>();
+        for (long userId : userIds) {
+            tasks.put(userId, TASK);
+        }
+        return tasks;
+    }
+
+    private static Object primitiveTasks(long[] userIds) {
+        LongIntMap slots = new LongIntMap();
+        Object[] tasksBySlot = new Object[16];
+        for (int slot = 0; slot < userIds.length; slot++) {
+            if (slot == tasksBySlot.length) {
+                tasksBySlot = Arrays.copyOf(tasksBySlot, slot * 2);
+            }
+            slots.put(userIds[slot], slot);
+            tasksBySlot[slot] = TASK;
+        }
+        return new Object[] {slots, tasksBySlot};
+    }
+
+    private static Object boxedFeedsByUser(long[] userIds, int[][] userFeeds) {
+        ConcurrentHashMap<Long, int[]> feedsByUser = new ConcurrentHashMap<>();
+        for (int i = 0; i < userIds.length; i++) {
+            feedsByUser.put(userIds[i], userFeeds[i].clone());
+        }
+        return feedsByUser;
+    }
+
+    private static Object primitiveFeedsByUser(long[] userIds, int[][] userFeeds) {
+        LongIntMap slots = new LongIntMap();
+        int[][] feedsBySlot = new int[16][];
+        for (int slot = 0; slot < userIds.length; slot++) {
+            if (slot == feedsBySlot.length) {
+                feedsBySlot = Arrays.copyOf(feedsBySlot, slot * 2);
+            }
+            slots.put(userIds[slot], slot);
+            feedsBySlot[slot] = userFeeds[slot].clone();
+        }
+        return new Object[] {slots, feedsBySlot};
+    }
+
+    private static Object boxedSubscribers(long[] userIds, int[][] userFeeds) {
+        ConcurrentHashMap<Integer, Set<Long>> subscribersByFeed = new ConcurrentHashMap<>();
+        for (int i = 0; i < userIds.length; i++) {
+            for (int feed : userFeeds[i]) {
+                subscribersByFeed.computeIfAbsent(feed, f -> ConcurrentHashMap.newKeySet()).add(userIds[i]);
+            }
+        }
+        return subscribersByFeed;
+    }
+
+    private static Object primitiveSubscribers(long[] userIds, int[][] userFeeds) {
+        int[] counts = new int[FEEDS];
+        for (int[] feeds : userFeeds) {
+            for (int feed : feeds) {
+                counts[feed]++;
+            }
+        }
+        long[][] subscribersByFeed = new long[FEEDS][];
+        for (int feed = 0; feed < FEEDS; feed++) {
+            subscribersByFeed[feed] = new long[counts[feed]];
+            counts[feed] = 0;
+        }
+        for (int i = 0; i < userIds.length; i++) {
+            for (int feed : userFeeds[i]) {
+                subscribersByFeed[feed][counts[feed]++] = userIds[i];
+            }
+        }
+        for (long[] subscribers : subscribersByFeed) {
+            Arrays.sort(subscribers);
+        }
+        return subscribersByFeed;
+    }
+
+    private static Object boxedIntervals(long[] userIds, int[][] userFeeds) {
+        Map<Integer, Map<Long, Long>> intervalsByFeed = new HashMap<>();
+        for (int i = 0; i < userIds.length; i++) {
+            for (int feed : userFeeds[i]) {
+                // Boxed per entry, as in the bot: Long.valueOf caches only -128..127
+                intervalsByFeed.computeIfAbsent(feed, f -> new HashMap<>()).put(userIds[i], 3600L + i % 600);
+            }
+        }
+        return intervalsByFeed;
+    }
+
+    private static Object primitiveIntervals(long[] userIds, int[][] userFeeds) {
+        LongIntMap[] intervalsByFeed = new LongIntMap[FEEDS];
+        for (int feed = 0; feed < FEEDS; feed++) {
+            intervalsByFeed[feed] = new LongIntMap();
+        }
+        for (int i = 0; i < userIds.length; i++) {
+            for (int feed : userFeeds[i]) {
+                intervalsByFeed[feed].put(userIds[i], 3600 + i % 600);
+            }
+        }
+        return intervalsByFeed;
+    }
+}
@@ -0,0 +1,72 @@
+package edu.newsbot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic related topics and terms of articles, shaped like ScienceDaily's: a vocabulary of
+ * {@value #TOPICS} topics and {@value #TERMS} terms with names of one to three words, and three to eight topics
+ * and one to four terms per article, drawn with a skew towards the common ones. Used by
+ * {@link TopicFilterBenchmark} and {@link TopicStorageFootprint} to compare the TEXT lists with their
+ * dictionary encoding.
+ */
+final class TopicCorpus {
+
+    static final int TOPICS = 400;
+    static final int TERMS = 2_000;
+
+    private static final String[] WORDS = {"Space", "Time", "Climate", "Weather", "Cancer", "Genetics", "Brain",
+            "Plants", "Animals", "Energy", "Quantum", "Physics", "Ecology", "Nutrition", "Robotics", "Oceans",
+            "Evolution", "Chemistry", "Astronomy", "Health", "Materials", "Fossils", "Computing", "Behavior"};
+
+    // The lists of each article, as Parser.parseCategory builds them
+    final String[] relatedTopics;
+    final String[] relatedTerms;
+    // The same articles encoded with a dictionary: topic IDs in [0, TOPICS), term IDs in [TOPICS, TOPICS + TERMS)
+    final int[][] topicIds;
+    final String[] names;
+
+    TopicCorpus(int articles, long seed) {
+        Random random = new Random(seed);
+        names = new String[TOPICS + TERMS];
+        Map<String, Integer> taken = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            String name;
+            do {
+                StringBuilder builder = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+                int words = random.nextInt(3);
+                for (int i = 0; i < words; i++) {
+                    builder.append(i == 0 && random.nextBoolean() ? " & " : " ").append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                name = builder.toString();
+            } while (taken.putIfAbsent(name, id) != null);
+            names[id] = name;
+        }
+
+        relatedTopics = new String[articles];
+        relatedTerms = new String[articles];
+        topicIds = new int[articles][];
+        for (int i = 0; i < articles; i++) {
+            List<Integer> ids = new ArrayList<>();
+            relatedTopics[i] = draw(random, 3 + random.nextInt(6), 0, TOPICS, ids);
+            relatedTerms[i] = draw(random, 1 + random.nextInt(4), TOPICS, TERMS, ids);
+            topicIds[i] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private String draw(Random random, int count, int base, int size, List<Integer> ids) {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            // Roughly Zipf-distributed ranks
+            int id = base + (int) Math.pow(size, random.nextDouble()) - 1;
+            if (!ids.contains(id)) {
+                ids.add(id);
+                list.append(names[id]).append("; ");
+            }
+        }
+        return list.toString().trim();
+    }
+}
@@ -0,0 +1,102 @@
+package edu.newsbot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a topic filter (does an article have any of the topics a user follows?) over
+ * {@value #ARTICLES} articles of a {@link TopicCorpus}, with the topics stored as the former TEXT lists and
+ * dictionary-encoded ({@link TopicDictionary}):
+ * <ul>
+ *     <li>{@code text}: a case-insensitive substring search per followed topic, as {@code ILIKE '%topic%'} does,</li>
+ *     <li>{@code sortedIds}: a binary search of the article's IDs in the sorted followed IDs, as {@code = ANY},</li>
+ *     <li>{@code bitmap}: a bit lookup per ID of the article in the followed bitmap
+ *     ({@link TopicDictionary#matches(int[], java.util.BitSet)}).</li>
+ * </ul>
+ * The score is the time of the filter over all articles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopicFilterBenchmark {
+
+    private static final int ARTICLES = 10_000;
+
+    @Param({"1", "5", "20"})
+    public int followedTopics;
+
+    private TopicCorpus corpus;
+    private String[] followedNames;
+    private int[] followedIds;
+    private BitSet followedBitmap;
+
+    @Setup
+    public void setUp() {
+        corpus = new TopicCorpus(ARTICLES, 42);
+        Random random = new Random(7);
+        followedIds = random.ints(0, TopicCorpus.TOPICS).distinct().limit(followedTopics).sorted().toArray();
+        followedNames = new String[followedIds.length];
+        for (int i = 0; i < followedIds.length; i++) {
+            followedNames[i] = corpus.names[followedIds[i]].toLowerCase(Locale.ROOT);
+        }
+        followedBitmap = TopicDictionary.bitmap(followedIds);
+    }
+
+    @Benchmark
+    public int text() {
+        int matches = 0;
+        for (String topics : corpus.relatedTopics) {
+            String lowerCase = topics.toLowerCase(Locale.ROOT);
+            for (String name : followedNames) {
+                if (lowerCase.contains(name)) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int sortedIds() {
+        int matches = 0;
+        for (int[] ids : corpus.topicIds) {
+            for (int id : ids) {
+                if (Arrays.binarySearch(followedIds, id) >= 0) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int bitmap() {
+        int matches = 0;
+        for (int[] ids : corpus.topicIds) {
+            if (TopicDictionary.matches(ids, followedBitmap)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,78 @@
+package edu.newsbot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * Compares the storage of the related topics and terms of the articles of a {@link TopicCorpus}, per million
+ * articles:
+ * <ul>
+ *     <li>in PostgreSQL, as the former {@code related_topics} and {@code related_terms} TEXT columns and as the
+ *     {@code topic_ids INT[]} column of {@link TopicDictionary} IDs,</li>
+ *     <li>on the heap, as the two strings, as an {@code int[]} of IDs and as a {@link BitSet} of IDs.</li>
+ * </ul>
+ * Column sizes follow PostgreSQL's layout: a TEXT value has a 1-byte header up to 126 bytes and a 4-byte header
+ * above; a one-dimensional INT[] has a 24-byte header (16 bytes when empty) and 4 bytes per element. Alignment
+ * padding and TOAST compression are left out, and neither applies to lists this short. Heap sizes assume
+ * compressed references (12-byte object headers, 16-byte array headers, 8-byte alignment). This is not a JMH
+ * benchmark, since JMH measures time:
+ * <pre>
+ * java -cp target/benchmarks.jar edu.newsbot.TopicStorageFootprint [ARTICLES]
+ * </pre>
+ */
+public class TopicStorageFootprint {
+
+    /**
+     * Default constructor.
+     * The benchmark is used through its main method only.
+     */
+    public TopicStorageFootprint() {
+        super();
+    }
+
+    /**
+     * Builds the corpus for the given number of articles and prints the storage of each representation.
+     *
+     * @param args The number of articles (default: 100,000).
+     */
+    public static void main(String[] args) {
+        int articles = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        TopicCorpus corpus = new TopicCorpus(articles, 42);
+
+        long textColumns = 0;
+        long idColumn = 0;
+        long textHeap = 0;
+        long idHeap = 0;
+        long bitmapHeap = 0;
+        for (int i = 0; i < articles; i++) {
+            textColumns += textColumn(corpus.relatedTopics[i]) + textColumn(corpus.relatedTerms[i]);
+            int[] ids = corpus.topicIds[i];
+            idColumn += ids.length == 0 ? 16 : 24 + 4L * ids.length;
+            textHeap += stringHeap(corpus.relatedTopics[i]) + stringHeap(corpus.relatedTerms[i]);
+            idHeap += align(16 + 4L * ids.length);
+            // BitSet object and its long[] sized to the highest ID
+            bitmapHeap += align(24) + align(16 + 8L * TopicDictionary.bitmap(ids).toLongArray().length);
+        }
+        double perMillion = 1_000_000.0 / articles / (1024 * 1024);
+        System.out.printf("%,d articles, %,d topics and terms; MB per million articles%n", articles, corpus.names.length);
+        System.out.printf("%-34s %10.1f%n", "PostgreSQL: TEXT columns", textColumns * perMillion);
+        System.out.printf("%-34s %10.1f%n", "PostgreSQL: INT[] column", idColumn * perMillion);
+        System.out.printf("%-34s %10.1f%n", "heap: strings", textHeap * perMillion);
+        System.out.printf("%-34s %10.1f%n", "heap: int[]", idHeap * perMillion);
+        System.out.printf("%-34s %10.1f%n", "heap: BitSet", bitmapHeap * perMillion);
+    }
+
+    private static long textColumn(String value) {
+        int bytes = value.getBytes(StandardCharsets.UTF_8).length;
+        return (bytes <= 126 ? 1 : 4) + bytes;
+    }
+
+    // A Latin-1 String: the object and its byte[]
+    private static long stringHeap(String value) {
+        return align(24) + align(16 + value.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,63 @@
+package edu.newsbot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Gson parsing of a recorded getUpdates response (20 messages and callback queries),
+ * including the field reads {@code NewsBot} does for every update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdatesParsingBenchmark {
+
+    private String updatesJson;
+
+    @Setup
+    public void setUp() {
+        updatesJson = Fixtures.read(Fixtures.TELEGRAM_UPDATES);
+    }
+
+    @Benchmark
+    public JsonArray parseUpdatesResponse() {
+        return NewsBot.parseUpdatesResponse(updatesJson);
+    }
+
+    @Benchmark
+    public void parseAndReadUpdates(Blackhole blackhole) {
+        JsonArray updates = NewsBot.parseUpdatesResponse(updatesJson);
+        for (JsonElement updateElement : updates) {
+            JsonObject update = updateElement.getAsJsonObject();
+            blackhole.consume(update.get("update_id").getAsInt());
+            if (update.has("callback_query")) {
+                JsonObject callbackQuery = update.getAsJsonObject("callback_query");
+                blackhole.consume(callbackQuery.get("data").getAsString());
+                blackhole.consume(callbackQuery.getAsJsonObject("from").get("id").getAsLong());
+                blackhole.consume(callbackQuery.getAsJsonObject("message").get("message_id").getAsLong());
+            } else if (update.has("message")) {
+                JsonObject message = update.getAsJsonObject("message");
+                blackhole.consume(message.getAsJsonObject("chat").get("id").getAsLong());
+                blackhole.consume(message.get("message_id").getAsLong());
+                blackhole.consume(message.has("text") ? message.get("text").getAsString() : "Non-text message");
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package edu.newsbot.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for ScienceDaily. It serves RSS feeds with the same paths as {@code links.txt}
+ * ({@code /rss/all.xml}, {@code /rss/top/science.xml}, ...) and article pages with the markup
+ * {@code Parser} extracts from. New articles are published on demand with {@link #publish()};
+ * every article appears in {@code all.xml} and in one other, randomly chosen feed.
+ */
+public class FakeScienceDailyServer {
+
+    // Feed paths as in links.txt, relative to /rss/ and without ".xml"
+    private static final String[] FEED_PATHS = {
+            "all", "top", "top/science", "top/health", "top/technology", "top/environment", "top/society",
+            "strange_offbeat", "most_popular", "health_medicine", "mind_brain", "living_well", "space_time",
+            "matter_energy", "computers_math", "plants_animals", "earth_climate", "fossils_ruins",
+            "science_society", "business_industry", "education_learning"
+    };
+    // Number of items listed per feed, newest first
+    private static final int ITEMS_PER_FEED = 60;
+    private static final String[] TOPICS = {"Mars", "Climate", "Genetics", "Neuroscience", "Batteries", "Ecology", "Vaccines", "Robotics"};
+    private static final String[] STORY_WORDS = (
+            "researchers report results methods findings study team university data model cells energy climate "
+            + "species ocean signal protein sample patients trial measured observed increase decrease rapid slow "
+            + "early late large small new old surface deep light heat water carbon soil brain gene virus galaxy "
+            + "planet orbit battery material device network robot sensor field laboratory analysis evidence effect "
+            + "risk growth response structure pattern region season decade century future previous current").split(" ");
+
+    /**
+     * A published article.
+     *
+     * @param id              The sequence number of the article.
+     * @param feedPath        The feed (besides "all") the article appears in.
+     * @param publishedMillis The wall-clock publication time.
+     */
+    public record FakeArticle(int id, String feedPath, long publishedMillis) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<FakeArticle> articles = new CopyOnWriteArrayList<>();
+    private final Map<String, List<FakeArticle>> articlesByFeed = new ConcurrentHashMap<>();
+    private final AtomicInteger nextArticleId = new AtomicInteger(1);
+    private final LongAdder feedRequests = new LongAdder();
+    private final LongAdder articleRequests = new LongAdder();
+
+    /**
+     * Creates the server on a free local port.
+     *
+     * @throws IOException if the server cannot be bound.
+     */
+    public FakeScienceDailyServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newFixedThreadPool(16);
+        server.setExecutor(executor);
+        server.createContext("/rss/", this::handleFeed);
+        server.createContext("/releases/", this::handleArticle);
+        for (String feedPath : FEED_PATHS) {
+            articlesByFeed.put(feedPath, new CopyOnWriteArrayList<>());
+        }
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the links of all feeds, in the order of {@code links.txt}.
+     *
+     * @return The feed links.
+     */
+    public List<String> getFeedLinks() {
+        List<String> links = new ArrayList<>();
+        for (String feedPath : FEED_PATHS) {
+            links.add(getFeedLink(feedPath));
+        }
+        return links;
+    }
+
+    /**
+     * Returns the names of all feeds as the bot derives them from the links.
+     *
+     * @return The feed names.
+     */
+    public List<String> getFeedNames() {
+        List<String> names = new ArrayList<>();
+        for (String feedPath : FEED_PATHS) {
+            names.add(feedPath.substring(feedPath.lastIndexOf('/') + 1));
+        }
+        return names;
+    }
+
+    /**
+     * Publishes a new article in "all" and one other random feed.
+     *
+     * @return The published article.
+     */
+    public FakeArticle publish() {
+        String feedPath = FEED_PATHS[1 + ThreadLocalRandom.current().nextInt(FEED_PATHS.length - 1)];
+        FakeArticle article = new FakeArticle(nextArticleId.getAndIncrement(), feedPath, System.currentTimeMillis());
+        articles.add(article);
+        articlesByFeed.get("all").add(article);
+        articlesByFeed.get(feedPath).add(article);
+        return article;
+    }
+
+    /**
+     * Returns the articles published in a feed within a time range.
+     *
+     * @param feedName    The feed name as shown on the sources keyboard.
+     * @param afterMillis The exclusive lower bound of the publication time.
+     * @param untilMillis The inclusive upper bound of the publication time.
+     * @return The matching articles.
+     */
+    public List<FakeArticle> getPublishedBetween(String feedName, long afterMillis, long untilMillis) {
+        List<FakeArticle> published = new ArrayList<>();
+        for (String feedPath : FEED_PATHS) {
+            if (!feedPath.substring(feedPath.lastIndexOf('/') + 1).equals(feedName)) {
+                continue;
+            }
+            for (FakeArticle article : articlesByFeed.get(feedPath)) {
+                if (article.publishedMillis() > afterMillis && article.publishedMillis() <= untilMillis) {
+                    published.add(article);
+                }
+            }
+        }
+        return published;
+    }
+
+    /**
+     * Returns the number of feed requests served.
+     *
+     * @return The count since startup.
+     */
+    public long getFeedRequests() {
+        return feedRequests.sum();
+    }
+
+    /**
+     * Returns the number of article page requests served.
+     *
+     * @return The count since startup.
+     */
+    public long getArticleRequests() {
+        return articleRequests.sum();
+    }
+
+    private String getFeedLink(String feedPath) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/rss/" + feedPath + ".xml";
+    }
+
+    private String getArticleLink(FakeArticle article) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/releases/" + article.id() + ".htm";
+    }
+
+    private void handleFeed(HttpExchange exchange) throws IOException {
+        try {
+            feedRequests.increment();
+            String path = exchange.getRequestURI().getPath();
+            String feedPath = path.substring("/rss/".length(), path.length() - ".xml".length());
+            List<FakeArticle> feedArticles = articlesByFeed.get(feedPath);
+            if (feedArticles == null) {
+                respond(exchange, 404, "text/plain", "Not Found");
+                return;
+            }
+
+            StringBuilder rss = new StringBuilder("""
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <rss version="2.0">
+                      <channel>
+                        <title>Fake ScienceDaily</title>
+                    """);
+            int from = feedArticles.size() - 1;
+            int to = Math.max(0, feedArticles.size() - ITEMS_PER_FEED);
+            for (int i = from; i >= to; i--) {
+                FakeArticle article = feedArticles.get(i);
+                String link = getArticleLink(article);
+                String pubDate = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        ZonedDateTime.ofInstant(Instant.ofEpochMilli(article.publishedMillis()), ZoneOffset.UTC));
+                rss.append("    <item>\n")
+                        .append("      <title>").append(title(article)).append("</title>\n")
+                        .append("      <link>").append(link).append("</link>\n")
+                        .append("      <description>Summary of synthetic article ").append(article.id()).append(".</description>\n")
+                        .append("      <pubDate>").append(pubDate).append("</pubDate>\n")
+                        .append("      <guid isPermaLink=\"false\">").append(link).append("</guid>\n")
+                        .append("    </item>\n");
+            }
+            rss.append("  </channel>\n</rss>\n");
+            respond(exchange, 200, "application/rss+xml", rss.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleArticle(HttpExchange exchange) throws IOException {
+        try {
+            articleRequests.increment();
+            String path = exchange.getRequestURI().getPath();
+            int id = Integer.parseInt(path.substring("/releases/".length(), path.length() - ".htm".length()));
+            if (id < 1 || id > articles.size()) {
+                respond(exchange, 404, "text/plain", "Not Found");
+                return;
+            }
+            FakeArticle article = articles.get(id - 1);
+
+            // Words drawn per article, so that the bot's near-duplicate detection sees distinct stories
+            Random words = new Random(id);
+            StringBuilder story = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                story.append("<p>Paragraph ").append(i + 1).append(" of synthetic article ").append(id).append('.');
+                for (int j = 0; j < 40; j++) {
+                    story.append(' ').append(STORY_WORDS[words.nextInt(STORY_WORDS.length)]);
+                }
+                story.append(".</p>\n");
+            }
+            String topic = TOPICS[id % TOPICS.length];
+            String html = """
+                    <!DOCTYPE html>
+                    <html><head><title>%1$s</title></head><body>
+                    <div id="story_text">%2$s</div>
+                    <div id="story_source"><p><strong>Story Source:</strong></p><p>Materials provided by Fake University.</p></div>
+                    <ol class="journal"><li>A. Author. <strong>%1$s</strong>. <em>Journal of Load Testing</em>, 2024</li></ol>
+                    <div class="tab-content tab-citations">
+                      <div id="citation_mla">Fake University. "%1$s." ScienceDaily.</div>
+                      <div id="citation_apa">Fake University. (2024). %1$s. ScienceDaily.</div>
+                      <div id="citation_chicago">Fake University. "%1$s." ScienceDaily.</div>
+                    </div>
+                    <div class="related-headline clearfix"><a href="/releases/%3$d.htm">Related</a></div>
+                    <ul class="nav subnav" id="related_topics"><li><a href="#">%4$s</a></li><li><a href="#">%5$s</a></li></ul>
+                    <ul class="nav nav-condensed fa-ul" id="related_terms"><li><a href="#">%4$s</a></li></ul>
+                    </body></html>
+                    """.formatted(title(article), story, Math.max(1, id - 1), topic, article.feedPath());
+            respond(exchange, 200, "text/html; charset=utf-8", html);
+        } catch (NumberFormatException e) {
+            respond(exchange, 404, "text/plain", "Not Found");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String title(FakeArticle article) {
+        return "Synthetic article " + article.id() + " about " + TOPICS[article.id() % TOPICS.length];
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package edu.newsbot.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for the Telegram Bot API. It implements getUpdates (long polling over an in-memory update
+ * queue), sendMessage, editMessageText and deleteMessage, with configurable per-call latency and random
+ * 429 "Too Many Requests" responses. Every message the bot sends or edits is passed to a {@link Listener}.
+ */
+public class FakeTelegramServer {
+
+    /**
+     * Receives the messages the bot sends or edits.
+     */
+    public interface Listener {
+        /**
+         * Called for every successful sendMessage or editMessageText call.
+         *
+         * @param method    "sendMessage" or "editMessageText".
+         * @param chatId    The chat the message was sent to.
+         * @param messageId The ID of the sent or edited message.
+         * @param text      The message text.
+         */
+        void onBotMessage(String method, long chatId, long messageId, String text);
+    }
+
+    // Maximum number of updates returned by one getUpdates call, as in the real API
+    private static final int MAX_UPDATES_PER_POLL = 100;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final double rateLimitProbability;
+    private final long latencyMillis;
+    private final Deque<JsonObject> updates = new ArrayDeque<>();
+    private final AtomicLong nextUpdateId = new AtomicLong(1);
+    private final AtomicLong nextMessageId = new AtomicLong(1);
+    private volatile Listener listener = (method, chatId, messageId, text) -> { };
+
+    private final LongAdder updatesDelivered = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesEdited = new LongAdder();
+    private final LongAdder messagesDeleted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    /**
+     * Creates the server on a free local port.
+     *
+     * @param rateLimitProbability The probability (0..1) that a send/edit/delete call is answered with 429.
+     * @param latencyMillis        The latency added to every call except getUpdates.
+     * @throws IOException if the server cannot be bound.
+     */
+    public FakeTelegramServer(double rateLimitProbability, long latencyMillis) throws IOException {
+        this.rateLimitProbability = rateLimitProbability;
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newFixedThreadPool(64);
+        server.setExecutor(executor);
+        server.createContext("/bot", this::handle);
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the base URL to configure as {@code telegram.api.url}.
+     *
+     * @return The base URL of the server.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Sets the listener for messages sent by the bot.
+     *
+     * @param listener The listener.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a text message from a user.
+     *
+     * @param chatId The chat (user) ID.
+     * @param text   The message text.
+     */
+    public void enqueueMessage(long chatId, String text) {
+        JsonObject message = new JsonObject();
+        message.addProperty("message_id", nextMessageId.getAndIncrement());
+        message.add("from", user(chatId));
+        message.add("chat", chat(chatId));
+        message.addProperty("date", System.currentTimeMillis() / 1000);
+        message.addProperty("text", text);
+
+        JsonObject update = new JsonObject();
+        update.add("message", message);
+        enqueue(update);
+    }
+
+    /**
+     * Queues an inline keyboard button press from a user.
+     *
+     * @param chatId      The chat (user) ID.
+     * @param messageId   The ID of the bot message carrying the keyboard.
+     * @param messageText The text of the bot message carrying the keyboard.
+     * @param data        The callback data of the pressed button.
+     */
+    public void enqueueCallback(long chatId, long messageId, String messageText, String data) {
+        JsonObject message = new JsonObject();
+        message.addProperty("message_id", messageId);
+        message.add("chat", chat(chatId));
+        message.addProperty("date", System.currentTimeMillis() / 1000);
+        message.addProperty("text", messageText);
+
+        JsonObject callbackQuery = new JsonObject();
+        callbackQuery.addProperty("id", Long.toString(nextMessageId.getAndIncrement()));
+        callbackQuery.add("from", user(chatId));
+        callbackQuery.add("message", message);
+        callbackQuery.addProperty("data", data);
+
+        JsonObject update = new JsonObject();
+        update.add("callback_query", callbackQuery);
+        enqueue(update);
+    }
+
+    /**
+     * Returns the number of updates waiting to be fetched by the bot.
+     *
+     * @return The update backlog.
+     */
+    public int getBacklog() {
+        synchronized (updates) {
+            return updates.size();
+        }
+    }
+
+    /**
+     * Returns the number of updates returned to the bot by getUpdates.
+     *
+     * @return The count since startup.
+     */
+    public long getUpdatesDelivered() {
+        return updatesDelivered.sum();
+    }
+
+    /**
+     * Returns the number of successful sendMessage calls.
+     *
+     * @return The count since startup.
+     */
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    /**
+     * Returns the number of successful editMessageText calls.
+     *
+     * @return The count since startup.
+     */
+    public long getMessagesEdited() {
+        return messagesEdited.sum();
+    }
+
+    /**
+     * Returns the number of successful deleteMessage calls.
+     *
+     * @return The count since startup.
+     */
+    public long getMessagesDeleted() {
+        return messagesDeleted.sum();
+    }
+
+    /**
+     * Returns the number of calls answered with 429.
+     *
+     * @return The count since startup.
+     */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    private void enqueue(JsonObject update) {
+        synchronized (updates) {
+            update.addProperty("update_id", nextUpdateId.getAndIncrement());
+            updates.addLast(update);
+            updates.notifyAll();
+        }
+    }
+
+    private static JsonObject user(long chatId) {
+        JsonObject user = new JsonObject();
+        user.addProperty("id", chatId);
+        user.addProperty("is_bot", false);
+        user.addProperty("first_name", "LoadUser" + chatId);
+        return user;
+    }
+
+    private static JsonObject chat(long chatId) {
+        JsonObject chat = new JsonObject();
+        chat.addProperty("id", chatId);
+        chat.addProperty("type", "private");
+        return chat;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1);
+
+            if (method.equals("getUpdates")) {
+                respond(exchange, 200, getUpdates(exchange.getRequestURI()));
+                return;
+            }
+
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (rateLimitProbability > 0 && ThreadLocalRandom.current().nextDouble() < rateLimitProbability) {
+                rateLimited.increment();
+                respond(exchange, 429, "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after 1\",\"parameters\":{\"retry_after\":1}}");
+                return;
+            }
+
+            JsonObject body = JsonParser.parseString(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+            long chatId = body.get("chat_id").getAsLong();
+            switch (method) {
+                case "sendMessage" -> {
+                    long messageId = nextMessageId.getAndIncrement();
+                    String text = body.get("text").getAsString();
+                    messagesSent.increment();
+                    respond(exchange, 200, messageResult(chatId, messageId, text));
+                    listener.onBotMessage(method, chatId, messageId, text);
+                }
+                case "editMessageText" -> {
+                    long messageId = body.get("message_id").getAsLong();
+                    String text = body.has("text") ? body.get("text").getAsString() : "";
+                    messagesEdited.increment();
+                    respond(exchange, 200, messageResult(chatId, messageId, text));
+                    listener.onBotMessage(method, chatId, messageId, text);
+                }
+                case "deleteMessage" -> {
+                    messagesDeleted.increment();
+                    respond(exchange, 200, "{\"ok\":true,\"result\":true}");
+                }
+                default -> respond(exchange, 404, "{\"ok\":false,\"error_code\":404,\"description\":\"Not Found\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            respond(exchange, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String getUpdates(URI uri) throws InterruptedException {
+        long offset = 0;
+        long timeoutSeconds = 0;
+        if (uri.getQuery() != null) {
+            for (String param : uri.getQuery().split("&")) {
+                String[] pair = param.split("=", 2);
+                if (pair[0].equals("offset")) {
+                    offset = Long.parseLong(pair[1]);
+                } else if (pair[0].equals("timeout")) {
+                    timeoutSeconds = Long.parseLong(pair[1]);
+                }
+            }
+        }
+
+        JsonArray result = new JsonArray();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        synchronized (updates) {
+            // Updates below the offset have been confirmed by the bot
+            while (!updates.isEmpty() && updates.peekFirst().get("update_id").getAsLong() < offset) {
+                updates.removeFirst();
+            }
+            while (updates.isEmpty()) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    break;
+                }
+                updates.wait(remainingMillis);
+            }
+            for (JsonElement update : updates) {
+                if (result.size() == MAX_UPDATES_PER_POLL) {
+                    break;
+                }
+                result.add(update);
+            }
+        }
+        updatesDelivered.add(result.size());
+
+        JsonObject response = new JsonObject();
+        response.addProperty("ok", true);
+        response.add("result", result);
+        return response.toString();
+    }
+
+    private static String messageResult(long chatId, long messageId, String text) {
+        JsonObject message = new JsonObject();
+        message.addProperty("message_id", messageId);
+        message.add("chat", chat(chatId));
+        message.addProperty("date", System.currentTimeMillis() / 1000);
+        message.addProperty("text", text);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("ok", true);
+        response.add("result", message);
+        return response.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
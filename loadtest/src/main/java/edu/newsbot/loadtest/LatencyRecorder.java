@@ -0,0 +1,69 @@
+package edu.newsbot.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples and reports percentiles over them.
+ * Samples are kept in full, which is fine for the few million samples of a load test run.
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count = 0;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param name The name printed in reports.
+     */
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a latency sample.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * Returns the number of recorded samples.
+     *
+     * @return The sample count.
+     */
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Formats count, p50, p90, p99, p99.9 and max of the recorded samples in milliseconds.
+     *
+     * @return The summary line.
+     */
+    public String summary() {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, count);
+        }
+        if (sorted.length == 0) {
+            return name + ": no samples";
+        }
+        Arrays.sort(sorted);
+        return String.format("%s: n=%d p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms",
+                name, sorted.length,
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+                sorted[sorted.length - 1] / 1_000_000.0);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,156 @@
+package edu.newsbot.loadtest;
+
+import edu.newsbot.ArticleRetention;
+import edu.newsbot.DB;
+import edu.newsbot.FeedCatalog;
+import edu.newsbot.NewsBot;
+import edu.newsbot.ParsingSendingScheduler;
+import edu.newsbot.SubscriptionIndex;
+
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the bot end to end against local stubs of the Telegram Bot API and ScienceDaily with synthetic users,
+ * and reports interaction and notification latency percentiles and throughput.
+ * <p>
+ * The bot uses the PostgreSQL database configured in {@code db.properties}; <b>all its tables are cleared</b>,
+ * as on a normal start of the bot. Usage:
+ * <pre>
+ * mvn -q exec:java -Dexec.args="[--users N] [--ramp SECONDS] [--duration SECONDS] [--rate-limit P]
+ *                               [--latency MILLIS] [--publish-interval MILLIS] [--reads-per-session N]"
+ * </pre>
+ * <ul>
+ *     <li>{@code --users} is the number of synthetic users (default: 100).</li>
+ *     <li>{@code --ramp} is the time over which users are added, evenly spaced (default: 30).</li>
+ *     <li>{@code --duration} is the total run time, including the ramp (default: 300).</li>
+ *     <li>{@code --rate-limit} is the probability that the Telegram stub answers a call with 429 (default: 0).</li>
+ *     <li>{@code --latency} is the latency of every Telegram stub call except getUpdates (default: 20).</li>
+ *     <li>{@code --publish-interval} is the time between two articles published on the ScienceDaily stub (default: 2000).</li>
+ *     <li>{@code --reads-per-session} is the number of "Next Article" presses per reading session (default: 3).</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    // Chat IDs of synthetic users start here, well clear of anything a developer may have in a local database
+    private static final long FIRST_CHAT_ID = 1_000_000_000L;
+    // An action the bot has not answered within this time is re-sent
+    private static final long ACTION_TIMEOUT_MILLIS = 30_000;
+    // Articles published before the first user arrives, so that catch-up has something to deliver
+    private static final int INITIAL_ARTICLES = 40;
+
+    /**
+     * Default constructor.
+     * The load test is used through its main method only.
+     */
+    public LoadTest() {
+        super();
+    }
+
+    /**
+     * Starts the stubs and the bot, drives the synthetic users for the configured duration and prints the results.
+     *
+     * @param args Command-line arguments, see the class documentation.
+     * @throws Exception if a stub cannot be started or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        int users = 100;
+        long rampSeconds = 30;
+        long durationSeconds = 300;
+        double rateLimit = 0.0;
+        long latencyMillis = 20;
+        long publishIntervalMillis = 2000;
+        int readsPerSession = 3;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--users" -> users = Integer.parseInt(args[++i]);
+                case "--ramp" -> rampSeconds = Long.parseLong(args[++i]);
+                case "--duration" -> durationSeconds = Long.parseLong(args[++i]);
+                case "--rate-limit" -> rateLimit = Double.parseDouble(args[++i]);
+                case "--latency" -> latencyMillis = Long.parseLong(args[++i]);
+                case "--publish-interval" -> publishIntervalMillis = Long.parseLong(args[++i]);
+                case "--reads-per-session" -> readsPerSession = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        FakeTelegramServer telegram = new FakeTelegramServer(rateLimit, latencyMillis);
+        FakeScienceDailyServer scienceDaily = new FakeScienceDailyServer();
+        telegram.start();
+        scienceDaily.start();
+        for (int i = 0; i < INITIAL_ARTICLES; i++) {
+            scienceDaily.publish();
+        }
+
+        // Must be set before NewsBot is initialized
+        System.setProperty("telegram.api.url", telegram.getBaseUrl());
+        // The stub serves different articles under the same URLs in every run, so each run gets an empty page cache
+        System.setProperty("page.cache.dir", Files.createTempDirectory("newsbot-page-cache").toString());
+
+        DB.clearAllTables();
+        DB.createTables();
+        DB.loadUserColumnTypes();
+        ArticleRetention.start();
+        try {
+            DB.insertRssFeeds(scienceDaily.getFeedLinks());
+        } catch (SQLException e) {
+            System.err.println("SQL error occurred: " + e.getMessage());
+            return;
+        }
+        FeedCatalog.load();
+        SubscriptionIndex.load();
+
+        SyntheticUserDriver driver = new SyntheticUserDriver(telegram, scienceDaily, readsPerSession, ACTION_TIMEOUT_MILLIS);
+        Thread updatesThread = new Thread(NewsBot::getUpdates, "getUpdates");
+        updatesThread.setDaemon(true);
+        updatesThread.start();
+
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+        executor.scheduleAtFixedRate(scienceDaily::publish, publishIntervalMillis, publishIntervalMillis, TimeUnit.MILLISECONDS);
+        long rampStepMillis = users > 1 ? TimeUnit.SECONDS.toMillis(rampSeconds) / (users - 1) : 0;
+        for (int i = 0; i < users; i++) {
+            long chatId = FIRST_CHAT_ID + i;
+            executor.schedule(() -> driver.addUser(chatId), i * rampStepMillis, TimeUnit.MILLISECONDS);
+        }
+        long startNanos = System.nanoTime();
+        executor.scheduleAtFixedRate(() -> printProgress(startNanos, telegram, scienceDaily, driver), 10, 10, TimeUnit.SECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        executor.shutdownNow();
+        driver.stop();
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println();
+        System.out.println("=== Load test results ===");
+        System.out.printf("users=%d duration=%.0fs rate-limit=%.3f latency=%dms publish-interval=%dms%n",
+                users, elapsedSeconds, rateLimit, latencyMillis, publishIntervalMillis);
+        System.out.println(driver.getInteractionLatency().summary());
+        System.out.println(driver.getNotificationLatency().summary());
+        System.out.printf("throughput: %.1f updates/s, %.1f messages/s (sent %d, edited %d, deleted %d, 429s %d)%n",
+                telegram.getUpdatesDelivered() / elapsedSeconds,
+                (telegram.getMessagesSent() + telegram.getMessagesEdited()) / elapsedSeconds,
+                telegram.getMessagesSent(), telegram.getMessagesEdited(), telegram.getMessagesDeleted(), telegram.getRateLimited());
+        System.out.printf("users registered %d, reading sessions %d, actions %d, timed out %d%n",
+                driver.getRegistered(), driver.getSessions(), driver.getActions(), driver.getTimeouts());
+        System.out.printf("crawler: %d feed requests, %d article requests%n",
+                scienceDaily.getFeedRequests(), scienceDaily.getArticleRequests());
+
+        ParsingSendingScheduler.stopAll();
+        telegram.stop();
+        scienceDaily.stop();
+        System.exit(0);
+    }
+
+    private static void printProgress(long startNanos, FakeTelegramServer telegram, FakeScienceDailyServer scienceDaily,
+                                      SyntheticUserDriver driver) {
+        long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+        System.out.printf("[%4ds] registered=%d sessions=%d backlog=%d sent=%d 429s=%d timeouts=%d feeds=%d | %s | %s%n",
+                elapsedSeconds, driver.getRegistered(), driver.getSessions(), telegram.getBacklog(),
+                telegram.getMessagesSent(), telegram.getRateLimited(), driver.getTimeouts(), scienceDaily.getFeedRequests(),
+                driver.getInteractionLatency().summary(), driver.getNotificationLatency().summary());
+    }
+}
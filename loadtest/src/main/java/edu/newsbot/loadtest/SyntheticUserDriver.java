@@ -0,0 +1,285 @@
+package edu.newsbot.loadtest;
+
+import edu.newsbot.NewsBot;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives synthetic users through the bot the way real users click through it: /start, the registration
+ * keyboards (language, age group, update interval, source), and reading sessions started by
+ * "Fresh News available" notifications ("Read Articles", a few "Next Article", then "More Info").
+ * <p>
+ * Two latencies are recorded:
+ * <ul>
+ *     <li>interaction latency, from queueing a user action to the first message the bot sends back;</li>
+ *     <li>notification latency, from publishing an article on the fake ScienceDaily to the first notification
+ *         whose unread count includes it.</li>
+ * </ul>
+ * Actions the bot does not answer within the timeout are re-sent by a watchdog, as an impatient user would.
+ */
+public class SyntheticUserDriver implements FakeTelegramServer.Listener {
+
+    private static final Pattern FRESH_NEWS = Pattern.compile("^\\*Fresh News available \\((\\d+)\\)\\*");
+
+    private enum State { REGISTERING, SUBSCRIBED, READING }
+
+    /**
+     * The client-side state of one synthetic user. Guarded by its own monitor.
+     */
+    private static final class SyntheticUser {
+        final long chatId;
+        final String feedName;
+        State state = State.REGISTERING;
+        Runnable pendingAction;
+        long pendingSinceNanos;
+        long accountedUntilMillis;
+        int knownUnread = -1;
+        int readsLeft;
+
+        SyntheticUser(long chatId, String feedName) {
+            this.chatId = chatId;
+            this.feedName = feedName;
+        }
+    }
+
+    private final FakeTelegramServer telegram;
+    private final FakeScienceDailyServer scienceDaily;
+    private final int readsPerSession;
+    private final long actionTimeoutNanos;
+    private final Map<Long, SyntheticUser> users = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    private final LatencyRecorder interactionLatency = new LatencyRecorder("interaction");
+    private final LatencyRecorder notificationLatency = new LatencyRecorder("notification");
+    private final LongAdder actions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder registered = new LongAdder();
+    private final LongAdder sessions = new LongAdder();
+
+    /**
+     * Creates a driver and registers it as the listener of the Telegram stub.
+     *
+     * @param telegram           The Telegram Bot API stub the bot talks to.
+     * @param scienceDaily       The ScienceDaily stub the bot crawls.
+     * @param readsPerSession    The number of "Next Article" presses per reading session.
+     * @param actionTimeoutMillis The time after which an unanswered action is re-sent.
+     */
+    public SyntheticUserDriver(FakeTelegramServer telegram, FakeScienceDailyServer scienceDaily,
+                               int readsPerSession, long actionTimeoutMillis) {
+        this.telegram = telegram;
+        this.scienceDaily = scienceDaily;
+        this.readsPerSession = readsPerSession;
+        this.actionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(actionTimeoutMillis);
+        telegram.setListener(this);
+        watchdog.scheduleWithFixedDelay(this::resendTimedOutActions, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds a user subscribing to a random feed and sends /start on their behalf.
+     *
+     * @param chatId The chat ID of the new user.
+     */
+    public void addUser(long chatId) {
+        List<String> feedNames = scienceDaily.getFeedNames();
+        SyntheticUser user = new SyntheticUser(chatId, feedNames.get(ThreadLocalRandom.current().nextInt(feedNames.size())));
+        users.put(chatId, user);
+        synchronized (user) {
+            act(user, () -> telegram.enqueueMessage(chatId, "/start"));
+        }
+    }
+
+    /**
+     * Stops the watchdog.
+     */
+    public void stop() {
+        watchdog.shutdownNow();
+    }
+
+    @Override
+    public void onBotMessage(String method, long chatId, long messageId, String text) {
+        SyntheticUser user = users.get(chatId);
+        // Other edits only deactivate inline keyboards; users react to new messages and to notifications the
+        // bot updated in place
+        boolean edited = method.equals("editMessageText");
+        if (user == null || (edited && !isNotification(text))) {
+            return;
+        }
+
+        synchronized (user) {
+            // An edited notification comes from the scheduler, not in reply to an action
+            if (!edited && user.pendingAction != null) {
+                interactionLatency.record(System.nanoTime() - user.pendingSinceNanos);
+                user.pendingAction = null;
+            }
+
+            if (text.startsWith("Choose your language")) {
+                callback(user, messageId, text, "bot_user|language|eng");
+            } else if (text.startsWith("Choose your age group")) {
+                callback(user, messageId, text, "bot_user|age|18-24");
+            } else if (text.startsWith("Choose how often")) {
+                callback(user, messageId, text, "bot_user|delta_time|1");
+            } else if (text.startsWith("Suggest one of these links")) {
+                user.state = State.SUBSCRIBED;
+                user.accountedUntilMillis = System.currentTimeMillis();
+                registered.increment();
+                // Toggling a source only edits the keyboard; the bot replies once the selection is done
+                telegram.enqueueCallback(user.chatId, messageId, text, "bot_user|sources|" + user.feedName);
+                callback(user, messageId, text, NewsBot.SOURCES_DONE_CALLBACK);
+            } else if (text.startsWith("No more fresh news")) {
+                user.knownUnread = 0;
+                user.state = State.SUBSCRIBED;
+            } else {
+                Matcher matcher = FRESH_NEWS.matcher(text);
+                if (!matcher.find()) {
+                    return;
+                }
+                int unread = Integer.parseInt(matcher.group(1));
+                if (user.state == State.READING) {
+                    continueReading(user, text, unread);
+                } else if (user.state == State.SUBSCRIBED && text.length() == matcher.end()) {
+                    onNotification(user, unread);
+                }
+            }
+        }
+    }
+
+    private static boolean isNotification(String text) {
+        Matcher matcher = FRESH_NEWS.matcher(text);
+        return matcher.find() && text.length() == matcher.end();
+    }
+
+    private void onNotification(SyntheticUser user, int unread) {
+        long now = System.currentTimeMillis();
+        if (user.knownUnread < 0) {
+            // The first notification covers the catch-up backlog, which was published before the user subscribed
+            user.knownUnread = unread;
+        } else if (unread > user.knownUnread) {
+            // Articles of a feed become visible in publication order, so the newly counted ones are the oldest
+            // published articles not accounted for yet
+            int newlyVisible = unread - user.knownUnread;
+            List<FakeScienceDailyServer.FakeArticle> published =
+                    scienceDaily.getPublishedBetween(user.feedName, user.accountedUntilMillis, now);
+            int accounted = Math.min(newlyVisible, published.size());
+            for (int i = 0; i < accounted; i++) {
+                notificationLatency.record(TimeUnit.MILLISECONDS.toNanos(now - published.get(i).publishedMillis()));
+            }
+            if (accounted > 0) {
+                user.accountedUntilMillis = published.get(accounted - 1).publishedMillis();
+            }
+            user.knownUnread = unread;
+        } else {
+            user.knownUnread = unread;
+            return;
+        }
+
+        if (unread > 0) {
+            user.state = State.READING;
+            user.readsLeft = readsPerSession;
+            sessions.increment();
+            message(user, "Read Articles");
+        }
+    }
+
+    private void continueReading(SyntheticUser user, String text, int unread) {
+        user.knownUnread = unread;
+        if (text.contains("*Full Story:*")) {
+            // "More Info" ends the session; the following parts of a split message need no reaction
+            user.state = State.SUBSCRIBED;
+        } else if (user.readsLeft > 0) {
+            user.readsLeft--;
+            message(user, "Next Article");
+        } else {
+            message(user, "More Info");
+        }
+    }
+
+    private void callback(SyntheticUser user, long messageId, String messageText, String data) {
+        act(user, () -> telegram.enqueueCallback(user.chatId, messageId, messageText, data));
+    }
+
+    private void message(SyntheticUser user, String text) {
+        act(user, () -> telegram.enqueueMessage(user.chatId, text));
+    }
+
+    private void act(SyntheticUser user, Runnable action) {
+        user.pendingAction = action;
+        user.pendingSinceNanos = System.nanoTime();
+        actions.increment();
+        action.run();
+    }
+
+    private void resendTimedOutActions() {
+        long now = System.nanoTime();
+        for (SyntheticUser user : users.values()) {
+            synchronized (user) {
+                if (user.pendingAction != null && now - user.pendingSinceNanos > actionTimeoutNanos) {
+                    timeouts.increment();
+                    act(user, user.pendingAction);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the recorder of interaction latencies.
+     *
+     * @return The interaction latency recorder.
+     */
+    public LatencyRecorder getInteractionLatency() {
+        return interactionLatency;
+    }
+
+    /**
+     * Returns the recorder of notification latencies.
+     *
+     * @return The notification latency recorder.
+     */
+    public LatencyRecorder getNotificationLatency() {
+        return notificationLatency;
+    }
+
+    /**
+     * Returns the number of actions sent, including re-sent ones.
+     *
+     * @return The count since startup.
+     */
+    public long getActions() {
+        return actions.sum();
+    }
+
+    /**
+     * Returns the number of actions re-sent after a timeout.
+     *
+     * @return The count since startup.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Returns the number of users that completed registration.
+     *
+     * @return The count since startup.
+     */
+    public long getRegistered() {
+        return registered.sum();
+    }
+
+    /**
+     * Returns the number of reading sessions started.
+     *
+     * @return The count since startup.
+     */
+    public long getSessions() {
+        return sessions.sum();
+    }
+}
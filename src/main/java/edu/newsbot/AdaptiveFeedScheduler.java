@@ -0,0 +1,311 @@
+package edu.newsbot;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * The {@code AdaptiveFeedScheduler} crawls every subscribed feed once, at an interval learned from the
+ * feed's own publication rate, instead of once per subscriber at the subscriber's delivery interval.
+ * <p>
+ * For each feed it keeps an exponentially weighted moving average (EWMA) of the gaps between the
+ * publication dates of new items. The crawl interval is half of that average, bounded below by the
+ * shortest delivery interval among the feed's subscribers (crawling more often than anyone is notified
+ * gains nothing) and above by {@link #MAX_CRAWL_INTERVAL_SECONDS}. Until the rate has been learned,
+ * the feed is crawled at the shortest subscriber interval. Hot feeds like {@code top.xml} therefore
+ * stay at the subscriber interval while slow feeds are crawled less often. The upper bound applies to the
+ * subscriber interval too: a feed whose subscribers all take a daily digest is still crawled every
+ * {@link #MAX_CRAWL_INTERVAL_SECONDS}, so its items are stored before they scroll off the RSS feed and are
+ * ready whenever the digest is due.
+ * <p>
+ * Crawls themselves run in the {@link CrawlPipeline}. The scheduler also reports how many crawls per hour it saves compared with crawling per subscriber.
+ */
+public class AdaptiveFeedScheduler {
+
+    // Weight of the newest gap in the moving average
+    private static final double EWMA_ALPHA = 0.3;
+    // Fraction of the average publication gap used as the crawl interval
+    private static final double GAP_FRACTION = 0.5;
+    // Upper bound of the crawl interval, so a feed that went quiet is still picked up eventually
+    private static final long MAX_CRAWL_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(6);
+
+    private static final ScheduledThreadPoolExecutor crawler = new ScheduledThreadPoolExecutor(1);
+    private static final ConcurrentHashMap<String, FeedState> feeds = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Long, List<String>> feedsByUser = new ConcurrentHashMap<>();
+    // Crawls per hour if every subscriber had each of their feeds crawled at their delivery interval, and of the
+    // scheduled adaptive crawls; kept up to date as subscribers and intervals change, see getCrawlsSavedPerHour()
+    private static final DoubleAdder perSubscriberCrawlsPerHour = new DoubleAdder();
+    private static final DoubleAdder adaptiveCrawlsPerHour = new DoubleAdder();
+
+    static {
+        crawler.scheduleAtFixedRate(AdaptiveFeedScheduler::report, 1, 1, TimeUnit.HOURS);
+        Metrics.gauge("newsbot_scheduler_queue_size", "Tasks waiting in a scheduler queue",
+                "scheduler", "feed crawls", () -> crawler.getQueue().size());
+        Metrics.gauge("newsbot_scheduler_active_threads", "Threads of a scheduler currently running a task",
+                "scheduler", "feed crawls", crawler::getActiveCount);
+        Metrics.gauge("newsbot_crawls_saved_per_hour", "Crawls per hour saved by adaptive crawling",
+                null, null, AdaptiveFeedScheduler::getCrawlsSavedPerHour);
+    }
+
+    /**
+     * Default constructor.
+     * The scheduler is used through its static methods only.
+     */
+    public AdaptiveFeedScheduler() {
+        super();
+    }
+
+    /**
+     * Crawl state of a single feed. All fields are guarded by the instance lock.
+     */
+    private static class FeedState {
+        private final String link;
+        // Delivery interval in seconds by subscriber
+        private final LongIntMap subscriberIntervals = new LongIntMap();
+        private double ewmaGapSeconds = Double.NaN;
+        private Instant lastPubDate;
+        private long crawlIntervalSeconds;
+        private ScheduledFuture<?> nextCrawl;
+        // Incremented on every (re)scheduling, so a crawl replaced in the meantime does not schedule a duplicate
+        private long generation;
+        // The share of this feed in adaptiveCrawlsPerHour; 0 while it is not crawled
+        private double crawlsPerHour;
+
+        private FeedState(String link) {
+            this.link = link;
+        }
+
+        private void putSubscriber(long userId, int intervalSeconds) {
+            int previous = subscriberIntervals.put(userId, intervalSeconds);
+            if (previous != LongIntMap.NO_VALUE) {
+                perSubscriberCrawlsPerHour.add(-3600.0 / previous);
+            }
+            perSubscriberCrawlsPerHour.add(3600.0 / intervalSeconds);
+        }
+
+        private void removeSubscriber(long userId) {
+            int previous = subscriberIntervals.remove(userId);
+            if (previous != LongIntMap.NO_VALUE) {
+                perSubscriberCrawlsPerHour.add(-3600.0 / previous);
+            }
+        }
+
+        private void setCrawlsPerHour(double crawlsPerHour) {
+            adaptiveCrawlsPerHour.add(crawlsPerHour - this.crawlsPerHour);
+            this.crawlsPerHour = crawlsPerHour;
+        }
+
+        private long shortestSubscriberInterval() {
+            long[] shortest = {Long.MAX_VALUE};
+            subscriberIntervals.forEach((userId, interval) -> shortest[0] = Math.min(shortest[0], interval));
+            return shortest[0];
+        }
+    }
+
+    /**
+     * Subscribes a user to the crawls of feeds, moving them away from the previously subscribed feeds they left.
+     * The crawl of a feed is started if the user is its first subscriber; the pending crawl of a feed the user
+     * stays subscribed to is kept, unless the new interval asks for an earlier one.
+     *
+     * @param links The links of the feeds.
+     * @param userId The telegram user ID of the subscriber.
+     * @param intervalSeconds The delivery interval of the subscriber in seconds.
+     */
+    public static void register(List<String> links, long userId, long intervalSeconds) {
+        List<String> previousLinks = feedsByUser.put(userId, List.copyOf(links));
+        if (previousLinks != null) {
+            Set<String> kept = new HashSet<>(links);
+            for (String link : previousLinks) {
+                if (!kept.contains(link)) {
+                    removeSubscriber(link, userId);
+                }
+            }
+        }
+
+        for (String link : links) {
+            FeedState state = feeds.computeIfAbsent(link, FeedState::new);
+            synchronized (state) {
+                state.putSubscriber(userId, (int) Math.min(intervalSeconds, Integer.MAX_VALUE));
+                long interval = computeCrawlInterval(state);
+                if (state.nextCrawl == null) {
+                    scheduleCrawl(state, interval);
+                } else if (interval < state.crawlIntervalSeconds) {
+                    // A subscriber with a shorter interval should not wait for the old, longer interval
+                    state.nextCrawl.cancel(false);
+                    scheduleCrawl(state, interval);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a user from the crawls of their feeds. The crawl of a feed stops once it has no subscribers.
+     *
+     * @param userId The telegram user ID of the subscriber.
+     */
+    public static void unregister(long userId) {
+        List<String> links = feedsByUser.remove(userId);
+        if (links == null) {
+            return;
+        }
+        for (String link : links) {
+            removeSubscriber(link, userId);
+        }
+    }
+
+    /**
+     * Removes a user from the crawls of a feed, stopping them if the user was the last subscriber.
+     *
+     * @param link The link of the feed.
+     * @param userId The telegram user ID of the subscriber.
+     */
+    private static void removeSubscriber(String link, long userId) {
+        FeedState state = feeds.get(link);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.removeSubscriber(userId);
+            if (state.subscriberIntervals.isEmpty() && state.nextCrawl != null) {
+                state.nextCrawl.cancel(false);
+                state.nextCrawl = null;
+                state.setCrawlsPerHour(0);
+            }
+        }
+    }
+
+    /**
+     * Feeds the publication dates of newly found items into the feed's publication rate.
+     *
+     * @param link The link of the feed.
+     * @param newItems The new items found by a crawl of the feed.
+     */
+    public static void observe(String link, List<FeedItem> newItems) {
+        FeedState state = feeds.get(link);
+        if (state == null) {
+            return;
+        }
+
+        List<Instant> pubDates = new ArrayList<>();
+        for (FeedItem item : newItems) {
+            if (item.pubDate() != null) {
+                pubDates.add(item.pubDate());
+            }
+        }
+        pubDates.sort(null);
+
+        synchronized (state) {
+            for (Instant pubDate : pubDates) {
+                if (state.lastPubDate != null && pubDate.isAfter(state.lastPubDate)) {
+                    double gap = Duration.between(state.lastPubDate, pubDate).toSeconds();
+                    state.ewmaGapSeconds = Double.isNaN(state.ewmaGapSeconds)
+                            ? gap
+                            : EWMA_ALPHA * gap + (1 - EWMA_ALPHA) * state.ewmaGapSeconds;
+                }
+                if (state.lastPubDate == null || pubDate.isAfter(state.lastPubDate)) {
+                    state.lastPubDate = pubDate;
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates how many crawls per hour are saved compared with crawling the feed once per subscriber
+     * at the subscriber's delivery interval. Both rates are kept up to date as subscribers and crawl intervals
+     * change, so this does not lock any feed.
+     *
+     * @return The number of crawls saved per hour.
+     */
+    public static double getCrawlsSavedPerHour() {
+        return perSubscriberCrawlsPerHour.sum() - adaptiveCrawlsPerHour.sum();
+    }
+
+    /**
+     * Stops all feed crawls and shuts down the crawler.
+     * This method is intended to be called during application shutdown.
+     */
+    public static void stopAll() {
+        crawler.shutdownNow();
+        CrawlPipeline.stopAll();
+    }
+
+    /**
+     * Computes the crawl interval of a feed from its publication rate and its subscribers.
+     * Must be called while holding the lock of the state.
+     *
+     * @param state The feed state.
+     * @return The crawl interval in seconds.
+     */
+    private static long computeCrawlInterval(FeedState state) {
+        // Digest intervals (a day) are longer than the cap, which must still hold
+        long shortest = Math.min(state.shortestSubscriberInterval(), MAX_CRAWL_INTERVAL_SECONDS);
+        if (Double.isNaN(state.ewmaGapSeconds)) {
+            return shortest;
+        }
+        long learned = (long) (state.ewmaGapSeconds * GAP_FRACTION);
+        return Math.max(shortest, Math.min(learned, MAX_CRAWL_INTERVAL_SECONDS));
+    }
+
+    /**
+     * Schedules the next crawl of a feed. Must be called while holding the lock of the state.
+     *
+     * @param state The feed state.
+     * @param delaySeconds The delay before the crawl in seconds.
+     */
+    private static void scheduleCrawl(FeedState state, long delaySeconds) {
+        long generation = ++state.generation;
+        state.crawlIntervalSeconds = delaySeconds;
+        state.setCrawlsPerHour(3600.0 / delaySeconds);
+        state.nextCrawl = crawler.schedule(() -> crawl(state, generation), delaySeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Submits a crawl of a feed to the {@link CrawlPipeline} and schedules the next crawl.
+     * The pipeline reports the new items back through {@link #observe(String, List)}.
+     * Submitting blocks while the pipeline is saturated, which slows down crawling accordingly.
+     *
+     * @param state The feed state.
+     * @param generation The scheduling generation this crawl belongs to.
+     */
+    private static void crawl(FeedState state, long generation) {
+        try {
+            CrawlPipeline.submit(state.link);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        synchronized (state) {
+            if (state.generation == generation && state.nextCrawl != null && !state.subscriberIntervals.isEmpty()) {
+                scheduleCrawl(state, computeCrawlInterval(state));
+            }
+        }
+    }
+
+    /**
+     * Logs the current crawl interval of each feed and the crawls saved per hour.
+     */
+    private static void report() {
+        if (!Log.isEnabled(Log.Level.INFO)) {
+            return;
+        }
+        for (FeedState state : feeds.values()) {
+            synchronized (state) {
+                if (!state.subscriberIntervals.isEmpty()) {
+                    Log.info("AdaptiveFeedScheduler", "Feed crawl interval", "feed", state.link, "schedule",
+                            "every " + state.crawlIntervalSeconds + "s, " + state.subscriberIntervals.size() + " subscribers");
+                }
+            }
+        }
+        Log.info("AdaptiveFeedScheduler", "Adaptive crawling savings", "crawlsSavedPerHour",
+                String.format("%.1f", getCrawlsSavedPerHour()));
+    }
+}
@@ -0,0 +1,38 @@
+package edu.newsbot;
+
+import java.time.OffsetDateTime;
+
+/**
+ * An immutable news article as it moves between the {@link Parser}, the {@link DB} and the {@link NewsBot}.
+ * Field names follow the columns of the {@code article} table.
+ *
+ * @param id                  The database ID of the article, or 0 if the article has not been stored yet.
+ * @param title               The title of the article.
+ * @param summary             The summary (RSS description) of the article.
+ * @param link                The link to the detailed page of the article.
+ * @param datetime            The time the article was stored, or null if it has not been stored yet.
+ * @param fullStory           The full story text.
+ * @param source              The story source.
+ * @param relatedTopics       The related topics, joined with "; ".
+ * @param relatedTerms        The related terms, joined with "; ".
+ * @param journalReference    The journal reference.
+ * @param citePageMla         The MLA citation.
+ * @param citePageApa         The APA citation.
+ * @param citePageChicago     The Chicago citation.
+ * @param relatedStoriesLinks The links to related stories, joined with spaces.
+ */
+public record Article(long id,
+                      String title,
+                      String summary,
+                      String link,
+                      OffsetDateTime datetime,
+                      String fullStory,
+                      String source,
+                      String relatedTopics,
+                      String relatedTerms,
+                      String journalReference,
+                      String citePageMla,
+                      String citePageApa,
+                      String citePageChicago,
+                      String relatedStoriesLinks) {
+}
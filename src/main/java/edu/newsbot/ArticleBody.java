@@ -0,0 +1,104 @@
+package edu.newsbot;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The large fields of an article, stored LZ4-compressed in one {@code article_body.content} value instead of
+ * six TEXT columns of the {@code article} row. Only the "More Info" view needs them, so keeping them out of the
+ * hot row keeps the rows read by the other views small.
+ * <p>
+ * The stored format is {@code [int uncompressed length][LZ4 block]}, where the uncompressed data is the six
+ * fields in declaration order, each as {@code [int length][UTF-8 bytes]}.
+ *
+ * @param fullStory           The full story text.
+ * @param journalReference    The journal reference.
+ * @param citePageMla         The MLA citation.
+ * @param citePageApa         The APA citation.
+ * @param citePageChicago     The Chicago citation.
+ * @param relatedStoriesLinks The links to related stories, joined with spaces.
+ */
+public record ArticleBody(String fullStory,
+                          String journalReference,
+                          String citePageMla,
+                          String citePageApa,
+                          String citePageChicago,
+                          String relatedStoriesLinks) {
+
+    private static final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    /**
+     * Takes the large fields of an article.
+     *
+     * @param article The article.
+     * @return The body of the article.
+     */
+    public static ArticleBody of(Article article) {
+        return new ArticleBody(article.fullStory(), article.journalReference(), article.citePageMla(),
+                article.citePageApa(), article.citePageChicago(), article.relatedStoriesLinks());
+    }
+
+    /**
+     * Serializes and compresses the body.
+     *
+     * @return The value stored in {@code article_body.content}.
+     */
+    public byte[] compress() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(fullStory == null ? 256 : fullStory.length() + 1024);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            for (String field : new String[] {fullStory, journalReference, citePageMla, citePageApa, citePageChicago,
+                    relatedStoriesLinks}) {
+                byte[] data = (field == null ? "" : field).getBytes(StandardCharsets.UTF_8);
+                output.writeInt(data.length);
+                output.write(data);
+            }
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] raw = bytes.toByteArray();
+        byte[] compressed = new byte[4 + compressor.maxCompressedLength(raw.length)];
+        ByteBuffer.wrap(compressed).putInt(raw.length);
+        int length = compressor.compress(raw, 0, raw.length, compressed, 4, compressed.length - 4);
+        byte[] content = new byte[4 + length];
+        System.arraycopy(compressed, 0, content, 0, content.length);
+        return content;
+    }
+
+    /**
+     * Decompresses and deserializes a stored body.
+     *
+     * @param content The value of {@code article_body.content}.
+     * @return The body.
+     */
+    public static ArticleBody decompress(byte[] content) {
+        int rawLength = ByteBuffer.wrap(content).getInt();
+        byte[] raw = new byte[rawLength];
+        decompressor.decompress(content, 4, raw, 0, rawLength);
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(raw))) {
+            return new ArticleBody(readField(input), readField(input), readField(input), readField(input),
+                    readField(input), readField(input));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt article body", e);
+        }
+    }
+
+    private static String readField(DataInputStream input) throws IOException {
+        byte[] data = new byte[input.readInt()];
+        input.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
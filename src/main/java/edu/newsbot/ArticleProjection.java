@@ -0,0 +1,46 @@
+package edu.newsbot;
+
+/**
+ * The columns of an article read for a view, so that each view reads only what it shows.
+ * The short views read the slim {@code article} row only; the large, rarely read fields live compressed in
+ * {@code article_body} (see {@link ArticleBody}) and are only read by {@link #FULL}.
+ * Fields that a projection does not read are null in the returned {@link Article}.
+ */
+public enum ArticleProjection {
+    /**
+     * Title, summary and link, for the "Read Articles" and "Next Article" views, and to find the article of the
+     * "More Info" view before its stored variant is looked up (see {@link ArticleVariants}).
+     */
+    HEADLINE("a.id, a.title, a.summary, a.link, a.datetime", false),
+    /**
+     * All fields, for the "More Info" view.
+     */
+    FULL("a.id, a.title, a.summary, a.link, a.datetime, a.source, a.topic_ids, b.content", true);
+
+    private final String columns;
+    private final boolean readsBody;
+
+    ArticleProjection(String columns, boolean readsBody) {
+        this.columns = columns;
+        this.readsBody = readsBody;
+    }
+
+    /**
+     * Returns the select list of the projection, for a query aliasing {@code article} as {@code a} and
+     * {@code article_body} as {@code b}.
+     *
+     * @return The columns, comma-separated.
+     */
+    public String getColumns() {
+        return columns;
+    }
+
+    /**
+     * Tells whether the projection needs the compressed {@code article_body} row.
+     *
+     * @return true if {@code article_body} has to be joined.
+     */
+    public boolean readsBody() {
+        return readsBody;
+    }
+}
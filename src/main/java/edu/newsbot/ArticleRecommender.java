@@ -0,0 +1,345 @@
+package edu.newsbot;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recommends related articles ("More Like This") from the topics, terms and related stories ScienceDaily lists
+ * for each article.
+ * <p>
+ * The related topics and terms ({@code "Space & Time; Astronomy; "}) of an article are interned as term IDs, and
+ * for each term the latest {@value #MAX_POSTINGS} articles carrying it are kept. When an article is stored, the
+ * articles sharing its terms are counted; a related story (a link of the page) that is already stored counts as
+ * one more shared term, it is looked up by its URL key. The article and each of these articles then enter each
+ * other's list of the {@value #MAX_RELATED} best related articles (most shared terms, newer first). Ingest thus
+ * costs at most {@value #MAX_POSTINGS} articles per term, and serving is a copy of the precomputed list.
+ * <p>
+ * The state is kept in memory and indexed by article ID: the database is cleared on every start, so the articles
+ * are added again as they are stored. Articles deleted by {@link ArticleRetention} are removed from the postings
+ * and the related lists, and a term without articles is forgotten, so the memory follows the stored articles.
+ */
+public class ArticleRecommender {
+
+    // Related articles kept per article
+    private static final int MAX_RELATED = 10;
+    // Articles kept per term; the oldest are replaced, which bounds the work of an ingest
+    private static final int MAX_POSTINGS = 512;
+    // Initial capacity of the articles of a term, doubled up to MAX_POSTINGS; most terms are rare
+    private static final int INITIAL_POSTINGS = 8;
+
+    private static final Metrics.Counter indexedArticles =
+            Metrics.counter("newsbot_recommender_articles_total", "Articles added to the recommender");
+    private static final Metrics.Counter removedArticles =
+            Metrics.counter("newsbot_recommender_removed_articles_total", "Articles removed from the recommender");
+
+    // All state below is guarded by ArticleRecommender.class
+    private static final Map<String, Integer> termIds = new HashMap<>();
+    // The IDs of forgotten terms, reused for new terms
+    private static final ArrayDeque<Integer> freeTermIds = new ArrayDeque<>();
+    // The term of each term ID, to forget it
+    private static String[] termNames = new String[1024];
+    // The latest articles of each term, oldest first, by term ID; postingCounts[term] entries are used
+    private static int[][] postings = new int[1024][];
+    private static int[] postingCounts = new int[1024];
+    // The added articles by URL key, to find the stored related stories
+    private static final Map<String, Integer> articleIdsByKey = new HashMap<>();
+    // The added articles by article ID; null for articles that were not added or were removed
+    private static Entry[] entries = new Entry[1024];
+
+    static {
+        Metrics.gauge("newsbot_recommender_terms", "Distinct topics and terms known to the recommender",
+                null, null, ArticleRecommender::getTermCount);
+    }
+
+    /**
+     * An added article: its URL key and term IDs (to remove it again) and its related articles
+     * with their shared term counts, best first.
+     */
+    private static final class Entry {
+        private final String urlKey;
+        private final int[] termIds;
+        private final int[] relatedIds = new int[MAX_RELATED];
+        private final int[] relatedScores = new int[MAX_RELATED];
+        private int relatedCount;
+
+        private Entry(String urlKey, int[] termIds) {
+            this.urlKey = urlKey;
+            this.termIds = termIds;
+        }
+    }
+
+    /**
+     * Default constructor.
+     * The recommender is used through its static methods only.
+     */
+    public ArticleRecommender() {
+        super();
+    }
+
+    /**
+     * Adds a stored article and updates the related articles of the articles sharing its terms.
+     * Articles added before are skipped.
+     *
+     * @param articleId The ID of the stored article.
+     * @param article The article with its related topics, terms and stories.
+     */
+    public static void add(int articleId, Article article) {
+        Set<String> terms = terms(article);
+        Set<String> relatedKeys = relatedStoryKeys(article);
+        String urlKey = article.link() == null ? null : UrlCanonicalizer.key(article.link());
+        synchronized (ArticleRecommender.class) {
+            if (articleId < 0 || articleId < entries.length && entries[articleId] != null) {
+                return;
+            }
+            if (articleId >= entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(articleId + 1, entries.length * 2));
+            }
+
+            // Count the terms shared with each article, then register the article under its terms
+            LongIntMap shared = new LongIntMap();
+            int[] articleTermIds = new int[terms.size()];
+            int index = 0;
+            for (String term : terms) {
+                int termId = termId(term);
+                articleTermIds[index++] = termId;
+                int[] articles = postings[termId];
+                for (int i = 0; i < postingCounts[termId]; i++) {
+                    increment(shared, articles[i]);
+                }
+                addPosting(termId, articleId);
+            }
+            for (String relatedKey : relatedKeys) {
+                Integer relatedId = articleIdsByKey.get(relatedKey);
+                if (relatedId != null && relatedId != articleId) {
+                    increment(shared, relatedId);
+                }
+            }
+            entries[articleId] = new Entry(urlKey, articleTermIds);
+            if (urlKey != null) {
+                articleIdsByKey.put(urlKey, articleId);
+            }
+            shared.forEach((otherId, count) -> {
+                offer(articleId, (int) otherId, count);
+                offer((int) otherId, articleId, count);
+            });
+        }
+        indexedArticles.increment();
+    }
+
+    /**
+     * Removes deleted articles: from the articles of their terms, from the related lists of the other articles
+     * and from the URL keys. Terms left without articles are forgotten.
+     * Unknown articles are ignored.
+     *
+     * @param articleIds The IDs of the deleted articles.
+     */
+    public static void remove(Collection<Integer> articleIds) {
+        if (articleIds.isEmpty()) {
+            return;
+        }
+        int removed = 0;
+        synchronized (ArticleRecommender.class) {
+            BitSet removedIds = new BitSet();
+            for (int articleId : articleIds) {
+                Entry entry = articleId >= 0 && articleId < entries.length ? entries[articleId] : null;
+                if (entry == null) {
+                    continue;
+                }
+                for (int termId : entry.termIds) {
+                    removePosting(termId, articleId);
+                }
+                if (entry.urlKey != null) {
+                    articleIdsByKey.remove(entry.urlKey, articleId);
+                }
+                entries[articleId] = null;
+                removedIds.set(articleId);
+                removed++;
+            }
+            if (removed == 0) {
+                return;
+            }
+            // An article may be in the list of any other article, not only in those of its own related articles
+            for (Entry entry : entries) {
+                if (entry == null) {
+                    continue;
+                }
+                int kept = 0;
+                for (int i = 0; i < entry.relatedCount; i++) {
+                    if (!removedIds.get(entry.relatedIds[i])) {
+                        entry.relatedIds[kept] = entry.relatedIds[i];
+                        entry.relatedScores[kept] = entry.relatedScores[i];
+                        kept++;
+                    }
+                }
+                entry.relatedCount = kept;
+            }
+        }
+        removedArticles.add(removed);
+    }
+
+    /**
+     * Returns the articles most related to an article.
+     *
+     * @param articleId The ID of the article.
+     * @param limit The maximum number of articles.
+     * @return The IDs of the related articles, best first; empty if the article is unknown.
+     */
+    public static synchronized List<Integer> getRelated(int articleId, int limit) {
+        List<Integer> related = new ArrayList<>();
+        if (articleId < 0 || articleId >= entries.length || entries[articleId] == null) {
+            return related;
+        }
+        Entry entry = entries[articleId];
+        for (int i = 0; i < Math.min(limit, entry.relatedCount); i++) {
+            related.add(entry.relatedIds[i]);
+        }
+        return related;
+    }
+
+    private static synchronized double getTermCount() {
+        return termIds.size();
+    }
+
+    /**
+     * Extracts the terms of an article: its related topics and terms, in lower case.
+     */
+    static Set<String> terms(Article article) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String list : new String[] {article.relatedTopics(), article.relatedTerms()}) {
+            for (String term : TopicDictionary.split(list)) {
+                terms.add(term.toLowerCase(Locale.ROOT));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Extracts the URL keys of the related stories of an article.
+     */
+    static Set<String> relatedStoryKeys(Article article) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (article.link() == null || article.relatedStoriesLinks() == null) {
+            return keys;
+        }
+        for (String link : article.relatedStoriesLinks().split("\\s+")) {
+            if (link.isEmpty()) {
+                continue;
+            }
+            try {
+                // The links of the page are relative to it
+                keys.add(UrlCanonicalizer.key(URI.create(article.link()).resolve(link).toString()));
+            } catch (IllegalArgumentException e) {
+                Log.debug("ArticleRecommender", "Skipping invalid related story link", "link", link);
+            }
+        }
+        return keys;
+    }
+
+    private static void increment(LongIntMap shared, int articleId) {
+        int count = shared.get(articleId);
+        shared.put(articleId, count == LongIntMap.NO_VALUE ? 1 : count + 1);
+    }
+
+    // Callers hold ArticleRecommender.class
+    private static int termId(String term) {
+        Integer termId = termIds.get(term);
+        if (termId != null) {
+            return termId;
+        }
+        int newId;
+        if (freeTermIds.isEmpty()) {
+            newId = termIds.size();
+            if (newId == postings.length) {
+                postings = Arrays.copyOf(postings, newId * 2);
+                postingCounts = Arrays.copyOf(postingCounts, newId * 2);
+                termNames = Arrays.copyOf(termNames, newId * 2);
+            }
+        } else {
+            newId = freeTermIds.pop();
+        }
+        termIds.put(term, newId);
+        termNames[newId] = term;
+        return newId;
+    }
+
+    /**
+     * Appends an article to the articles of a term, growing the array up to MAX_POSTINGS and then
+     * dropping the oldest article.
+     * Callers hold ArticleRecommender.class.
+     */
+    private static void addPosting(int termId, int articleId) {
+        int[] articles = postings[termId];
+        int count = postingCounts[termId];
+        if (articles == null) {
+            articles = new int[INITIAL_POSTINGS];
+            postings[termId] = articles;
+        } else if (count == articles.length && count < MAX_POSTINGS) {
+            articles = Arrays.copyOf(articles, Math.min(count * 2, MAX_POSTINGS));
+            postings[termId] = articles;
+        } else if (count == MAX_POSTINGS) {
+            System.arraycopy(articles, 1, articles, 0, count - 1);
+            count--;
+        }
+        articles[count] = articleId;
+        postingCounts[termId] = count + 1;
+    }
+
+    /**
+     * Removes an article from the articles of a term, and forgets the term when no article is left.
+     * The article may already have been dropped as the oldest, and the term ID may since have been reused;
+     * the article is then not found and nothing changes.
+     * Callers hold ArticleRecommender.class.
+     */
+    private static void removePosting(int termId, int articleId) {
+        int[] articles = postings[termId];
+        int count = postingCounts[termId];
+        for (int i = 0; i < count; i++) {
+            if (articles[i] == articleId) {
+                System.arraycopy(articles, i + 1, articles, i, count - i - 1);
+                postingCounts[termId] = --count;
+                if (count == 0) {
+                    postings[termId] = null;
+                    termIds.remove(termNames[termId]);
+                    termNames[termId] = null;
+                    freeTermIds.push(termId);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts a related article into the list of an article if it is among the best.
+     * Callers hold ArticleRecommender.class.
+     */
+    private static void offer(int articleId, int otherId, int score) {
+        Entry entry = entries[articleId];
+        int[] ids = entry.relatedIds;
+        int[] scores = entry.relatedScores;
+        int count = entry.relatedCount;
+        // Ties go to the newer article, i.e. the one with the higher ID
+        int position = count;
+        while (position > 0 && (scores[position - 1] < score || scores[position - 1] == score && ids[position - 1] < otherId)) {
+            position--;
+        }
+        if (position == MAX_RELATED) {
+            return;
+        }
+        int moved = Math.min(count, MAX_RELATED - 1) - position;
+        System.arraycopy(ids, position, ids, position + 1, moved);
+        System.arraycopy(scores, position, scores, position + 1, moved);
+        ids[position] = otherId;
+        scores[position] = score;
+        entry.relatedCount = Math.min(count + 1, MAX_RELATED);
+    }
+}
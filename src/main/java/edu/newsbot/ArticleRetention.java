@@ -0,0 +1,95 @@
+package edu.newsbot;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@code feed_article} and {@code article} tables bounded.
+ * <p>
+ * {@code feed_article} is partitioned by day (UTC) of the article's publication time. Every hour the job creates the
+ * partitions of the next days, so that new rows never land in the default partition, and drops the partitions older
+ * than {@code retention.days} (default 30, 0 keeps everything) as a whole: no row-by-row deletes and no vacuum work
+ * for expired rows. The articles of the dropped days are deleted with their bodies and aliases.
+ */
+public class ArticleRetention {
+
+    // Partitions are created for today and this many days ahead
+    private static final int DAYS_AHEAD = 3;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "article-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Metrics.Counter droppedPartitions =
+            Metrics.counter("newsbot_feed_article_partitions_dropped_total", "Expired feed_article partitions dropped");
+    private static final Metrics.Counter deletedArticles =
+            Metrics.counter("newsbot_articles_expired_total", "Articles deleted by the retention job");
+
+    // Number of days of articles to keep; 0 keeps everything
+    private static int retentionDays;
+    private static boolean started;
+
+    /**
+     * Default constructor.
+     * The retention job is used through its static methods only.
+     */
+    public ArticleRetention() {
+        super();
+    }
+
+    /**
+     * Creates the partitions needed now and schedules the job every hour.
+     * Must be called after {@link DB#createTables()} and before articles are added to feeds.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        try {
+            retentionDays = Integer.parseInt(BotConfig.get("retention.days", "30"));
+        } catch (NumberFormatException e) {
+            Log.warn("ArticleRetention", "Invalid retention.days, keeping all articles", "value", e.getMessage());
+            retentionDays = 0;
+        }
+
+        // The first run is synchronous: today's partition must exist before the first article is added to a feed
+        run();
+        executor.scheduleWithFixedDelay(ArticleRetention::run, 1, 1, TimeUnit.HOURS);
+    }
+
+    /**
+     * Stops the job.
+     */
+    public static void stop() {
+        executor.shutdownNow();
+    }
+
+    private static void run() {
+        try {
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            DB.createFeedArticlePartitions(today, DAYS_AHEAD + 1);
+            if (retentionDays <= 0) {
+                return;
+            }
+
+            LocalDate cutoff = today.minusDays(retentionDays);
+            int dropped = DB.dropFeedArticlePartitionsBefore(cutoff);
+            int deleted = DB.deleteArticlesBefore(cutoff);
+            droppedPartitions.add(dropped);
+            deletedArticles.add(deleted);
+            if (dropped > 0 || deleted > 0) {
+                Log.info("ArticleRetention", "Expired old articles", "partitions", dropped, "articles", deleted);
+            }
+        } catch (RuntimeException e) {
+            // Keep the schedule alive
+            Log.error("ArticleRetention", "Retention run failed", e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package edu.newsbot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text search over the stored articles ({@code /search}), backed by a {@link SearchIndex}.
+ * <p>
+ * Articles are indexed as they are stored ({@link DB#saveArticleToDatabase(String, Article)} and
+ * {@link DB#saveArticlesToDatabase(List, List)}), so a search never scans the {@code article} table. The index is
+ * kept on disk in memory-mapped segments and is keyed by URL key. It follows the database: it is cleared on start
+ * together with the tables ({@link #clear()}), and the articles expired by {@link ArticleRetention} are removed from
+ * it ({@link #remove(List)}). The hits are read back from the database by URL key; the few articles deleted in
+ * between are left out.
+ * <p>
+ * Configuration in {@code bot.properties} (system properties take precedence):
+ * <ul>
+ *     <li>{@code search.index.dir}: the directory of the index segments (default: search-index).</li>
+ * </ul>
+ */
+public class ArticleSearch {
+
+    // Documents kept in memory before they are written to a segment
+    private static final int FLUSH_DOCS = 10_000;
+    // Hits fetched per wanted result, to make up for articles no longer stored
+    private static final int OVERFETCH = 4;
+
+    private static final Metrics.Timer searchTimer =
+            Metrics.timer("newsbot_search_seconds", "Time of a full-text search, including reading the articles");
+    private static final Metrics.Counter indexErrors =
+            Metrics.counter("newsbot_search_index_errors_total", "Failures writing the search index");
+    private static final Metrics.Counter removedDocuments =
+            Metrics.counter("newsbot_search_removed_documents_total", "Documents removed from the search index");
+
+    // null when the index could not be opened
+    private static final SearchIndex index = open();
+
+    static {
+        Metrics.gauge("newsbot_search_documents", "Documents in the search index", null, null,
+                () -> index == null ? 0 : index.getDocumentCount());
+        Metrics.gauge("newsbot_search_segments", "Segment files of the search index", null, null,
+                () -> index == null ? 0 : index.getSegmentCount());
+    }
+
+    /**
+     * Default constructor.
+     * The search is used through its static methods only.
+     */
+    public ArticleSearch() {
+        super();
+    }
+
+    /**
+     * Indexes a stored article. Articles indexed before, e.g. before a restart, are skipped.
+     *
+     * @param urlKey The URL key of the article ({@link UrlCanonicalizer#key(String)}).
+     * @param article The article with all its fields.
+     */
+    public static void add(String urlKey, Article article) {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.add(urlKey, article);
+        } catch (IOException e) {
+            indexErrors.increment();
+            Log.error("ArticleSearch", "Error writing search index", "url", article.link(), e);
+        }
+    }
+
+    /**
+     * Removes deleted articles from the index.
+     *
+     * @param urlKeys The URL keys of the deleted articles.
+     */
+    public static void remove(List<String> urlKeys) {
+        if (index != null && !urlKeys.isEmpty()) {
+            removedDocuments.add(index.remove(urlKeys));
+        }
+    }
+
+    /**
+     * Removes all articles from the index.
+     * This method is intended to be called on startup, when the database is cleared.
+     */
+    public static void clear() {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.clear();
+        } catch (IOException e) {
+            indexErrors.increment();
+            Log.error("ArticleSearch", "Error deleting search index segments", e);
+        }
+    }
+
+    /**
+     * Searches the stored articles.
+     *
+     * @param query The search terms; articles containing any of them match, best matches first.
+     * @param limit The maximum number of articles.
+     * @return The matching articles read with {@link ArticleProjection#HEADLINE}; empty if the index is unavailable.
+     */
+    public static List<Article> search(String query, int limit) {
+        List<Article> articles = new ArrayList<>();
+        if (index == null) {
+            return articles;
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<String> urlKeys = index.search(query, limit * OVERFETCH);
+            if (urlKeys.isEmpty()) {
+                return articles;
+            }
+            Map<String, Article> stored = DB.getArticlesByUrlKeys(urlKeys);
+            for (String urlKey : urlKeys) {
+                Article article = stored.get(urlKey);
+                if (article != null && articles.size() < limit) {
+                    articles.add(article);
+                }
+            }
+            return articles;
+        } finally {
+            searchTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Writes the in-memory part of the index to disk.
+     * This method is intended to be called during application shutdown.
+     */
+    public static void close() {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.flush();
+        } catch (IOException e) {
+            Log.error("ArticleSearch", "Error writing search index", e);
+        }
+    }
+
+    private static SearchIndex open() {
+        Path directory = Path.of(BotConfig.get("search.index.dir", "search-index"));
+        try {
+            SearchIndex opened = new SearchIndex(directory, FLUSH_DOCS);
+            Log.info("ArticleSearch", "Search index opened", "documents", opened.getDocumentCount(),
+                    "segments", opened.getSegmentCount());
+            return opened;
+        } catch (IOException e) {
+            Log.error("ArticleSearch", "Error opening search index, search disabled", "dir", directory, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package edu.newsbot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates articles into the languages users choose with {@link NewsBot#getLanguageKeyboardArray()}.
+ * <p>
+ * Translations are kept in the {@code article_translation} table, one row per article, field and language, so an
+ * article is translated at most once per language whatever the number of its readers. They are computed ahead of
+ * time by the precompute stage of the {@link CrawlPipeline}, for the languages of the subscribers of the article's
+ * feed (see {@link ArticleVariants}), and on demand by {@link #localize(Article, String)} for fields that are not
+ * cached yet (e.g. articles stored before the reader chose their language). The texts are sent to the
+ * {@link Translator} in batches within its request limits.
+ * <p>
+ * The provider is chosen with {@code translation.provider} in {@code bot.properties} or as a system property:
+ * {@code none} (default, articles are shown in English), {@code stub} ({@link StubTranslator}) or {@code google}
+ * ({@link GoogleTranslator}).
+ */
+public class ArticleTranslator {
+
+    // The language of the articles, as stored in bot_user.language
+    public static final String SOURCE_LANGUAGE = "eng";
+
+    // Language codes of the bot (ISO 639-2) by the codes of the providers (ISO 639-1)
+    private static final Map<String, String> PROVIDER_LANGUAGES = Map.of("eng", "en", "rus", "ru");
+
+    private static final Metrics.Counter requests =
+            Metrics.counter("newsbot_translation_requests_total", "Requests sent to the translation provider");
+    private static final Metrics.Counter requestErrors =
+            Metrics.counter("newsbot_translation_request_errors_total", "Requests to the translation provider that failed");
+    private static final Metrics.Counter translatedChars =
+            Metrics.counter("newsbot_translated_characters_total", "Characters sent to the translation provider");
+    private static final Metrics.Timer requestTimer =
+            Metrics.timer("newsbot_translation_request_seconds", "Time of a request to the translation provider");
+    private static final String LOOKUPS_METRIC = "newsbot_translation_cache_lookups_total";
+    private static final String LOOKUPS_HELP = "Article fields looked up in the translation cache when read, by outcome";
+    private static final Metrics.Counter cacheHits = Metrics.counter(LOOKUPS_METRIC, LOOKUPS_HELP, "outcome", "hit");
+    private static final Metrics.Counter cacheMisses = Metrics.counter(LOOKUPS_METRIC, LOOKUPS_HELP, "outcome", "miss");
+
+    // null when translation is disabled
+    private static volatile Translator translator = loadTranslator();
+
+    /**
+     * The translated fields of an article, as stored in {@code article_translation.field}.
+     */
+    public enum Field {
+        TITLE("title"),
+        SUMMARY("summary"),
+        FULL_STORY("full_story");
+
+        private final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+
+        /**
+         * @return The value of the field in {@code article_translation.field}.
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * Finds a field by its value in {@code article_translation.field}.
+         *
+         * @param column The stored value.
+         * @return The field.
+         * @throws IllegalArgumentException if no field has this value.
+         */
+        public static Field fromColumn(String column) {
+            for (Field field : values()) {
+                if (field.column.equals(column)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown translated field: " + column);
+        }
+
+        private String of(Article article) {
+            return switch (this) {
+                case TITLE -> article.title();
+                case SUMMARY -> article.summary();
+                case FULL_STORY -> article.fullStory();
+            };
+        }
+    }
+
+    /**
+     * Default constructor.
+     * The translator is used through its static methods only.
+     */
+    public ArticleTranslator() {
+        super();
+    }
+
+    /**
+     * Tells whether a translation provider is configured.
+     *
+     * @return true if articles are translated.
+     */
+    public static boolean isEnabled() {
+        return translator != null;
+    }
+
+    /**
+     * Replaces the translation provider, e.g. with a {@link StubTranslator} in tests.
+     *
+     * @param provider The provider, or null to disable translation.
+     */
+    public static void setTranslator(Translator provider) {
+        translator = provider;
+    }
+
+    /**
+     * Translates newly stored articles into a language and caches the translations. Called at ingest for the
+     * languages of the subscribers of the articles' feeds. Failures are logged; the fields left out are translated
+     * when they are read.
+     *
+     * @param language The language to translate to, as stored in {@code bot_user.language}.
+     * @param articleIds The IDs of the stored articles.
+     * @param articles The articles, in the order of {@code articleIds}.
+     * @return The articles in the language, in the order of {@code articles}; null for an article that could not
+     *         be translated completely. The articles themselves if translation is disabled or not needed.
+     */
+    public static List<Article> translateArticles(String language, List<Integer> articleIds, List<Article> articles) {
+        Translator provider = translator;
+        if (provider == null || language == null || language.equals(SOURCE_LANGUAGE)) {
+            return articles;
+        }
+
+        List<Integer> owners = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < articles.size(); i++) {
+            for (Field field : translatedFields(articles.get(i))) {
+                owners.add(i);
+                ids.add(articleIds.get(i));
+                fields.add(field);
+                texts.add(field.of(articles.get(i)));
+            }
+        }
+
+        // Each request is stored on its own, so a failure does not waste the requests made before it
+        List<Map<Field, String>> translations = new ArrayList<>();
+        for (int i = 0; i < articles.size(); i++) {
+            translations.add(new EnumMap<>(Field.class));
+        }
+        int from = 0;
+        while (from < texts.size()) {
+            int to = requestEnd(provider, texts, from);
+            try {
+                List<String> translated = request(provider, texts.subList(from, to), language);
+                DB.saveTranslations(language, ids.subList(from, to), columns(fields.subList(from, to)), translated);
+                for (int i = from; i < to; i++) {
+                    translations.get(owners.get(i)).put(fields.get(i), translated.get(i - from));
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.error("ArticleTranslator", "Error translating articles", "language", language, e);
+                break;
+            }
+            from = to;
+        }
+
+        List<Article> localized = new ArrayList<>(articles.size());
+        for (int i = 0; i < articles.size(); i++) {
+            Article article = articles.get(i);
+            boolean complete = translations.get(i).size() == translatedFields(article).size();
+            localized.add(complete ? withTexts(article, translations.get(i)) : null);
+        }
+        return localized;
+    }
+
+    /**
+     * Translates an article into a language, from the cache or, for missing fields, from the provider.
+     * Fields that are null (not read by the article's projection) are left as they are.
+     *
+     * @param article The article, in the source language.
+     * @param language The language to translate to, as stored in {@code bot_user.language}.
+     * @return The article with its fields in the language, the article itself if translation is disabled or not
+     *         needed, or null if some field could not be translated.
+     */
+    public static Article localize(Article article, String language) {
+        Translator provider = translator;
+        if (provider == null || language == null || language.equals(SOURCE_LANGUAGE)) {
+            return article;
+        }
+
+        List<Field> wanted = translatedFields(article);
+        Map<Field, String> cached = DB.getArticleTranslations((int) article.id(), language, wanted);
+        if (cached == null) {
+            return null;
+        }
+
+        Map<Field, String> texts = new EnumMap<>(Field.class);
+        texts.putAll(cached);
+        List<Field> missing = new ArrayList<>();
+        for (Field field : wanted) {
+            if (!texts.containsKey(field)) {
+                missing.add(field);
+            }
+        }
+        cacheHits.add(wanted.size() - missing.size());
+        cacheMisses.add(missing.size());
+
+        if (!missing.isEmpty()) {
+            List<Integer> ids = new ArrayList<>();
+            List<String> sources = new ArrayList<>();
+            for (Field field : missing) {
+                ids.add((int) article.id());
+                sources.add(field.of(article));
+            }
+            try {
+                List<String> translated = new ArrayList<>();
+                int from = 0;
+                while (from < sources.size()) {
+                    int to = requestEnd(provider, sources, from);
+                    translated.addAll(request(provider, sources.subList(from, to), language));
+                    from = to;
+                }
+                DB.saveTranslations(language, ids, columns(missing), translated);
+                for (int i = 0; i < missing.size(); i++) {
+                    texts.put(missing.get(i), translated.get(i));
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.error("ArticleTranslator", "Error translating article", "article", article.id(), e);
+                return null;
+            }
+        }
+        return withTexts(article, texts);
+    }
+
+    private static List<Field> translatedFields(Article article) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : Field.values()) {
+            String text = field.of(article);
+            if (text != null && !text.isBlank()) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static List<String> columns(List<Field> fields) {
+        List<String> columns = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            columns.add(field.getColumn());
+        }
+        return columns;
+    }
+
+    private static Article withTexts(Article article, Map<Field, String> texts) {
+        return new Article(article.id(),
+                texts.getOrDefault(Field.TITLE, article.title()),
+                texts.getOrDefault(Field.SUMMARY, article.summary()),
+                article.link(),
+                article.datetime(),
+                texts.getOrDefault(Field.FULL_STORY, article.fullStory()),
+                article.source(),
+                article.relatedTopics(),
+                article.relatedTerms(),
+                article.journalReference(),
+                article.citePageMla(),
+                article.citePageApa(),
+                article.citePageChicago(),
+                article.relatedStoriesLinks());
+    }
+
+    /**
+     * Finds the end of the request starting at a text: as many texts as the provider's limits allow, and at least
+     * one, so a text longer than the character limit is sent alone.
+     */
+    private static int requestEnd(Translator provider, List<String> texts, int from) {
+        int to = from;
+        long chars = 0;
+        while (to < texts.size() && to - from < provider.maxTextsPerRequest()) {
+            chars += texts.get(to).length();
+            if (chars > provider.maxCharsPerRequest() && to > from) {
+                break;
+            }
+            to++;
+        }
+        return to;
+    }
+
+    private static List<String> request(Translator provider, List<String> texts, String language) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            List<String> translated = provider.translate(texts, providerLanguage(SOURCE_LANGUAGE), providerLanguage(language));
+            if (translated.size() != texts.size()) {
+                throw new IOException("Expected " + texts.size() + " translations, got " + translated.size());
+            }
+            for (String text : texts) {
+                translatedChars.add(text.length());
+            }
+            return translated;
+        } catch (IOException | RuntimeException e) {
+            requestErrors.increment();
+            throw e;
+        } finally {
+            requestTimer.recordSince(start);
+        }
+    }
+
+    private static String providerLanguage(String language) {
+        return PROVIDER_LANGUAGES.getOrDefault(language, language);
+    }
+
+    private static Translator loadTranslator() {
+        String provider = BotConfig.get("translation.provider", "none");
+        try {
+            return switch (provider) {
+                case "stub" -> new StubTranslator();
+                case "google" -> new GoogleTranslator();
+                case "none" -> null;
+                default -> {
+                    Log.warn("ArticleTranslator", "Unknown translation.provider, translation disabled",
+                            "provider", provider);
+                    yield null;
+                }
+            };
+        } catch (RuntimeException e) {
+            // e.g. no credentials for the Google Cloud client
+            Log.error("ArticleTranslator", "Error creating the translation provider, translation disabled",
+                    "provider", provider, e);
+            return null;
+        }
+    }
+}
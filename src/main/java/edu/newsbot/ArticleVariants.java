@@ -0,0 +1,157 @@
+package edu.newsbot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the article views ("Read Articles"/"Next Article" and "More Info") once per segment of readers instead
+ * of once per reader.
+ * <p>
+ * A segment is a language ({@code bot_user.language}) and an age group ({@code bot_user.age}). The rendered text
+ * of a view depends on nothing else, so it is kept in the {@code article_variant} table under (article, language,
+ * age group, projection). All age groups currently get the same view, as before the variants. The precompute stage
+ * of the {@link CrawlPipeline} translates and renders the new articles for the segments of their feeds' subscribers;
+ * serving a reader is then a lookup by their segment ({@link #render(long, Article, ArticleProjection)}). A missing
+ * variant, e.g. of a reader who joined a feed after the article was stored, is rendered on demand and stored.
+ * <p>
+ * The rendered text leaves out the per-reader unread count, which the caller puts in front of it.
+ */
+public class ArticleVariants {
+
+    private static final String LOOKUPS_METRIC = "newsbot_article_variant_lookups_total";
+    private static final String LOOKUPS_HELP = "Rendered article views looked up by segment, by outcome";
+    private static final Metrics.Counter lookupHits = Metrics.counter(LOOKUPS_METRIC, LOOKUPS_HELP, "outcome", "hit");
+    private static final Metrics.Counter lookupMisses = Metrics.counter(LOOKUPS_METRIC, LOOKUPS_HELP, "outcome", "miss");
+    private static final Metrics.Counter precomputed =
+            Metrics.counter("newsbot_article_variants_precomputed_total", "Article views rendered at ingest");
+
+    // The age group of the variants of users who have not chosen one
+    public static final String NO_AGE_GROUP = "";
+
+    /**
+     * A group of readers sharing the rendered views of an article.
+     *
+     * @param language The language, as stored in {@code bot_user.language}.
+     * @param ageGroup The age group of {@link NewsBot#getAgeKeyboardArray()}, or {@link #NO_AGE_GROUP}.
+     */
+    public record Segment(String language, String ageGroup) {
+    }
+
+    /**
+     * The segment of a reader and the stored variant of an article for it.
+     *
+     * @param language The language of the reader ({@link ArticleTranslator#SOURCE_LANGUAGE} if not chosen).
+     * @param ageGroup The age group of the reader, or {@link #NO_AGE_GROUP}.
+     * @param text The rendered view, or null if it is not stored yet.
+     */
+    public record Lookup(String language, String ageGroup, String text) {
+    }
+
+    /**
+     * Default constructor.
+     * The variants are used through the static methods only.
+     */
+    public ArticleVariants() {
+        super();
+    }
+
+    /**
+     * Translates and renders newly stored articles for segments of readers, and stores the variants. An article
+     * that cannot be translated into a language gets no variants for it; they are rendered when read.
+     *
+     * @param articleIds The IDs of the stored articles.
+     * @param articles The articles with all their fields, in the order of {@code articleIds}.
+     * @param segments The segments to render the articles for.
+     */
+    public static void precompute(List<Integer> articleIds, List<Article> articles, Collection<Segment> segments) {
+        Map<String, List<String>> ageGroupsByLanguage = new LinkedHashMap<>();
+        for (Segment segment : segments) {
+            ageGroupsByLanguage.computeIfAbsent(segment.language(), language -> new ArrayList<>()).add(segment.ageGroup());
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        List<String> languages = new ArrayList<>();
+        List<String> ageGroups = new ArrayList<>();
+        List<String> projections = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : ageGroupsByLanguage.entrySet()) {
+            List<Article> localized = ArticleTranslator.translateArticles(entry.getKey(), articleIds, articles);
+            for (int i = 0; i < localized.size(); i++) {
+                if (localized.get(i) == null) {
+                    continue;
+                }
+                for (ArticleProjection projection : ArticleProjection.values()) {
+                    String text = format(localized.get(i), projection);
+                    for (String ageGroup : entry.getValue()) {
+                        ids.add(articleIds.get(i));
+                        languages.add(entry.getKey());
+                        ageGroups.add(ageGroup);
+                        projections.add(projection.name());
+                        texts.add(text);
+                    }
+                }
+            }
+        }
+        DB.saveArticleVariants(ids, languages, ageGroups, projections, texts);
+        precomputed.add(ids.size());
+    }
+
+    /**
+     * Returns a view of an article in the segment of a reader, from the stored variants or rendered on demand.
+     *
+     * @param userId The telegram user ID.
+     * @param headline The article as read with {@link ArticleProjection#HEADLINE}.
+     * @param projection The view to render; for {@link ArticleProjection#FULL} the rest of the article is read
+     *                   only if the variant is not stored.
+     * @return The rendered view, without the unread count.
+     */
+    public static String render(long userId, Article headline, ArticleProjection projection) {
+        Lookup lookup = DB.getArticleVariant(userId, (int) headline.id(), projection);
+        if (lookup != null && lookup.text() != null) {
+            lookupHits.increment();
+            return lookup.text();
+        }
+        lookupMisses.increment();
+
+        Article article = headline;
+        if (projection == ArticleProjection.FULL) {
+            Article full = DB.getArticleById((int) headline.id(), ArticleProjection.FULL);
+            if (full != null) {
+                article = full;
+            }
+        }
+        if (lookup == null) {
+            return format(article, projection);
+        }
+
+        Article localized = ArticleTranslator.localize(article, lookup.language());
+        if (localized == null) {
+            // Shown in English, but not stored: the translation is retried on the next read
+            return format(article, projection);
+        }
+        String text = format(localized, projection);
+        DB.saveArticleVariants(List.of((int) headline.id()), List.of(lookup.language()),
+                List.of(lookup.ageGroup()), List.of(projection.name()), List.of(text));
+        return text;
+    }
+
+    /**
+     * Renders a view of an article in Markdown: the title, summary and link, and for "More Info" the full story.
+     *
+     * @param article The article, in the language of the view.
+     * @param projection The view.
+     * @return The rendered view, without the unread count.
+     */
+    static String format(Article article, ArticleProjection projection) {
+        StringBuilder text = new StringBuilder()
+                .append('*').append(article.title()).append("*\n\n")
+                .append("*Summary:* ").append(article.summary());
+        if (projection == ArticleProjection.FULL && article.fullStory() != null) {
+            text.append("\n\n*Full Story:* ").append(article.fullStory());
+        }
+        return text.append("\n\n[Read More](").append(article.link()).append(')').toString();
+    }
+}
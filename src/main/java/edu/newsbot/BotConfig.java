@@ -0,0 +1,49 @@
+package edu.newsbot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Provides the configuration of the bot.
+ * The settings are loaded once from the "bot.properties" file in the classpath; a system property of the same
+ * name takes precedence over the file, so a setting can be overridden on the command line
+ * (e.g. {@code -Dmetrics.port=9400}) or by the load test.
+ * The database connection details are kept apart in {@link DatabaseConfig}.
+ */
+public class BotConfig {
+    private static final Properties properties = new Properties();
+
+    /**
+     * Default constructor.
+     * The configuration is used through its static methods only.
+     */
+    public BotConfig() {
+        super();
+    }
+
+    // Static initializer block to load the bot properties
+    static {
+        try (InputStream input = BotConfig.class.getClassLoader().getResourceAsStream("bot.properties")) {
+            if (input == null) {
+                System.err.println("Sorry, unable to find bot.properties");
+            } else {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading bot.properties: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves a setting: the system property if set, otherwise the value in bot.properties.
+     *
+     * @param key The name of the setting, e.g. "metrics.port".
+     * @param defaultValue The value if the setting is configured in neither place; may be null.
+     * @return The value without surrounding whitespace, or the default value.
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value == null ? defaultValue : value.trim();
+    }
+}
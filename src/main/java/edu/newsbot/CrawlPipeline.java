@@ -0,0 +1,602 @@
+package edu.newsbot;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The {@code CrawlPipeline} runs feed crawls as a chain of stages connected by bounded queues:
+ * <pre>
+ * feed fetch -> item diff -> detail fetch -> extract -> dedup -> batch persist -> precompute -> fan-out -> notify
+ * </pre>
+ * Every stage has its own, separately sized pool of worker threads. A worker hands its results to the next
+ * stage with a blocking put, so when a stage falls behind (e.g. a slow PostgreSQL in batch persist) its queue
+ * fills up and the stages before it block in turn, down to {@link #submit(String)}. Memory and thread usage
+ * stay bounded by the queue capacities instead of piling up.
+ * <p>
+ * Each stage records its throughput, queue depth, queue wait and service time; a summary is printed every
+ * few minutes and is available through {@link #getStageSnapshots()} and the {@link Metrics}.
+ */
+public class CrawlPipeline {
+
+    // Seconds between two metrics reports
+    private static final long REPORT_INTERVAL_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+    // Maximum number of articles written to the database in one round trip
+    private static final int PERSIST_BATCH_SIZE = 50;
+
+    // Feeds with a crawl currently travelling through the pipeline
+    private static final Set<String> feedsInFlight = ConcurrentHashMap.newKeySet();
+
+    private static final Stage<FeedCrawl, Void> notifyStage =
+            new Stage<>("notify", 64, 1, 1, CrawlPipeline::notifyCrawls, crawl -> feedsInFlight.remove(crawl.feedLink));
+    private static final Stage<PersistedArticle, Void> fanOutStage =
+            new Stage<>("fan-out", 256, 1, PERSIST_BATCH_SIZE, CrawlPipeline::fanOut, task -> task.crawl.itemDone(task.item, false));
+    private static final Stage<PersistedArticle, PersistedArticle> precomputeStage =
+            new Stage<>("precompute", 256, 1, PERSIST_BATCH_SIZE, CrawlPipeline::precompute, task -> task.crawl.itemDone(task.item, false));
+    private static final Stage<DedupedArticle, PersistedArticle> persistStage =
+            new Stage<>("batch persist", 256, 1, PERSIST_BATCH_SIZE, CrawlPipeline::persist, CrawlPipeline::persistFailed);
+    private static final Stage<ExtractedArticle, DedupedArticle> dedupStage =
+            new Stage<>("dedup", 64, 1, 1, CrawlPipeline::dedup, task -> task.crawl.itemDone(task.item, false));
+    private static final Stage<FetchedDetail, ExtractedArticle> extractStage =
+            new Stage<>("extract", 64, 2, 1, CrawlPipeline::extract, task -> task.crawl.itemDone(task.item, false));
+    private static final Stage<ItemTask, FetchedDetail> detailFetchStage =
+            new Stage<>("detail fetch", 64, 4, 1, CrawlPipeline::fetchDetails, task -> task.crawl.itemDone(task.item, false));
+    private static final Stage<FetchedFeed, ItemTask> diffStage =
+            new Stage<>("item diff", 16, 1, 1, CrawlPipeline::diff, fetched -> fetched.crawl.fail());
+    private static final Stage<FeedCrawl, FetchedFeed> feedFetchStage =
+            new Stage<>("feed fetch", 16, 2, 1, CrawlPipeline::fetchFeeds, FeedCrawl::fail);
+
+    private static final List<Stage<?, ?>> stages = List.of(
+            feedFetchStage, diffStage, detailFetchStage, extractStage, dedupStage, persistStage, precomputeStage,
+            fanOutStage, notifyStage);
+
+    private static final Metrics.Counter deliveries = Metrics.counter("newsbot_article_deliveries_total",
+            "Articles made unread for a subscriber by the fan-out stage");
+    private static final Metrics.Counter filteredDeliveries = Metrics.counter("newsbot_article_deliveries_filtered_total",
+            "Articles of a feed left out for a subscriber by their topic filter");
+
+    private static final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-pipeline-report");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        feedFetchStage.next = diffStage;
+        diffStage.next = detailFetchStage;
+        detailFetchStage.next = extractStage;
+        extractStage.next = dedupStage;
+        dedupStage.next = persistStage;
+        persistStage.next = precomputeStage;
+        precomputeStage.next = fanOutStage;
+        for (Stage<?, ?> stage : stages) {
+            stage.start();
+        }
+        reporter.scheduleAtFixedRate(CrawlPipeline::report, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Default constructor.
+     * The pipeline is used through its static methods only.
+     */
+    public CrawlPipeline() {
+        super();
+    }
+
+    /**
+     * Submits a crawl of a feed. Blocks while the feed fetch queue is full.
+     * A feed whose previous crawl is still in the pipeline is skipped, since it would only find the same delta.
+     *
+     * @param feedLink The link of the feed (primary page) to crawl.
+     * @return true if the crawl was submitted, false if the feed is already being crawled.
+     * @throws InterruptedException if interrupted while waiting for space in the queue.
+     */
+    public static boolean submit(String feedLink) throws InterruptedException {
+        if (!feedsInFlight.add(feedLink)) {
+            return false;
+        }
+        feedFetchStage.submit(new FeedCrawl(feedLink));
+        return true;
+    }
+
+    /**
+     * Stops all stage workers. This method is intended to be called during application shutdown.
+     */
+    public static void stopAll() {
+        reporter.shutdownNow();
+        for (Stage<?, ?> stage : stages) {
+            stage.stop();
+        }
+    }
+
+    /**
+     * Returns the current metrics of every stage, in pipeline order.
+     *
+     * @return The stage snapshots.
+     */
+    public static List<StageSnapshot> getStageSnapshots() {
+        List<StageSnapshot> snapshots = new ArrayList<>();
+        for (Stage<?, ?> stage : stages) {
+            snapshots.add(stage.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Metrics of a single stage.
+     *
+     * @param name             The name of the stage.
+     * @param processed        The number of items processed since startup.
+     * @param queueDepth       The number of items currently waiting in the stage's queue.
+     * @param queueCapacity    The capacity of the stage's queue.
+     * @param avgWaitMillis    The average time an item waited in the queue, in milliseconds.
+     * @param avgServiceMillis The average processing time per item, in milliseconds.
+     */
+    public record StageSnapshot(String name, long processed, int queueDepth, int queueCapacity,
+                                double avgWaitMillis, double avgServiceMillis) {
+    }
+
+    /**
+     * A crawl of a single feed travelling through the pipeline. Tracks the new items that are still
+     * being processed, so the crawl reaches the notify stage once its last item has left the pipeline.
+     * An item is done once: a stage failing on a batch reports every item of it, including those the stage
+     * had already reported, and these later reports are ignored.
+     */
+    private static class FeedCrawl {
+        private final String feedLink;
+        private final ConcurrentLinkedQueue<FeedItem> processedItems = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingItems = new AtomicInteger();
+        // The items reported by itemDone, by identity: a feed may list two equal items
+        private final Set<FeedItem> doneItems = Collections.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>()));
+        // The delta found by the item diff stage, newest first; empty if the feed could not be fetched
+        private volatile List<FeedItem> newItems = List.of();
+
+        private FeedCrawl(String feedLink) {
+            this.feedLink = feedLink;
+        }
+
+        // The crawl found no delta; the high-water mark stays where it is
+        private void fail() {
+            complete();
+        }
+
+        private void itemDone(FeedItem item, boolean success) {
+            if (!doneItems.add(item)) {
+                return;
+            }
+            if (success) {
+                processedItems.add(item);
+            }
+            if (pendingItems.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            try {
+                notifyStage.submit(this);
+            } catch (InterruptedException e) {
+                feedsInFlight.remove(feedLink);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record FetchedFeed(FeedCrawl crawl, Document document) {
+    }
+
+    private record ItemTask(FeedCrawl crawl, FeedItem item) {
+    }
+
+    // Either the document of the detailed page or the article found in the page cache
+    private record FetchedDetail(FeedCrawl crawl, FeedItem item, Document document, Article cached) {
+    }
+
+    private record ExtractedArticle(FeedCrawl crawl, FeedItem item, Article article) {
+    }
+
+    private record DedupedArticle(FeedCrawl crawl, FeedItem item, Article article, DuplicateDetector.Match match) {
+    }
+
+    // The article and its topic IDs are null for duplicates, which take the ID of an article stored before
+    private record PersistedArticle(FeedCrawl crawl, FeedItem item, int articleId, Article article, int[] topicIds) {
+    }
+
+    /**
+     * Feed fetch stage: downloads the RSS feed of each crawl.
+     */
+    private static List<FetchedFeed> fetchFeeds(List<FeedCrawl> crawls) {
+        List<FetchedFeed> fetched = new ArrayList<>();
+        for (FeedCrawl crawl : crawls) {
+            try {
+                fetched.add(new FetchedFeed(crawl, Parser.fetchDocument(crawl.feedLink)));
+            } catch (IOException e) {
+                Log.error("CrawlPipeline", "Error fetching feed", "url", crawl.feedLink, e);
+                crawl.fail();
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * Item diff stage: keeps only the items that are new since the feed's last crawl.
+     */
+    private static List<ItemTask> diff(List<FetchedFeed> fetchedFeeds) {
+        List<ItemTask> tasks = new ArrayList<>();
+        for (FetchedFeed fetched : fetchedFeeds) {
+            FeedCrawl crawl = fetched.crawl;
+            List<FeedItem> newItems = Parser.findNewItems(crawl.feedLink, fetched.document.select("item"));
+            if (newItems.isEmpty()) {
+                crawl.complete();
+                continue;
+            }
+            crawl.newItems = newItems;
+            crawl.pendingItems.set(newItems.size());
+            for (FeedItem item : newItems) {
+                tasks.add(new ItemTask(crawl, item));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Detail fetch stage: downloads the detailed page of each new item that is not in the page cache.
+     */
+    private static List<FetchedDetail> fetchDetails(List<ItemTask> tasks) {
+        List<FetchedDetail> fetched = new ArrayList<>();
+        for (ItemTask task : tasks) {
+            Article cached = Parser.getCachedArticle(task.item);
+            if (cached != null) {
+                fetched.add(new FetchedDetail(task.crawl, task.item, null, cached));
+                continue;
+            }
+            try {
+                fetched.add(new FetchedDetail(task.crawl, task.item, Parser.fetchDocument(task.item.link()), null));
+            } catch (IOException e) {
+                Log.error("CrawlPipeline", "Error fetching article", "url", task.item.link(), e);
+                task.crawl.itemDone(task.item, false);
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * Extract stage: turns each downloaded detailed page into an article and caches it.
+     */
+    private static List<ExtractedArticle> extract(List<FetchedDetail> details) {
+        List<ExtractedArticle> extracted = new ArrayList<>();
+        for (FetchedDetail detail : details) {
+            Article article = detail.cached;
+            if (article == null) {
+                article = Parser.extractArticle(detail.item, detail.document);
+                Parser.cacheArticle(article);
+            }
+            extracted.add(new ExtractedArticle(detail.crawl, detail.item, article));
+        }
+        return extracted;
+    }
+
+    /**
+     * Dedup stage: matches each article against the stories seen before. It has a single worker, so an original
+     * always reaches batch persist before its duplicates.
+     */
+    private static List<DedupedArticle> dedup(List<ExtractedArticle> extracted) {
+        List<DedupedArticle> deduped = new ArrayList<>();
+        for (ExtractedArticle article : extracted) {
+            deduped.add(new DedupedArticle(article.crawl, article.item, article.article,
+                    DuplicateDetector.findOrRegister(article.article)));
+        }
+        return deduped;
+    }
+
+    /**
+     * Batch persist stage: stores a batch of new articles in one round trip. Duplicates are not stored but
+     * take the ID of their story's article, and their URLs are recorded as aliases of it.
+     */
+    private static List<PersistedArticle> persist(List<DedupedArticle> batch) {
+        List<DedupedArticle> originals = new ArrayList<>();
+        List<Article> articles = new ArrayList<>(batch.size());
+        // Encoded once here, for the insert and for the topic filters of the fan-out
+        List<int[]> topicIds = new ArrayList<>(batch.size());
+        for (DedupedArticle deduped : batch) {
+            if (!deduped.match.duplicate()) {
+                originals.add(deduped);
+                articles.add(deduped.article);
+                topicIds.add(TopicDictionary.encode(deduped.article.relatedTopics(), deduped.article.relatedTerms()));
+            }
+        }
+        List<Integer> articleIds = DB.saveArticlesToDatabase(articles, topicIds);
+
+        List<PersistedArticle> persisted = new ArrayList<>();
+        for (int i = 0; i < originals.size(); i++) {
+            DedupedArticle original = originals.get(i);
+            if (original.match.story() != null) {
+                DuplicateDetector.resolve(original.match.story(), articleIds.get(i));
+            }
+            if (articleIds.get(i) == -1) {
+                original.crawl.itemDone(original.item, false);
+            } else {
+                persisted.add(new PersistedArticle(original.crawl, original.item, articleIds.get(i), original.article,
+                        topicIds.get(i)));
+            }
+        }
+
+        // Originals of earlier batches are resolved already, those of this batch just above
+        List<String> aliasLinks = new ArrayList<>();
+        List<Integer> aliasIds = new ArrayList<>();
+        for (DedupedArticle deduped : batch) {
+            if (!deduped.match.duplicate()) {
+                continue;
+            }
+            int articleId = deduped.match.story().getArticleId();
+            if (articleId == -1) {
+                // The original could not be stored; the item is retried by the next crawl
+                deduped.crawl.itemDone(deduped.item, false);
+                continue;
+            }
+            if (deduped.match.story().isAlias(deduped.article)) {
+                aliasLinks.add(deduped.article.link());
+                aliasIds.add(articleId);
+            }
+            persisted.add(new PersistedArticle(deduped.crawl, deduped.item, articleId, null, null));
+        }
+        DB.saveArticleAliases(aliasLinks, aliasIds);
+        return persisted;
+    }
+
+    private static void persistFailed(DedupedArticle deduped) {
+        if (deduped.match.story() != null && !deduped.match.duplicate()) {
+            DuplicateDetector.resolve(deduped.match.story(), -1);
+        }
+        deduped.crawl.itemDone(deduped.item, false);
+    }
+
+    /**
+     * Precompute stage: translates and renders the newly stored articles for the segments (language and age
+     * group) of their feeds' subscribers, so readers find them rendered; see {@link ArticleVariants}. Duplicates
+     * share the variants of their original. The articles go on to fan-out whether or not they could be rendered.
+     */
+    private static List<PersistedArticle> precompute(List<PersistedArticle> batch) {
+        Map<String, List<PersistedArticle>> byFeed = new LinkedHashMap<>();
+        for (PersistedArticle persisted : batch) {
+            if (persisted.article != null) {
+                byFeed.computeIfAbsent(persisted.crawl.feedLink, feed -> new ArrayList<>()).add(persisted);
+            }
+        }
+        for (Map.Entry<String, List<PersistedArticle>> entry : byFeed.entrySet()) {
+            List<ArticleVariants.Segment> segments = DB.getSubscriberSegments(FeedCatalog.getIdByLink(entry.getKey()));
+            if (segments.isEmpty()) {
+                continue;
+            }
+            List<Integer> articleIds = new ArrayList<>();
+            List<Article> articles = new ArrayList<>();
+            for (PersistedArticle persisted : entry.getValue()) {
+                articleIds.add(persisted.articleId);
+                articles.add(persisted.article);
+            }
+            ArticleVariants.precompute(articleIds, articles, segments);
+        }
+        return batch;
+    }
+
+    /**
+     * Fan-out stage: adds a batch of stored articles to their feeds, one statement per feed; subscribers see them
+     * through their read cursors. The subscribers of a feed come from the {@link SubscriptionIndex}; the articles
+     * are matched against the {@link TopicFilters} of each subscriber, and only the subscribers with an article
+     * passing their filter are marked for the {@link NotificationEngine}. The unread queries leave the filtered
+     * articles out the same way. A subscriber without a filter takes every article, so only filtering subscribers
+     * cost a match per article.
+     */
+    private static List<Void> fanOut(List<PersistedArticle> batch) {
+        Map<String, List<PersistedArticle>> byFeed = new LinkedHashMap<>();
+        for (PersistedArticle persisted : batch) {
+            byFeed.computeIfAbsent(persisted.crawl.feedLink, feed -> new ArrayList<>()).add(persisted);
+        }
+        for (Map.Entry<String, List<PersistedArticle>> entry : byFeed.entrySet()) {
+            List<Integer> articleIds = new ArrayList<>();
+            for (PersistedArticle persisted : entry.getValue()) {
+                articleIds.add(persisted.articleId);
+            }
+            DB.addArticlesToFeed(entry.getKey(), articleIds);
+
+            long[] subscribers = SubscriptionIndex.getSubscribers(FeedCatalog.getIdByLink(entry.getKey()));
+            TopicFilters.Filter[] filters = TopicFilters.get(subscribers);
+            long[] marked = new long[subscribers.length];
+            int markedCount = 0;
+            long delivered = 0;
+            for (int i = 0; i < subscribers.length; i++) {
+                int matching = articleIds.size();
+                if (!filters[i].isEmpty()) {
+                    matching = 0;
+                    for (PersistedArticle persisted : entry.getValue()) {
+                        // Duplicates carry no topic IDs and pass; at worst the subscriber's count is queried in vain
+                        if (persisted.topicIds == null || filters[i].matches(persisted.topicIds)) {
+                            matching++;
+                        }
+                    }
+                }
+                if (matching > 0) {
+                    marked[markedCount++] = subscribers[i];
+                }
+                delivered += matching;
+            }
+            NotificationEngine.markNewArticles(marked, markedCount);
+            deliveries.add(delivered);
+            filteredDeliveries.add((long) articleIds.size() * subscribers.length - delivered);
+            for (PersistedArticle persisted : entry.getValue()) {
+                persisted.crawl.itemDone(persisted.item, true);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Notify stage: moves the high-water mark of each finished crawl past its processed items, keeping failed
+     * items below it so that the next crawl retries them, and reports the new items to the
+     * {@link AdaptiveFeedScheduler}.
+     */
+    private static List<Void> notifyCrawls(List<FeedCrawl> crawls) {
+        for (FeedCrawl crawl : crawls) {
+            try {
+                List<FeedItem> processedItems = new ArrayList<>(crawl.processedItems);
+                Parser.getHighWaterMark(crawl.feedLink).advance(crawl.newItems, processedItems);
+                AdaptiveFeedScheduler.observe(crawl.feedLink, processedItems);
+            } finally {
+                feedsInFlight.remove(crawl.feedLink);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Logs the metrics of every stage.
+     */
+    private static void report() {
+        if (!Log.isEnabled(Log.Level.INFO)) {
+            return;
+        }
+        for (Stage<?, ?> stage : stages) {
+            StageSnapshot snapshot = stage.snapshot();
+            long processedSinceReport = snapshot.processed() - stage.processedAtLastReport;
+            stage.processedAtLastReport = snapshot.processed();
+            Log.info("CrawlPipeline", "Stage report", "stage", snapshot.name(), "summary", String.format(
+                    "%.2f items/s, queue %d/%d, wait %.1f ms, service %.1f ms",
+                    (double) processedSinceReport / REPORT_INTERVAL_SECONDS,
+                    snapshot.queueDepth(), snapshot.queueCapacity(), snapshot.avgWaitMillis(), snapshot.avgServiceMillis()));
+        }
+    }
+
+    /**
+     * A pipeline stage: a bounded input queue drained by a fixed number of worker threads.
+     * Workers take up to {@code batchSize} items at a time, run the handler on them and put the results
+     * into the next stage's queue, blocking while it is full.
+     *
+     * @param <I> The type of the items consumed by the stage.
+     * @param <O> The type of the items produced for the next stage.
+     */
+    private static class Stage<I, O> {
+        private final String name;
+        private final BlockingQueue<Envelope<I>> queue;
+        private final int capacity;
+        private final int workers;
+        private final int batchSize;
+        private final Function<List<I>, List<O>> handler;
+        private final Consumer<I> onFailure;
+        private final List<Thread> threads = new ArrayList<>();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder serviceNanos = new LongAdder();
+        private final Metrics.Timer waitTimer;
+        private final Metrics.Timer serviceTimer;
+        private Stage<O, ?> next;
+        private long processedAtLastReport;
+
+        private Stage(String name, int capacity, int workers, int batchSize,
+                      Function<List<I>, List<O>> handler, Consumer<I> onFailure) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.capacity = capacity;
+            this.workers = workers;
+            this.batchSize = batchSize;
+            this.handler = handler;
+            this.onFailure = onFailure;
+            this.waitTimer = Metrics.timer("newsbot_crawl_stage_wait_seconds",
+                    "Time an item waited in the queue of a crawl stage", "stage", name);
+            this.serviceTimer = Metrics.timer("newsbot_crawl_stage_service_seconds",
+                    "Time a crawl stage spent processing a batch", "stage", name);
+            Metrics.gauge("newsbot_crawl_stage_queue_size", "Items waiting in the queue of a crawl stage",
+                    "stage", name, queue::size);
+        }
+
+        private void submit(I item) throws InterruptedException {
+            queue.put(new Envelope<>(item, System.nanoTime()));
+        }
+
+        private void start() {
+            for (int i = 1; i <= workers; i++) {
+                Thread thread = new Thread(this::runWorker, "crawl-" + name.replace(' ', '-') + "-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+
+        private void stop() {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+
+        private void runWorker() {
+            List<Envelope<I>> envelopes = new ArrayList<>(batchSize);
+            List<I> batch = new ArrayList<>(batchSize);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    envelopes.add(queue.take());
+                    queue.drainTo(envelopes, batchSize - 1);
+
+                    long start = System.nanoTime();
+                    for (Envelope<I> envelope : envelopes) {
+                        waitNanos.add(start - envelope.enqueuedNanos);
+                        waitTimer.record(start - envelope.enqueuedNanos);
+                        batch.add(envelope.item);
+                    }
+
+                    List<O> outputs;
+                    try {
+                        outputs = handler.apply(batch);
+                    } catch (RuntimeException e) {
+                        Log.error("CrawlPipeline", "Error in crawl stage", "stage", name, e);
+                        batch.forEach(onFailure);
+                        continue;
+                    } finally {
+                        long serviceTime = System.nanoTime() - start;
+                        serviceNanos.add(serviceTime);
+                        serviceTimer.record(serviceTime);
+                        processed.add(batch.size());
+                    }
+
+                    // Blocks while the next stage is full: this is what propagates backpressure upstream
+                    if (next != null) {
+                        for (O output : outputs) {
+                            next.submit(output);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    envelopes.clear();
+                    batch.clear();
+                }
+            }
+        }
+
+        private StageSnapshot snapshot() {
+            long count = processed.sum();
+            double avgWait = count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count;
+            double avgService = count == 0 ? 0 : serviceNanos.sum() / 1_000_000.0 / count;
+            return new StageSnapshot(name, count, queue.size(), capacity, avgWait, avgService);
+        }
+    }
+
+    private record Envelope<T>(T item, long enqueuedNanos) {
+    }
+}
@@ -1,22 +1,30 @@
 package edu.newsbot;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Map;
 import java.util.stream.Collectors;
-import java.sql.DatabaseMetaData;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.FileReader;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 
@@ -26,6 +34,50 @@ import java.io.InputStreamReader;
  */
 public class DB {
 
+    // SQL types of the bot_user columns, loaded once at startup by loadUserColumnTypes()
+    private static final Map<String, Integer> botUserColumnTypes = new ConcurrentHashMap<>();
+
+    // Upsert statements for every combination of user settings, indexed by a bit mask of setting ordinals
+    private static final String[] UPSERT_USER_SETTINGS_SQL = buildUpsertUserSettingsSql();
+
+    // Daily partitions of feed_article are named with this prefix and the day, e.g. feed_article_p20240501
+    private static final String FEED_ARTICLE_PARTITION_PREFIX = "feed_article_p";
+
+    // Selects the unread articles of a feed (fa) given the user's cursor on the feed (c, LEFT JOINed): added to the
+    // feed after the cursor and not read out of order since. Without a cursor every article of the feed is unread.
+    private static final String UNREAD_CONDITION =
+            "(c.telegram_id IS NULL OR (fa.seq > c.read_seq AND fa.article_id <> ALL(c.read_ids)))";
+
+    // Selects the articles (a) passing the user's topic filter (u, the user's bot_user row): no muted topic and,
+    // if the user follows any, a followed one (see TopicFilters)
+    private static final String TOPIC_FILTER_CONDITION =
+            "(NOT (a.topic_ids && u.exclude_topics) AND (cardinality(u.include_topics) = 0 OR a.topic_ids && u.include_topics))";
+
+    // Time of each runtime DB method, including getting the connection
+    private static final Metrics.Timer getUserInfoByUserIdTimer = queryTimer("getUserInfoByUserId");
+    private static final Metrics.Timer updateUserSettingsTimer = queryTimer("updateUserSettings");
+    private static final Metrics.Timer toggleSubscriptionTimer = queryTimer("toggleSubscription");
+    private static final Metrics.Timer saveTopicFilterTimer = queryTimer("saveTopicFilter");
+    private static final Metrics.Timer saveArticleToDatabaseTimer = queryTimer("saveArticleToDatabase");
+    private static final Metrics.Timer saveArticlesToDatabaseTimer = queryTimer("saveArticlesToDatabase");
+    private static final Metrics.Timer addArticlesToFeedTimer = queryTimer("addArticlesToFeed");
+    private static final Metrics.Timer saveArticleAliasesTimer = queryTimer("saveArticleAliases");
+    private static final Metrics.Timer linkArticlesToFeedTimer = queryTimer("linkArticlesToFeed");
+    private static final Metrics.Timer getSubscriberSegmentsTimer = queryTimer("getSubscriberSegments");
+    private static final Metrics.Timer saveTranslationsTimer = queryTimer("saveTranslations");
+    private static final Metrics.Timer getArticleTranslationsTimer = queryTimer("getArticleTranslations");
+    private static final Metrics.Timer saveArticleVariantsTimer = queryTimer("saveArticleVariants");
+    private static final Metrics.Timer getArticleVariantTimer = queryTimer("getArticleVariant");
+    private static final Metrics.Timer getArticleByIdTimer = queryTimer("getArticleById");
+    private static final Metrics.Timer getArticlesByUrlKeysTimer = queryTimer("getArticlesByUrlKeys");
+    private static final Metrics.Timer getArticlesByIdsTimer = queryTimer("getArticlesByIds");
+    private static final Metrics.Timer hasFeedArticlesTimer = queryTimer("hasFeedArticles");
+    private static final Metrics.Timer getFirstUnreadArticleForUserTimer = queryTimer("getFirstUnreadArticleForUser");
+    private static final Metrics.Timer countUnreadArticlesTimer = queryTimer("countUnreadArticles");
+    private static final Metrics.Timer markFirstUnreadArticleAsReadTimer = queryTimer("markFirstUnreadArticleAsRead");
+    private static final Metrics.Timer markAllUnreadArticlesAsReadTimer = queryTimer("markAllUnreadArticlesAsRead");
+    private static final Metrics.Timer deleteAllUserArticlesTimer = queryTimer("deleteAllUserArticles");
+
     /**
      * Default constructor.
      * Used for initializing the DB class. This class provides methods to establish connections to the database.
@@ -34,6 +86,25 @@ public class DB {
         super(); // This call to the superclass constructor is implicit, but you can include it for clarity.
     }
 
+    /**
+     * Creates the timer of a DB method.
+     *
+     * @param method The name of the method.
+     * @return The timer.
+     */
+    private static Metrics.Timer queryTimer(String method) {
+        return Metrics.timer("newsbot_db_query_seconds", "Time spent in each DB method, including connecting", "method", method);
+    }
+
+    /**
+     * Counts a failed call of a DB method. Failures are rare, so the counter is looked up on each call.
+     *
+     * @param method The name of the method.
+     */
+    private static void countError(String method) {
+        Metrics.counter("newsbot_db_errors_total", "DB method calls that failed with an SQLException", "method", method).increment();
+    }
+
     /**
      * Establishes a connection to the database using credentials (username, password, url) from the DatabaseConfig class.
      *
@@ -41,77 +112,154 @@ public class DB {
      * @throws SQLException if a database access error occurs or the url is null.
      */
     public static Connection connect() throws SQLException {
-        try {
-            // Get database credentials from DatabaseConfig class
-            var jdbcUrl = DatabaseConfig.getDbUrl();
-            var user = DatabaseConfig.getDbUsername();
-            var password = DatabaseConfig.getDbPassword();
-
-            // Open a connection
-            return DriverManager.getConnection(jdbcUrl, user, password);
+        // Get database credentials from DatabaseConfig class
+        var jdbcUrl = DatabaseConfig.getDbUrl();
+        var user = DatabaseConfig.getDbUsername();
+        var password = DatabaseConfig.getDbPassword();
 
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
-            return null;
-        }
+        // Open a connection
+        return DriverManager.getConnection(jdbcUrl, user, password);
     }
 
     /**
      * Creates necessary tables in the database if they do not already exist.
      * tables:
-     * bot_user (id, telegram_id UNIQUE, sources, age, language, delta_time)
-     * science_daily_feeds (id, link, name)
-     * article (id, title, summary, link, datetime, full_story, source. related_topics, related_terms,
-     * journal_reference, cite_page_mla, cite_page_apa, cite_page_chicago TEXT, related_stories_links TEXT)
-     * user_article_status (id, telegram_id REFERENCES bot_user(telegram_id), article_id INT REFERENCES article(id),
-     * read_status DEFAULT FALSE, UNIQUE(telegram_id, article_id))
+     * bot_user (id, telegram_id UNIQUE, age, language, delta_time, timezone, quiet_hours, digest, include_topics INT[],
+     * exclude_topics INT[]) (see {@link TopicFilters} for the topics)
+     * science_daily_feeds (id, link UNIQUE, name)
+     * user_subscription (telegram_id REFERENCES bot_user(telegram_id), feed_id INT REFERENCES science_daily_feeds(id),
+     * PRIMARY KEY(telegram_id, feed_id))
+     * article (id, title, summary, link, url_key UNIQUE, datetime, source, topic_ids INT[])
+     * article_body (article_id PRIMARY KEY REFERENCES article(id), content BYTEA): the LZ4-compressed full_story,
+     * journal_reference, cite_page_mla, cite_page_apa, cite_page_chicago and related_stories_links (see {@link ArticleBody})
+     * article_alias (url_key PRIMARY KEY, article_id INT REFERENCES article(id))
+     * article_translation (article_id INT REFERENCES article(id), field, lang, text, PRIMARY KEY(article_id, field, lang))
+     * (see {@link ArticleTranslator})
+     * article_variant (article_id INT REFERENCES article(id), lang, age_group, projection, text,
+     * PRIMARY KEY(article_id, lang, age_group, projection)) (see {@link ArticleVariants})
+     * feed_article (feed_id INT REFERENCES science_daily_feeds(id), article_id INT REFERENCES article(id),
+     * published_at, seq BIGSERIAL, PRIMARY KEY(feed_id, article_id, published_at)), partitioned by day of published_at
+     * (see {@link ArticleRetention}), with a default partition
+     * user_feed_cursor (telegram_id REFERENCES bot_user(telegram_id), feed_id INT REFERENCES science_daily_feeds(id),
+     * read_seq, read_ids INT[], PRIMARY KEY(telegram_id, feed_id))
      */
     public static void createTables() {
         String createBotUserTable = """
                 CREATE TABLE IF NOT EXISTS bot_user (
                     id SERIAL PRIMARY KEY,
                     telegram_id BIGINT UNIQUE NOT NULL,
-                    sources TEXT,
                     age VARCHAR(10),
                     language VARCHAR(10),
-                    delta_time INTEGER
+                    delta_time INTEGER,
+                    timezone VARCHAR(64) NOT NULL DEFAULT 'UTC',
+                    quiet_hours VARCHAR(5),
+                    digest VARCHAR(10),
+                    include_topics INT[] NOT NULL DEFAULT '{}',
+                    exclude_topics INT[] NOT NULL DEFAULT '{}'
                 );
                 """;
 
         String createSourcesTable = """
                 CREATE TABLE science_daily_feeds (
                     id SERIAL PRIMARY KEY,
-                    link VARCHAR(255) NOT NULL,
+                    link VARCHAR(255) NOT NULL UNIQUE,
                     name VARCHAR(100) NOT NULL
                 );
                 """;
 
+        // The feeds each user reads; the index on feed_id lists the subscribers of a feed
+        String createUserSubscriptionTable = """
+                CREATE TABLE IF NOT EXISTS user_subscription (
+                    telegram_id BIGINT NOT NULL REFERENCES bot_user(telegram_id),
+                    feed_id INT NOT NULL REFERENCES science_daily_feeds(id),
+                    PRIMARY KEY (telegram_id, feed_id)
+                );
+                CREATE INDEX IF NOT EXISTS user_subscription_feed ON user_subscription (feed_id);
+                """;
+
         String createArticleTable = """
                 CREATE TABLE IF NOT EXISTS article (
                     id SERIAL PRIMARY KEY,
                     title VARCHAR(255),
                     summary TEXT,
                     link VARCHAR(255) UNIQUE,
+                    url_key VARCHAR(255) UNIQUE,
                     datetime TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
-                    full_story TEXT,
                     source TEXT,
-                    related_topics TEXT,
-                    related_terms TEXT,
-                    journal_reference TEXT,
-                    cite_page_mla TEXT,
-                    cite_page_apa TEXT,
-                    cite_page_chicago TEXT,
-                    related_stories_links TEXT
+                    topic_ids INT[] NOT NULL DEFAULT '{}'
                 );
+                CREATE INDEX IF NOT EXISTS article_topic_ids ON article USING GIN (topic_ids);
                 """;
 
-        String createUserArticleStatusTable = """
-                CREATE TABLE IF NOT EXISTS user_article_status (
-                    id SERIAL PRIMARY KEY,
-                    telegram_id BIGINT REFERENCES bot_user(telegram_id),
-                    article_id INT REFERENCES article(id),
-                    read_status BOOLEAN DEFAULT FALSE,
-                    UNIQUE(telegram_id, article_id)
+        // Large fields, only read by the "More Info" view; already compressed, so PostgreSQL must not compress
+        // them again (STORAGE EXTERNAL)
+        String createArticleBodyTable = """
+                CREATE TABLE IF NOT EXISTS article_body (
+                    article_id INT PRIMARY KEY REFERENCES article(id),
+                    content BYTEA NOT NULL
+                );
+                ALTER TABLE article_body ALTER COLUMN content SET STORAGE EXTERNAL;
+                """;
+
+        // URL keys of near-duplicate stories that were mapped to an already stored article
+        String createArticleAliasTable = """
+                CREATE TABLE IF NOT EXISTS article_alias (
+                    url_key VARCHAR(255) PRIMARY KEY,
+                    article_id INT REFERENCES article(id)
+                );
+                """;
+
+        // Machine translations of the article fields, one per article, field and language (bot_user.language)
+        String createArticleTranslationTable = """
+                CREATE TABLE IF NOT EXISTS article_translation (
+                    article_id INT NOT NULL REFERENCES article(id),
+                    field VARCHAR(16) NOT NULL,
+                    lang VARCHAR(10) NOT NULL,
+                    text TEXT NOT NULL,
+                    PRIMARY KEY (article_id, field, lang)
+                );
+                """;
+
+        // Rendered views of the articles, one per segment of readers (language and age group) and projection
+        String createArticleVariantTable = """
+                CREATE TABLE IF NOT EXISTS article_variant (
+                    article_id INT NOT NULL REFERENCES article(id),
+                    lang VARCHAR(10) NOT NULL,
+                    age_group VARCHAR(20) NOT NULL,
+                    projection VARCHAR(10) NOT NULL,
+                    text TEXT NOT NULL,
+                    PRIMARY KEY (article_id, lang, age_group, projection)
+                );
+                """;
+
+        // Which articles appeared in which feed, written once per article and feed whatever the number of
+        // subscribers. seq orders the articles by the time they were added to the feed, for the read cursors.
+        // published_at is the article's datetime, so all rows of an article are in the same daily partition and the
+        // primary key still identifies a (feed, article) pair. Old days are dropped in bulk by ArticleRetention.
+        // The (feed_id, published_at) index serves the unread lists of a feed's subscribers, new ones included,
+        // as range scans; the (feed_id, seq) index serves the unread counts and cursor moves.
+        String createFeedArticleTable = """
+                CREATE TABLE IF NOT EXISTS feed_article (
+                    feed_id INT NOT NULL REFERENCES science_daily_feeds(id),
+                    article_id INT NOT NULL REFERENCES article(id),
+                    published_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                    seq BIGSERIAL,
+                    PRIMARY KEY (feed_id, article_id, published_at)
+                ) PARTITION BY RANGE (published_at);
+                CREATE INDEX IF NOT EXISTS feed_article_feed_time ON feed_article (feed_id, published_at, article_id);
+                CREATE INDEX IF NOT EXISTS feed_article_feed_seq ON feed_article (feed_id, seq);
+                CREATE TABLE IF NOT EXISTS feed_article_default PARTITION OF feed_article DEFAULT;
+                """;
+
+        // Read state: a cursor per user and feed. The articles of the feed up to read_seq are read ("Clear",
+        // "Next Article" in order), as are the articles in read_ids, read out of order after the cursor.
+        String createUserFeedCursorTable = """
+                CREATE TABLE IF NOT EXISTS user_feed_cursor (
+                    telegram_id BIGINT NOT NULL REFERENCES bot_user(telegram_id),
+                    feed_id INT NOT NULL REFERENCES science_daily_feeds(id),
+                    read_seq BIGINT NOT NULL DEFAULT 0,
+                    read_ids INT[] NOT NULL DEFAULT '{}',
+                    PRIMARY KEY (telegram_id, feed_id)
                 );
                 """;
 
@@ -120,8 +268,14 @@ public class DB {
 
             stmt.execute(createBotUserTable);
             stmt.execute(createSourcesTable);
+            stmt.execute(createUserSubscriptionTable);
             stmt.execute(createArticleTable);
-            stmt.execute(createUserArticleStatusTable);
+            stmt.execute(createArticleBodyTable);
+            stmt.execute(createArticleAliasTable);
+            stmt.execute(createArticleTranslationTable);
+            stmt.execute(createArticleVariantTable);
+            stmt.execute(createFeedArticleTable);
+            stmt.execute(createUserFeedCursorTable);
 
             System.out.println("Tables created successfully");
         } catch (SQLException e) {
@@ -170,9 +324,18 @@ public class DB {
      * @throws SQLException If a database access error occurs.
      */
     public static void insertRssFeedsFromFile(String filePath) throws SQLException {
-        List<String> lines = readLinesFromResourcesFile(filePath);
+        insertRssFeeds(readLinesFromResourcesFile(filePath));
+    }
+
+    /**
+     * Inserts RSS feeds into the database. The name of each feed is derived from its link.
+     *
+     * @param links The RSS feed URLs.
+     * @throws SQLException If a database access error occurs.
+     */
+    public static void insertRssFeeds(List<String> links) throws SQLException {
         try (Connection conn = connect()) { // Ensure connect() returns a valid connection
-            for (String line : lines) {
+            for (String line : links) {
                 String name = extractNameOutOfTheLink(line);
                 // Insert into the database
                 try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO science_daily_feeds (link, name) VALUES (?, ?)")) {
@@ -186,57 +349,6 @@ public class DB {
         }
     }
 
-    /**
-     * Retrieves the names of all RSS feeds stored in the database.
-     *
-     * @return An ArrayList of RSS feed names.
-     */
-    public static ArrayList<String> getRssFeedsNames() {
-        ArrayList<String> rssNames = new ArrayList<>();
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet tables = stmt.executeQuery(
-                     "SELECT name FROM science_daily_feeds ")) {
-
-            // Collect table names
-            while (tables.next()) {
-                rssNames.add(tables.getString("name"));
-            }
-
-        } catch (SQLException e) {
-            System.err.println("Error collecting table names: " + e.getMessage());
-        }
-        return rssNames;
-    }
-
-    /**
-     * Retrieves the link for a specific RSS feed by its name.
-     *
-     * @param name The name of the RSS feed.
-     * @return The link of the RSS feed, or null if not found.
-     */
-    public static String getRssFeedsLinkByName(String name) {
-        String rssLink = null; // Initialize rssLink to null
-        try (Connection conn = connect()) {
-            // Prepare the statement within the try block but outside of the try-with-resources header
-            PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM science_daily_feeds WHERE name = ?;");
-            pstmt.setString(1, name); // Correctly use setString for a String parameter
-            try (ResultSet rs = pstmt.executeQuery()) { // Correctly place ResultSet in try-with-resources
-
-                // Collect the RSS link
-                if (rs.next()) { // Use if instead of while if you're expecting a single result
-                    rssLink = rs.getString("link"); // Fetch the correct column, assuming it's called "rss_link"
-                }
-
-            } catch (SQLException e) {
-                System.err.println("Error executing query: " + e.getMessage());
-            }
-        } catch (SQLException e) {
-            System.err.println("Error connecting to the database: " + e.getMessage());
-        }
-        return rssLink; // Return the rssLink, which will be null if not found or in case of an error
-    }
-
     /**
      * Clears all tables in the database, effectively resetting the database.
      */
@@ -274,42 +386,45 @@ public class DB {
      * Retrieves information about a user from the database based on their user ID.
      *
      * @param userId The user's Telegram ID.
-     * @return A Map containing user information, or null if the user is not found.
+     * @return The user's profile, or null if the user is not found.
      */
-    public static Map<String, Object> getUserInfoByUserId(long userId) {
-        Map<String, Object> userInfo = new HashMap<>();
-
+    public static UserProfile getUserInfoByUserId(long userId) {
+        long start = System.nanoTime();
         try (Connection conn = connect();
              PreparedStatement pstmt = conn.prepareStatement("""
-                     SELECT * FROM bot_user WHERE telegram_id = ?;
+                     SELECT u.telegram_id, u.age, u.language, u.delta_time, u.timezone, u.quiet_hours, u.digest,
+                            ARRAY(SELECT f.link
+                                  FROM user_subscription s
+                                  JOIN science_daily_feeds f ON f.id = s.feed_id
+                                  WHERE s.telegram_id = u.telegram_id
+                                  ORDER BY f.id) AS sources
+                     FROM bot_user u
+                     WHERE u.telegram_id = ?;
                      """)) {
 
             pstmt.setLong(1, userId);
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
-                Long telegramId = rs.getLong("telegram_id");
-                userInfo.put("telegram_id", rs.wasNull() ? null : telegramId);
-
-                String sources = rs.getString("sources");
-                userInfo.put("sources", sources); // getString can return null directly
-
-                String age = rs.getString("age");
-                userInfo.put("age", age);
-
-                String language = rs.getString("language");
-                userInfo.put("language", language); // Again, getString can return null
-
-                int deltaTime = rs.getInt("delta_time");
-                userInfo.put("delta_time", rs.wasNull() ? null : deltaTime);
-
-                return userInfo;
+                // getString returns null for settings the user has not chosen yet
+                return new UserProfile(
+                        rs.getLong("telegram_id"),
+                        List.of((String[]) rs.getArray("sources").getArray()),
+                        rs.getString("age"),
+                        rs.getString("language"),
+                        rs.getInt("delta_time"), // getInt returns 0 for NULL
+                        rs.getString("timezone"),
+                        rs.getString("quiet_hours"),
+                        rs.getString("digest"));
             } else {
                 return null;
             }
         } catch (SQLException e) {
-            System.err.println("SQL error occurred: " + e.getMessage());
+            countError("getUserInfoByUserId");
+            Log.error("DB", "SQL error in getUserInfoByUserId", e);
             return null; // Return null or consider throwing a custom exception
+        } finally {
+            getUserInfoByUserIdTimer.recordSince(start);
         }
     }
 
@@ -336,66 +451,201 @@ public class DB {
     }
 
     /**
-     * Updates or inserts user information into the database. Used for registration and settings changes.
+     * Loads the SQL types of the {@code bot_user} columns into memory.
+     * Called once at startup (after the tables are created) so that settings updates
+     * do not need a catalog query per call.
+     */
+    public static void loadUserColumnTypes() {
+        try (Connection conn = connect();
+             ResultSet columns = conn.getMetaData().getColumns(null, null, "bot_user", null)) {
+            while (columns.next()) {
+                botUserColumnTypes.put(columns.getString("COLUMN_NAME"), columns.getInt("DATA_TYPE"));
+            }
+        } catch (SQLException e) {
+            countError("loadUserColumnTypes");
+            Log.error("DB", "SQL error in loadUserColumnTypes", e);
+        }
+    }
+
+    /**
+     * Builds the upsert SQL for every non-empty combination of user settings.
+     * The array is indexed by a bit mask of {@link UserSetting#ordinal()} values.
      *
-     * @param updateData a Map containing the data to update or insert
+     * @return The upsert SQL statements, one per column set (index 0 is unused).
      */
-    public static void updateOrInsertUserInfo(Map<String, String> updateData) {
-        if (!updateData.containsKey("telegram_id")) {
-            throw new IllegalArgumentException("Update data must contain 'telegram_id'.");
+    private static String[] buildUpsertUserSettingsSql() {
+        UserSetting[] settings = UserSetting.values();
+        String[] sqlByMask = new String[1 << settings.length];
+
+        for (int mask = 1; mask < sqlByMask.length; mask++) {
+            List<String> columns = new ArrayList<>();
+            for (UserSetting setting : settings) {
+                if ((mask & (1 << setting.ordinal())) != 0) {
+                    columns.add(setting.getColumn());
+                }
+            }
+            String columnsPart = String.join(", ", columns) + ", telegram_id";
+            String placeholders = columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ", ?";
+            String updates = columns.stream().map(column -> column + " = EXCLUDED." + column).collect(Collectors.joining(", "));
+            sqlByMask[mask] = "INSERT INTO bot_user (" + columnsPart + ") VALUES (" + placeholders + ") ON CONFLICT (telegram_id) DO UPDATE SET " + updates + ";";
         }
+        return sqlByMask;
+    }
 
-        String tableName = "bot_user"; // Specify your table name here
+    /**
+     * Updates or inserts a single user setting. Used for registration and settings changes.
+     *
+     * @param telegramId The telegram ID of the user.
+     * @param setting The setting to change.
+     * @param value The new value as received from the keyboard.
+     */
+    public static void updateUserSetting(long telegramId, UserSetting setting, String value) {
+        EnumMap<UserSetting, String> settings = new EnumMap<>(UserSetting.class);
+        settings.put(setting, value);
+        updateUserSettings(telegramId, settings);
+    }
 
-        try (Connection conn = connect()) {
+    /**
+     * Updates or inserts user settings using the upsert statement prepared for the given column set.
+     *
+     * @param telegramId The telegram ID of the user.
+     * @param settings The settings to change together with their new values.
+     */
+    public static void updateUserSettings(long telegramId, EnumMap<UserSetting, String> settings) {
+        if (settings.isEmpty()) {
+            return;
+        }
 
-            if (updateData.containsKey("sources")) {
-                // Directly fetch and update the 'sources' entry with the RSS link
-                updateData.put("sources", getRssFeedsLinkByName(updateData.get("sources")));
+        int mask = 0;
+        boolean shouldReschedule = false;
+        for (UserSetting setting : settings.keySet()) {
+            mask |= 1 << setting.ordinal();
+            shouldReschedule |= setting.reschedules();
+        }
+
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement(UPSERT_USER_SETTINGS_SQL[mask])) {
+
+            // EnumMap iterates in ordinal order, the same order the SQL columns were built in
+            int index = 1;
+            for (Map.Entry<UserSetting, String> entry : settings.entrySet()) {
+                UserSetting setting = entry.getKey();
+                String value = entry.getValue();
+                setPreparedStatementValue(pstmt, index++, value, botUserColumnTypes.getOrDefault(setting.getColumn(), java.sql.Types.VARCHAR));
             }
+            pstmt.setLong(index, telegramId); // Set telegram_id at the end
 
-            // Prepare column types info
-            Map<String, Integer> columnTypes = new HashMap<>();
-            DatabaseMetaData metaData = conn.getMetaData();
-            try (ResultSet columns = metaData.getColumns(null, null, tableName, null)) {
-                while (columns.next()) {
-                    columnTypes.put(columns.getString("COLUMN_NAME"), columns.getInt("DATA_TYPE"));
-                }
+            // Execute and handle the update or insert
+            if (pstmt.executeUpdate() > 0) {
+                Log.debugUser("DB", telegramId, "User settings upserted");
             }
 
-            // Fetch telegram_id once and use it throughout
-            Long telegramId = Long.parseLong(updateData.remove("telegram_id"));
+            // Changing the interval or the delivery window requires the parsing task to be rescheduled
+            if (shouldReschedule) {
+                rescheduleTasks(telegramId);
+            }
+        } catch (SQLException e) {
+            countError("updateUserSettings");
+            Log.error("DB", "SQL error in updateUserSettings", e);
+        } finally {
+            updateUserSettingsTimer.recordSince(start);
+        }
+    }
 
-            // Construct SQL statement as before
-            String columnsPart = String.join(", ", updateData.keySet()) + ", telegram_id";
-            String placeholders = updateData.keySet().stream().map(key -> "?").collect(Collectors.joining(", ")) + ", ?";
-            String updates = updateData.keySet().stream().map(key -> key + " = EXCLUDED." + key).collect(Collectors.joining(", "));
-            String sql = "INSERT INTO " + tableName + " (" + columnsPart + ") VALUES (" + placeholders + ") ON CONFLICT (telegram_id) DO UPDATE SET " + updates + ";";
+    /**
+     * Stores the topic filter of a user, see {@link TopicFilters}.
+     *
+     * @param telegramId The telegram ID of the user.
+     * @param includeTopics The IDs of the followed topics.
+     * @param excludeTopics The IDs of the muted topics.
+     */
+    public static void saveTopicFilter(long telegramId, int[] includeTopics, int[] excludeTopics) {
+        String updateSql = """
+                UPDATE bot_user
+                SET include_topics = ?, exclude_topics = ?
+                WHERE telegram_id = ?;
+                """;
 
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                int index = 1;
-                for (String key : updateData.keySet()) {
-                    setPreparedStatementValue(pstmt, index++, updateData.get(key), columnTypes.getOrDefault(key, java.sql.Types.VARCHAR));
-                }
-                pstmt.setLong(index, telegramId); // Set telegram_id at the end
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
 
-                // Execute and handle the update or insert
-                if (pstmt.executeUpdate() > 0) {
-                    System.out.println("User info upserted successfully.");
-                }
+            updateStmt.setArray(1, conn.createArrayOf("int4", Arrays.stream(includeTopics).boxed().toArray()));
+            updateStmt.setArray(2, conn.createArrayOf("int4", Arrays.stream(excludeTopics).boxed().toArray()));
+            updateStmt.setLong(3, telegramId);
+            updateStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("saveTopicFilter");
+            Log.error("DB", "SQL error in saveTopicFilter", e);
+        } finally {
+            saveTopicFilterTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Subscribes a user to a feed, or unsubscribes them if they already are, and updates the
+     * {@link SubscriptionIndex}. Unsubscribing also drops the user's cursor on the feed, so subscribing again
+     * catches the user up on the feed's stored articles.
+     *
+     * @param telegramId The telegram ID of the user (must be registered).
+     * @param feedName The feed name as received from the sources keyboard.
+     * @return true if the user is now subscribed to the feed, false if not (or if the change failed).
+     */
+    public static boolean toggleSubscription(long telegramId, String feedName) {
+        int feedId = FeedCatalog.getIdByLink(FeedCatalog.getLinkByName(feedName));
+        if (feedId == -1) {
+            Log.warn("DB", "Unknown feed", "feed", feedName);
+            return false;
+        }
 
-                // Determine if there's a need to reschedule tasks based on the presence of 'delta_time' or 'sources' in the updateData
-                boolean shouldReschedule = updateData.containsKey("delta_time") || updateData.containsKey("sources");
+        String unsubscribeSql = """
+                DELETE FROM user_subscription
+                WHERE telegram_id = ? AND feed_id = ?;
+                """;
 
-                if (shouldReschedule) {
-                    rescheduleTasks(telegramId);
-                }
+        String subscribeSql = """
+                INSERT INTO user_subscription (telegram_id, feed_id)
+                VALUES (?, ?)
+                ON CONFLICT DO NOTHING;
+                """;
+
+        String deleteCursorSql = """
+                DELETE FROM user_feed_cursor
+                WHERE telegram_id = ? AND feed_id = ?;
+                """;
 
+        boolean subscribed = false;
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement unsubscribeStmt = conn.prepareStatement(unsubscribeSql);
+             PreparedStatement subscribeStmt = conn.prepareStatement(subscribeSql);
+             PreparedStatement deleteCursorStmt = conn.prepareStatement(deleteCursorSql)) {
+
+            unsubscribeStmt.setLong(1, telegramId);
+            unsubscribeStmt.setInt(2, feedId);
+            if (unsubscribeStmt.executeUpdate() > 0) {
+                SubscriptionIndex.remove(telegramId, feedId);
+                deleteCursorStmt.setLong(1, telegramId);
+                deleteCursorStmt.setInt(2, feedId);
+                deleteCursorStmt.executeUpdate();
+            } else {
+                subscribeStmt.setLong(1, telegramId);
+                subscribeStmt.setInt(2, feedId);
+                subscribeStmt.executeUpdate();
+                SubscriptionIndex.add(telegramId, feedId);
+                // The stored articles of the feed are unread for the new subscriber
+                NotificationEngine.markNewArticles(telegramId);
+                subscribed = true;
             }
+            Log.debugUser("DB", telegramId, subscribed ? "Subscribed" : "Unsubscribed", "feed", feedName);
         } catch (SQLException e) {
-            // Handle SQLException here
-            System.err.println("SQL error occurred during the upsert: " + e.getMessage());
+            countError("toggleSubscription");
+            Log.error("DB", "SQL error in toggleSubscription", e);
+        } finally {
+            toggleSubscriptionTimer.recordSince(start);
         }
+        return subscribed;
     }
 
     /**
@@ -405,126 +655,605 @@ public class DB {
      * @throws SQLException if a database access error occurs
      */
     public static void rescheduleTasks(Long telegramId) throws SQLException {
-        Map<String, Object> userInfo = getUserInfoByUserId(telegramId);
-
-        // Fetch the latest 'delta_time' and 'sources' from userInfo after the update operation
-        String delta_time = userInfo.get("delta_time").toString();
-        Object sourcesObject = userInfo.get("sources");
-
-        // Only proceed if 'delta_time' is available and 'sources' is not null
-        if (delta_time != null && sourcesObject != null) {
-            String link = sourcesObject.toString();
-
-            // Convert 'delta_time' to seconds for scheduling
-            long delayInSeconds = TimeUnit.MINUTES.toSeconds(Long.parseLong(delta_time));
-
-            // Reschedule the link parsing task with the new delay
-            ParsingSendingScheduler.scheduleLinkParsing(link, delayInSeconds, TimeUnit.SECONDS, telegramId);
+        UserProfile userInfo = getUserInfoByUserId(telegramId);
+
+        // Only proceed if 'delta_time' is available and the user is subscribed to at least one feed
+        if (userInfo != null && userInfo.hasDeltaTime() && userInfo.hasSources()) {
+            // Reschedule the deliveries on the boundaries of the user's window
+            ParsingSendingScheduler.scheduleLinkParsing(userInfo.sources(), userInfo.deliveryWindow(), telegramId);
+        } else if (userInfo != null && !userInfo.hasSources()) {
+            // The user unsubscribed from all feeds
+            ParsingSendingScheduler.stopUserTask(telegramId);
         }
     }
 
 
     /**
-     * Saves an article to the database and updates the user-article status accordingly.
+     * Saves an article to the database and adds it to the feed it was found in.
      *
      * @param primaryUrl the primary URL associated with the article
-     * @param dataMap a Map containing the article data
+     * @param article the article to save
+     * @return the database ID of the article (-1 if it could not be saved)
      */
-    public static void saveArticleToDatabase(String primaryUrl, Map<String, String> dataMap) {
+    public static int saveArticleToDatabase(String primaryUrl, Article article) {
 
         String insertArticleSQL = """
-                INSERT INTO article (title, summary, link, full_story, source, related_topics, related_terms, journal_reference, cite_page_mla, cite_page_apa, cite_page_chicago, related_stories_links) 
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) 
-                ON CONFLICT (link) DO NOTHING RETURNING id;
+                INSERT INTO article (title, summary, link, source, topic_ids, url_key) 
+                VALUES (?, ?, ?, ?, ?, ?) 
+                ON CONFLICT DO NOTHING RETURNING id;
                 """;
 
-        String selectUsersSQL = """
-                SELECT telegram_id FROM bot_user 
-                WHERE sources = ?;
+        String insertBodySQL = """
+                INSERT INTO article_body (article_id, content)
+                VALUES (?, ?)
+                ON CONFLICT (article_id) DO NOTHING;
                 """;
 
-
-        String insertStatusSQL = """
-                INSERT INTO user_article_status (telegram_id, article_id, read_status) 
-                VALUES (?, ?, FALSE) 
-                ON CONFLICT (telegram_id, article_id) DO NOTHING;
+        String insertFeedArticleSQL = """
+                INSERT INTO feed_article (feed_id, article_id, published_at) 
+                SELECT ?, id, datetime FROM article WHERE id = ? 
+                ON CONFLICT (feed_id, article_id, published_at) DO NOTHING;
                 """;
 
+        int articleId = -1; // Default value indicating not found
+        String urlKey = UrlCanonicalizer.key(article.link());
+        long start = System.nanoTime();
         try (Connection conn = connect();
-             PreparedStatement checkStmt = conn.prepareStatement("SELECT id FROM article WHERE link = ?"); // It's better to check by link than by title
+             PreparedStatement checkStmt = conn.prepareStatement("SELECT id FROM article WHERE url_key = ?"); // It's better to check by link than by title
              PreparedStatement insertStmt = conn.prepareStatement(insertArticleSQL, Statement.RETURN_GENERATED_KEYS);
-             PreparedStatement selectUsersStmt = conn.prepareStatement(selectUsersSQL);
-             PreparedStatement insertStatusStmt = conn.prepareStatement(insertStatusSQL)) {
+             PreparedStatement insertBodyStmt = conn.prepareStatement(insertBodySQL);
+             PreparedStatement insertFeedArticleStmt = conn.prepareStatement(insertFeedArticleSQL)) {
 
             // Initially, check if the article exists and get its ID if it does
-            int articleId = -1; // Default value indicating not found
-            checkStmt.setString(1, dataMap.get("link"));
+            checkStmt.setString(1, urlKey);
             try (ResultSet rs = checkStmt.executeQuery()) {
                 if (rs.next()) {
                     articleId = rs.getInt("id"); // Article exists, get its ID
                 } else {
                     // Article doesn't exist, try inserting it
-                    int index = 1;
-                    for (String key : new String[]{"title", "summary", "link", "full_story", "source", "related_topics", "related_terms", "journal_reference", "cite_page_mla", "cite_page_apa", "cite_page_chicago", "related_stories_links"}) {
-                        insertStmt.setString(index++, dataMap.get(key));
-                    }
+                    insertStmt.setString(1, article.title());
+                    insertStmt.setString(2, article.summary());
+                    insertStmt.setString(3, article.link());
+                    insertStmt.setString(4, article.source());
+                    int[] topicIds = TopicDictionary.encode(article.relatedTopics(), article.relatedTerms());
+                    insertStmt.setArray(5, topicIdsArray(conn, topicIds));
+                    insertStmt.setString(6, urlKey);
                     insertStmt.executeUpdate();
                     try (ResultSet generatedKeys = insertStmt.getGeneratedKeys()) {
                         if (generatedKeys.next()) {
                             articleId = generatedKeys.getInt(1); // Get the newly inserted article ID
                         }
                     }
+                    if (articleId != -1) {
+                        insertBodyStmt.setInt(1, articleId);
+                        insertBodyStmt.setBytes(2, ArticleBody.of(article).compress());
+                        insertBodyStmt.executeUpdate();
+                    }
                 }
             }
 
             // If we have an article ID, either from insertion or pre-existence
-            if (articleId != -1) {
-                // Select users to associate with the article
-                selectUsersStmt.setString(1, primaryUrl); // Adjust as necessary for your logic
-                try (ResultSet usersRs = selectUsersStmt.executeQuery()) {
-                    while (usersRs.next()) {
-                        long userId = usersRs.getLong("telegram_id");
-                        // Insert user-article association, avoiding duplicates
-                        insertStatusStmt.setLong(1, userId);
-                        insertStatusStmt.setInt(2, articleId);
-                        insertStatusStmt.executeUpdate();
+            int feedId = FeedCatalog.getIdByLink(primaryUrl);
+            if (articleId != -1 && feedId != -1) {
+                // Add the article to the feed, avoiding duplicates; subscribers see it through their cursors
+                insertFeedArticleStmt.setInt(1, feedId);
+                insertFeedArticleStmt.setInt(2, articleId);
+                insertFeedArticleStmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            countError("saveArticleToDatabase");
+            Log.error("DB", "SQL error in saveArticleToDatabase", e);
+        } finally {
+            saveArticleToDatabaseTimer.recordSince(start);
+        }
+        if (articleId != -1) {
+            ArticleSearch.add(urlKey, article);
+            ArticleRecommender.add(articleId, article);
+        }
+        return articleId;
+    }
+
+    /**
+     * Builds the value of {@code article.topic_ids}.
+     *
+     * @param conn The connection of the insert.
+     * @param topicIds The IDs of the article's topics and terms (see {@link TopicDictionary#encode(String, String)}).
+     * @return The array.
+     * @throws SQLException if the array cannot be created.
+     */
+    private static Array topicIdsArray(Connection conn, int[] topicIds) throws SQLException {
+        return conn.createArrayOf("int4", Arrays.stream(topicIds).boxed().toArray());
+    }
+
+    /**
+     * Saves a batch of articles in a single round trip, skipping articles whose URL key is already stored.
+     * The large fields are stored compressed in {@code article_body}.
+     *
+     * @param articles the articles to save
+     * @param topicIds the IDs of the related topics and terms of each article, in the order of the articles
+     *                 (see {@link TopicDictionary#encode(String, String)})
+     * @return the database IDs of the articles in the order of the input (-1 if an article could not be saved)
+     */
+    public static List<Integer> saveArticlesToDatabase(List<Article> articles, List<int[]> topicIds) {
+        String insertArticleSQL = """
+                INSERT INTO article (title, summary, link, source, topic_ids, url_key)
+                VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT DO NOTHING;
+                """;
+
+        // IDs of the batch's articles, and whether their body still has to be stored
+        String selectIdsSQL = """
+                SELECT a.id, a.url_key, b.article_id IS NULL AS missing_body
+                FROM article a
+                LEFT JOIN article_body b ON b.article_id = a.id
+                WHERE a.url_key = ANY(?);
+                """;
+
+        String insertBodySQL = """
+                INSERT INTO article_body (article_id, content)
+                VALUES (?, ?)
+                ON CONFLICT (article_id) DO NOTHING;
+                """;
+
+        List<Integer> articleIds = new ArrayList<>(Collections.nCopies(articles.size(), -1));
+        if (articles.isEmpty()) {
+            return articleIds;
+        }
+
+        String[] urlKeys = new String[articles.size()];
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement insertStmt = conn.prepareStatement(insertArticleSQL);
+             PreparedStatement selectIdsStmt = conn.prepareStatement(selectIdsSQL);
+             PreparedStatement insertBodyStmt = conn.prepareStatement(insertBodySQL)) {
+
+            for (int i = 0; i < articles.size(); i++) {
+                Article article = articles.get(i);
+                urlKeys[i] = UrlCanonicalizer.key(article.link());
+                insertStmt.setString(1, article.title());
+                insertStmt.setString(2, article.summary());
+                insertStmt.setString(3, article.link());
+                insertStmt.setString(4, article.source());
+                insertStmt.setArray(5, topicIdsArray(conn, topicIds.get(i)));
+                insertStmt.setString(6, urlKeys[i]);
+                insertStmt.addBatch();
+            }
+            insertStmt.executeBatch();
+
+            // Resolve the IDs of inserted and already existing articles at once
+            Map<String, Integer> idsByUrlKey = new HashMap<>();
+            Set<String> missingBodies = new HashSet<>();
+            selectIdsStmt.setArray(1, conn.createArrayOf("text", urlKeys));
+            try (ResultSet rs = selectIdsStmt.executeQuery()) {
+                while (rs.next()) {
+                    idsByUrlKey.put(rs.getString("url_key"), rs.getInt("id"));
+                    if (rs.getBoolean("missing_body")) {
+                        missingBodies.add(rs.getString("url_key"));
                     }
                 }
             }
+            for (int i = 0; i < urlKeys.length; i++) {
+                articleIds.set(i, idsByUrlKey.getOrDefault(urlKeys[i], -1));
+                // Bodies of articles stored before are not sent again
+                if (missingBodies.remove(urlKeys[i])) {
+                    insertBodyStmt.setInt(1, articleIds.get(i));
+                    insertBodyStmt.setBytes(2, ArticleBody.of(articles.get(i)).compress());
+                    insertBodyStmt.addBatch();
+                }
+            }
+            insertBodyStmt.executeBatch();
         } catch (SQLException e) {
-            System.err.println("SQL error occurred: " + e.getMessage());
-            e.printStackTrace();
+            countError("saveArticlesToDatabase");
+            Log.error("DB", "SQL error in saveArticlesToDatabase", e);
+        } finally {
+            saveArticlesToDatabaseTimer.recordSince(start);
+        }
+        // Indexed after the batch is stored, and outside its timer
+        for (int i = 0; i < articles.size(); i++) {
+            if (articleIds.get(i) != -1) {
+                ArticleSearch.add(urlKeys[i], articles.get(i));
+                ArticleRecommender.add(articleIds.get(i), articles.get(i));
+            }
+        }
+        return articleIds;
+    }
+
+    /**
+     * Adds a batch of stored articles to a feed, skipping articles already in it.
+     * Nothing is written per subscriber: the articles become unread for everyone whose cursor is behind them.
+     *
+     * @param primaryUrl the primary URL of the feed the articles were found in
+     * @param articleIds the database IDs of the articles
+     */
+    public static void addArticlesToFeed(String primaryUrl, List<Integer> articleIds) {
+        if (articleIds.isEmpty()) {
+            return;
+        }
+
+        String addSql = """
+                INSERT INTO feed_article (feed_id, article_id, published_at)
+                SELECT ?, a.id, a.datetime
+                FROM article a
+                WHERE a.id = ANY(?::int[])
+                ORDER BY a.datetime, a.id
+                ON CONFLICT (feed_id, article_id, published_at) DO NOTHING;
+                """;
+
+        int feedId = FeedCatalog.getIdByLink(primaryUrl);
+        if (feedId == -1) {
+            Log.warn("DB", "Articles of an unknown feed are not added", "feed", primaryUrl);
+            return;
         }
 
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement addStmt = conn.prepareStatement(addSql)) {
+
+            addStmt.setInt(1, feedId);
+            addStmt.setArray(2, conn.createArrayOf("int4", articleIds.toArray()));
+            addStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("addArticlesToFeed");
+            Log.error("DB", "SQL error in addArticlesToFeed", e);
+        } finally {
+            addArticlesToFeedTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Records the URL keys of near-duplicate stories that were mapped to already stored articles,
+     * so that later lookups by link (see {@link #linkArticlesToFeed}) find the stored article.
+     *
+     * @param links the links of the duplicates
+     * @param articleIds the database IDs of the stored articles, in the order of the links
+     */
+    public static void saveArticleAliases(List<String> links, List<Integer> articleIds) {
+        if (links.isEmpty()) {
+            return;
+        }
+
+        String aliasSql = """
+                INSERT INTO article_alias (url_key, article_id)
+                SELECT * FROM unnest(?::text[], ?::int[])
+                ON CONFLICT (url_key) DO NOTHING;
+                """;
+
+        String[] urlKeys = links.stream().map(UrlCanonicalizer::key).toArray(String[]::new);
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement aliasStmt = conn.prepareStatement(aliasSql)) {
+
+            aliasStmt.setArray(1, conn.createArrayOf("text", urlKeys));
+            aliasStmt.setArray(2, conn.createArrayOf("int4", articleIds.toArray()));
+            aliasStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("saveArticleAliases");
+            Log.error("DB", "SQL error in saveArticleAliases", e);
+        } finally {
+            saveArticleAliasesTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns the segments (language and age group) of the subscribers of a feed, for rendering its new articles
+     * ahead of time. Subscribers who have not chosen a language yet are left out.
+     *
+     * @param feedId The ID of the feed in {@code science_daily_feeds}.
+     * @return The distinct segments of the subscribers, empty on failure.
+     */
+    public static List<ArticleVariants.Segment> getSubscriberSegments(int feedId) {
+        String segmentsSql = """
+                SELECT DISTINCT u.language, COALESCE(u.age, ?) AS age
+                FROM user_subscription s
+                JOIN bot_user u ON u.telegram_id = s.telegram_id
+                WHERE s.feed_id = ? AND u.language IS NOT NULL;
+                """;
+
+        List<ArticleVariants.Segment> segments = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement segmentsStmt = conn.prepareStatement(segmentsSql)) {
+
+            segmentsStmt.setString(1, ArticleVariants.NO_AGE_GROUP);
+            segmentsStmt.setInt(2, feedId);
+            try (ResultSet rs = segmentsStmt.executeQuery()) {
+                while (rs.next()) {
+                    segments.add(new ArticleVariants.Segment(rs.getString("language"), rs.getString("age")));
+                }
+            }
+        } catch (SQLException e) {
+            countError("getSubscriberSegments");
+            Log.error("DB", "SQL error in getSubscriberSegments", e);
+        } finally {
+            getSubscriberSegmentsTimer.recordSince(start);
+        }
+        return segments;
+    }
+
+    /**
+     * Stores translations of article fields in one round trip. A translation already stored, e.g. by a reader
+     * who asked for it at the same time, is kept.
+     *
+     * @param language The language of the translations, as stored in {@code bot_user.language}.
+     * @param articleIds The IDs of the articles.
+     * @param fields The translated fields ({@link ArticleTranslator.Field#getColumn()}), in the order of
+     *               {@code articleIds}.
+     * @param texts The translated texts, in the order of {@code articleIds}.
+     */
+    public static void saveTranslations(String language, List<Integer> articleIds, List<String> fields, List<String> texts) {
+        if (articleIds.isEmpty()) {
+            return;
+        }
+
+        String translationSql = """
+                INSERT INTO article_translation (article_id, field, lang, text)
+                SELECT t.article_id, t.field, ?, t.text FROM unnest(?::int[], ?::text[], ?::text[]) AS t(article_id, field, text)
+                ON CONFLICT (article_id, field, lang) DO NOTHING;
+                """;
+
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement translationStmt = conn.prepareStatement(translationSql)) {
+
+            translationStmt.setString(1, language);
+            translationStmt.setArray(2, conn.createArrayOf("int4", articleIds.toArray()));
+            translationStmt.setArray(3, conn.createArrayOf("text", fields.toArray()));
+            translationStmt.setArray(4, conn.createArrayOf("text", texts.toArray()));
+            translationStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("saveTranslations");
+            Log.error("DB", "SQL error in saveTranslations", e);
+        } finally {
+            saveTranslationsTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Looks up the cached translations of an article into a language.
+     *
+     * @param articleId The ID of the article.
+     * @param language The language, as stored in {@code bot_user.language}.
+     * @param fields The fields to look up.
+     * @return The translated fields found, or null if the lookup failed.
+     */
+    public static Map<ArticleTranslator.Field, String> getArticleTranslations(int articleId, String language,
+                                                                              List<ArticleTranslator.Field> fields) {
+        String translationSql = """
+                SELECT field, text
+                FROM article_translation
+                WHERE article_id = ? AND lang = ? AND field = ANY(?);
+                """;
+
+        String[] columns = fields.stream().map(ArticleTranslator.Field::getColumn).toArray(String[]::new);
+        Map<ArticleTranslator.Field, String> texts = null;
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement translationStmt = conn.prepareStatement(translationSql)) {
+
+            translationStmt.setInt(1, articleId);
+            translationStmt.setString(2, language);
+            translationStmt.setArray(3, conn.createArrayOf("text", columns));
+            try (ResultSet rs = translationStmt.executeQuery()) {
+                texts = new EnumMap<>(ArticleTranslator.Field.class);
+                while (rs.next()) {
+                    texts.put(ArticleTranslator.Field.fromColumn(rs.getString("field")), rs.getString("text"));
+                }
+            }
+        } catch (SQLException e) {
+            countError("getArticleTranslations");
+            Log.error("DB", "SQL error in getArticleTranslations", e);
+        } finally {
+            getArticleTranslationsTimer.recordSince(start);
+        }
+        return texts;
+    }
+
+    /**
+     * Stores rendered views of articles in one round trip. A variant already stored, e.g. by a reader who asked
+     * for it at the same time, is kept.
+     *
+     * @param articleIds The IDs of the articles.
+     * @param languages The languages of the variants, in the order of {@code articleIds}.
+     * @param ageGroups The age groups of the variants, in the order of {@code articleIds}.
+     * @param projections The {@link ArticleProjection} names of the variants, in the order of {@code articleIds}.
+     * @param texts The rendered views, in the order of {@code articleIds}.
+     */
+    public static void saveArticleVariants(List<Integer> articleIds, List<String> languages, List<String> ageGroups,
+                                           List<String> projections, List<String> texts) {
+        if (articleIds.isEmpty()) {
+            return;
+        }
+
+        String variantSql = """
+                INSERT INTO article_variant (article_id, lang, age_group, projection, text)
+                SELECT * FROM unnest(?::int[], ?::text[], ?::text[], ?::text[], ?::text[])
+                ON CONFLICT (article_id, lang, age_group, projection) DO NOTHING;
+                """;
+
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement variantStmt = conn.prepareStatement(variantSql)) {
+
+            variantStmt.setArray(1, conn.createArrayOf("int4", articleIds.toArray()));
+            variantStmt.setArray(2, conn.createArrayOf("text", languages.toArray()));
+            variantStmt.setArray(3, conn.createArrayOf("text", ageGroups.toArray()));
+            variantStmt.setArray(4, conn.createArrayOf("text", projections.toArray()));
+            variantStmt.setArray(5, conn.createArrayOf("text", texts.toArray()));
+            variantStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("saveArticleVariants");
+            Log.error("DB", "SQL error in saveArticleVariants", e);
+        } finally {
+            saveArticleVariantsTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Looks up the segment of a user and the stored view of an article for it, in one query.
+     *
+     * @param telegramId The telegram user ID.
+     * @param articleId The ID of the article.
+     * @param projection The view.
+     * @return The segment of the user and the variant, whose text is null if it is not stored; null if the user
+     *         is unknown or the lookup failed.
+     */
+    public static ArticleVariants.Lookup getArticleVariant(long telegramId, int articleId, ArticleProjection projection) {
+        String variantSql = """
+                SELECT COALESCE(u.language, ?) AS language, COALESCE(u.age, ?) AS age, v.text
+                FROM bot_user u
+                LEFT JOIN article_variant v
+                    ON v.article_id = ? AND v.lang = COALESCE(u.language, ?) AND v.age_group = COALESCE(u.age, ?)
+                    AND v.projection = ?
+                WHERE u.telegram_id = ?;
+                """;
+
+        ArticleVariants.Lookup lookup = null;
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement variantStmt = conn.prepareStatement(variantSql)) {
+
+            variantStmt.setString(1, ArticleTranslator.SOURCE_LANGUAGE);
+            variantStmt.setString(2, ArticleVariants.NO_AGE_GROUP);
+            variantStmt.setInt(3, articleId);
+            variantStmt.setString(4, ArticleTranslator.SOURCE_LANGUAGE);
+            variantStmt.setString(5, ArticleVariants.NO_AGE_GROUP);
+            variantStmt.setString(6, projection.name());
+            variantStmt.setLong(7, telegramId);
+            try (ResultSet rs = variantStmt.executeQuery()) {
+                if (rs.next()) {
+                    lookup = new ArticleVariants.Lookup(rs.getString("language"), rs.getString("age"),
+                            rs.getString("text"));
+                }
+            }
+        } catch (SQLException e) {
+            countError("getArticleVariant");
+            Log.error("DB", "SQL error in getArticleVariant", e);
+        } finally {
+            getArticleVariantTimer.recordSince(start);
+        }
+        return lookup;
+    }
+
+    /**
+     * Adds already stored articles to a feed by their links, skipping articles already in it.
+     * Used on catch-up crawls for articles listed by the feed that were stored through another feed.
+     *
+     * @param primaryUrl the primary URL of the feed
+     * @param links the links of the articles to add, including links of near-duplicates stored as aliases
+     */
+    public static void linkArticlesToFeed(String primaryUrl, List<String> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+
+        String linkSql = """
+                INSERT INTO feed_article (feed_id, article_id, published_at)
+                SELECT ?, a.id, a.datetime
+                FROM article a
+                WHERE a.id IN (
+                    SELECT id FROM article WHERE url_key = ANY(?)
+                    UNION
+                    SELECT article_id FROM article_alias WHERE url_key = ANY(?)
+                )
+                ORDER BY a.datetime, a.id
+                ON CONFLICT (feed_id, article_id, published_at) DO NOTHING;
+                """;
+
+        int feedId = FeedCatalog.getIdByLink(primaryUrl);
+        if (feedId == -1) {
+            Log.warn("DB", "Articles of an unknown feed are not linked", "feed", primaryUrl);
+            return;
+        }
+
+        String[] urlKeys = links.stream().map(UrlCanonicalizer::key).toArray(String[]::new);
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement linkStmt = conn.prepareStatement(linkSql)) {
+
+            linkStmt.setInt(1, feedId);
+            linkStmt.setArray(2, conn.createArrayOf("text", urlKeys));
+            linkStmt.setArray(3, conn.createArrayOf("text", urlKeys));
+            linkStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("linkArticlesToFeed");
+            Log.error("DB", "SQL error in linkArticlesToFeed", e);
+        } finally {
+            linkArticlesToFeedTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Tells whether a feed has any stored articles, i.e. whether new subscribers can be caught up from
+     * {@code feed_article} or the feed has to be crawled first.
+     *
+     * @param primaryUrl the primary URL of the feed
+     * @return true if at least one article of the feed is stored (false also if the check failed)
+     */
+    public static boolean hasFeedArticles(String primaryUrl) {
+        int feedId = FeedCatalog.getIdByLink(primaryUrl);
+        if (feedId == -1) {
+            return false;
+        }
+
+        boolean hasArticles = false;
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement existsStmt = conn.prepareStatement(
+                     "SELECT EXISTS (SELECT 1 FROM feed_article WHERE feed_id = ?);")) {
+
+            existsStmt.setInt(1, feedId);
+            try (ResultSet rs = existsStmt.executeQuery()) {
+                hasArticles = rs.next() && rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            countError("hasFeedArticles");
+            Log.error("DB", "SQL error in hasFeedArticles", e);
+        } finally {
+            hasFeedArticlesTimer.recordSince(start);
+        }
+        return hasArticles;
     }
 
     /**
      * Retrieves the first unread article for a given user, along with the total number of unread articles.
+     * Only the columns of the given projection are read; the other fields of the article are null.
      *
      * @param telegramId The telegram ID of the user for whom to retrieve the article.
-     * @return A map containing details of the first unread article and the count of unread articles.
+     * @param projection The fields the caller needs.
+     * @return The first unread article (null if there is none) and the count of unread articles.
      */
-    public static Map<String, String> getFirstUnreadArticleForUser(long telegramId) {
-        // SQL to find the first unread article for the given user, selecting all columns
+    public static UnreadArticle getFirstUnreadArticleForUser(long telegramId, ArticleProjection projection) {
+        // SQL to find the first unread article for the given user, selecting the projection's columns
         String fetchSql = """
-                SELECT a.*
-                FROM article a
-                JOIN user_article_status uas ON a.id = uas.article_id
-                WHERE uas.telegram_id = ? AND uas.read_status = FALSE
-                ORDER BY a.datetime ASC
+                SELECT %s
+                FROM user_subscription s
+                JOIN feed_article fa ON fa.feed_id = s.feed_id
+                LEFT JOIN user_feed_cursor c ON c.telegram_id = s.telegram_id AND c.feed_id = fa.feed_id
+                JOIN article a ON a.id = fa.article_id
+                JOIN bot_user u ON u.telegram_id = s.telegram_id
+                %s
+                WHERE s.telegram_id = ? AND %s AND %s
+                ORDER BY fa.published_at ASC, fa.article_id ASC
                 LIMIT 1;
-                """;
+                """.formatted(projection.getColumns(),
+                projection.readsBody() ? "LEFT JOIN article_body b ON b.article_id = a.id" : "", UNREAD_CONDITION,
+                TOPIC_FILTER_CONDITION);
 
         // SQL to count the total number of unread articles for the user
         String countSql = """
-                SELECT COUNT(*)
-                FROM user_article_status
-                WHERE telegram_id = ? AND read_status = FALSE;
-                """;
-
-        // Initialize an empty map to hold the article details
-        Map<String, String> articleDetails = new HashMap<>();
-
+                SELECT COUNT(DISTINCT fa.article_id)
+                FROM user_subscription s
+                JOIN feed_article fa ON fa.feed_id = s.feed_id
+                LEFT JOIN user_feed_cursor c ON c.telegram_id = s.telegram_id AND c.feed_id = fa.feed_id
+                JOIN article a ON a.id = fa.article_id
+                JOIN bot_user u ON u.telegram_id = s.telegram_id
+                WHERE s.telegram_id = ? AND %s AND %s;
+                """.formatted(UNREAD_CONDITION, TOPIC_FILTER_CONDITION);
+
+        Article article = null;
+        int unreadCount = 0;
+
+        long start = System.nanoTime();
         try (Connection conn = connect();
              PreparedStatement fetchStmt = conn.prepareStatement(fetchSql);
              PreparedStatement countStmt = conn.prepareStatement(countSql)) {
@@ -537,108 +1266,319 @@ public class DB {
             try (ResultSet rs = fetchStmt.executeQuery()) {
                 // Check if an unread article exists
                 if (rs.next()) {
-                    // Extract article details and put them in the map
-                    articleDetails.put("id", String.valueOf(rs.getLong("id")));
-                    articleDetails.put("title", rs.getString("title"));
-                    articleDetails.put("summary", rs.getString("summary"));
-                    articleDetails.put("link", rs.getString("link"));
-                    articleDetails.put("datetime", rs.getString("datetime"));
-                    articleDetails.put("full_story", rs.getString("full_story"));
-                    articleDetails.put("source", rs.getString("source"));
-                    articleDetails.put("related_topics", rs.getString("related_topics"));
-                    articleDetails.put("related_terms", rs.getString("related_terms"));
-                    articleDetails.put("journal_reference", rs.getString("journal_reference"));
-                    articleDetails.put("cite_page_mla", rs.getString("cite_page_mla"));
-                    articleDetails.put("cite_page_apa", rs.getString("cite_page_apa"));
-                    articleDetails.put("cite_page_chicago", rs.getString("cite_page_chicago"));
-                    articleDetails.put("related_stories_links", rs.getString("related_stories_links"));
-                } else {
-                    // No unread articles found, put a placeholder message
-                    articleDetails.put("message", "No unread articles available.");
+                    article = readArticle(rs, projection);
                 }
             }
 
             // Execute the count query
             try (ResultSet rs = countStmt.executeQuery()) {
                 if (rs.next()) {
-                    int unreadCount = rs.getInt(1); // Get the count of unread articles
-                    articleDetails.put("unread_number", String.valueOf(unreadCount));
+                    unreadCount = rs.getInt(1); // Get the count of unread articles
                 }
             }
         } catch (SQLException e) {
-            System.err.println("SQL error occurred: " + e.getMessage());
-            articleDetails.put("error", "An error occurred while fetching the article.");
+            countError("getFirstUnreadArticleForUser");
+            Log.error("DB", "SQL error in getFirstUnreadArticleForUser", e);
+        } finally {
+            getFirstUnreadArticleForUserTimer.recordSince(start);
         }
 
-        return articleDetails;
+        return new UnreadArticle(article, unreadCount);
     }
 
     /**
-     * Marks the first unread article as read for a specific user.
-     * This method updates the read status of the user's first unread article in the database.
+     * Reads an article by its ID.
      *
-     * @param telegramId The telegram ID of the user for whom the article should be marked as read.
+     * @param articleId The ID of the article.
+     * @param projection The columns to read.
+     * @return The article, or null if it does not exist or the query failed.
      */
-    public static void markFirstUnreadArticleAsRead(long telegramId) {
-        // SQL to find the first unread article for the given user
+    public static Article getArticleById(int articleId, ArticleProjection projection) {
         String fetchSql = """
-                SELECT a.id
+                SELECT %s
                 FROM article a
-                JOIN user_article_status uas ON a.id = uas.article_id
-                WHERE uas.telegram_id = ? AND uas.read_status = FALSE
-                ORDER BY a.datetime ASC
-                LIMIT 1;
-                """;
+                %s
+                WHERE a.id = ?;
+                """.formatted(projection.getColumns(),
+                projection.readsBody() ? "LEFT JOIN article_body b ON b.article_id = a.id" : "");
 
-        // SQL to update the read status of the article
-        String updateSql = """
-                UPDATE user_article_status
-                SET read_status = TRUE
-                WHERE telegram_id = ? AND article_id = ?;
-                """;
+        Article article = null;
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement fetchStmt = conn.prepareStatement(fetchSql)) {
+
+            fetchStmt.setInt(1, articleId);
+            try (ResultSet rs = fetchStmt.executeQuery()) {
+                if (rs.next()) {
+                    article = readArticle(rs, projection);
+                }
+            }
+        } catch (SQLException e) {
+            countError("getArticleById");
+            Log.error("DB", "SQL error in getArticleById", e);
+        } finally {
+            getArticleByIdTimer.recordSince(start);
+        }
+        return article;
+    }
+
+    /**
+     * Reads the headlines of articles by their URL keys, e.g. the hits of a full-text search.
+     *
+     * @param urlKeys The URL keys of the articles.
+     * @return The articles read with {@link ArticleProjection#HEADLINE} by URL key; articles that are not stored
+     *         are missing. Empty if the query failed.
+     */
+    public static Map<String, Article> getArticlesByUrlKeys(List<String> urlKeys) {
+        String fetchSql = """
+                SELECT %s, a.url_key
+                FROM article a
+                WHERE a.url_key = ANY(?);
+                """.formatted(ArticleProjection.HEADLINE.getColumns());
 
+        Map<String, Article> articles = new HashMap<>();
+        if (urlKeys.isEmpty()) {
+            return articles;
+        }
+
+        long start = System.nanoTime();
         try (Connection conn = connect();
              PreparedStatement fetchStmt = conn.prepareStatement(fetchSql)) {
 
-            // Set the telegramId parameter for fetching
-            fetchStmt.setLong(1, telegramId);
+            fetchStmt.setArray(1, conn.createArrayOf("text", urlKeys.toArray()));
+            try (ResultSet rs = fetchStmt.executeQuery()) {
+                while (rs.next()) {
+                    articles.put(rs.getString("url_key"), readArticle(rs, ArticleProjection.HEADLINE));
+                }
+            }
+        } catch (SQLException e) {
+            countError("getArticlesByUrlKeys");
+            Log.error("DB", "SQL error in getArticlesByUrlKeys", e);
+            articles.clear();
+        } finally {
+            getArticlesByUrlKeysTimer.recordSince(start);
+        }
+        return articles;
+    }
+
+    /**
+     * Reads the headlines of articles by their IDs, e.g. the related articles of an article.
+     *
+     * @param articleIds The IDs of the articles.
+     * @return The articles read with {@link ArticleProjection#HEADLINE} by ID; articles that are not stored
+     *         (e.g. removed by retention) are missing. Empty if the query failed.
+     */
+    public static Map<Integer, Article> getArticlesByIds(List<Integer> articleIds) {
+        String fetchSql = """
+                SELECT %s
+                FROM article a
+                WHERE a.id = ANY(?::int[]);
+                """.formatted(ArticleProjection.HEADLINE.getColumns());
+
+        Map<Integer, Article> articles = new HashMap<>();
+        if (articleIds.isEmpty()) {
+            return articles;
+        }
 
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement fetchStmt = conn.prepareStatement(fetchSql)) {
+
+            fetchStmt.setArray(1, conn.createArrayOf("int4", articleIds.toArray()));
             try (ResultSet rs = fetchStmt.executeQuery()) {
-                // Check if an unread article exists
-                if (rs.next()) {
-                    long articleId = rs.getLong("id");
+                while (rs.next()) {
+                    Article article = readArticle(rs, ArticleProjection.HEADLINE);
+                    articles.put((int) article.id(), article);
+                }
+            }
+        } catch (SQLException e) {
+            countError("getArticlesByIds");
+            Log.error("DB", "SQL error in getArticlesByIds", e);
+            articles.clear();
+        } finally {
+            getArticlesByIdsTimer.recordSince(start);
+        }
+        return articles;
+    }
 
-                    // Proceed to mark the article as read
-                    try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                        // Set parameters for updating
-                        updateStmt.setLong(1, telegramId);
-                        updateStmt.setLong(2, articleId);
+    /**
+     * Reads an article from the current row of a result set selecting the columns of a projection.
+     *
+     * @param rs The result set positioned on an article row.
+     * @param projection The projection the row was selected with.
+     * @return The article, with null in the fields the projection does not read.
+     * @throws SQLException if a column cannot be read.
+     */
+    private static Article readArticle(ResultSet rs, ArticleProjection projection) throws SQLException {
+        if (projection == ArticleProjection.HEADLINE) {
+            return new Article(rs.getLong("id"), rs.getString("title"), rs.getString("summary"), rs.getString("link"),
+                    rs.getObject("datetime", OffsetDateTime.class), null, null, null, null, null, null, null, null, null);
+        }
+
+        byte[] content = rs.getBytes("content");
+        ArticleBody body = content == null ? new ArticleBody("", "", "", "", "", "") : ArticleBody.decompress(content);
+        int[] topicIds = Arrays.stream((Integer[]) rs.getArray("topic_ids").getArray()).mapToInt(Integer::intValue).toArray();
+        return new Article(
+                rs.getLong("id"),
+                rs.getString("title"),
+                rs.getString("summary"),
+                rs.getString("link"),
+                rs.getObject("datetime", OffsetDateTime.class),
+                body.fullStory(),
+                rs.getString("source"),
+                TopicDictionary.decode(topicIds, TopicDictionary.Kind.TOPIC),
+                TopicDictionary.decode(topicIds, TopicDictionary.Kind.TERM),
+                body.journalReference(),
+                body.citePageMla(),
+                body.citePageApa(),
+                body.citePageChicago(),
+                body.relatedStoriesLinks());
+    }
+
+    /**
+     * Counts the unread articles of a user, without reading any article.
+     *
+     * @param telegramId The telegram ID of the user.
+     * @return The number of unread articles (-1 if the count failed).
+     */
+    public static int countUnreadArticles(long telegramId) {
+        String countSql = """
+                SELECT COUNT(DISTINCT fa.article_id)
+                FROM user_subscription s
+                JOIN feed_article fa ON fa.feed_id = s.feed_id
+                LEFT JOIN user_feed_cursor c ON c.telegram_id = s.telegram_id AND c.feed_id = fa.feed_id
+                JOIN article a ON a.id = fa.article_id
+                JOIN bot_user u ON u.telegram_id = s.telegram_id
+                WHERE s.telegram_id = ? AND %s AND %s;
+                """.formatted(UNREAD_CONDITION, TOPIC_FILTER_CONDITION);
+
+        int unreadCount = -1;
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement countStmt = conn.prepareStatement(countSql)) {
+
+            countStmt.setLong(1, telegramId);
+            try (ResultSet rs = countStmt.executeQuery()) {
+                if (rs.next()) {
+                    unreadCount = rs.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            countError("countUnreadArticles");
+            Log.error("DB", "SQL error in countUnreadArticles", e);
+        } finally {
+            countUnreadArticlesTimer.recordSince(start);
+        }
+        return unreadCount;
+    }
 
-                        updateStmt.executeUpdate();
-                        // Article is marked as read, no return value needed
+    /**
+     * Marks the first unread article as read for a specific user, in every subscribed feed that lists it.
+     * If it is the next article of a feed after the user's cursor, the cursor moves past it (and past the articles
+     * read out of order that follow); otherwise the article is added to the cursor's out-of-order reads.
+     *
+     * @param telegramId The telegram ID of the user for whom the article should be marked as read.
+     */
+    public static void markFirstUnreadArticleAsRead(long telegramId) {
+        // The first unread article, in the order of getFirstUnreadArticleForUser, in each subscribed feed that
+        // lists it, with the user's cursor on the feed
+        String firstSql = """
+                WITH first AS (
+                    SELECT fa.article_id
+                FROM user_subscription s
+                    JOIN feed_article fa ON fa.feed_id = s.feed_id
+                    LEFT JOIN user_feed_cursor c ON c.telegram_id = s.telegram_id AND c.feed_id = fa.feed_id
+                    JOIN article a ON a.id = fa.article_id
+                    JOIN bot_user u ON u.telegram_id = s.telegram_id
+                    WHERE s.telegram_id = ? AND %s AND %s
+                    ORDER BY fa.published_at ASC, fa.article_id ASC
+                    LIMIT 1
+                )
+                SELECT fa.feed_id, fa.article_id, COALESCE(c.read_seq, 0) AS read_seq, c.read_ids
+                FROM user_subscription s
+                JOIN feed_article fa ON fa.feed_id = s.feed_id
+                LEFT JOIN user_feed_cursor c ON c.telegram_id = s.telegram_id AND c.feed_id = fa.feed_id
+                WHERE s.telegram_id = ? AND fa.article_id = (SELECT article_id FROM first) AND %s;
+                """.formatted(UNREAD_CONDITION, TOPIC_FILTER_CONDITION, UNREAD_CONDITION);
+
+        // The cursor moves to just before the first article after it that is still unread and passes the user's
+        // topic filter (or to the end of the feed), and keeps the articles read out of order beyond its new position.
+        // Filtered articles it moves past stay read if the filter changes.
+        String moveSql = """
+                INSERT INTO user_feed_cursor (telegram_id, feed_id, read_seq, read_ids)
+                SELECT ?, ?, next.read_seq, ARRAY(
+                    SELECT fa.article_id FROM feed_article fa
+                    WHERE fa.feed_id = ? AND fa.seq > next.read_seq AND fa.article_id = ANY(?::int[]))
+                FROM (
+                    SELECT COALESCE(MIN(fa.seq) FILTER (WHERE fa.article_id <> ALL(?::int[]) AND %s) - 1, MAX(fa.seq), ?) AS read_seq
+                    FROM feed_article fa
+                    JOIN article a ON a.id = fa.article_id
+                    JOIN bot_user u ON u.telegram_id = ?
+                    WHERE fa.feed_id = ? AND fa.seq > ?
+                ) next
+                ON CONFLICT (telegram_id, feed_id) DO UPDATE
+                SET read_seq = EXCLUDED.read_seq, read_ids = EXCLUDED.read_ids;
+                """.formatted(TOPIC_FILTER_CONDITION);
+
+        long start = System.nanoTime();
+        try (Connection conn = connect();
+             PreparedStatement firstStmt = conn.prepareStatement(firstSql);
+             PreparedStatement moveStmt = conn.prepareStatement(moveSql)) {
+
+            firstStmt.setLong(1, telegramId);
+            firstStmt.setLong(2, telegramId);
+            try (ResultSet rs = firstStmt.executeQuery()) {
+                // If no unread articles are found, there is nothing to mark
+                while (rs.next()) {
+                    int feedId = rs.getInt("feed_id");
+                    long readSeq = rs.getLong("read_seq");
+                    List<Integer> readIds = new ArrayList<>();
+                    Array previousReadIds = rs.getArray("read_ids");
+                    if (previousReadIds != null) {
+                        readIds.addAll(Arrays.asList((Integer[]) previousReadIds.getArray()));
                     }
+                    readIds.add(rs.getInt("article_id"));
+
+                    Array readIdsArray = conn.createArrayOf("int4", readIds.toArray());
+                    moveStmt.setLong(1, telegramId);
+                    moveStmt.setInt(2, feedId);
+                    moveStmt.setInt(3, feedId);
+                    moveStmt.setArray(4, readIdsArray);
+                    moveStmt.setArray(5, readIdsArray);
+                    moveStmt.setLong(6, readSeq);
+                    moveStmt.setLong(7, telegramId);
+                    moveStmt.setInt(8, feedId);
+                    moveStmt.setLong(9, readSeq);
+                    moveStmt.addBatch();
                 }
-                // If no unread articles are found, the method simply completes without action
             }
+            moveStmt.executeBatch();
         } catch (SQLException e) {
-            System.err.println("SQL error occurred: " + e.getMessage());
+            countError("markFirstUnreadArticleAsRead");
+            Log.error("DB", "SQL error in markFirstUnreadArticleAsRead", e);
+        } finally {
+            markFirstUnreadArticleAsReadTimer.recordSince(start);
         }
     }
 
     /**
      * Marks all unread articles as read for a specific user.
-     * This method updates the read status of all the user's unread articles in the database.
+     * Only the user's cursors are updated: each moves to the last article of its feed.
      *
      * @param telegramId The telegram ID of the user for whom all unread articles should be marked as read.
      */
     public static void markAllUnreadArticlesAsRead(long telegramId) {
-        // SQL to update the read status of all unread articles for the user
         String updateSql = """
-                UPDATE user_article_status
-                SET read_status = TRUE
-                WHERE telegram_id = ? AND read_status = FALSE;
+                INSERT INTO user_feed_cursor (telegram_id, feed_id, read_seq, read_ids)
+                SELECT s.telegram_id, s.feed_id,
+                       COALESCE((SELECT MAX(fa.seq) FROM feed_article fa WHERE fa.feed_id = s.feed_id), 0), '{}'
+                FROM user_subscription s
+                WHERE s.telegram_id = ?
+                ON CONFLICT (telegram_id, feed_id) DO UPDATE
+                SET read_seq = EXCLUDED.read_seq, read_ids = '{}';
                 """;
 
+        long start = System.nanoTime();
         try (Connection conn = connect();
              PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
 
@@ -649,23 +1589,26 @@ public class DB {
             updateStmt.executeUpdate();
             // All unread articles for the user are now marked as read
         } catch (SQLException e) {
-            System.err.println("SQL error occurred: " + e.getMessage());
+            countError("markAllUnreadArticlesAsRead");
+            Log.error("DB", "SQL error in markAllUnreadArticlesAsRead", e);
+        } finally {
+            markAllUnreadArticlesAsReadTimer.recordSince(start);
         }
     }
 
     /**
-     * Deletes all articles associated with a specific user.
-     * This method removes all user-article associations for a given user from the database.
+     * Resets the read state of a user.
+     * The user's cursors are deleted, so all articles of the subscribed feeds are unread again.
      *
      * @param telegramId The telegram ID of the user for whom all articles should be deleted.
      */
     public static void deleteAllUserArticles(long telegramId) {
-        // SQL to delete all articles for the user
         String deleteSql = """
-                DELETE FROM user_article_status
+                DELETE FROM user_feed_cursor
                 WHERE telegram_id = ?;
                 """;
 
+        long start = System.nanoTime();
         try (Connection conn = connect();
              PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
 
@@ -674,9 +1617,136 @@ public class DB {
 
             // Execute the delete
             deleteStmt.executeUpdate();
-            // All articles for the user are now deleted
+            NotificationEngine.markNewArticles(telegramId);
+        } catch (SQLException e) {
+            countError("deleteAllUserArticles");
+            Log.error("DB", "SQL error in deleteAllUserArticles", e);
+        } finally {
+            deleteAllUserArticlesTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Creates the daily partitions of {@code feed_article} for a range of days (UTC) that do not exist yet.
+     *
+     * @param firstDay the first day
+     * @param days the number of days
+     */
+    public static void createFeedArticlePartitions(LocalDate firstDay, int days) {
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < days; i++) {
+                LocalDate day = firstDay.plusDays(i);
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + feedArticlePartitionName(day)
+                        + " PARTITION OF feed_article FOR VALUES FROM ('" + day + " 00:00:00+00') TO ('"
+                        + day.plusDays(1) + " 00:00:00+00');");
+            }
         } catch (SQLException e) {
-            System.err.println("SQL error occurred: " + e.getMessage());
+            countError("createFeedArticlePartitions");
+            Log.error("DB", "SQL error in createFeedArticlePartitions", e);
         }
     }
+
+    /**
+     * Drops the daily partitions of {@code feed_article} for the days before a cutoff day, and deletes the
+     * rows of those days from the default partition.
+     *
+     * @param cutoffDay the first day to keep (UTC)
+     * @return the number of dropped partitions
+     */
+    public static int dropFeedArticlePartitionsBefore(LocalDate cutoffDay) {
+        String listSql = """
+                SELECT c.relname
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = 'feed_article';
+                """;
+
+        int dropped = 0;
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement();
+             PreparedStatement deleteDefaultStmt = conn.prepareStatement(
+                     "DELETE FROM feed_article_default WHERE published_at < ?;")) {
+
+            List<String> oldPartitions = new ArrayList<>();
+            String cutoffName = feedArticlePartitionName(cutoffDay);
+            try (ResultSet rs = stmt.executeQuery(listSql)) {
+                while (rs.next()) {
+                    String name = rs.getString("relname");
+                    // Daily partition names sort like their days
+                    if (name.startsWith(FEED_ARTICLE_PARTITION_PREFIX) && name.length() == cutoffName.length()
+                            && name.compareTo(cutoffName) < 0) {
+                        oldPartitions.add(name);
+                    }
+                }
+            }
+            for (String name : oldPartitions) {
+                stmt.execute("DROP TABLE IF EXISTS " + name + ";");
+                dropped++;
+            }
+
+            deleteDefaultStmt.setObject(1, cutoffDay.atStartOfDay().atOffset(ZoneOffset.UTC));
+            deleteDefaultStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("dropFeedArticlePartitionsBefore");
+            Log.error("DB", "SQL error in dropFeedArticlePartitionsBefore", e);
+        }
+        return dropped;
+    }
+
+    /**
+     * Deletes the articles stored before a cutoff day, with their bodies and aliases, and removes them from the
+     * cursors' out-of-order reads, the {@link ArticleSearch} index and the {@link ArticleRecommender}.
+     * Their {@code feed_article} rows must have been dropped before.
+     *
+     * @param cutoffDay the first day to keep (UTC)
+     * @return the number of deleted articles
+     */
+    public static int deleteArticlesBefore(LocalDate cutoffDay) {
+        String deleteSql = """
+                WITH old AS (SELECT id FROM article WHERE datetime < ?),
+                     bodies AS (DELETE FROM article_body WHERE article_id IN (SELECT id FROM old)),
+                     aliases AS (DELETE FROM article_alias WHERE article_id IN (SELECT id FROM old)),
+                     translations AS (DELETE FROM article_translation WHERE article_id IN (SELECT id FROM old)),
+                     variants AS (DELETE FROM article_variant WHERE article_id IN (SELECT id FROM old))
+                DELETE FROM article WHERE id IN (SELECT id FROM old) RETURNING id, url_key;
+                """;
+
+        String pruneSql = """
+                UPDATE user_feed_cursor c
+                SET read_ids = ARRAY(SELECT id FROM unnest(c.read_ids) AS id WHERE id IN (SELECT a.id FROM article a))
+                WHERE EXISTS (SELECT 1 FROM unnest(c.read_ids) AS id WHERE id NOT IN (SELECT a.id FROM article a));
+                """;
+
+        int deleted = 0;
+        List<Integer> deletedIds = new ArrayList<>();
+        List<String> deletedUrlKeys = new ArrayList<>();
+        try (Connection conn = connect();
+             PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
+             PreparedStatement pruneStmt = conn.prepareStatement(pruneSql)) {
+
+            deleteStmt.setObject(1, cutoffDay.atStartOfDay().atOffset(ZoneOffset.UTC));
+            try (ResultSet rs = deleteStmt.executeQuery()) {
+                while (rs.next()) {
+                    deleted++;
+                    deletedIds.add(rs.getInt("id"));
+                    if (rs.getString("url_key") != null) {
+                        deletedUrlKeys.add(rs.getString("url_key"));
+                    }
+                }
+            }
+            pruneStmt.executeUpdate();
+        } catch (SQLException e) {
+            countError("deleteArticlesBefore");
+            Log.error("DB", "SQL error in deleteArticlesBefore", e);
+        }
+        ArticleSearch.remove(deletedUrlKeys);
+        ArticleRecommender.remove(deletedIds);
+        return deleted;
+    }
+
+    private static String feedArticlePartitionName(LocalDate day) {
+        return FEED_ARTICLE_PARTITION_PREFIX + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
 }
@@ -0,0 +1,244 @@
+package edu.newsbot;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the periodic deliveries of all users with one timer instead of one scheduled task per user.
+ * <p>
+ * Every user is filed under their next delivery boundary (see {@link DeliveryWindow#nextDelivery(Instant)}).
+ * Users sharing a boundary form one batch; a single timer fires at the earliest boundary and delivers the whole
+ * batch as one task on the executor, then files each user under their following boundary. Rescheduling or
+ * removing a user does not search the batches: the user's current boundary is kept with their state and stale
+ * batch entries are skipped when the batch is due.
+ * <p>
+ * The current time comes from a {@link Clock}, so the dispatcher can be driven by a controlled clock: advance
+ * it and call {@link #dispatchDue()}.
+ */
+public class DeliveryDispatcher {
+
+    /**
+     * Delivers to one user; called on the executor thread.
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        /**
+         * Delivers to a user.
+         *
+         * @param userId The telegram user ID.
+         * @param links The links of the feeds the user is subscribed to.
+         * @param firstRun Whether this is the first delivery after the user was (re)scheduled.
+         */
+        void deliver(long userId, List<String> links, boolean firstRun);
+    }
+
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final Delivery delivery;
+
+    // All guarded by this
+    // Users by delivery boundary (epoch milliseconds); may contain users whose boundary has changed since
+    private final TreeMap<Long, Batch> batches = new TreeMap<>();
+    private final LongIntMap slotsByUser = new LongIntMap();
+    private List<?>[] linksBySlot = new List<?>[16];
+    private DeliveryWindow[] windowsBySlot = new DeliveryWindow[16];
+    private long[] boundariesBySlot = new long[16];
+    private boolean[] firstRunBySlot = new boolean[16];
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int usedSlots;
+    private ScheduledFuture<?> timer;
+    private long timerBoundary = Long.MAX_VALUE;
+
+    private static final Metrics.Timer batchTimer =
+            Metrics.timer("newsbot_delivery_batch_seconds", "Run time of a batch of deliveries sharing a window boundary");
+    private static final Metrics.Counter deliveries =
+            Metrics.counter("newsbot_deliveries_total", "Deliveries run by the delivery dispatcher");
+
+    /**
+     * A growable list of the users filed under one boundary.
+     */
+    private static final class Batch {
+        private long[] users = new long[4];
+        private int size;
+
+        private void add(long userId) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+            }
+            users[size++] = userId;
+        }
+    }
+
+    /**
+     * A user due for delivery, taken out of a batch.
+     */
+    private record Due(long userId, List<String> links, boolean firstRun) {
+    }
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param clock The clock giving the current time.
+     * @param executor The executor running the timer and the batches.
+     * @param delivery The delivery to run for each due user.
+     */
+    public DeliveryDispatcher(Clock clock, ScheduledExecutorService executor, Delivery delivery) {
+        this.clock = clock;
+        this.executor = executor;
+        this.delivery = delivery;
+    }
+
+    /**
+     * Schedules the deliveries of a user, replacing any previous schedule. The first delivery is due
+     * immediately (it answers a change of the user's settings), the following ones on the window boundaries.
+     *
+     * @param userId The telegram user ID.
+     * @param links The links of the feeds the user is subscribed to.
+     * @param window The delivery window of the user.
+     */
+    public synchronized void schedule(long userId, List<String> links, DeliveryWindow window) {
+        int slot = slotsByUser.get(userId);
+        if (slot == LongIntMap.NO_VALUE) {
+            slot = allocateSlot();
+            slotsByUser.put(userId, slot);
+        }
+        linksBySlot[slot] = List.copyOf(links);
+        windowsBySlot[slot] = window;
+        firstRunBySlot[slot] = true;
+        file(userId, slot, clock.millis());
+    }
+
+    /**
+     * Removes the deliveries of a user.
+     *
+     * @param userId The telegram user ID.
+     * @return true if the user was scheduled.
+     */
+    public synchronized boolean remove(long userId) {
+        int slot = slotsByUser.remove(userId);
+        if (slot == LongIntMap.NO_VALUE) {
+            return false;
+        }
+        linksBySlot[slot] = null;
+        windowsBySlot[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+        return true;
+    }
+
+    /**
+     * @return The number of scheduled users.
+     */
+    public synchronized int getScheduledUserCount() {
+        return slotsByUser.size();
+    }
+
+    /**
+     * Delivers to every user whose boundary has been reached, in boundary order, and files them under their next
+     * boundary. Called by the timer; may be called directly when the clock is controlled.
+     *
+     * @return The number of deliveries run.
+     */
+    public int dispatchDue() {
+        long start = System.nanoTime();
+        List<Due> due = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.millis();
+            Instant nowInstant = Instant.ofEpochMilli(now);
+            Map.Entry<Long, Batch> entry;
+            while ((entry = batches.firstEntry()) != null && entry.getKey() <= now) {
+                batches.pollFirstEntry();
+                Batch batch = entry.getValue();
+                for (int i = 0; i < batch.size; i++) {
+                    long userId = batch.users[i];
+                    int slot = slotsByUser.get(userId);
+                    // Skip users removed or rescheduled since they were filed here
+                    if (slot == LongIntMap.NO_VALUE || boundariesBySlot[slot] != entry.getKey()) {
+                        continue;
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<String> links = (List<String>) linksBySlot[slot];
+                    due.add(new Due(userId, links, firstRunBySlot[slot]));
+                    firstRunBySlot[slot] = false;
+                    file(userId, slot, windowsBySlot[slot].nextDelivery(nowInstant).toEpochMilli());
+                }
+            }
+        }
+
+        for (Due user : due) {
+            try {
+                delivery.deliver(user.userId(), user.links(), user.firstRun());
+            } catch (RuntimeException e) {
+                // One failing user must not hold up the rest of the batch
+                Log.error("DeliveryDispatcher", "Delivery failed", "user", user.userId(), e);
+            }
+        }
+        deliveries.add(due.size());
+        if (!due.isEmpty()) {
+            batchTimer.recordSince(start);
+        }
+        return due.size();
+    }
+
+    /**
+     * Files a user under a boundary and moves the timer forward if the boundary is the earliest.
+     */
+    private void file(long userId, int slot, long boundary) {
+        boundariesBySlot[slot] = boundary;
+        batches.computeIfAbsent(boundary, key -> new Batch()).add(userId);
+        if (boundary < timerBoundary) {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            armTimer(boundary);
+        }
+    }
+
+    private void armTimer(long boundary) {
+        timerBoundary = boundary;
+        timer = executor.schedule(this::onTimer, Math.max(0, boundary - clock.millis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void onTimer() {
+        synchronized (this) {
+            timerBoundary = Long.MAX_VALUE;
+            timer = null;
+        }
+        dispatchDue();
+        synchronized (this) {
+            // Users filed during the dispatch armed the timer for their boundaries, which may be later than a
+            // batch filed before it
+            if (!batches.isEmpty() && batches.firstKey() < timerBoundary) {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                armTimer(batches.firstKey());
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (usedSlots == linksBySlot.length) {
+            int capacity = usedSlots * 2;
+            linksBySlot = Arrays.copyOf(linksBySlot, capacity);
+            windowsBySlot = Arrays.copyOf(windowsBySlot, capacity);
+            boundariesBySlot = Arrays.copyOf(boundariesBySlot, capacity);
+            firstRunBySlot = Arrays.copyOf(firstRunBySlot, capacity);
+        }
+        return usedSlots++;
+    }
+}
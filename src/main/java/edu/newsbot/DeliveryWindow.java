@@ -0,0 +1,145 @@
+package edu.newsbot;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * When a user may be notified: their time zone, optional quiet hours and either a fixed interval or a digest.
+ * <p>
+ * Deliveries happen on window boundaries shared by many users, so that the {@link DeliveryDispatcher} can
+ * notify them together: multiples of the interval since the epoch, the start of each local hour (hourly digest)
+ * or a local hour of each day (daily digest). A boundary inside the quiet hours is moved to their end.
+ *
+ * @param zone The time zone of the user.
+ * @param quietStart The local hour (0-23) at which the quiet hours start, or -1 if there are none.
+ * @param quietEnd The local hour (0-23) at which the quiet hours end; may be before {@code quietStart} for
+ *                 quiet hours spanning midnight.
+ * @param digest The digest mode.
+ * @param digestHour The local hour (0-23) of the daily digest; ignored unless {@code digest} is DAILY.
+ * @param intervalMinutes The delivery interval in minutes; used when {@code digest} is OFF.
+ */
+public record DeliveryWindow(ZoneId zone, int quietStart, int quietEnd, Digest digest, int digestHour,
+                             int intervalMinutes) {
+
+    /**
+     * How the notifications of a user are grouped.
+     */
+    public enum Digest {
+        /** Every {@code intervalMinutes}. */
+        OFF,
+        /** At the start of every local hour. */
+        HOURLY,
+        /** Once a day at {@code digestHour}. */
+        DAILY
+    }
+
+    /**
+     * Builds a window from the {@code bot_user} settings, falling back to UTC, no quiet hours and no digest for
+     * missing or malformed values.
+     *
+     * @param timezone The IANA time zone ID, e.g. "Europe/Berlin", or null.
+     * @param quietHours The quiet hours as "HH-HH" (local start and end hour), e.g. "22-07", or null/"off".
+     * @param digest "hourly", "daily-HH" (e.g. "daily-08"), or null/"off".
+     * @param intervalMinutes The delivery interval in minutes.
+     * @return The window.
+     */
+    public static DeliveryWindow parse(String timezone, String quietHours, String digest, int intervalMinutes) {
+        ZoneId zone = ZoneOffset.UTC;
+        if (timezone != null) {
+            try {
+                zone = ZoneId.of(timezone);
+            } catch (DateTimeException e) {
+                Log.warn("DeliveryWindow", "Unknown time zone, using UTC", "timezone", timezone);
+            }
+        }
+
+        int quietStart = -1;
+        int quietEnd = -1;
+        if (quietHours != null && quietHours.matches("\\d{1,2}-\\d{1,2}")) {
+            String[] hours = quietHours.split("-");
+            quietStart = Integer.parseInt(hours[0]) % 24;
+            quietEnd = Integer.parseInt(hours[1]) % 24;
+            if (quietStart == quietEnd) {
+                quietStart = -1;
+            }
+        }
+
+        Digest digestMode = Digest.OFF;
+        int digestHour = 0;
+        if ("hourly".equals(digest)) {
+            digestMode = Digest.HOURLY;
+        } else if (digest != null && digest.matches("daily-\\d{1,2}")) {
+            digestMode = Digest.DAILY;
+            digestHour = Integer.parseInt(digest.substring("daily-".length())) % 24;
+        }
+        return new DeliveryWindow(zone, quietStart, quietEnd, digestMode, digestHour, Math.max(1, intervalMinutes));
+    }
+
+    /**
+     * Returns the first delivery boundary strictly after an instant.
+     *
+     * @param after The instant, usually the current time.
+     * @return The next boundary, outside the quiet hours.
+     */
+    public Instant nextDelivery(Instant after) {
+        Instant boundary = switch (digest) {
+            case OFF -> {
+                long intervalSeconds = intervalMinutes * 60L;
+                yield Instant.ofEpochSecond((Math.floorDiv(after.getEpochSecond(), intervalSeconds) + 1) * intervalSeconds);
+            }
+            case HOURLY -> after.atZone(zone).truncatedTo(ChronoUnit.HOURS).plusHours(1).toInstant();
+            case DAILY -> {
+                ZonedDateTime local = after.atZone(zone);
+                ZonedDateTime today = atLocalHour(local.toLocalDate(), digestHour);
+                yield (today.toInstant().isAfter(after) ? today : atLocalHour(local.toLocalDate().plusDays(1), digestHour)).toInstant();
+            }
+        };
+        return isQuiet(boundary) ? quietEndAfter(boundary) : boundary;
+    }
+
+    /**
+     * Tells whether an instant falls into the quiet hours.
+     *
+     * @param instant The instant.
+     * @return true if no notification may be sent at that time.
+     */
+    public boolean isQuiet(Instant instant) {
+        if (quietStart < 0) {
+            return false;
+        }
+        int hour = instant.atZone(zone).getHour();
+        return quietStart < quietEnd
+                ? hour >= quietStart && hour < quietEnd
+                : hour >= quietStart || hour < quietEnd;
+    }
+
+    /**
+     * Returns the nominal time between two deliveries, used to pace the feed crawls.
+     *
+     * @return The interval.
+     */
+    public Duration nominalInterval() {
+        return switch (digest) {
+            case OFF -> Duration.ofMinutes(intervalMinutes);
+            case HOURLY -> Duration.ofHours(1);
+            case DAILY -> Duration.ofDays(1);
+        };
+    }
+
+    private Instant quietEndAfter(Instant quiet) {
+        ZonedDateTime local = quiet.atZone(zone);
+        ZonedDateTime end = atLocalHour(local.toLocalDate(), quietEnd);
+        return (end.toInstant().isAfter(quiet) ? end : atLocalHour(local.toLocalDate().plusDays(1), quietEnd)).toInstant();
+    }
+
+    private ZonedDateTime atLocalHour(LocalDate date, int hour) {
+        // An hour skipped by a DST change resolves to the hour after the gap
+        return date.atTime(hour, 0).atZone(zone);
+    }
+}
@@ -0,0 +1,224 @@
+package edu.newsbot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Detects near-duplicate stories by their SimHash fingerprint, so that the same story published under several
+ * URLs (or copied by several feeds) is stored once and every user is notified of it once.
+ * <p>
+ * The fingerprint is a 64-bit SimHash over the three-word shingles of the full story. Two stories whose
+ * fingerprints differ in at most {@value #MAX_DISTANCE} bits are considered the same (a few edited sentences in a
+ * story of several hundred words). To find such a story without comparing against every known one, the
+ * fingerprints are indexed by each of their seven blocks of 9 or 10 bits: with at most six differing bits, at
+ * least one block of two near-duplicates is equal.
+ * <p>
+ * The index is kept in memory for the most recent {@value #MAX_STORIES} stories. A story is registered when it
+ * is first seen, before it is stored, so that a duplicate arriving while the original is being persisted is
+ * still recognized; its article ID is filled in with {@link #resolve(Story, int)}.
+ */
+public class DuplicateDetector {
+
+    // Fingerprints differing in at most this many bits belong to the same story
+    private static final int MAX_DISTANCE = 6;
+    // One more block than MAX_DISTANCE, so that near-duplicates share at least one block
+    private static final int BLOCKS = MAX_DISTANCE + 1;
+    // Stories with fewer words have unreliable fingerprints and are never deduplicated
+    private static final int MIN_WORDS = 20;
+    private static final int SHINGLE_WORDS = 3;
+    // Number of stories kept in the index; the oldest are forgotten first
+    private static final int MAX_STORIES = 50_000;
+
+    // Stories by the value of each of their fingerprint blocks; all guarded by DuplicateDetector.class
+    private static final List<Map<Integer, List<Story>>> blockIndex = new ArrayList<>();
+    private static final ArrayDeque<Story> stories = new ArrayDeque<>();
+
+    private static final Metrics.Counter duplicates =
+            Metrics.counter("newsbot_duplicate_stories_total", "Stories recognized as near-duplicates of a stored story");
+
+    static {
+        for (int i = 0; i < BLOCKS; i++) {
+            blockIndex.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Default constructor.
+     * The detector is used through its static methods only.
+     */
+    public DuplicateDetector() {
+        super();
+    }
+
+    /**
+     * A story known to the detector.
+     */
+    public static final class Story {
+        private final long fingerprint;
+        private final String urlKey;
+        // Set once the article is stored; -1 while it is being stored
+        private volatile int articleId = -1;
+
+        private Story(long fingerprint, String urlKey) {
+            this.fingerprint = fingerprint;
+            this.urlKey = urlKey;
+        }
+
+        /**
+         * Tells whether an article is a copy of the story published under another URL (rather than the same
+         * article listed by another feed), so that its URL has to be recorded as an alias.
+         *
+         * @param article The duplicate article.
+         * @return true if the article has a different URL key than the story's first article.
+         */
+        public boolean isAlias(Article article) {
+            return !urlKey.equals(UrlCanonicalizer.key(article.link()));
+        }
+
+        /**
+         * @return The database ID of the story's article, or -1 if it is not stored (yet).
+         */
+        public int getArticleId() {
+            return articleId;
+        }
+    }
+
+    /**
+     * The result of {@link #findOrRegister(Article)}.
+     *
+     * @param story     The known story the article belongs to, or null if the article cannot be deduplicated
+     *                  (its story is too short).
+     * @param duplicate Whether the story was already known: the article duplicates a stored (or being stored)
+     *                  article and must not be stored again.
+     */
+    public record Match(Story story, boolean duplicate) {
+    }
+
+    /**
+     * Looks up the story of an article and registers it as a new story if it is not known.
+     *
+     * @param article The extracted article.
+     * @return The match.
+     */
+    public static Match findOrRegister(Article article) {
+        String[] words = words(article.fullStory());
+        if (words.length < MIN_WORDS) {
+            return new Match(null, false);
+        }
+        long fingerprint = fingerprint(words);
+
+        synchronized (DuplicateDetector.class) {
+            for (int block = 0; block < BLOCKS; block++) {
+                List<Story> candidates = blockIndex.get(block).get(blockValue(fingerprint, block));
+                if (candidates == null) {
+                    continue;
+                }
+                for (Story candidate : candidates) {
+                    if (Long.bitCount(candidate.fingerprint ^ fingerprint) <= MAX_DISTANCE) {
+                        duplicates.increment();
+                        return new Match(candidate, true);
+                    }
+                }
+            }
+
+            Story story = new Story(fingerprint, UrlCanonicalizer.key(article.link()));
+            for (int block = 0; block < BLOCKS; block++) {
+                blockIndex.get(block).computeIfAbsent(blockValue(fingerprint, block), value -> new ArrayList<>(1)).add(story);
+            }
+            stories.addLast(story);
+            if (stories.size() > MAX_STORIES) {
+                remove(stories.pollFirst());
+            }
+            return new Match(story, false);
+        }
+    }
+
+    /**
+     * Records the outcome of storing a newly registered story.
+     *
+     * @param story     The story returned by {@link #findOrRegister(Article)}.
+     * @param articleId The database ID of the stored article, or -1 if it could not be stored, in which case the
+     *                  story is forgotten so that the next copy is stored instead.
+     */
+    public static void resolve(Story story, int articleId) {
+        if (articleId != -1) {
+            story.articleId = articleId;
+            return;
+        }
+        synchronized (DuplicateDetector.class) {
+            if (stories.remove(story)) {
+                remove(story);
+            }
+        }
+    }
+
+    /**
+     * Computes the SimHash of a text.
+     *
+     * @param text The text.
+     * @return The 64-bit fingerprint.
+     */
+    public static long fingerprint(String text) {
+        return fingerprint(words(text));
+    }
+
+    private static long fingerprint(String[] words) {
+        int[] weights = new int[64];
+        int shingles = Math.max(1, words.length - SHINGLE_WORDS + 1);
+        for (int i = 0; i < shingles; i++) {
+            long hash = 0xcbf29ce484222325L;
+            for (int j = i; j < Math.min(words.length, i + SHINGLE_WORDS); j++) {
+                String word = words[j];
+                for (int k = 0; k < word.length(); k++) {
+                    hash ^= word.charAt(k);
+                    hash *= 0x100000001b3L;
+                }
+                hash ^= ' ';
+                hash *= 0x100000001b3L;
+            }
+            // FNV-1a alone leaves the low bits poorly mixed
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    private static String[] words(String text) {
+        String normalized = text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    private static int blockValue(long fingerprint, int block) {
+        int from = block * 64 / BLOCKS;
+        int to = (block + 1) * 64 / BLOCKS;
+        return (int) ((fingerprint >>> from) & ((1L << (to - from)) - 1));
+    }
+
+    private static void remove(Story story) {
+        for (int block = 0; block < BLOCKS; block++) {
+            Integer value = blockValue(story.fingerprint, block);
+            List<Story> candidates = blockIndex.get(block).get(value);
+            if (candidates != null) {
+                candidates.remove(story);
+                if (candidates.isEmpty()) {
+                    blockIndex.get(block).remove(value);
+                }
+            }
+        }
+    }
+}
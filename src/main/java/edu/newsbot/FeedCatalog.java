@@ -0,0 +1,92 @@
+package edu.newsbot;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory catalog of the RSS feeds stored in the {@code science_daily_feeds} table.
+ * The catalog is loaded once at startup (after the feeds have been inserted) so that
+ * feed name to link (and link to ID) resolution and the sources keyboard do not need a database round trip.
+ * <p>
+ * Lookups read an immutable snapshot, so they are safe to call from any thread while
+ * {@link #load()} swaps in a fresh copy.
+ */
+public class FeedCatalog {
+
+    private static volatile Map<String, String> linksByName = Collections.emptyMap();
+    private static volatile Map<String, Integer> idsByLink = Collections.emptyMap();
+    private static volatile List<String> names = Collections.emptyList();
+
+    /**
+     * Default constructor.
+     * The catalog is used through its static methods only.
+     */
+    public FeedCatalog() {
+        super();
+    }
+
+    /**
+     * Loads (or reloads) all feeds from the {@code science_daily_feeds} table into memory.
+     */
+    public static void load() {
+        Map<String, String> loadedLinks = new HashMap<>();
+        Map<String, Integer> loadedIds = new HashMap<>();
+        List<String> loadedNames = new ArrayList<>();
+
+        try (Connection conn = DB.connect();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name, link FROM science_daily_feeds ORDER BY id")) {
+
+            while (rs.next()) {
+                String name = rs.getString("name");
+                loadedNames.add(name);
+                loadedLinks.put(name, rs.getString("link"));
+                loadedIds.put(rs.getString("link"), rs.getInt("id"));
+            }
+        } catch (SQLException e) {
+            Log.error("FeedCatalog", "Error loading feed catalog", e);
+            return;
+        }
+
+        names = Collections.unmodifiableList(loadedNames);
+        linksByName = Collections.unmodifiableMap(loadedLinks);
+        idsByLink = Collections.unmodifiableMap(loadedIds);
+        Log.info("FeedCatalog", "Feed catalog loaded", "feeds", loadedNames.size());
+    }
+
+    /**
+     * Resolves the link of a feed by its name.
+     *
+     * @param name The name of the RSS feed (as shown on the sources keyboard).
+     * @return The link of the RSS feed, or null if the feed is unknown.
+     */
+    public static String getLinkByName(String name) {
+        return linksByName.get(name);
+    }
+
+    /**
+     * Resolves the database ID of a feed by its link.
+     *
+     * @param link The link of the RSS feed.
+     * @return The ID of the feed in {@code science_daily_feeds}, or -1 if the feed is unknown.
+     */
+    public static int getIdByLink(String link) {
+        return idsByLink.getOrDefault(link, -1);
+    }
+
+    /**
+     * Returns the names of all feeds in catalog order.
+     *
+     * @return An unmodifiable list of feed names.
+     */
+    public static List<String> getNames() {
+        return names;
+    }
+}
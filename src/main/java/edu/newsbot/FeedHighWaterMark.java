@@ -0,0 +1,151 @@
+package edu.newsbot;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers how far a single RSS feed has been processed: the newest publication date and guid seen
+ * so far, plus a small ring of recently seen guids.
+ * <p>
+ * An item is known only if its guid is in the ring, so an item that appears late with an older date
+ * (e.g. an embargoed story) is still picked up. Publication dates only bound the scan: RSS feeds list
+ * the newest items first, and once an item is not newer than the {@link #isBelowHorizon horizon}
+ * (the newest date whose guid has been pushed out of the ring) the rest of the feed cannot be told
+ * apart from forgotten items, so a crawl stops there. Only the items the ring does not know (the delta)
+ * are passed on to detail fetching and persistence.
+ * <p>
+ * An item that fails is not recorded and is retried by the next crawls; after {@link #MAX_ATTEMPTS}
+ * failed attempts it is recorded anyway, so a permanently broken item does not cost a detail fetch
+ * on every crawl.
+ */
+public class FeedHighWaterMark {
+
+    // Number of recent guids remembered per feed
+    private static final int RECENT_GUIDS_SIZE = 128;
+    // Number of crawls that try to process an item before it is given up
+    static final int MAX_ATTEMPTS = 3;
+
+    private final String[] recentGuids = new String[RECENT_GUIDS_SIZE];
+    private final Instant[] recentPubDates = new Instant[RECENT_GUIDS_SIZE];
+    private int nextSlot = 0;
+    private Instant newestPubDate;
+    private String newestGuid;
+    // Newest publication date of the guids evicted from the ring
+    private Instant horizon;
+
+    // Failed attempts of the items that have not been processed yet, bounded like the ring
+    private final Map<String, Integer> failedAttempts = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > RECENT_GUIDS_SIZE;
+        }
+    };
+
+    /**
+     * Creates an empty high-water mark (nothing of the feed has been seen yet).
+     */
+    public FeedHighWaterMark() {
+        super();
+    }
+
+    /**
+     * Checks whether an item has already been processed, i.e. its guid is in the recent ring.
+     * The publication date is not considered.
+     *
+     * @param item The feed item to check.
+     * @return true if the item has been seen by a previous crawl.
+     */
+    public synchronized boolean isKnown(FeedItem item) {
+        for (String guid : recentGuids) {
+            if (guid != null && guid.equals(item.guid())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether an item is too old for the ring to tell if it has been seen: it was not published
+     * after an item whose guid has already been evicted from the ring.
+     * A crawl stops scanning the feed at such an item.
+     *
+     * @param item The feed item to check.
+     * @return true if the item and the items below it are beyond what the mark remembers.
+     */
+    public synchronized boolean isBelowHorizon(FeedItem item) {
+        return horizon != null && item.pubDate() != null && !item.pubDate().isAfter(horizon);
+    }
+
+    /**
+     * Moves the mark past the items of a delta after they have been processed.
+     * <p>
+     * Processed items are recorded in the ring. A failed item is not recorded, so the next crawl finds it
+     * again, unless this was its {@link #MAX_ATTEMPTS}th failure; it is then recorded and logged as given up.
+     *
+     * @param newItems       The delta of the crawl, newest first, as returned by {@link Parser#findNewItems}.
+     * @param processedItems The items of the delta that were processed successfully.
+     */
+    public synchronized void advance(List<FeedItem> newItems, Collection<FeedItem> processedItems) {
+        Set<String> processedGuids = new HashSet<>();
+        for (FeedItem item : processedItems) {
+            processedGuids.add(item.guid());
+        }
+
+        // Oldest first, so the ring keeps the newest guids when the delta is larger than the ring
+        for (int i = newItems.size() - 1; i >= 0; i--) {
+            FeedItem item = newItems.get(i);
+            if (!processedGuids.contains(item.guid())) {
+                int attempts = failedAttempts.merge(item.guid(), 1, Integer::sum);
+                if (attempts < MAX_ATTEMPTS) {
+                    continue;
+                }
+                Log.warn("FeedHighWaterMark", "Giving up on feed item after failed attempts", "link", item.link());
+            }
+            failedAttempts.remove(item.guid());
+            record(item);
+        }
+    }
+
+    /**
+     * Records an item in the ring, moving the horizon past the item it evicts.
+     *
+     * @param item The processed (or given up) feed item.
+     */
+    private void record(FeedItem item) {
+        Instant evicted = recentPubDates[nextSlot];
+        if (recentGuids[nextSlot] != null && evicted != null && (horizon == null || evicted.isAfter(horizon))) {
+            horizon = evicted;
+        }
+        recentGuids[nextSlot] = item.guid();
+        recentPubDates[nextSlot] = item.pubDate();
+        nextSlot = (nextSlot + 1) % RECENT_GUIDS_SIZE;
+
+        if (item.pubDate() != null && (newestPubDate == null || item.pubDate().isAfter(newestPubDate))) {
+            newestPubDate = item.pubDate();
+            newestGuid = item.guid();
+        }
+    }
+
+    /**
+     * Returns the publication date of the newest item seen.
+     *
+     * @return The newest publication date, or null if nothing has been seen yet.
+     */
+    public synchronized Instant getNewestPubDate() {
+        return newestPubDate;
+    }
+
+    /**
+     * Returns the guid of the newest item seen.
+     *
+     * @return The newest guid, or null if nothing has been seen yet.
+     */
+    public synchronized String getNewestGuid() {
+        return newestGuid;
+    }
+}
@@ -0,0 +1,15 @@
+package edu.newsbot;
+
+import java.time.Instant;
+
+/**
+ * An immutable item of an RSS feed (the primary page), pointing to the detailed page of an article.
+ *
+ * @param title   The title of the item.
+ * @param link    The link to the detailed page.
+ * @param summary The summary (RSS description) of the item.
+ * @param guid    The RSS guid of the item (falls back to the link if the feed has none).
+ * @param pubDate The RSS publication date of the item, or null if missing or unparsable.
+ */
+public record FeedItem(String title, String link, String summary, String guid, Instant pubDate) {
+}
@@ -0,0 +1,58 @@
+package edu.newsbot;
+
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.TranslateException;
+import com.google.cloud.translate.TranslateOptions;
+import com.google.cloud.translate.Translation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Translator} backed by the Google Cloud Translation API (basic edition).
+ * The credentials and project come from the environment, e.g. {@code GOOGLE_APPLICATION_CREDENTIALS}.
+ */
+public class GoogleTranslator implements Translator {
+
+    // Limits of a translate request of the basic edition
+    static final int MAX_TEXTS_PER_REQUEST = 128;
+    static final int MAX_CHARS_PER_REQUEST = 30_000;
+
+    private final Translate translate;
+
+    /**
+     * Creates a translator with the default credentials of the environment.
+     */
+    public GoogleTranslator() {
+        this.translate = TranslateOptions.getDefaultInstance().getService();
+    }
+
+    @Override
+    public List<String> translate(List<String> texts, String sourceLanguage, String targetLanguage) throws IOException {
+        try {
+            // Plain text: the articles are not HTML and must not come back with escaped entities
+            List<Translation> translations = translate.translate(texts,
+                    Translate.TranslateOption.sourceLanguage(sourceLanguage),
+                    Translate.TranslateOption.targetLanguage(targetLanguage),
+                    Translate.TranslateOption.format("text"));
+            List<String> translated = new ArrayList<>(translations.size());
+            for (Translation translation : translations) {
+                translated.add(translation.getTranslatedText());
+            }
+            return translated;
+        } catch (TranslateException e) {
+            throw new IOException("Translation request failed", e);
+        }
+    }
+
+    @Override
+    public int maxTextsPerRequest() {
+        return MAX_TEXTS_PER_REQUEST;
+    }
+
+    @Override
+    public int maxCharsPerRequest() {
+        return MAX_CHARS_PER_REQUEST;
+    }
+}
@@ -0,0 +1,455 @@
+package edu.newsbot;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured logging.
+ * <p>
+ * Callers only claim a slot in a fixed-size ring buffer (a compare-and-set on a sequence number) and store the
+ * level, message and key/value fields in it; a single background thread formats the events as
+ * {@code key=value} lines and writes them to stdout (stderr for WARN and ERROR). Threads therefore never wait
+ * for each other or for the console. When the buffer is full the event is dropped and counted rather than
+ * blocking the caller.
+ * <p>
+ * The level is checked before anything is stored, and messages are constants with the variable parts passed as
+ * fields, so a disabled log call builds no strings. Field values are formatted later on the writer thread and
+ * must not be mutated after the call.
+ * <p>
+ * Configuration in {@code bot.properties} (system properties take precedence):
+ * <ul>
+ *     <li>{@code log.level}: DEBUG, INFO, WARN or ERROR (default: INFO).</li>
+ *     <li>{@code log.debug.users}: comma-separated Telegram IDs whose per-user debug lines are always logged.</li>
+ *     <li>{@code log.debug.user.sample}: log per-user debug lines for one in N users (default: 0, none).</li>
+ * </ul>
+ * Per-user debug lines ({@link #debugUser}) additionally require the DEBUG level.
+ */
+public class Log {
+
+    /**
+     * Log levels in increasing severity.
+     */
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    // Number of slots in the ring buffer; must be a power of two
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+    // How long the writer sleeps when the buffer is empty
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final Event[] ring = new Event[CAPACITY];
+    // Sequence number stored in each slot once its event is complete
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    // Next sequence number to be claimed by a producer
+    private static final AtomicLong claimed = new AtomicLong();
+    // Next sequence number to be written; slots below it are free
+    private static volatile long consumed = 0;
+
+    private static final Metrics.Counter dropped =
+            Metrics.counter("newsbot_log_dropped_total", "Log events dropped because the log buffer was full");
+    private static long droppedReported = 0;
+
+    // Own buffered streams on the standard descriptors; flushed whenever the writer runs out of events
+    private static final PrintStream out = new PrintStream(
+            new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false, StandardCharsets.UTF_8);
+    private static final PrintStream err = new PrintStream(
+            new BufferedOutputStream(new FileOutputStream(FileDescriptor.err), 1 << 16), false, StandardCharsets.UTF_8);
+
+    private static volatile int threshold = Level.INFO.ordinal();
+    // Sorted Telegram IDs whose per-user debug lines are always logged
+    private static volatile long[] debugUsers = new long[0];
+    private static volatile int debugUserSample = 0;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Event();
+            published.set(i, -1);
+        }
+        loadConfiguration();
+
+        Thread writer = new Thread(Log::runWriter, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(TimeUnit.SECONDS.toMillis(1)), "log-flush"));
+    }
+
+    /**
+     * Default constructor.
+     * The log is used through its static methods only.
+     */
+    public Log() {
+        super();
+    }
+
+    /**
+     * Sets the minimum level of logged events.
+     *
+     * @param level The new minimum level.
+     */
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    /**
+     * Checks whether events of a level are logged.
+     *
+     * @param level The level.
+     * @return true if events of the level are logged.
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    /**
+     * Checks whether per-user debug lines of a user are logged: the level must be DEBUG and the user must be
+     * listed in {@code log.debug.users} or fall into the {@code log.debug.user.sample}.
+     *
+     * @param userId The telegram user ID.
+     * @return true if per-user debug lines of the user are logged.
+     */
+    public static boolean isDebugEnabled(long userId) {
+        if (!isEnabled(Level.DEBUG)) {
+            return false;
+        }
+        if (Arrays.binarySearch(debugUsers, userId) >= 0) {
+            return true;
+        }
+        int sample = debugUserSample;
+        // The user ID is mixed so that sampling does not follow ID ranges; a user is either always or never sampled
+        return sample > 0 && Math.floorMod(Long.hashCode(userId * 0x9E3779B97F4A7C15L), sample) == 0;
+    }
+
+    /**
+     * Logs a debug event.
+     *
+     * @param logger The component logging the event (usually the class name).
+     * @param message The message.
+     */
+    public static void debug(String logger, String message) {
+        log(Level.DEBUG, logger, message, null, null, null, null, null);
+    }
+
+    /**
+     * Logs a debug event with one field.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     * @param key The field name.
+     * @param value The field value.
+     */
+    public static void debug(String logger, String message, String key, Object value) {
+        log(Level.DEBUG, logger, message, key, value, null, null, null);
+    }
+
+    /**
+     * Logs a debug event about a single user, if debug lines of the user are enabled
+     * (see {@link #isDebugEnabled(long)}).
+     *
+     * @param logger The component logging the event.
+     * @param userId The telegram user ID, logged as the {@code user} field.
+     * @param message The message.
+     */
+    public static void debugUser(String logger, long userId, String message) {
+        if (isDebugEnabled(userId)) {
+            log(Level.DEBUG, logger, message, "user", userId, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a debug event with one more field about a single user, if debug lines of the user are enabled.
+     *
+     * @param logger The component logging the event.
+     * @param userId The telegram user ID, logged as the {@code user} field.
+     * @param message The message.
+     * @param key The field name.
+     * @param value The field value.
+     */
+    public static void debugUser(String logger, long userId, String message, String key, Object value) {
+        if (isDebugEnabled(userId)) {
+            log(Level.DEBUG, logger, message, "user", userId, key, value, null);
+        }
+    }
+
+    /**
+     * Logs an info event.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     */
+    public static void info(String logger, String message) {
+        log(Level.INFO, logger, message, null, null, null, null, null);
+    }
+
+    /**
+     * Logs an info event with one field.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     * @param key The field name.
+     * @param value The field value.
+     */
+    public static void info(String logger, String message, String key, Object value) {
+        log(Level.INFO, logger, message, key, value, null, null, null);
+    }
+
+    /**
+     * Logs an info event with two fields.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     * @param key1 The first field name.
+     * @param value1 The first field value.
+     * @param key2 The second field name.
+     * @param value2 The second field value.
+     */
+    public static void info(String logger, String message, String key1, Object value1, String key2, Object value2) {
+        log(Level.INFO, logger, message, key1, value1, key2, value2, null);
+    }
+
+    /**
+     * Logs a warning.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     */
+    public static void warn(String logger, String message) {
+        log(Level.WARN, logger, message, null, null, null, null, null);
+    }
+
+    /**
+     * Logs a warning with one field.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     * @param key The field name.
+     * @param value The field value.
+     */
+    public static void warn(String logger, String message, String key, Object value) {
+        log(Level.WARN, logger, message, key, value, null, null, null);
+    }
+
+    /**
+     * Logs an error caused by an exception. Only the exception's message is logged; the stack trace is
+     * logged at DEBUG level.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     * @param error The exception.
+     */
+    public static void error(String logger, String message, Throwable error) {
+        log(Level.ERROR, logger, message, null, null, null, null, error);
+    }
+
+    /**
+     * Logs an error with one field caused by an exception. Only the exception's message is logged; the stack
+     * trace is logged at DEBUG level.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     * @param key The field name.
+     * @param value The field value.
+     * @param error The exception.
+     */
+    public static void error(String logger, String message, String key, Object value, Throwable error) {
+        log(Level.ERROR, logger, message, key, value, null, null, error);
+    }
+
+    /**
+     * Logs an error with one field.
+     *
+     * @param logger The component logging the event.
+     * @param message The message.
+     * @param key The field name.
+     * @param value The field value.
+     */
+    public static void error(String logger, String message, String key, Object value) {
+        log(Level.ERROR, logger, message, key, value, null, null, null);
+    }
+
+    /**
+     * Waits until all events logged so far have been written, or until the timeout elapses.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     */
+    public static void flush(long timeoutMillis) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (consumed < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        synchronized (out) {
+            out.flush();
+        }
+        synchronized (err) {
+            err.flush();
+        }
+    }
+
+    /**
+     * Stores an event in the ring buffer, or drops it if the level is disabled or the buffer is full.
+     */
+    private static void log(Level level, String logger, String message, String key1, Object value1,
+                            String key2, Object value2, Throwable error) {
+        if (level.ordinal() < threshold) {
+            return;
+        }
+
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & MASK);
+        Event event = ring[index];
+        event.timestampMillis = System.currentTimeMillis();
+        event.level = level;
+        event.thread = Thread.currentThread().getName();
+        event.logger = logger;
+        event.message = message;
+        event.key1 = key1;
+        event.value1 = value1;
+        event.key2 = key2;
+        event.value2 = value2;
+        event.error = error;
+        // Publishing the sequence hands the slot over to the writer
+        published.set(index, sequence);
+    }
+
+    /**
+     * Writer loop: formats and writes published events in sequence order.
+     */
+    private static void runWriter() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            long sequence = consumed;
+            int index = (int) (sequence & MASK);
+            if (published.get(index) != sequence) {
+                reportDropped();
+                out.flush();
+                err.flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            Event event = ring[index];
+            line.setLength(0);
+            format(event, line);
+            PrintStream stream = event.level.ordinal() >= Level.WARN.ordinal() ? err : out;
+            stream.print(line);
+            if (event.error != null && threshold == Level.DEBUG.ordinal()) {
+                event.error.printStackTrace(stream);
+            }
+            event.clear();
+            // Frees the slot for producers
+            consumed = sequence + 1;
+        }
+    }
+
+    private static void reportDropped() {
+        long total = dropped.getCount();
+        if (total > droppedReported) {
+            err.println("ts=" + Instant.now() + " level=WARN logger=Log msg=\"Log buffer full, events dropped\" dropped="
+                    + (total - droppedReported));
+            droppedReported = total;
+        }
+    }
+
+    private static void format(Event event, StringBuilder line) {
+        line.append("ts=").append(Instant.ofEpochMilli(event.timestampMillis))
+                .append(" level=").append(event.level)
+                .append(" thread=");
+        appendValue(line, event.thread);
+        line.append(" logger=").append(event.logger).append(" msg=");
+        appendValue(line, event.message);
+        if (event.key1 != null) {
+            line.append(' ').append(event.key1).append('=');
+            appendValue(line, event.value1);
+        }
+        if (event.key2 != null) {
+            line.append(' ').append(event.key2).append('=');
+            appendValue(line, event.value2);
+        }
+        if (event.error != null) {
+            line.append(" error=");
+            appendValue(line, event.error.toString());
+        }
+        line.append('\n');
+    }
+
+    private static void appendValue(StringBuilder line, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                default -> line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static void loadConfiguration() {
+        try {
+            String level = BotConfig.get("log.level", "INFO");
+            threshold = Level.valueOf(level.trim().toUpperCase()).ordinal();
+
+            String users = BotConfig.get("log.debug.users", "");
+            if (!users.isEmpty()) {
+                long[] ids = Arrays.stream(users.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray();
+                Arrays.sort(ids);
+                debugUsers = ids;
+            }
+
+            debugUserSample = Integer.parseInt(BotConfig.get("log.debug.user.sample", "0"));
+        } catch (IllegalArgumentException e) {
+            err.println("Invalid logging configuration, using defaults: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A reusable slot of the ring buffer. Written by the producer that claimed it, then read by the writer.
+     */
+    private static final class Event {
+        private long timestampMillis;
+        private Level level;
+        private String thread;
+        private String logger;
+        private String message;
+        private String key1;
+        private Object value1;
+        private String key2;
+        private Object value2;
+        private Throwable error;
+
+        private void clear() {
+            value1 = null;
+            value2 = null;
+            error = null;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package edu.newsbot;
+
+import java.util.Arrays;
+
+/**
+ * A map from {@code long} keys to {@code int} values without boxing, for per-user state keyed by telegram ID.
+ * <p>
+ * Keys and values live in two parallel arrays with open addressing and linear probing; removal shifts the
+ * following entries back instead of leaving tombstones. An entry costs 12 bytes of table at full load and the
+ * table is kept at most 3/4 full, against roughly 60 bytes (entry, boxed key and boxed value) per entry of a
+ * {@code HashMap<Long, Integer>}. Key 0 marks an empty slot and is stored separately.
+ * <p>
+ * Not thread-safe; callers synchronize.
+ */
+public class LongIntMap {
+
+    /**
+     * Returned by {@link #get(long)}, {@link #put(long, int)} and {@link #remove(long)} for absent keys.
+     */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    /**
+     * Receives the entries of a map, see {@link #forEach(EntryConsumer)}.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * Receives one entry.
+         *
+         * @param key The key.
+         * @param value The value.
+         */
+        void accept(long key, int value);
+    }
+
+    /**
+     * Creates an empty map.
+     */
+    public LongIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map sized for a number of entries.
+     *
+     * @param expectedSize The number of entries the map should hold without growing.
+     */
+    public LongIntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3L / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the map has no entries.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or {@link #NO_VALUE} if the key is absent.
+     */
+    public int get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : NO_VALUE;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == 0) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key The key.
+     * @param value The value; must not be {@link #NO_VALUE}.
+     * @return The previous value, or {@link #NO_VALUE} if the key was absent.
+     */
+    public int put(long key, int value) {
+        if (key == 0) {
+            int previous = hasZeroKey ? zeroValue : NO_VALUE;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            if (current == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > keys.length * 3L / 4) {
+                    rehash(keys.length << 1);
+                }
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key.
+     * @return The removed value, or {@link #NO_VALUE} if the key was absent.
+     */
+    public int remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return NO_VALUE;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == 0) {
+                return NO_VALUE;
+            }
+            if (current == key) {
+                int previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Passes every entry to a consumer, in no particular order. The map must not be changed meanwhile.
+     *
+     * @param consumer The consumer.
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries and shrinks the table.
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    /**
+     * Closes the gap left by a removed entry: later entries of the probe sequence that may not be placed
+     * after the gap are moved into it.
+     */
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            int home = slot(keys[slot]);
+            // The entry can fill the gap unless its home lies cyclically in (gap, slot]
+            boolean homeAfterGap = gap <= slot ? home > gap && home <= slot : home > gap || home <= slot;
+            if (!homeAfterGap) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        // Telegram IDs are sequential-ish; mix all bits into the slot (murmur3 finalizer)
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
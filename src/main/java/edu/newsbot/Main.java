@@ -39,6 +39,12 @@ public class Main {
         DB.clearAllTables();
         // Create new tables as defined in the DB class
         DB.createTables();
+        // The search index refers to the articles of the cleared tables
+        ArticleSearch.clear();
+        // Cache the bot_user column types used by settings updates
+        DB.loadUserColumnTypes();
+        // Create the feed_article partitions and expire old articles every hour
+        ArticleRetention.start();
 
         // Attempt to insert RSS feeds into the database from a file
         try {
@@ -48,6 +54,12 @@ public class Main {
             System.err.println("SQL error occurred: " + e.getMessage());
             e.printStackTrace();
         }
+        // Load the feed catalog used for feed name to link resolution
+        FeedCatalog.load();
+        // Load the subscriptions of all users into the in-memory subscription index
+        SubscriptionIndex.load();
+        // Serve the metrics in the Prometheus format if metrics.port is configured
+        MetricsServer.start();
 
         // Create a single-threaded ScheduledExecutorService to manage scheduled tasks
         ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
@@ -60,6 +72,11 @@ public class Main {
             System.out.println("Shutting down...");
             // Attempt to stop all actively executing tasks and halt the processing of waiting tasks
             executorService.shutdownNow();
+            MetricsServer.stop();
+            ArticleRetention.stop();
+            // Write the page cache index and the in-memory part of the search index to disk
+            PageCache.close();
+            ArticleSearch.close();
             // Close any resources (like HTTP clients) used by the NewsBot
             NewsBot.closeClient();
         }));
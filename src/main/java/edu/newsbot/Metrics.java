@@ -0,0 +1,420 @@
+package edu.newsbot;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the bot's counters, timers and gauges.
+ * <p>
+ * Metrics are created once (typically into {@code static final} fields of the instrumented class) and then
+ * recorded on the hot path. Recording does not allocate: counters are {@link LongAdder}s and timers record into
+ * an HdrHistogram {@link Recorder}, so enabling the instrumentation does not add GC pressure to the code it
+ * measures. The percentiles are computed only when the metrics are read.
+ * <p>
+ * Every metric is published as a JMX MBean under the {@code edu.newsbot} domain, and all metrics can be
+ * rendered in the Prometheus text format with {@link #scrape()} (served by {@link MetricsServer}).
+ * Timers are exported as Prometheus summaries whose quantiles cover the whole uptime.
+ */
+public class Metrics {
+
+    // Timer values above one hour are recorded as one hour
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    // Two significant digits: 1% value resolution at a few KB per histogram
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Metric families by name, in registration order; guarded by itself
+    private static final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Default constructor.
+     * The registry is used through its static methods only.
+     */
+    public Metrics() {
+        super();
+    }
+
+    /**
+     * Returns the timer with the given name, creating it on first use.
+     *
+     * @param name The metric name, in Prometheus style ending in {@code _seconds}.
+     * @param help The description of the metric.
+     * @return The timer.
+     */
+    public static Timer timer(String name, String help) {
+        return timer(name, help, null, null);
+    }
+
+    /**
+     * Returns the timer with the given name and label, creating it on first use.
+     *
+     * @param name The metric name, in Prometheus style ending in {@code _seconds}.
+     * @param help The description of the metric.
+     * @param labelName The name of the label distinguishing the timers of the family (e.g. "method").
+     * @param labelValue The value of the label.
+     * @return The timer.
+     */
+    public static Timer timer(String name, String help, String labelName, String labelValue) {
+        return (Timer) register(name, help, "summary", labelName, labelValue, Timer::new);
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name The metric name, in Prometheus style ending in {@code _total}.
+     * @param help The description of the metric.
+     * @return The counter.
+     */
+    public static Counter counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+
+    /**
+     * Returns the counter with the given name and label, creating it on first use.
+     *
+     * @param name The metric name, in Prometheus style ending in {@code _total}.
+     * @param help The description of the metric.
+     * @param labelName The name of the label distinguishing the counters of the family.
+     * @param labelValue The value of the label.
+     * @return The counter.
+     */
+    public static Counter counter(String name, String help, String labelName, String labelValue) {
+        return (Counter) register(name, help, "counter", labelName, labelValue, Counter::new);
+    }
+
+    /**
+     * Registers a gauge whose value is read from a supplier whenever the metrics are read.
+     * Registering the same name and label again replaces the supplier.
+     *
+     * @param name The metric name.
+     * @param help The description of the metric.
+     * @param labelName The name of the label distinguishing the gauges of the family, or null.
+     * @param labelValue The value of the label, or null.
+     * @param value The supplier of the current value.
+     */
+    public static void gauge(String name, String help, String labelName, String labelValue, DoubleSupplier value) {
+        Gauge gauge = (Gauge) register(name, help, "gauge", labelName, labelValue, Gauge::new);
+        gauge.value = value;
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format.
+     *
+     * @return The metrics as text.
+     */
+    public static String scrape() {
+        List<Family> snapshot;
+        synchronized (families) {
+            snapshot = new ArrayList<>(families.values());
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Family family : snapshot) {
+            text.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> entry : family.childrenSnapshot().entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof Timer timer) {
+                    long[] values = timer.percentiles(QUANTILES);
+                    for (int i = 0; i < QUANTILES.length; i++) {
+                        String quantileLabel = "quantile=\"" + QUANTILES[i] + "\"";
+                        appendSample(text, family.name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                                values[i] / 1e9);
+                    }
+                    appendSample(text, family.name + "_sum", labels, timer.getTotalNanos() / 1e9);
+                    appendSample(text, family.name + "_count", labels, timer.getCount());
+                } else if (metric instanceof Counter counter) {
+                    appendSample(text, family.name, labels, counter.getCount());
+                } else if (metric instanceof Gauge gauge) {
+                    appendSample(text, family.name, labels, gauge.getValue());
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static void appendSample(StringBuilder text, String name, String labels, double value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    private interface MetricFactory {
+        Object create();
+    }
+
+    private static Object register(String name, String help, String type, String labelName, String labelValue,
+                                   MetricFactory factory) {
+        String labels = labelName == null ? "" : labelName + "=\"" + escapeLabelValue(labelValue) + "\"";
+        Object metric;
+        boolean created = false;
+        synchronized (families) {
+            Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+            if (!family.type.equals(type)) {
+                throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+            }
+            metric = family.children.get(labels);
+            if (metric == null) {
+                metric = factory.create();
+                family.children.put(labels, metric);
+                created = true;
+            }
+        }
+        if (created) {
+            registerMBean(name, labelName, labelValue, metric);
+        }
+        return metric;
+    }
+
+    private static void registerMBean(String name, String labelName, String labelValue, Object metric) {
+        try {
+            String objectName = "edu.newsbot:type=" + metric.getClass().getSimpleName() + ",name=" + name;
+            if (labelName != null) {
+                objectName += "," + labelName + "=" + ObjectName.quote(labelValue);
+            }
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metric, new ObjectName(objectName));
+        } catch (JMException e) {
+            System.err.println("Error registering MBean for metric " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * A metric name with its help text, type and the metrics of each label value.
+     */
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        // Guarded by Metrics.families
+        private final Map<String, Object> children = new LinkedHashMap<>();
+
+        private Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        private Map<String, Object> childrenSnapshot() {
+            synchronized (families) {
+                return new LinkedHashMap<>(children);
+            }
+        }
+    }
+
+    /**
+     * JMX view of a {@link Timer}.
+     */
+    public interface TimerMXBean {
+        /**
+         * @return The number of recorded durations.
+         */
+        long getCount();
+
+        /**
+         * @return The mean duration in milliseconds.
+         */
+        double getMeanMillis();
+
+        /**
+         * @return The median duration in milliseconds.
+         */
+        double getP50Millis();
+
+        /**
+         * @return The 99th percentile duration in milliseconds.
+         */
+        double getP99Millis();
+
+        /**
+         * @return The longest recorded duration in milliseconds.
+         */
+        double getMaxMillis();
+    }
+
+    /**
+     * JMX view of a {@link Counter}.
+     */
+    public interface CounterMXBean {
+        /**
+         * @return The current count.
+         */
+        long getCount();
+    }
+
+    /**
+     * JMX view of a gauge.
+     */
+    public interface GaugeMXBean {
+        /**
+         * @return The current value.
+         */
+        double getValue();
+    }
+
+    /**
+     * Records durations into an HDR histogram.
+     * Typical use on a hot path:
+     * <pre>
+     * long start = System.nanoTime();
+     * try {
+     *     ...
+     * } finally {
+     *     TIMER.recordSince(start);
+     * }
+     * </pre>
+     */
+    public static final class Timer implements TimerMXBean {
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        // Accumulated intervals of the recorder; guarded by this
+        private final Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        private Timer() {
+        }
+
+        /**
+         * Records the time elapsed since a {@link System#nanoTime()} reading.
+         *
+         * @param startNanos The {@link System#nanoTime()} at the start of the measured operation.
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Records a duration.
+         *
+         * @param nanos The duration in nanoseconds.
+         */
+        public void record(long nanos) {
+            recorder.recordValue(Math.max(0, Math.min(nanos, HIGHEST_TRACKABLE_NANOS)));
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        /**
+         * Returns the sum of all recorded durations.
+         *
+         * @return The total in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return percentiles(new double[] {0.5})[0] / 1e6;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return percentiles(new double[] {0.99})[0] / 1e6;
+        }
+
+        @Override
+        public synchronized double getMaxMillis() {
+            drain();
+            return total.getMaxValue() / 1e6;
+        }
+
+        /**
+         * Returns the recorded durations at the given quantiles.
+         *
+         * @param quantiles The quantiles, between 0 and 1.
+         * @return The durations in nanoseconds, one per quantile.
+         */
+        public synchronized long[] percentiles(double[] quantiles) {
+            drain();
+            long[] values = new long[quantiles.length];
+            for (int i = 0; i < quantiles.length; i++) {
+                values[i] = total.getValueAtPercentile(quantiles[i] * 100);
+            }
+            return values;
+        }
+
+        private void drain() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+        }
+    }
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static final class Counter implements CounterMXBean {
+        private final LongAdder count = new LongAdder();
+
+        private Counter() {
+        }
+
+        /**
+         * Increments the count by one.
+         */
+        public void increment() {
+            count.increment();
+        }
+
+        /**
+         * Increments the count.
+         *
+         * @param amount The amount to add.
+         */
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A value read on demand from a supplier.
+     */
+    private static final class Gauge implements GaugeMXBean {
+        private volatile DoubleSupplier value = () -> 0;
+
+        @Override
+        public double getValue() {
+            return value.getAsDouble();
+        }
+    }
+}
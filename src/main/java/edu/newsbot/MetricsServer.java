@@ -0,0 +1,80 @@
+package edu.newsbot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the {@link Metrics} in the Prometheus text format on {@code /metrics}.
+ * <p>
+ * The endpoint is configured in {@code bot.properties}: {@code metrics.port} enables it (it is off when the
+ * property is missing or 0) and {@code metrics.host} sets the bind address (default: 127.0.0.1).
+ * The metrics are also available through JMX regardless of this setting.
+ */
+public class MetricsServer {
+
+    private static final String DEFAULT_HOST = "127.0.0.1";
+
+    private static HttpServer server;
+
+    /**
+     * Default constructor.
+     * The server is used through its static methods only.
+     */
+    public MetricsServer() {
+        super();
+    }
+
+    /**
+     * Starts the endpoint if {@code metrics.port} is configured.
+     */
+    public static synchronized void start() {
+        int port = Integer.parseInt(BotConfig.get("metrics.port", "0"));
+        if (port == 0 || server != null) {
+            return;
+        }
+        String host = BotConfig.get("metrics.host", DEFAULT_HOST);
+        try {
+            server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-server");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.createContext("/metrics", MetricsServer::handle);
+            server.start();
+            Log.info("MetricsServer", "Metrics available", "url", "http://" + host + ":" + port + "/metrics");
+        } catch (IOException e) {
+            Log.error("MetricsServer", "Error starting metrics server", e);
+            server = null;
+        }
+    }
+
+    /**
+     * Stops the endpoint. This method is intended to be called during application shutdown.
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -6,12 +6,9 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Properties;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -23,14 +20,12 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
 import java.nio.charset.StandardCharsets;
 import java.util.stream.Collectors;
 import java.util.Collections;
-import java.io.InputStream;
 
 
 import java.io.BufferedReader;
@@ -39,6 +34,7 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.sql.SQLException;
 import java.util.UUID;
+import java.util.BitSet;
 
 /**
  * The {@code NewsBot} class represents the main functionality for a Telegram bot.
@@ -50,10 +46,29 @@ import java.util.UUID;
  */
 public class NewsBot {
 
+    private static final String DEFAULT_API_URL = "https://api.telegram.org";
+
     private static String token;
+    private static String apiUrl = DEFAULT_API_URL;
     private static WebTarget baseTarget;
     private static Client client = ClientBuilder.newClient();
     private static final int MAX_MESSAGE_LENGTH = 4096; // Adjust based on your platform's limit
+    private static final int SEARCH_RESULTS = 10; // Articles listed for /search
+    private static final int RELATED_RESULTS = 5; // Articles listed for "More Like This"
+
+    /**
+     * Callback data of the "Done" button of the sources keyboard.
+     */
+    public static final String SOURCES_DONE_CALLBACK = "sources_done";
+
+    private static final String REQUEST_METRIC = "newsbot_telegram_request_seconds";
+    private static final String REQUEST_HELP = "Time of each Telegram Bot API call";
+    private static final Metrics.Timer sendMessageTimer = Metrics.timer(REQUEST_METRIC, REQUEST_HELP, "method", "sendMessage");
+    private static final Metrics.Timer editMessageTimer = Metrics.timer(REQUEST_METRIC, REQUEST_HELP, "method", "editMessageText");
+    private static final Metrics.Timer deleteMessageTimer = Metrics.timer(REQUEST_METRIC, REQUEST_HELP, "method", "deleteMessage");
+    private static final Metrics.Timer getUpdatesTimer = Metrics.timer(REQUEST_METRIC, REQUEST_HELP, "method", "getUpdates");
+    private static final Metrics.Counter updatesReceived =
+            Metrics.counter("newsbot_telegram_updates_total", "Updates received from getUpdates");
 
     static {
         loadProperties();
@@ -61,20 +76,12 @@ public class NewsBot {
     }
 
     /**
-     * Loads bot properties from the configuration file.
+     * Loads the bot properties from the {@link BotConfig}.
      */
     private static void loadProperties() {
-        try (InputStream input = NewsBot.class.getClassLoader().getResourceAsStream("bot.properties")) {
-            Properties prop = new Properties();
-            if (input == null) {
-                System.err.println("Sorry, unable to find bot.properties");
-                return;
-            }
-            prop.load(input);
-            token = prop.getProperty("telegram.token");
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
+        token = BotConfig.get("telegram.token", null);
+        // The API URL can be pointed at a local Bot API stub (e.g. by the load test) via a system property
+        apiUrl = BotConfig.get("telegram.api.url", DEFAULT_API_URL);
     }
 
     /**
@@ -82,18 +89,28 @@ public class NewsBot {
      */
     private static void initClient() {
         Client client = ClientBuilder.newClient();
-        baseTarget = client.target("https://api.telegram.org/bot{token}")
+        baseTarget = client.target(apiUrl + "/bot{token}")
                 .resolveTemplate("token", token);
     }
 
+    /**
+     * Counts a failed Telegram Bot API call (an error response or an exception).
+     *
+     * @param method The Bot API method.
+     */
+    private static void countError(String method) {
+        Metrics.counter("newsbot_telegram_errors_total", "Telegram Bot API calls that failed", "method", method).increment();
+    }
+
     /**
      * Sends a message to a user with optional reply markup (inline or reply telegram keyboard) in JSON format.
      *
      * @param message The message text to be sent.
      * @param userId The telegram user ID to whom the message will be sent.
      * @param replyMarkupJson The JSON string representing the reply markup (keyboard).
+     * @return The ID of the sent message, or -1 if it could not be sent.
      */
-    public static void sendMessage(String message, long userId, String replyMarkupJson) {
+    public static long sendMessage(String message, long userId, String replyMarkupJson) {
         try {
             JsonObject jsonBody = new JsonObject();
             jsonBody.addProperty("chat_id", userId);
@@ -107,22 +124,29 @@ public class NewsBot {
             }
             jsonBody.addProperty("parse_mode", "Markdown");
 
+            long start = System.nanoTime();
             Response response = baseTarget.path("sendMessage")
                     .request(MediaType.APPLICATION_JSON)
                     .post(Entity.entity(jsonBody.toString(), MediaType.APPLICATION_JSON));
 
             String jsonString = response.readEntity(String.class);
+            sendMessageTimer.recordSince(start);
             JsonObject jsonObject = JsonParser.parseString(jsonString).getAsJsonObject();
 
             if (jsonObject.get("ok").getAsBoolean()) {
                 JsonObject result = jsonObject.getAsJsonObject("result");
+                long messageId = result.get("message_id").getAsLong();
+                NotificationEngine.recordMessage(userId, messageId);
+                return messageId;
             } else {
-                System.err.println("Couldn't successfully send message");
+                countError("sendMessage");
+                Log.warn("NewsBot", "Couldn't send message", "response", jsonString);
             }
         } catch (Exception e) {
-            System.err.println("Error sending message: " + e.getMessage());
-            e.printStackTrace();
+            countError("sendMessage");
+            Log.error("NewsBot", "Error sending message", "user", userId, e);
         }
+        return -1;
     }
 
     /**
@@ -137,9 +161,14 @@ public class NewsBot {
         jsonBody.addProperty("message_id", messageId);
 
 
+        long start = System.nanoTime();
         Response response = baseTarget.path("deleteMessage")
                 .request(MediaType.APPLICATION_JSON)
                 .post(Entity.entity(jsonBody.toString(), MediaType.APPLICATION_JSON));
+        deleteMessageTimer.recordSince(start);
+        if (response.getStatus() != 200) {
+            countError("deleteMessage");
+        }
     }
 
     /**
@@ -149,8 +178,9 @@ public class NewsBot {
      * @param userId The user ID for whom the message will be edited.
      * @param messageId The ID of the message to edit.
      * @param replyMarkupJson JSON string for the new reply markup (keyboard) to be attached with the edited message.
+     * @return true if the message was edited.
      */
-    public static void editMessage(String newText, long userId, long messageId, String replyMarkupJson) {
+    public static boolean editMessage(String newText, long userId, long messageId, String replyMarkupJson) {
         try {
             JsonObject jsonBody = new JsonObject();
             jsonBody.addProperty("chat_id", userId);
@@ -161,23 +191,28 @@ public class NewsBot {
             }
             jsonBody.addProperty("parse_mode", "Markdown");
 
+            long start = System.nanoTime();
             Response response = baseTarget.path("editMessageText")
                     .request(MediaType.APPLICATION_JSON)
                     .post(Entity.entity(jsonBody.toString(), MediaType.APPLICATION_JSON));
 
             String jsonString = response.readEntity(String.class);
+            editMessageTimer.recordSince(start);
             JsonObject jsonObject = JsonParser.parseString(jsonString).getAsJsonObject();
 
             if (!jsonObject.get("ok").getAsBoolean()) {
-                System.err.println("Couldn't successfully edit message. Error: " + jsonObject.toString());
+                countError("editMessageText");
+                Log.warn("NewsBot", "Couldn't edit message", "response", jsonString);
             } else {
-                System.out.println("Message edited successfully.");
+                Log.debugUser("NewsBot", userId, "Message edited", "message", messageId);
+                return true;
             }
 
         } catch (Exception e) {
-            System.err.println("Error editing message with keyboard: " + e.getMessage());
-            e.printStackTrace();
+            countError("editMessageText");
+            Log.error("NewsBot", "Error editing message", "user", userId, e);
         }
+        return false;
     }
 
     /**
@@ -250,20 +285,100 @@ public class NewsBot {
         return replyMarkup.toString();
     }
 
+    /**
+     * Generates a keyboard layout for selecting the time zone used for quiet hours and digests.
+     *
+     * @return A JSON string representing the keyboard layout for time zone selection.
+     */
+    public static String getTimezoneKeyboardArray() {
+        String[] zones = {"UTC", "Europe/London", "Europe/Berlin", "Europe/Kyiv", "Europe/Moscow", "Asia/Dubai",
+                "Asia/Kolkata", "Asia/Shanghai", "Asia/Tokyo", "Australia/Sydney", "America/New_York",
+                "America/Chicago", "America/Denver", "America/Los_Angeles", "America/Sao_Paulo"};
+        JsonArray keyboardArray = new JsonArray();
+        JsonArray zoneRow = new JsonArray();
+        for (String zone : zones) {
+            JsonObject zoneButton = new JsonObject();
+            zoneButton.addProperty("text", zone);
+            zoneButton.addProperty("callback_data", "bot_user|timezone|" + zone);
+            zoneRow.add(zoneButton);
+            // Two zones per row
+            if (zoneRow.size() == 2) {
+                keyboardArray.add(zoneRow);
+                zoneRow = new JsonArray();
+            }
+        }
+        if (zoneRow.size() > 0) {
+            keyboardArray.add(zoneRow);
+        }
+        JsonObject replyMarkup = new JsonObject();
+        replyMarkup.add("inline_keyboard", keyboardArray);
+        return replyMarkup.toString();
+    }
+
+    /**
+     * Generates a keyboard layout for selecting quiet hours, during which no notification is sent.
+     *
+     * @return A JSON string representing the keyboard layout for quiet hours selection.
+     */
+    public static String getQuietHoursKeyboardArray() {
+        String[][] options = {{"No quiet hours", "off"}, {"21:00 - 06:00", "21-06"}, {"22:00 - 07:00", "22-07"},
+                {"23:00 - 08:00", "23-08"}, {"00:00 - 09:00", "00-09"}};
+        return getSettingKeyboardArray("quiet_hours", options);
+    }
+
+    /**
+     * Generates a keyboard layout for selecting how notifications are grouped: on every update interval, in an
+     * hourly digest or in a daily digest.
+     *
+     * @return A JSON string representing the keyboard layout for digest selection.
+     */
+    public static String getDigestKeyboardArray() {
+        String[][] options = {{"On every update interval", "off"}, {"Hourly digest", "hourly"},
+                {"Daily digest at 08:00", "daily-08"}, {"Daily digest at 12:00", "daily-12"},
+                {"Daily digest at 18:00", "daily-18"}, {"Daily digest at 21:00", "daily-21"}};
+        return getSettingKeyboardArray("digest", options);
+    }
+
+    /**
+     * Generates an inline keyboard with one button per row setting a {@code bot_user} column.
+     *
+     * @param column The column set by the buttons.
+     * @param options Pairs of button text and column value.
+     * @return A JSON string representing the keyboard layout.
+     */
+    private static String getSettingKeyboardArray(String column, String[][] options) {
+        JsonArray keyboardArray = new JsonArray();
+        for (String[] option : options) {
+            JsonArray optionRow = new JsonArray();
+            JsonObject optionButton = new JsonObject();
+            optionButton.addProperty("text", option[0]);
+            optionButton.addProperty("callback_data", "bot_user|" + column + "|" + option[1]);
+            optionRow.add(optionButton);
+            keyboardArray.add(optionRow);
+        }
+        JsonObject replyMarkup = new JsonObject();
+        replyMarkup.add("inline_keyboard", keyboardArray);
+        return replyMarkup.toString();
+    }
+
     /**
      * Generates a keyboard layout for selecting news sources (In future will be replaced by webhook query search).
+     * Several sources can be selected: each button toggles its feed and the selected feeds are marked. The
+     * "Done" button ends the selection.
      *
+     * @param selectedLinks The links of the feeds the user is subscribed to.
      * @return A JSON string representing the keyboard layout for source selection.
      */
-    public static String getSourcesKeyboardArray() {
+    public static String getSourcesKeyboardArray(List<String> selectedLinks) {
         JsonArray keyboardArray = new JsonArray();
         JsonArray sourceRow = new JsonArray();
 
-        // Assuming you have a method to read lines from a file into a List
-        ArrayList<String> lines = DB.getRssFeedsNames();
+        // Feed names come from the in-memory catalog loaded at startup
+        List<String> lines = FeedCatalog.getNames();
 
         for (String line : lines) {
-            String buttonName = line;
+            boolean selected = selectedLinks.contains(FeedCatalog.getLinkByName(line));
+            String buttonName = selected ? "\u2705 " + line : line;
             // Create the button object
             JsonObject button = new JsonObject();
             button.addProperty("text", buttonName);
@@ -274,6 +389,13 @@ public class NewsBot {
 
         // Add the sourceRow to the keyboardArray
         keyboardArray.add(sourceRow);
+
+        JsonArray doneRow = new JsonArray();
+        JsonObject doneButton = new JsonObject();
+        doneButton.addProperty("text", "Done");
+        doneButton.addProperty("callback_data", SOURCES_DONE_CALLBACK);
+        doneRow.add(doneButton);
+        keyboardArray.add(doneRow);
         JsonObject replyMarkup = new JsonObject();
         replyMarkup.add("inline_keyboard", keyboardArray);
         return replyMarkup.toString();
@@ -283,6 +405,7 @@ public class NewsBot {
      * Generates a keyboard layout for navigating through news articles.
      *
      * @param isFullArticle Indicates if the full article is displayed. Useful for showing a "More Info" button.
+     *                      A "More Like This" button is shown with every article.
      * @param isFirstAfterParsing True if it's the first article shown after parsing, enabling a "Read Articles" button instead of "Next Article".
      * @param isSettings True if settings options should be displayed, which includes "Change ..." buttons without news navigation, useful when there's no new news to display.
      * @return JSON string representing the keyboard layout for news navigation.
@@ -306,11 +429,16 @@ public class NewsBot {
             keyboardArray.add(firstRow);
 
             // Second Row (if applicable)
-            if (!isFullArticle && !isFirstAfterParsing) {
+            if (!isFirstAfterParsing) {
                 JsonArray secondRow = new JsonArray();
-                JsonObject moreButton = new JsonObject();
-                moreButton.addProperty("text", "More Info");
-                secondRow.add(moreButton);
+                if (!isFullArticle) {
+                    JsonObject moreButton = new JsonObject();
+                    moreButton.addProperty("text", "More Info");
+                    secondRow.add(moreButton);
+                }
+                JsonObject moreLikeThisButton = new JsonObject();
+                moreLikeThisButton.addProperty("text", "More Like This");
+                secondRow.add(moreLikeThisButton);
                 // Add the second row to the keyboard
                 keyboardArray.add(secondRow);
             }
@@ -342,6 +470,10 @@ public class NewsBot {
         languageButton.addProperty("text", "Change Language");
         fifthRow.add(languageButton);
 
+        JsonObject deliveryButton = new JsonObject();
+        deliveryButton.addProperty("text", "Change Delivery");
+        fifthRow.add(deliveryButton);
+
         // Add the fifth row to the keyboard
         keyboardArray.add(fifthRow);
 
@@ -375,8 +507,9 @@ public class NewsBot {
             message = "Choose how often you want to receive updates (minutes):";
             messageKeyboardArray = getDeltaTimeKeyboardArray();
         } else if (!sources) {
-            message = "Suggest one of these links for news sources:";
-            messageKeyboardArray = getSourcesKeyboardArray();
+            message = "Suggest one of these links for news sources (choose one or more, then press Done):";
+            UserProfile userInfo = DB.getUserInfoByUserId(userId);
+            messageKeyboardArray = getSourcesKeyboardArray(userInfo == null ? List.of() : userInfo.sources());
         }
         sendMessage(message, userId, messageKeyboardArray);
     }
@@ -390,21 +523,19 @@ public class NewsBot {
      *         false if the user's information is already complete.
      */
     public static boolean checkAndRunRegistration(long userId) {
-        Map<String, Object> userInfo = DB.getUserInfoByUserId(userId);
+        UserProfile userInfo = DB.getUserInfoByUserId(userId);
 
         if (userInfo == null) {
             handleRegistration(userId, false, false, false, false);
             return true;
         } else {
-            boolean hasTelegramId = userInfo.get("telegram_id") != null;
-            boolean hasSources = userInfo.get("sources") != null; // Assuming you need to check this for registration
-            boolean hasAge = userInfo.get("age") != null;
-            boolean hasLanguage = userInfo.get("language") != null;
-            boolean hasDeltaTime = userInfo.get("delta_time") != null;
+            boolean hasSources = userInfo.hasSources();
+            boolean hasAge = userInfo.age() != null;
+            boolean hasLanguage = userInfo.language() != null;
+            boolean hasDeltaTime = userInfo.hasDeltaTime();
 
             // If any required information is missing, call the registration handler
-            // Adjust the logic based on which fields are actually required for registration
-            if (!hasTelegramId || !hasAge || !hasLanguage || !hasDeltaTime || !hasSources) {
+            if (!hasAge || !hasLanguage || !hasDeltaTime || !hasSources) {
                 handleRegistration(userId, hasLanguage, hasAge, hasSources, hasDeltaTime);
                 return true;
             }
@@ -418,7 +549,7 @@ public class NewsBot {
      * @param fullMessage The full message that might exceed the platform's maximum message length.
      * @return A list of message parts, each conforming to the maximum message length.
      */
-    private static List<String> splitIntoParts(String fullMessage) {
+    static List<String> splitIntoParts(String fullMessage) {
         List<String> parts = new ArrayList<>();
         String[] lines = fullMessage.split("\n", -1); // Split by newlines, keeping empty lines
         StringBuilder part = new StringBuilder();
@@ -473,21 +604,17 @@ public class NewsBot {
      */
     public static void processData(String data, long userId, Long messageId, String messageText) {
         if (data.equals("More Info")) {
-            Map<String, String> firstUnreadArticle = DB.getFirstUnreadArticleForUser(userId);
-
-            String title = firstUnreadArticle.get("title");
-            String summary = firstUnreadArticle.get("summary");
-            String link = firstUnreadArticle.get("link");
-            String fullStory = firstUnreadArticle.get("full_story");
-            String unreadNumber = firstUnreadArticle.get("unread_number");
+            // The headline is enough to find the stored variant; the full article is read only to render it
+            UnreadArticle firstUnread = DB.getFirstUnreadArticleForUser(userId, ArticleProjection.HEADLINE);
 
-            if (unreadNumber.equals("0") || unreadNumber == null) {
+            NotificationEngine.recordSeen(userId, firstUnread.unreadNumber());
+            if (!firstUnread.hasUnread()) {
                 NewsBot.sendMessage("No more fresh news", userId, NewsBot.getNewsKeyboardArray(false, true, true));
             }
             else {
-
-                // Format the message using Markdown
-                String message = String.format("*Fresh News available (%s)*\n\n*%s*\n\n*Summary:* %s\n\n*Full Story:* %s\n\n[Read More](%s)", unreadNumber, title, summary, fullStory, link);
+                // Rendered once per language and age group, see ArticleVariants
+                String message = String.format("*Fresh News available (%d)*\n\n", firstUnread.unreadNumber())
+                        + ArticleVariants.render(userId, firstUnread.article(), ArticleProjection.FULL);
 
                 List<String> messageParts = splitIntoParts(message);
                 for (int i = 0; i < messageParts.size(); i++) {
@@ -510,48 +637,85 @@ public class NewsBot {
                 DB.markFirstUnreadArticleAsRead(userId);
             }
 
-            Map<String, String> firstUnreadArticle = DB.getFirstUnreadArticleForUser(userId);
-
-            String title = firstUnreadArticle.get("title");
-            String summary = firstUnreadArticle.get("summary");
-            String link = firstUnreadArticle.get("link");
-            String unreadNumber = firstUnreadArticle.get("unread_number");
+            UnreadArticle firstUnread = DB.getFirstUnreadArticleForUser(userId, ArticleProjection.HEADLINE);
 
-            if (unreadNumber.equals("0") || unreadNumber == null) {
+            NotificationEngine.recordSeen(userId, firstUnread.unreadNumber());
+            if (!firstUnread.hasUnread()) {
                 NewsBot.sendMessage("No more fresh news", userId, NewsBot.getNewsKeyboardArray(false, true, true));
             }
             else {
-                String message = String.format("*Fresh News available (%s)*\n\n*%s*\n\n*Summary:* %s\n\n[Read More](%s)", unreadNumber, title, summary, link);
+                String message = String.format("*Fresh News available (%d)*\n\n", firstUnread.unreadNumber())
+                        + ArticleVariants.render(userId, firstUnread.article(), ArticleProjection.HEADLINE);
 
 
                 String newsKeyboardArray = getNewsKeyboardArray(false, false, false);
                 sendMessage(message, userId, newsKeyboardArray);
             }
+        } else if (data.equals("More Like This")) {
+            // Related to the article being read, i.e. the first unread one
+            UnreadArticle firstUnread = DB.getFirstUnreadArticleForUser(userId, ArticleProjection.HEADLINE);
+            if (!firstUnread.hasUnread()) {
+                NewsBot.sendMessage("No more fresh news", userId, NewsBot.getNewsKeyboardArray(false, true, true));
+                return;
+            }
+
+            // Related articles removed since they were recommended are left out
+            List<Integer> relatedIds = ArticleRecommender.getRelated((int) firstUnread.article().id(), RELATED_RESULTS);
+            Map<Integer, Article> stored = DB.getArticlesByIds(relatedIds);
+            List<Article> related = new ArrayList<>();
+            for (int relatedId : relatedIds) {
+                if (stored.containsKey(relatedId)) {
+                    related.add(stored.get(relatedId));
+                }
+            }
+            if (related.isEmpty()) {
+                sendMessage("No related articles found", userId, "");
+            } else {
+                sendMessage(formatArticleList("*More like this*", related), userId, "");
+            }
         } else if (data.equals("Clear")) {
             DB.markAllUnreadArticlesAsRead(userId);
+            NotificationEngine.recordSeen(userId, 0);
             sendMessage("Feed is clear", userId, getNewsKeyboardArray(false, false, true));
         } else if (data.equals("Change Parsing Time")) {
             handleRegistration(userId, true, true, true, false);
         } else if (data.equals("Change Source")) {
-            DB.deleteAllUserArticles(userId);
+            // Read state is kept per feed: feeds that stay selected keep it, dropped feeds lose it
             handleRegistration(userId, true, true, false, true);
         } else if (data.equals("Change Language")) {
             DB.deleteAllUserArticles(userId);
             handleRegistration(userId, false, true, true, true);
-        } else {
+        } else if (data.equals("Change Delivery")) {
+            sendMessage("Choose your time zone:", userId, getTimezoneKeyboardArray());
+        } else if (data.equals(SOURCES_DONE_CALLBACK)) {
             editMessage(messageText, userId, messageId, "");
+            try {
+                DB.rescheduleTasks(userId);
+            } catch (SQLException e) {
+                Log.error("NewsBot", "Error rescheduling tasks", "user", userId, e);
+            }
+        } else {
             String[] parts = data.split("\\|", 3);
-            String table = parts[0];
             String column = parts[1];
-
             String value = parts[2];
 
-            Map<String, String> newUserInfo = new HashMap<>();
-
-            newUserInfo.put("telegram_id", Long.toString(userId));
-            newUserInfo.put(column, value);
-
-            DB.updateOrInsertUserInfo(newUserInfo);
+            if (column.equals("sources")) {
+                // Sources are toggled on the same keyboard until "Done"
+                DB.toggleSubscription(userId, value);
+                UserProfile userInfo = DB.getUserInfoByUserId(userId);
+                editMessage(messageText, userId, messageId,
+                        getSourcesKeyboardArray(userInfo == null ? List.of() : userInfo.sources()));
+                return;
+            }
+            editMessage(messageText, userId, messageId, "");
+            UserSetting setting = UserSetting.fromColumn(column);
+            DB.updateUserSetting(userId, setting, value);
+            // The delivery settings are chosen one after another
+            if (setting == UserSetting.TIMEZONE) {
+                sendMessage("Choose your quiet hours (no notifications during them):", userId, getQuietHoursKeyboardArray());
+            } else if (setting == UserSetting.QUIET_HOURS) {
+                sendMessage("Choose how to group notifications:", userId, getDigestKeyboardArray());
+            }
         }
     }
 
@@ -571,6 +735,100 @@ public class NewsBot {
         checkAndRunRegistration(userId);
     }
 
+    /**
+     * Searches the stored articles and sends the best matches as a list of links.
+     *
+     * @param userId The telegram user ID.
+     * @param query The search terms, e.g. "black hole".
+     */
+    private static void sendSearchResults(long userId, String query) {
+        if (query.isEmpty()) {
+            sendMessage("Usage: /search <terms>, e.g. /search black hole", userId, "");
+            return;
+        }
+
+        List<Article> articles = ArticleSearch.search(query, SEARCH_RESULTS);
+        if (articles.isEmpty()) {
+            sendMessage("No articles found", userId, "");
+            return;
+        }
+        sendMessage(formatArticleList("*Search results*", articles), userId, "");
+    }
+
+    /**
+     * Handles the topic filter commands: {@code /follow <topic>} shows only articles with a followed topic,
+     * {@code /mute <topic>} hides articles with the topic, {@code /unfollow <topic>} undoes either, and
+     * {@code /topics} shows the filter. Topics are the related topics and terms of the stored articles.
+     *
+     * @param userId The telegram user ID.
+     * @param text The command with its topic, e.g. "/follow Black Holes".
+     */
+    private static void processTopicCommand(long userId, String text) {
+        int space = text.indexOf(' ');
+        String command = space == -1 ? text : text.substring(0, space);
+        String name = space == -1 ? "" : text.substring(space + 1).trim();
+
+        if (!command.equals("/topics")) {
+            if (name.isEmpty()) {
+                sendMessage("Usage: " + command + " <topic>, e.g. " + command + " Astronomy", userId, "");
+                return;
+            }
+            int topicId = TopicDictionary.lookup(TopicDictionary.Kind.TOPIC, name);
+            if (topicId == -1) {
+                topicId = TopicDictionary.lookup(TopicDictionary.Kind.TERM, name);
+            }
+            if (topicId == -1) {
+                sendMessage("No article has the topic \"" + name + "\" yet", userId, "");
+                return;
+            }
+            switch (command) {
+                case "/follow" -> TopicFilters.follow(userId, topicId);
+                case "/mute" -> TopicFilters.mute(userId, topicId);
+                case "/unfollow" -> TopicFilters.reset(userId, topicId);
+                default -> {
+                    sendMessage("Unknown command " + command, userId, "");
+                    return;
+                }
+            }
+        }
+
+        TopicFilters.Filter filter = TopicFilters.get(userId);
+        String message = "*Followed topics:* " + topicNames(filter.include(), "all")
+                + "\n*Muted topics:* " + topicNames(filter.exclude(), "none")
+                + "\n\n/follow <topic>, /mute <topic>, /unfollow <topic>";
+        sendMessage(message, userId, "");
+    }
+
+    /**
+     * Lists the names of a set of topics.
+     *
+     * @param topicIds The bitmap of the topic IDs.
+     * @param none The text if the set is empty.
+     * @return The names, comma-separated.
+     */
+    private static String topicNames(BitSet topicIds, String none) {
+        if (topicIds.isEmpty()) {
+            return none;
+        }
+        return topicIds.stream().mapToObj(TopicDictionary::getName).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Formats articles as a numbered list of links.
+     *
+     * @param header The first line of the message, in Markdown.
+     * @param articles The articles, with their title and link.
+     * @return The message in Markdown.
+     */
+    private static String formatArticleList(String header, List<Article> articles) {
+        StringBuilder message = new StringBuilder(header).append('\n');
+        for (int i = 0; i < articles.size(); i++) {
+            Article article = articles.get(i);
+            message.append('\n').append(i + 1).append(". [").append(article.title()).append("](").append(article.link()).append(')');
+        }
+        return message.toString();
+    }
+
     /**
      * Processes a message received from the messaging platform.
      *
@@ -582,17 +840,28 @@ public class NewsBot {
         String text = message.has("text") ? message.get("text").getAsString() : "Non-text message";
 
         if (text.equals("Change Parsing Time") || text.equals("Next Article") || text.equals("Change Source")
-                || text.equals("More Info") || text.equals("Clear") || text.equals("Read Articles") || text.equals("Change Language")) {
+                || text.equals("More Info") || text.equals("Clear") || text.equals("Read Articles") || text.equals("Change Language")
+                || text.equals("Change Delivery") || text.equals("More Like This")) {
+            NotificationEngine.recordMessage(userId, messageId);
             processData(text, userId, null, text);
+        } else if (text.equals("/search") || text.startsWith("/search ")) {
+            NotificationEngine.recordMessage(userId, messageId);
+            sendSearchResults(userId, text.substring("/search".length()).trim());
+        } else if (text.startsWith("/topics") || text.startsWith("/follow") || text.startsWith("/mute")
+                || text.startsWith("/unfollow")) {
+            NotificationEngine.recordMessage(userId, messageId);
+            processTopicCommand(userId, text);
         } else if (!text.equals("/start")) {
             deleteMessage(userId, messageId);
+        } else {
+            NotificationEngine.recordMessage(userId, messageId);
         }
         boolean isRegisteredUser = checkAndRunRegistration(userId);
         if (text.equals("/start") && !isRegisteredUser) {
             try {
                 DB.rescheduleTasks(userId);
             } catch (SQLException e) {
-                System.err.println("SQL error occurred: " + e.getMessage());
+                Log.error("NewsBot", "Error rescheduling tasks", "user", userId, e);
             }
         }
     }
@@ -606,21 +875,23 @@ public class NewsBot {
 
         while (true) { // Infinite loop to keep checking for updates
             try {
+                long start = System.nanoTime();
                 Response response = baseTarget.path("getUpdates")
                         .queryParam("offset", lastUpdateId + 1) // Process only new updates
                         .queryParam("timeout", 30) // Long polling timeout
                         .request()
                         .get();
 
-                String jsonString = response.readEntity(String.class);
-                JsonObject jsonObject = JsonParser.parseString(jsonString).getAsJsonObject();
-
-                if (!jsonObject.get("ok").getAsBoolean()) {
-                    System.err.println("Error retrieving updates");
+                JsonArray updates = parseUpdatesResponse(response.readEntity(String.class));
+                // Includes the long polling wait, so this measures how long the bot idles as well
+                getUpdatesTimer.recordSince(start);
+                if (updates == null) {
+                    countError("getUpdates");
+                    Log.warn("NewsBot", "Error retrieving updates");
                     continue;
                 }
+                updatesReceived.add(updates.size());
 
-                JsonArray updates = jsonObject.getAsJsonArray("result");
                 for (JsonElement updateElement : updates) {
                     JsonObject updateObject = updateElement.getAsJsonObject();
                     int updateId = updateObject.get("update_id").getAsInt();
@@ -634,12 +905,26 @@ public class NewsBot {
                     lastUpdateId = Math.max(lastUpdateId, updateId);
                 }
             } catch (Exception e) {
-                System.err.println("Error processing updates: " + e.getMessage());
-                e.printStackTrace();
+                countError("getUpdates");
+                Log.error("NewsBot", "Error processing updates", e);
             }
         }
     }
 
+    /**
+     * Parses the body of a getUpdates response.
+     *
+     * @param jsonString The JSON body returned by the Telegram Bot API.
+     * @return The array of updates, or null if the response is not ok.
+     */
+    static JsonArray parseUpdatesResponse(String jsonString) {
+        JsonObject jsonObject = JsonParser.parseString(jsonString).getAsJsonObject();
+        if (!jsonObject.get("ok").getAsBoolean()) {
+            return null;
+        }
+        return jsonObject.getAsJsonArray("result");
+    }
+
     /**
      * Determines the type of content contained in a message.
      *
@@ -0,0 +1,182 @@
+package edu.newsbot;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether the periodic task of a user sends them a "Fresh News available" notification, and whether it
+ * is sent as a new message or by editing the previous one.
+ * <p>
+ * A notification is sent only when the unread count is higher than the count the user last saw, either in a
+ * notification or while reading (see {@link #recordSeen(long, int)}); otherwise the run sends nothing. If the
+ * previous notification is still the latest message of the chat, it is edited in place rather than followed by a
+ * new message. The latest message of each chat is tracked from the messages the bot sends and the commands it
+ * receives ({@link #recordMessage(long, long)}), since message IDs grow within a chat.
+ * <p>
+ * The unread count only grows when articles passing the user's {@link TopicFilters} are added to one of their
+ * feeds, when the filter changes, when the user subscribes to a feed or when their read state is reset. These
+ * events mark the user ({@link #markNewArticles(long)}): the fan-out stage of the {@link CrawlPipeline} marks the
+ * subscribers it delivered an article to, the parser marks the subscribers of a feed it crawled directly, and
+ * {@link TopicFilters} and {@link DB} mark the user on the other changes. A run for an unmarked user does not count
+ * the unread articles at all ({@link #takeNewArticles(long)}).
+ * <p>
+ * The state of a user lives in a slot of the primitive arrays below, found through a {@link LongIntMap}; slots are
+ * never freed, a user keeps one for the lifetime of the process.
+ */
+public class NotificationEngine {
+
+    // All guarded by NotificationEngine.class
+    private static final LongIntMap slotsByUser = new LongIntMap();
+    // Unread count the user last saw, -1 if unknown
+    private static int[] seenCounts = new int[16];
+    // Message ID of the last notification, 0 if none
+    private static long[] notificationIds = new long[16];
+    // Highest message ID of the chat, 0 if unknown
+    private static long[] latestMessageIds = new long[16];
+    // Whether articles may have become unread since the last run; true for a new slot, whose count is unknown
+    private static boolean[] newArticles = new boolean[16];
+
+    private static final String NOTIFICATIONS_METRIC = "newsbot_notifications_total";
+    private static final String NOTIFICATIONS_HELP = "Runs of the notification task by outcome";
+    private static final Metrics.Counter notificationsSent =
+            Metrics.counter(NOTIFICATIONS_METRIC, NOTIFICATIONS_HELP, "outcome", "sent");
+    private static final Metrics.Counter notificationsEdited =
+            Metrics.counter(NOTIFICATIONS_METRIC, NOTIFICATIONS_HELP, "outcome", "edited");
+    private static final Metrics.Counter notificationsSuppressed =
+            Metrics.counter(NOTIFICATIONS_METRIC, NOTIFICATIONS_HELP, "outcome", "suppressed");
+    private static final Metrics.Counter notificationsSkipped =
+            Metrics.counter(NOTIFICATIONS_METRIC, NOTIFICATIONS_HELP, "outcome", "skipped");
+
+    /**
+     * Default constructor.
+     * The engine is used through its static methods only.
+     */
+    public NotificationEngine() {
+        super();
+    }
+
+    /**
+     * Notifies a user of their unread articles if the count grew since they last saw it.
+     *
+     * @param userId The telegram user ID.
+     * @param unreadNumber The current number of unread articles of the user, or -1 if it is unknown, in which
+     *                     case nothing is sent.
+     * @param force Whether to notify even if the count did not grow, e.g. on the first run after the user's
+     *              settings changed; a count of 0 is then reported as "No more fresh news".
+     */
+    public static void notifyUnread(long userId, int unreadNumber, boolean force) {
+        if (unreadNumber < 0) {
+            return;
+        }
+        long editableId;
+        synchronized (NotificationEngine.class) {
+            int slot = slotFor(userId);
+            if (!force && unreadNumber <= seenCounts[slot]) {
+                // Also lowers the baseline after articles were read elsewhere, so the next new article counts
+                seenCounts[slot] = unreadNumber;
+                notificationsSuppressed.increment();
+                return;
+            }
+            seenCounts[slot] = unreadNumber;
+            long notificationId = notificationIds[slot];
+            editableId = notificationId != 0 && notificationId == latestMessageIds[slot] ? notificationId : 0;
+        }
+
+        if (unreadNumber == 0) {
+            NewsBot.sendMessage("No more fresh news", userId, NewsBot.getNewsKeyboardArray(false, true, true));
+            notificationsSent.increment();
+            return;
+        }
+
+        String message = String.format("*Fresh News available (%d)*", unreadNumber);
+        // The keyboard of the edited notification is still shown, so the edit does not repeat it
+        if (editableId != 0 && NewsBot.editMessage(message, userId, editableId, "")) {
+            notificationsEdited.increment();
+            return;
+        }
+        long messageId = NewsBot.sendMessage(message, userId, NewsBot.getNewsKeyboardArray(false, true, false));
+        if (messageId != -1) {
+            synchronized (NotificationEngine.class) {
+                notificationIds[slotFor(userId)] = messageId;
+            }
+        }
+        notificationsSent.increment();
+    }
+
+    /**
+     * Records the unread count shown to a user outside of notifications, e.g. above an article.
+     *
+     * @param userId The telegram user ID.
+     * @param unreadNumber The unread count the user saw.
+     */
+    public static synchronized void recordSeen(long userId, int unreadNumber) {
+        seenCounts[slotFor(userId)] = unreadNumber;
+    }
+
+    /**
+     * Records a message of a chat, sent by the bot or by the user.
+     *
+     * @param userId The telegram user ID (chat ID).
+     * @param messageId The ID of the message.
+     */
+    public static synchronized void recordMessage(long userId, long messageId) {
+        int slot = slotFor(userId);
+        latestMessageIds[slot] = Math.max(latestMessageIds[slot], messageId);
+    }
+
+    /**
+     * Marks a user whose unread count may have grown, so that their next run counts the unread articles.
+     *
+     * @param userId The telegram user ID.
+     */
+    public static synchronized void markNewArticles(long userId) {
+        newArticles[slotFor(userId)] = true;
+    }
+
+    /**
+     * Marks users whose unread count may have grown, under a single lock.
+     *
+     * @param userIds The telegram user IDs.
+     * @param count The number of user IDs to mark, from the start of the array.
+     */
+    public static synchronized void markNewArticles(long[] userIds, int count) {
+        for (int i = 0; i < count; i++) {
+            newArticles[slotFor(userIds[i])] = true;
+        }
+    }
+
+    /**
+     * Tells whether the unread count of a user may have grown since the last call, and clears the mark. A run
+     * that gets false can skip counting the unread articles: {@link #notifyUnread(long, int, boolean)} would not
+     * send anything. The mark is cleared before the caller counts, so articles added meanwhile mark the user again.
+     *
+     * @param userId The telegram user ID.
+     * @return true if the user was marked, or is not known yet.
+     */
+    public static synchronized boolean takeNewArticles(long userId) {
+        int slot = slotFor(userId);
+        boolean marked = newArticles[slot];
+        newArticles[slot] = false;
+        if (!marked) {
+            notificationsSkipped.increment();
+        }
+        return marked;
+    }
+
+    private static int slotFor(long userId) {
+        int slot = slotsByUser.get(userId);
+        if (slot != LongIntMap.NO_VALUE) {
+            return slot;
+        }
+        slot = slotsByUser.size();
+        if (slot == seenCounts.length) {
+            seenCounts = Arrays.copyOf(seenCounts, slot * 2);
+            notificationIds = Arrays.copyOf(notificationIds, slot * 2);
+            latestMessageIds = Arrays.copyOf(latestMessageIds, slot * 2);
+            newArticles = Arrays.copyOf(newArticles, slot * 2);
+        }
+        slotsByUser.put(userId, slot);
+        seenCounts[slot] = -1;
+        newArticles[slot] = true;
+        return slot;
+    }
+}
@@ -0,0 +1,536 @@
+package edu.newsbot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Disk cache of page content keyed by URL, shared by all feeds and kept across restarts.
+ * <p>
+ * Several ScienceDaily feeds list the same article, and the database is cleared on every start, so without
+ * the cache the same detailed page is downloaded and parsed again for every feed and after every restart.
+ * <p>
+ * Values are stored deflate-compressed in an append-only segment file ({@code pages.dat}). Each record holds
+ * <pre>
+ * [int record length][long URL hash][long stored at (epoch millis)][int URL length][URL][int value length][deflated value]
+ * </pre>
+ * The records are found through an open-addressing hash table in a memory-mapped index file
+ * ({@code pages.idx}): a header {@code [int magic][int capacity][long segment length]} followed by
+ * {@code [long URL hash][long record offset]} slots, where a hash of 0 marks an empty slot. The index is rebuilt
+ * from the segment when the segment length in its header does not match the segment file (e.g. after a crash).
+ * <p>
+ * Entries older than the TTL are misses. A replaced or expired record stays in the segment until compaction,
+ * which copies the live records to a new segment once half of the segment is garbage or the segment exceeds
+ * its maximum size; in the latter case the oldest entries are dropped as well.
+ * <p>
+ * Configuration in {@code bot.properties} (system properties take precedence):
+ * <ul>
+ *     <li>{@code page.cache.dir}: the directory of the cache files (default: page-cache).</li>
+ *     <li>{@code page.cache.ttl.hours}: how long an entry is used (default: 168).</li>
+ *     <li>{@code page.cache.max.mb}: the maximum segment size (default: 256); 0 disables the cache.</li>
+ * </ul>
+ */
+public class PageCache {
+
+    private static final String SEGMENT_FILE = "pages.dat";
+    private static final String INDEX_FILE = "pages.idx";
+    private static final int INDEX_MAGIC = 0x4e425043;
+    private static final int INDEX_HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 16;
+    private static final int MIN_CAPACITY = 1 << 12;
+    // The index is grown when more than 70% of its slots are used
+    private static final double MAX_LOAD = 0.7;
+    // Record length, URL hash, stored at and URL length
+    private static final int RECORD_HEADER_BYTES = 24;
+    // Segments smaller than this are not compacted just because of garbage
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private static final Metrics.Counter hits =
+            Metrics.counter("newsbot_page_cache_requests_total", "Page cache lookups", "result", "hit");
+    private static final Metrics.Counter misses =
+            Metrics.counter("newsbot_page_cache_requests_total", "Page cache lookups", "result", "miss");
+    private static final Metrics.Counter compactions =
+            Metrics.counter("newsbot_page_cache_compactions_total", "Page cache segment compactions");
+
+    // All state below is guarded by PageCache.class
+    private static boolean enabled;
+    private static Path directory;
+    private static long ttlMillis;
+    private static long maxBytes;
+    private static FileChannel segment;
+    private static long segmentLength;
+    // Bytes of the segment taken by the records the index points to
+    private static long liveBytes;
+    private static MappedByteBuffer index;
+    private static int capacity;
+    private static int entries;
+
+    static {
+        Metrics.gauge("newsbot_page_cache_bytes", "Size of the page cache segment", null, null, PageCache::getSegmentLength);
+        Metrics.gauge("newsbot_page_cache_entries", "Entries in the page cache", null, null, PageCache::getEntries);
+        open();
+    }
+
+    /**
+     * Default constructor.
+     * The cache is used through its static methods only.
+     */
+    public PageCache() {
+        super();
+    }
+
+    /**
+     * Returns the cached value of a URL.
+     *
+     * @param url The URL of the page.
+     * @return The value, or null if the URL is not cached, its entry has expired or the cache is disabled.
+     */
+    public static synchronized byte[] get(String url) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            long hash = hash(url);
+            int slot = findSlot(hash);
+            if (index.getLong(slotPosition(slot)) == hash) {
+                byte[] value = readValue(index.getLong(slotPosition(slot) + 8), hash, url);
+                if (value != null) {
+                    hits.increment();
+                    return value;
+                }
+            }
+        } catch (IOException | DataFormatException e) {
+            Log.error("PageCache", "Error reading page cache", "url", url, e);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores the value of a URL, replacing a previous value.
+     *
+     * @param url   The URL of the page.
+     * @param value The value.
+     */
+    public static synchronized void put(String url, byte[] value) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long hash = hash(url);
+            ByteBuffer record = encodeRecord(hash, url, value, System.currentTimeMillis());
+            long offset = segmentLength;
+            writeFully(segment, record, offset);
+            segmentLength += record.limit();
+            liveBytes += record.limit();
+
+            int slot = findSlot(hash);
+            int position = slotPosition(slot);
+            if (index.getLong(position) == hash) {
+                liveBytes -= readRecordLength(index.getLong(position + 8));
+            } else {
+                entries++;
+            }
+            index.putLong(position, hash);
+            index.putLong(position + 8, offset);
+            index.putLong(8, segmentLength);
+
+            if (entries > capacity * MAX_LOAD) {
+                resizeIndex(capacity * 2);
+            }
+            if (segmentLength > maxBytes
+                    || (segmentLength > MIN_COMPACTION_BYTES && liveBytes < segmentLength / 2)) {
+                compact();
+            }
+        } catch (IOException e) {
+            Log.error("PageCache", "Error writing page cache, disabling it", "url", url, e);
+            close();
+        }
+    }
+
+    /**
+     * Writes the index and the segment to disk and closes the cache.
+     * This method is intended to be called during application shutdown.
+     */
+    public static synchronized void close() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        try {
+            index.force();
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            Log.error("PageCache", "Error closing page cache", e);
+        }
+    }
+
+    private static synchronized double getSegmentLength() {
+        return enabled ? segmentLength : 0;
+    }
+
+    private static synchronized double getEntries() {
+        return enabled ? entries : 0;
+    }
+
+    private static synchronized void open() {
+        try {
+            directory = Path.of(BotConfig.get("page.cache.dir", "page-cache"));
+            ttlMillis = TimeUnit.HOURS.toMillis(Long.parseLong(BotConfig.get("page.cache.ttl.hours", "168")));
+            maxBytes = Long.parseLong(BotConfig.get("page.cache.max.mb", "256")) << 20;
+        } catch (IllegalArgumentException e) {
+            Log.warn("PageCache", "Invalid page cache configuration, disabling the cache", "error", e.getMessage());
+            return;
+        }
+        if (maxBytes <= 0) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            segment = FileChannel.open(directory.resolve(SEGMENT_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segmentLength = segment.size();
+            if (!loadIndex()) {
+                rebuildIndex();
+            }
+            // Entries expired while the bot was stopped count as garbage
+            if (segmentLength > MIN_COMPACTION_BYTES && liveBytes - expiredBytes() < segmentLength / 2) {
+                compact();
+            }
+            enabled = true;
+            Log.info("PageCache", "Page cache opened", "entries", entries, "bytes", segmentLength);
+        } catch (IOException e) {
+            Log.error("PageCache", "Error opening page cache, continuing without it", "dir", directory, e);
+        }
+    }
+
+    /**
+     * Maps the existing index file if it matches the segment.
+     *
+     * @return true if the index was loaded, false if it has to be rebuilt.
+     */
+    private static boolean loadIndex() throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < INDEX_HEADER_BYTES) {
+                return false;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int storedCapacity = mapped.getInt(4);
+            if (mapped.getInt(0) != INDEX_MAGIC || mapped.getLong(8) != segmentLength
+                    || Integer.bitCount(storedCapacity) != 1
+                    || channel.size() != INDEX_HEADER_BYTES + (long) storedCapacity * SLOT_BYTES) {
+                return false;
+            }
+            index = mapped;
+            capacity = storedCapacity;
+        }
+
+        entries = 0;
+        liveBytes = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (index.getLong(slotPosition(slot)) != 0) {
+                entries++;
+                liveBytes += readRecordLength(index.getLong(slotPosition(slot) + 8));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the index by scanning the segment. A record cut short by a crash ends the segment.
+     */
+    private static void rebuildIndex() throws IOException {
+        List<long[]> records = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        long offset = 0;
+        while (offset + RECORD_HEADER_BYTES <= segmentLength) {
+            header.clear();
+            readFully(segment, header, offset);
+            int length = header.getInt(0);
+            if (length < RECORD_HEADER_BYTES || offset + length > segmentLength) {
+                break;
+            }
+            records.add(new long[] {header.getLong(4), offset, length});
+            offset += length;
+        }
+        if (offset < segmentLength) {
+            Log.warn("PageCache", "Truncating incomplete page cache record", "offset", offset);
+            segment.truncate(offset);
+            segmentLength = offset;
+        }
+
+        createIndex(records.size());
+        // Later records replace earlier ones with the same URL
+        for (long[] record : records) {
+            insert(record[0], record[1], (int) record[2]);
+        }
+        index.putLong(8, segmentLength);
+    }
+
+    /**
+     * Replaces the index by an empty one large enough for the given number of entries.
+     */
+    private static void createIndex(int expectedEntries) throws IOException {
+        int newCapacity = MIN_CAPACITY;
+        while (expectedEntries > newCapacity * MAX_LOAD) {
+            newCapacity *= 2;
+        }
+        // Written next to the old index and moved over it, so a mapping of the old file is never truncated
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+        Files.deleteIfExists(temporary);
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            index = channel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_BYTES + (long) newCapacity * SLOT_BYTES);
+        }
+        Files.move(temporary, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, newCapacity);
+        index.putLong(8, segmentLength);
+        capacity = newCapacity;
+        entries = 0;
+        liveBytes = 0;
+    }
+
+    private static void resizeIndex(int newCapacity) throws IOException {
+        MappedByteBuffer oldIndex = index;
+        int oldCapacity = capacity;
+        long[] slots = new long[oldCapacity * 2];
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            slots[slot * 2] = oldIndex.getLong(slotPosition(slot));
+            slots[slot * 2 + 1] = oldIndex.getLong(slotPosition(slot) + 8);
+        }
+
+        createIndex((int) (newCapacity * MAX_LOAD));
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (slots[slot * 2] != 0) {
+                insert(slots[slot * 2], slots[slot * 2 + 1], readRecordLength(slots[slot * 2 + 1]));
+            }
+        }
+    }
+
+    /**
+     * Copies the unexpired records of the index to a new segment, dropping the oldest ones while the
+     * segment would exceed three quarters of its maximum size.
+     */
+    private static void compact() throws IOException {
+        long before = segmentLength;
+        long expiredBefore = System.currentTimeMillis() - ttlMillis;
+
+        // Offsets and lengths of the live records, oldest first
+        long[] offsets = new long[entries];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (index.getLong(slotPosition(slot)) != 0) {
+                offsets[count++] = index.getLong(slotPosition(slot) + 8);
+            }
+        }
+        Arrays.sort(offsets, 0, count);
+
+        List<long[]> kept = new ArrayList<>();
+        long keptBytes = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            header.clear();
+            readFully(segment, header, offsets[i]);
+            if (header.getLong(12) >= expiredBefore) {
+                kept.add(new long[] {offsets[i], header.getInt(0)});
+                keptBytes += header.getInt(0);
+            }
+        }
+        int first = 0;
+        while (keptBytes > maxBytes / 4 * 3 && first < kept.size()) {
+            keptBytes -= kept.get(first++)[1];
+        }
+
+        Path temporary = directory.resolve(SEGMENT_FILE + ".tmp");
+        Files.deleteIfExists(temporary);
+        try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (long[] record : kept.subList(first, kept.size())) {
+                long copied = 0;
+                while (copied < record[1]) {
+                    copied += segment.transferTo(record[0] + copied, record[1] - copied, target);
+                }
+            }
+            target.force(false);
+        }
+        segment.close();
+        Files.move(temporary, directory.resolve(SEGMENT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segment = FileChannel.open(directory.resolve(SEGMENT_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentLength = segment.size();
+        rebuildIndex();
+
+        compactions.increment();
+        Log.info("PageCache", "Page cache compacted", "bytesBefore", before, "bytesAfter", segmentLength);
+    }
+
+    /**
+     * Returns the total length of the expired records of the index.
+     */
+    private static long expiredBytes() throws IOException {
+        long expiredBefore = System.currentTimeMillis() - ttlMillis;
+        long expired = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        for (int slot = 0; slot < capacity; slot++) {
+            if (index.getLong(slotPosition(slot)) != 0) {
+                header.clear();
+                readFully(segment, header, index.getLong(slotPosition(slot) + 8));
+                if (header.getLong(12) < expiredBefore) {
+                    expired += header.getInt(0);
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the slot holding the hash, or the empty slot where it would be inserted.
+     */
+    private static int findSlot(long hash) {
+        int mask = capacity - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (true) {
+            long stored = index.getLong(slotPosition(slot));
+            if (stored == hash || stored == 0) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static void insert(long hash, long offset, int length) {
+        int position = slotPosition(findSlot(hash));
+        if (index.getLong(position) == hash) {
+            liveBytes -= readRecordLengthUnchecked(index.getLong(position + 8));
+        } else {
+            entries++;
+        }
+        index.putLong(position, hash);
+        index.putLong(position + 8, offset);
+        liveBytes += length;
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static int readRecordLength(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(segment, length, offset);
+        return length.getInt(0);
+    }
+
+    private static int readRecordLengthUnchecked(long offset) {
+        try {
+            return readRecordLength(offset);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads and inflates the value of a record.
+     *
+     * @return The value, or null if the record belongs to another URL with the same hash or has expired.
+     */
+    private static byte[] readValue(long offset, long hash, String url) throws IOException, DataFormatException {
+        int length = readRecordLength(offset);
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(segment, record, offset);
+        record.flip();
+        record.getInt();
+        if (record.getLong() != hash || record.getLong() < System.currentTimeMillis() - ttlMillis) {
+            return null;
+        }
+        byte[] storedUrl = new byte[record.getInt()];
+        record.get(storedUrl);
+        if (!url.equals(new String(storedUrl, StandardCharsets.UTF_8))) {
+            return null;
+        }
+
+        byte[] value = new byte[record.getInt()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(record);
+            int inflated = 0;
+            while (inflated < value.length && !inflater.finished()) {
+                int n = inflater.inflate(value, inflated, value.length - inflated);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated page cache record");
+                }
+                inflated += n;
+            }
+        } finally {
+            inflater.end();
+        }
+        return value;
+    }
+
+    private static ByteBuffer encodeRecord(long hash, String url, byte[] value, long storedAt) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(value.length / 3 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(value);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER_BYTES + urlBytes.length + 4 + compressed.size();
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putLong(hash).putLong(storedAt).putInt(urlBytes.length).put(urlBytes);
+        record.putInt(value.length).put(compressed.toByteArray());
+        record.flip();
+        return record;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the URL; never 0, which marks an empty index slot.
+     */
+    private static long hash(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of page cache segment at " + position);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -5,9 +5,25 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.TextStyle;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The {@code Parser} class is responsible for parsing web pages to extract news information.
@@ -21,73 +37,296 @@ import java.util.Map;
  */
 public class Parser {
 
-    // Define categories for parsing detailed page information
-    private static final String[] categories = {
-            "full_story", "related_topics", "related_terms", "story_source",
-            "journal_reference", "citation_mla", "citation_chicago", "citation_apa", "related_stories"
-    };
+    // RSS pubDate format; accepts zone names like "EDT" (used by ScienceDaily) as well as numeric offsets
+    private static final DateTimeFormatter PUB_DATE_FORMAT = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("EEE, d MMM yyyy HH:mm:ss ")
+            .optionalStart().appendZoneText(TextStyle.SHORT).optionalEnd()
+            .optionalStart().appendOffset("+HHMM", "GMT").optionalEnd()
+            .toFormatter(Locale.ENGLISH);
+
+    // High-water mark of every crawled feed, keyed by the primary page URL
+    private static final ConcurrentHashMap<String, FeedHighWaterMark> highWaterMarks = new ConcurrentHashMap<>();
+
+    private static final String STAGE_METRIC = "newsbot_parser_stage_seconds";
+    private static final String STAGE_HELP = "Time spent in each crawl stage of the parser";
+    private static final Metrics.Timer fetchTimer = Metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "fetch");
+    private static final Metrics.Timer diffTimer = Metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "diff");
+    private static final Metrics.Timer extractTimer = Metrics.timer(STAGE_METRIC, STAGE_HELP, "stage", "extract");
+    private static final Metrics.Counter fetchErrors =
+            Metrics.counter("newsbot_parser_fetch_errors_total", "Pages that could not be downloaded");
+
+    /**
+     * Parses the primary page and processes only the items that are new since the last crawl.
+     *
+     * @param primaryUrl The URL of the primary page to parse.
+     * @return The new items (the delta) found on the primary page.
+     */
+    public static List<FeedItem> parsePrimaryPage(String primaryUrl) {
+        return parsePrimaryPage(primaryUrl, false);
+    }
 
     /**
      * Parses the primary page to extract links, titles, and summaries of detailed pages.
+     * Items the feed's {@link FeedHighWaterMark} already knows are skipped and the scan stops at its horizon,
+     * so only the delta is fetched and stored.
      *
      * @param primaryUrl The URL of the primary page to parse.
+     * @param catchUp    Whether the already known items should also be linked to the feed's subscribers
+     *                   (used for the first crawl after a user subscribed to the feed).
+     * @return The new items (the delta) found on the primary page.
      */
-    public static void parsePrimaryPage(String primaryUrl) {
+    public static List<FeedItem> parsePrimaryPage(String primaryUrl, boolean catchUp) {
+        FeedHighWaterMark highWaterMark = getHighWaterMark(primaryUrl);
+        List<FeedItem> newItems = new ArrayList<>();
+
         try {
             // Connect to the primary URL and parse the document
-            Document primaryDocument = Jsoup.connect(primaryUrl).get();
+            Document primaryDocument = fetchDocument(primaryUrl);
             // Select items (adjust the selector based on your primary page's HTML structure)
             Elements items = primaryDocument.select("item");
 
-            for (Element item : items) {
-                // Extract title, link, and summary from each item
-                String title = item.select("title").first().text();
-                String link = item.select("link").first().text();
-                String summary = item.select("description").first().text(); // Adjust selector as needed
+            newItems = findNewItems(primaryUrl, items);
 
-                // Parse the detailed page for each item
-                parseDetailedPage(primaryUrl, link, title, summary);
+            // Parse the detailed page for each new item
+            List<FeedItem> processedItems = new ArrayList<>();
+            for (FeedItem item : newItems) {
+                if (parseDetailedPage(primaryUrl, item)) {
+                    processedItems.add(item);
+                }
+            }
+            highWaterMark.advance(newItems, processedItems);
+
+            if (catchUp && newItems.size() < items.size()) {
+                // Known articles are already stored, they only need to be added to the feed
+                Set<String> newLinks = new HashSet<>();
+                for (FeedItem item : newItems) {
+                    newLinks.add(item.link());
+                }
+                List<String> knownLinks = new ArrayList<>();
+                for (Element element : items) {
+                    String link = UrlCanonicalizer.canonicalize(element.select("link").first().text());
+                    if (!newLinks.contains(link)) {
+                        knownLinks.add(link);
+                    }
+                }
+                DB.linkArticlesToFeed(primaryUrl, knownLinks);
+            }
+            // Crawled outside the pipeline, so the subscribers are marked here, without their topic filters
+            if (!processedItems.isEmpty() || catchUp) {
+                long[] subscribers = SubscriptionIndex.getSubscribers(FeedCatalog.getIdByLink(primaryUrl));
+                NotificationEngine.markNewArticles(subscribers, subscribers.length);
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Parser", "Error parsing primary page", "url", primaryUrl, e);
         }
+        return newItems;
     }
 
     /**
-     * Parses detailed pages to extract and store information based on predefined categories.
+     * Returns the high-water mark of a feed, creating an empty one for a feed crawled for the first time.
      *
-     * @param primaryUrl The URL of the primary page (for reference).
-     * @param url        The URL of the detailed page to parse.
-     * @param title      The title of the content.
-     * @param summary    The summary of the content.
+     * @param primaryUrl The URL of the primary page.
+     * @return The high-water mark of the feed.
+     */
+    public static FeedHighWaterMark getHighWaterMark(String primaryUrl) {
+        return highWaterMarks.computeIfAbsent(primaryUrl, url -> new FeedHighWaterMark());
+    }
+
+    /**
+     * Downloads and parses a page (RSS feed or detailed page).
+     *
+     * @param url The URL of the page.
+     * @return The parsed Jsoup Document.
+     * @throws IOException if the page cannot be downloaded.
+     */
+    public static Document fetchDocument(String url) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return Jsoup.connect(url).get();
+        } catch (IOException e) {
+            fetchErrors.increment();
+            throw e;
+        } finally {
+            fetchTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Collects the items of a feed that are new since the last crawl, newest first.
+     * Skips the items the feed's high-water mark already knows and stops at the first item below its horizon.
+     *
+     * @param primaryUrl The URL of the primary page.
+     * @param items      The RSS item elements of the primary page.
+     * @return The new items (the delta).
      */
-    public static void parseDetailedPage(String primaryUrl, String url, String title, String summary) {
-        Map<String, String> dataMap = new HashMap<>();
+    public static List<FeedItem> findNewItems(String primaryUrl, Elements items) {
+        long start = System.nanoTime();
+        FeedHighWaterMark highWaterMark = getHighWaterMark(primaryUrl);
+        List<FeedItem> newItems = new ArrayList<>();
+        for (Element element : items) {
+            FeedItem item = parseFeedItem(element);
+            if (highWaterMark.isBelowHorizon(item)) {
+                break; // Everything below this item is older than what the mark remembers
+            }
+            if (highWaterMark.isKnown(item)) {
+                continue;
+            }
+            newItems.add(item);
+        }
+        diffTimer.recordSince(start);
+        return newItems;
+    }
 
-        // Initialize the map with title, summary, and link
-        dataMap.put("title", title);
-        dataMap.put("summary", summary);
-        dataMap.put("link", url);
+    /**
+     * Extracts a feed item (title, canonical link, summary, guid and publication date) from an RSS item element.
+     *
+     * @param item The RSS item element.
+     * @return The feed item.
+     */
+    private static FeedItem parseFeedItem(Element item) {
+        String title = item.select("title").first().text();
+        String rawLink = item.select("link").first().text();
+        String link = UrlCanonicalizer.canonicalize(rawLink);
+        String summary = item.select("description").first().text(); // Adjust selector as needed
 
+        Element guidElement = item.select("guid").first();
+        String guid = guidElement == null || guidElement.text().isEmpty() || guidElement.text().equals(rawLink)
+                ? link : guidElement.text();
+
+        Instant pubDate = null;
+        Element pubDateElement = item.select("pubDate").first();
+        if (pubDateElement != null) {
+            try {
+                pubDate = ZonedDateTime.parse(pubDateElement.text().trim(), PUB_DATE_FORMAT).toInstant();
+            } catch (DateTimeParseException e) {
+                // Fall back to guid-only tracking for this item
+            }
+        }
+        return new FeedItem(title, link, summary, guid, pubDate);
+    }
+
+    /**
+     * Parses the detailed page of a feed item and stores the resulting article.
+     * A near-duplicate of an already stored story is not stored again; the stored article is linked to the
+     * feed's subscribers instead.
+     *
+     * @param primaryUrl The URL of the primary page (for reference).
+     * @param item       The feed item pointing to the detailed page.
+     * @return true if the article was stored or linked to the feed, false if the item has to be retried.
+     */
+    public static boolean parseDetailedPage(String primaryUrl, FeedItem item) {
         try {
-            // Connect to the detailed page URL and parse the document
-            Document document = Jsoup.connect(url).get();
+            Article article = getCachedArticle(item);
+            if (article == null) {
+                // Connect to the detailed page URL and parse the document
+                Document document = fetchDocument(item.link());
+                article = extractArticle(item, document);
+                cacheArticle(article);
+            }
 
-            // Parse each category and add the data to the map
-            for (String category : categories) {
-                String data = parseCategory(document, category);
-                dataMap.put(category, data);
+            DuplicateDetector.Match match = DuplicateDetector.findOrRegister(article);
+            // The original may still be being stored by another crawl; the copy is then stored as well
+            if (match.duplicate() && match.story().getArticleId() != -1) {
+                int articleId = match.story().getArticleId();
+                if (match.story().isAlias(article)) {
+                    DB.saveArticleAliases(List.of(article.link()), List.of(articleId));
+                }
+                DB.addArticlesToFeed(primaryUrl, List.of(articleId));
+                return true;
+            }
+            int articleId = DB.saveArticleToDatabase(primaryUrl, article);
+            if (match.story() != null && !match.duplicate()) {
+                DuplicateDetector.resolve(match.story(), articleId);
             }
+            // Not stored: the item stays below the high-water mark and is retried by the next crawl
+            return articleId != -1;
 
-            // Here you would save the parsed data to a database or further processing
-            // This is a placeholder call to a method that should handle database interaction
-            DB.saveArticleToDatabase(primaryUrl, dataMap);
+        } catch (IOException e) {
+            Log.error("Parser", "Error parsing detailed page", "url", item.link(), e);
+            return false;
+        }
+    }
 
+    /**
+     * Builds an article out of a feed item and the parsed document of its detailed page.
+     *
+     * @param item     The feed item (title, link and summary).
+     * @param document The Jsoup Document object of the detailed page.
+     * @return The extracted article (not stored yet, so without ID and datetime).
+     */
+    public static Article extractArticle(FeedItem item, Document document) {
+        long start = System.nanoTime();
+        Article article = new Article(0, item.title(), item.summary(), item.link(), null,
+                parseCategory(document, "full_story"),
+                parseCategory(document, "story_source"),
+                parseCategory(document, "related_topics"),
+                parseCategory(document, "related_terms"),
+                parseCategory(document, "journal_reference"),
+                parseCategory(document, "citation_mla"),
+                parseCategory(document, "citation_apa"),
+                parseCategory(document, "citation_chicago"),
+                parseCategory(document, "related_stories"));
+        extractTimer.recordSince(start);
+        return article;
+    }
+
+    /**
+     * Returns the article of a feed item from the {@link PageCache}, if its detailed page was extracted before
+     * (by another feed listing the same article, or before a restart).
+     *
+     * @param item The feed item (title, link and summary).
+     * @return The article (not stored yet, so without ID and datetime), or null if the page is not cached.
+     */
+    public static Article getCachedArticle(FeedItem item) {
+        byte[] cached = PageCache.get(UrlCanonicalizer.key(item.link()));
+        if (cached == null) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(cached))) {
+            return new Article(0, item.title(), item.summary(), item.link(), null,
+                    readCategory(input), readCategory(input), readCategory(input), readCategory(input),
+                    readCategory(input), readCategory(input), readCategory(input), readCategory(input),
+                    readCategory(input));
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.warn("Parser", "Ignoring unreadable page cache entry", "url", item.link());
+            return null;
         }
     }
 
+    /**
+     * Stores the category data extracted from a detailed page in the {@link PageCache}.
+     * Title and summary are not cached, they always come from the feed item.
+     * Pages without a story (e.g. an error page) are not cached.
+     *
+     * @param article The extracted article.
+     */
+    public static void cacheArticle(Article article) {
+        if (article.fullStory().isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(article.fullStory().length() + 2048);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            for (String category : new String[] {article.fullStory(), article.source(), article.relatedTopics(),
+                    article.relatedTerms(), article.journalReference(), article.citePageMla(), article.citePageApa(),
+                    article.citePageChicago(), article.relatedStoriesLinks()}) {
+                byte[] data = category.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(data.length);
+                output.write(data);
+            }
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+        PageCache.put(UrlCanonicalizer.key(article.link()), bytes.toByteArray());
+    }
+
+    private static String readCategory(DataInputStream input) throws IOException {
+        byte[] data = new byte[input.readInt()];
+        input.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
     /**
      * Parses the content of a given category from the detailed page.
      *
@@ -1,68 +1,68 @@
 package edu.newsbot;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.time.Clock;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 /**
  * The {@code ParsingSendingScheduler} class is responsible for scheduling and managing tasks that involve
  * parsing web pages for news links and sending extracted information to users. It uses a {@link ScheduledExecutorService}
- * to handle task scheduling in a thread-safe manner, ensuring that tasks are executed at specified delays.
+ * to handle task scheduling in a thread-safe manner.
  * <p>
- * This class maintains a map of user tasks to prevent duplicate scheduling for the same user. When a new task is
- * scheduled for a user, any existing task for that user is first cancelled. This ensures that each user has at most
- * one active task, preventing overlapping executions and potential data inconsistencies.
+ * Users are not given a timer each: a {@link DeliveryDispatcher} files every user under the next boundary of
+ * their {@link DeliveryWindow} (interval, hourly or daily digest, outside their quiet hours) and notifies the
+ * users sharing a boundary as one batch on the scheduler thread. Scheduling a user again replaces their previous
+ * schedule, so each user has at most one pending delivery.
  */
 public class ParsingSendingScheduler {
 
-    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private static final ConcurrentHashMap<Long, ScheduledFuture<?>> userTasks = new ConcurrentHashMap<>();
-    private static final AtomicInteger taskIdGenerator = new AtomicInteger(0);
+    private static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    private static final DeliveryDispatcher dispatcher =
+            new DeliveryDispatcher(Clock.systemUTC(), scheduler, ParsingSendingScheduler::deliver);
+
+    private static final Metrics.Timer userTaskTimer =
+            Metrics.timer("newsbot_user_task_seconds", "Run time of the periodic per-user notification task");
+
+    static {
+        // The dispatcher timer is rearmed often; cancelled timers should not linger in the queue
+        scheduler.setRemoveOnCancelPolicy(true);
+        Metrics.gauge("newsbot_scheduler_queue_size", "Tasks waiting in a scheduler queue",
+                "scheduler", "user tasks", () -> scheduler.getQueue().size());
+        Metrics.gauge("newsbot_scheduler_active_threads", "Threads of a scheduler currently running a task",
+                "scheduler", "user tasks", scheduler::getActiveCount);
+        Metrics.gauge("newsbot_scheduled_users", "Users with a scheduled notification task", null, null, dispatcher::getScheduledUserCount);
+    }
 
     /**
-     * Schedules a new task for parsing a link and sending messages to the user at fixed delays.
-     * If a task is already scheduled for the user, it will be stopped before scheduling/rescheduling a new one.
+     * Schedules the notifications of the user on the boundaries of their delivery window and subscribes the
+     * user to the crawls of the links in the {@link AdaptiveFeedScheduler}. There is one delivery per user whatever
+     * the number of feeds, and one crawl per feed whatever the number of subscribers. The user is caught up on the
+     * feeds' stored articles from {@code feed_article}; the first delivery, which is due immediately, parses a link
+     * itself only if the feed has no stored articles yet. Later deliveries rely on the shared feed crawls.
+     * Any previous schedule of the user is replaced.
      *
-     * @param link The link of primary page (the page-list of title-links to news;
-     *             example: https://www.sciencedaily.com/news/earth_climate/climate/) to be parsed.
-     * @param delay The delay between consecutive executions of the task.
-     * @param unit The time unit of the delay.
-     * @param userId The telegram user ID of the user for whom the task is scheduled.
+     * @param links The links of the primary pages (the page-lists of title-links to news;
+     *              example: https://www.sciencedaily.com/news/earth_climate/climate/) the user is subscribed to.
+     * @param window The delivery window of the user.
+     * @param userId The telegram user ID of the user for whom the deliveries are scheduled.
      */
-    public static void scheduleLinkParsing(String link, long delay, TimeUnit unit, long userId) {
-        stopUserTask(userId);
-        int taskId = taskIdGenerator.incrementAndGet();
-
-        Runnable task = () -> {
-            parseLinkAndSendMessage(link, userId);
-        };
-
-        ScheduledFuture<?> scheduledTask = scheduler.scheduleWithFixedDelay(task, 0, delay, unit);
-        userTasks.put(userId, scheduledTask);
+    public static void scheduleLinkParsing(List<String> links, DeliveryWindow window, long userId) {
+        dispatcher.schedule(userId, links, window);
+        AdaptiveFeedScheduler.register(links, userId, window.nominalInterval().toSeconds());
     }
 
     /**
-     * Stops the task associated with the specified user ID, if it is currently active.
+     * Stops the deliveries of the specified user, if they are scheduled.
      *
-     * @param userId The telegram user ID of the user whose task is to be stopped.
+     * @param userId The telegram user ID of the user whose deliveries are to be stopped.
      */
     public static void stopUserTask(long userId) {
-        ScheduledFuture<?> scheduledTask = userTasks.get(userId);
-        if (scheduledTask != null && !scheduledTask.isDone()) {
-            boolean cancelled = scheduledTask.cancel(false);
-            if (cancelled) {
-                userTasks.remove(userId);
-                System.out.println("Task for user " + userId + " was active and has been successfully cancelled.");
-            } else {
-                System.out.println("Task for user " + userId + " could not be cancelled.");
-            }
+        AdaptiveFeedScheduler.unregister(userId);
+        if (dispatcher.remove(userId)) {
+            Log.debugUser("ParsingSendingScheduler", userId, "Task cancelled");
         } else {
-            System.out.println("No active task for user " + userId + " to stop.");
+            Log.debugUser("ParsingSendingScheduler", userId, "No active task to stop");
         }
     }
 
@@ -72,35 +72,50 @@ public class ParsingSendingScheduler {
      */
     public static void stopAll() {
         scheduler.shutdownNow();
+        AdaptiveFeedScheduler.stopAll();
+    }
+
+    private static void deliver(long userId, List<String> links, boolean firstRun) {
+        long start = System.nanoTime();
+        parseLinksAndSendMessage(links, userId, firstRun);
+        userTaskTimer.recordSince(start);
     }
 
     /**
-     * Parses the provided link and sends a message to the user.
+     * Notifies the user of their unread articles through the {@link NotificationEngine}. On the first run after
+     * scheduling the provided links whose feeds have no stored articles yet are parsed first, and the user is
+     * notified even if nothing is unread; later runs stay silent unless the unread count grew, and only count the
+     * unread articles if new ones were delivered to the user since the previous run. The feeds are kept up to date
+     * by the {@link AdaptiveFeedScheduler}.
      * This is a private method used as a task for the scheduler.
      *
-     * @param primaryPageLink The primary page (the page-list of title-links to news;
-     *                        example: https://www.sciencedaily.com/news/earth_climate/climate/) link to parse.
+     * @param primaryPageLinks The primary pages (the page-lists of title-links to news;
+     *                         example: https://www.sciencedaily.com/news/earth_climate/climate/) the user reads.
      * @param userId The telegram user ID of the user to whom the message is sent.
+     * @param firstRun Whether this is the first run after the task was scheduled.
      */
-    private static void parseLinkAndSendMessage(String primaryPageLink, long userId) {
-        NewsBot.sendMessage("News parsing...", userId, "");
-        System.out.println("Parsing link for user " + userId + ": " + primaryPageLink);
-        Parser.parsePrimaryPage(primaryPageLink);
-
-        Map<String, String> firstUnreadArticle = DB.getFirstUnreadArticleForUser(userId);
-
-        String unreadNumber = firstUnreadArticle.get("unread_number");
-
-        if (unreadNumber.equals("0") || unreadNumber == null) {
-            NewsBot.sendMessage("No more fresh news", userId, NewsBot.getNewsKeyboardArray(false, true, true));
-        } else {
-
-            String message = String.format("*Fresh News available (%s)*", unreadNumber);
-
-            String newsKeyboardArray = NewsBot.getNewsKeyboardArray(false, true, false);
+    private static void parseLinksAndSendMessage(List<String> primaryPageLinks, long userId, boolean firstRun) {
+        // Articles stored before the user subscribed are already unread for them; a feed is only crawled here
+        // if it has none
+        if (firstRun) {
+            for (String primaryPageLink : primaryPageLinks) {
+                if (!DB.hasFeedArticles(primaryPageLink)) {
+                    Log.debugUser("ParsingSendingScheduler", userId, "Parsing link", "link", primaryPageLink);
+                    AdaptiveFeedScheduler.observe(primaryPageLink, Parser.parsePrimaryPage(primaryPageLink, true));
+                }
+            }
+        }
 
-            NewsBot.sendMessage(message, userId, newsKeyboardArray);
+        // Without new articles for the user the count cannot have grown, so it is not even queried
+        if (!NotificationEngine.takeNewArticles(userId) && !firstRun) {
+            return;
+        }
+        int unreadNumber = DB.countUnreadArticles(userId);
+        if (unreadNumber < 0) {
+            // The count failed; the next run counts again
+            NotificationEngine.markNewArticles(userId);
         }
+        NotificationEngine.notifyUnread(userId, unreadNumber, firstRun);
     }
 }
 
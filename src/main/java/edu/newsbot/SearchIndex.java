@@ -0,0 +1,887 @@
+package edu.newsbot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * An embedded full-text index of articles with BM25 ranking, kept on disk as memory-mapped segments.
+ * <p>
+ * Documents are identified by a key (the article's URL key, which unlike the article ID survives the database
+ * being cleared on start) and get increasing document numbers. New documents go to an in-memory segment, which
+ * is written to an immutable segment file once it holds {@code flushDocs} documents, and on {@link #flush()}.
+ * Segments are merged logarithmically: when the last {@value #MERGE_FACTOR} segments have the same level, they
+ * are merged into one segment of the next level, so a million documents take a few dozen segments and every
+ * document is rewritten only a few times. Merges stop at {@value #MAX_SEGMENT_BYTES} bytes per segment, which
+ * keeps each segment within a single mapping.
+ * <p>
+ * A segment file holds
+ * <pre>
+ * header   [int magic][int version][int level][int doc base][int doc count][int term count][long total length]
+ *          [int keys bytes][int postings bytes][int term data bytes]
+ * docs     [int length] per document, [long key hash] per document, [int key offset] per document + 1, [keys]
+ * postings per term: [varint doc delta][varint term frequency] per document containing it
+ * terms    [int term data offset][int document frequency][int postings offset] per term + 1, sorted by term
+ *          (UTF-8 bytes, unsigned), followed by the UTF-8 term data
+ * </pre>
+ * Files are written under a temporary name and renamed when complete. On open, segments are chained by document
+ * number; leftovers of an interrupted merge (segments covered by a merged one) and damaged files are deleted.
+ * <p>
+ * Removed documents are marked in a bitmap of document numbers and left out of the results; they stay in the
+ * segments and in the statistics of the ranking. The bitmap is kept in memory only: the owner of the index is
+ * expected to {@link #clear()} it whenever the documents it refers to are all gone, as {@link ArticleSearch} does
+ * on start.
+ * <p>
+ * The indexed text is split into lower-case runs of letters and digits, without stop words; title terms count
+ * {@value #TITLE_WEIGHT} times. Queries match documents with any of their terms, ranked by BM25 over all
+ * segments. Adding is serialized; searches run concurrently with adding, flushing and merging.
+ */
+public class SearchIndex {
+
+    private static final int MAGIC = 0x4e425349;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 44;
+    private static final int TERM_ENTRY_BYTES = 12;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final int MERGE_FACTOR = 10;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int TITLE_WEIGHT = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+    // BM25 parameters
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be", "by", "for",
+            "from", "has", "have", "in", "is", "it", "its", "of", "on", "or", "that", "the", "this", "to", "was",
+            "were", "which", "with");
+
+    private final Path directory;
+    private final int flushDocs;
+
+    // Guarded by this (the writer)
+    // Document numbers by key hash, to skip documents added before
+    private final LongIntMap docsByKeyHash = new LongIntMap();
+
+    // Guarded by memoryLock; replaced by the writer while holding both locks
+    private final Object memoryLock = new Object();
+    private MemorySegment memory;
+    // The flushed segments in document order; replaced as a whole
+    private volatile List<Segment> segments;
+    // The numbers of the removed documents; replaced as a whole by the writer
+    private volatile BitSet removedDocs = new BitSet();
+
+    /**
+     * Opens the index in a directory, creating it if needed.
+     *
+     * @param directory The directory of the segment files.
+     * @param flushDocs The number of documents kept in memory before they are written to a segment.
+     * @throws IOException if the directory cannot be created or read.
+     */
+    public SearchIndex(Path directory, int flushDocs) throws IOException {
+        this.directory = directory;
+        this.flushDocs = flushDocs;
+        Files.createDirectories(directory);
+
+        List<Segment> opened = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(SEGMENT_SUFFIX)) {
+                    // A temporary file of an interrupted flush or merge
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                try {
+                    opened.add(Segment.open(file));
+                } catch (IOException e) {
+                    Log.warn("SearchIndex", "Deleting damaged index segment", "file", file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        // Chain the segments by document number; a merged segment comes first and covers its sources
+        opened.sort(Comparator.comparingInt((Segment segment) -> segment.docBase)
+                .thenComparing(Comparator.comparingInt((Segment segment) -> segment.docCount).reversed()));
+        List<Segment> chained = new ArrayList<>();
+        int nextDoc = 0;
+        for (Segment segment : opened) {
+            if (segment.docBase < nextDoc) {
+                Files.deleteIfExists(segment.path);
+                continue;
+            }
+            chained.add(segment);
+            nextDoc = segment.docBase + segment.docCount;
+            for (int doc = 0; doc < segment.docCount; doc++) {
+                docsByKeyHash.put(segment.keyHash(doc), segment.docBase + doc);
+            }
+        }
+        segments = List.copyOf(chained);
+        memory = new MemorySegment(nextDoc);
+    }
+
+    /**
+     * Adds an article to the index, unless a document with the same key was added before.
+     *
+     * @param key The key of the document, e.g. the article's URL key.
+     * @param article The article; its title, summary, full story, related topics and related terms are indexed.
+     * @return true if the article was added.
+     * @throws IOException if the in-memory segment could not be written to disk; the article is still indexed.
+     */
+    public synchronized boolean add(String key, Article article) throws IOException {
+        long keyHash = hash(key);
+        if (docsByKeyHash.get(keyHash) != LongIntMap.NO_VALUE) {
+            return false;
+        }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = tokenize(article.title(), TITLE_WEIGHT, frequencies)
+                + tokenize(article.summary(), 1, frequencies)
+                + tokenize(article.fullStory(), 1, frequencies)
+                + tokenize(article.relatedTopics(), 1, frequencies)
+                + tokenize(article.relatedTerms(), 1, frequencies);
+        int doc;
+        synchronized (memoryLock) {
+            doc = memory.add(key, keyHash, length, frequencies);
+        }
+        docsByKeyHash.put(keyHash, doc);
+
+        if (memory.docCount >= flushDocs) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Removes documents from the index. A removed key can be added again, as a new document.
+     *
+     * @param keys The keys of the documents; keys not in the index are ignored.
+     * @return The number of documents removed.
+     */
+    public synchronized int remove(Collection<String> keys) {
+        BitSet removed = (BitSet) removedDocs.clone();
+        int count = 0;
+        for (String key : keys) {
+            int doc = docsByKeyHash.remove(hash(key));
+            if (doc != LongIntMap.NO_VALUE) {
+                removed.set(doc);
+                count++;
+            }
+        }
+        removedDocs = removed;
+        return count;
+    }
+
+    /**
+     * Removes all documents and deletes the segment files.
+     *
+     * @throws IOException if a segment file could not be deleted; the index is empty all the same.
+     */
+    public synchronized void clear() throws IOException {
+        synchronized (memoryLock) {
+            segments = List.of();
+            memory = new MemorySegment(0);
+            removedDocs = new BitSet();
+        }
+        docsByKeyHash.clear();
+        // Searches still reading the segments keep their mappings
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Writes the in-memory documents to a segment, and merges segments if the last ones have the same level.
+     *
+     * @throws IOException if a segment could not be written; the documents stay in memory.
+     */
+    public synchronized void flush() throws IOException {
+        if (memory.docCount > 0) {
+            // Only this thread changes the in-memory segment, so it can be read without the lock
+            Segment flushed = writeSegment(memory);
+            synchronized (memoryLock) {
+                List<Segment> published = new ArrayList<>(segments);
+                published.add(flushed);
+                segments = List.copyOf(published);
+                memory = new MemorySegment(memory.docBase + memory.docCount);
+            }
+        }
+
+        List<Segment> current = segments;
+        while (current.size() >= MERGE_FACTOR) {
+            List<Segment> sources = current.subList(current.size() - MERGE_FACTOR, current.size());
+            long bytes = 0;
+            boolean sameLevel = true;
+            for (Segment source : sources) {
+                bytes += source.buffer.capacity();
+                sameLevel &= source.level == sources.get(0).level;
+            }
+            if (!sameLevel || bytes > MAX_SEGMENT_BYTES) {
+                return;
+            }
+
+            Segment merged = mergeSegments(sources);
+            List<Segment> published = new ArrayList<>(current.subList(0, current.size() - MERGE_FACTOR));
+            published.add(merged);
+            segments = List.copyOf(published);
+            // Searches still reading the sources keep their mappings
+            for (Segment source : sources) {
+                Files.deleteIfExists(source.path);
+            }
+            current = segments;
+        }
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query The query; documents containing any of its terms match.
+     * @param limit The maximum number of results.
+     * @return The keys of the best matching documents, best first.
+     */
+    public List<String> search(String query, int limit) {
+        Map<String, Integer> queryFrequencies = new HashMap<>();
+        tokenize(query, 1, queryFrequencies);
+        if (queryFrequencies.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>(queryFrequencies.keySet());
+        List<byte[]> termBytes = new ArrayList<>();
+        for (String term : terms) {
+            termBytes.add(term.getBytes(StandardCharsets.UTF_8));
+        }
+
+        PriorityQueue<Hit> hits = new PriorityQueue<>(Hit.ORDER);
+        BitSet removed = removedDocs;
+        List<Segment> searched;
+        float[] idfs = new float[terms.size()];
+        float averageLength;
+        synchronized (memoryLock) {
+            searched = segments;
+            long docCount = memory.docCount;
+            long totalLength = memory.totalLength;
+            long[] docFrequencies = new long[terms.size()];
+            for (int t = 0; t < terms.size(); t++) {
+                Postings postings = memory.postings.get(terms.get(t));
+                docFrequencies[t] = postings == null ? 0 : postings.size / 2;
+            }
+            for (Segment segment : searched) {
+                docCount += segment.docCount;
+                totalLength += segment.totalLength;
+                for (int t = 0; t < terms.size(); t++) {
+                    int term = segment.findTerm(termBytes.get(t));
+                    docFrequencies[t] += term < 0 ? 0 : segment.docFrequency(term);
+                }
+            }
+            if (docCount == 0) {
+                return List.of();
+            }
+            averageLength = Math.max(1, (float) totalLength / docCount);
+            for (int t = 0; t < terms.size(); t++) {
+                idfs[t] = (float) Math.log(1 + (docCount - docFrequencies[t] + 0.5) / (docFrequencies[t] + 0.5));
+            }
+
+            // The in-memory documents are scored under the lock, they are few
+            Map<Integer, Float> scores = new HashMap<>();
+            for (int t = 0; t < terms.size(); t++) {
+                Postings postings = memory.postings.get(terms.get(t));
+                if (postings == null) {
+                    continue;
+                }
+                for (int i = 0; i < postings.size; i += 2) {
+                    int doc = postings.data[i];
+                    float score = bm25(idfs[t], postings.data[i + 1], memory.lengths[doc], averageLength);
+                    scores.merge(doc, score, Float::sum);
+                }
+            }
+            for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+                if (removed.get(memory.docBase + entry.getKey())) {
+                    continue;
+                }
+                offer(hits, new Hit(entry.getValue(), memory.docBase + entry.getKey(), memory.keys.get(entry.getKey())), limit);
+            }
+        }
+
+        for (Segment segment : searched) {
+            segment.search(termBytes, idfs, averageLength, removed, hits, limit);
+        }
+
+        List<Hit> ranked = new ArrayList<>(hits);
+        ranked.sort(Hit.ORDER.reversed());
+        List<String> keys = new ArrayList<>(ranked.size());
+        for (Hit hit : ranked) {
+            keys.add(hit.key != null ? hit.key : hit.segment.key(hit.doc - hit.segment.docBase));
+        }
+        return keys;
+    }
+
+    /**
+     * @return The number of documents in the index, not counting removed ones.
+     */
+    public int getDocumentCount() {
+        synchronized (memoryLock) {
+            return memory.docBase + memory.docCount - removedDocs.cardinality();
+        }
+    }
+
+    /**
+     * @return The number of segment files.
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Splits a text into terms and counts them.
+     *
+     * @param text The text, or null.
+     * @param weight The count of each occurrence.
+     * @param frequencies The counts by term, updated.
+     * @return The number of terms, weighted.
+     */
+    static int tokenize(String text, int weight, Map<String, Integer> frequencies) {
+        if (text == null) {
+            return 0;
+        }
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                String term = text.substring(start, Math.min(i, start + MAX_TERM_LENGTH)).toLowerCase(Locale.ROOT);
+                start = -1;
+                if (term.length() > 1 && !STOP_WORDS.contains(term)) {
+                    frequencies.merge(term, weight, Integer::sum);
+                    count += weight;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static float bm25(float idf, int frequency, int length, float averageLength) {
+        return idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    private static void offer(PriorityQueue<Hit> hits, Hit hit, int limit) {
+        if (hits.size() < limit) {
+            hits.add(hit);
+        } else if (Hit.ORDER.compare(hit, hits.peek()) > 0) {
+            hits.poll();
+            hits.add(hit);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a key.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private Segment writeSegment(MemorySegment source) throws IOException {
+        byte[][] terms = new byte[source.postings.size()][];
+        Postings[] postings = new Postings[terms.length];
+        int i = 0;
+        for (String term : source.postings.keySet()) {
+            terms[i++] = term.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(terms, Arrays::compareUnsigned);
+        for (i = 0; i < terms.length; i++) {
+            postings[i] = source.postings.get(new String(terms[i], StandardCharsets.UTF_8));
+        }
+
+        try (SegmentWriter writer = new SegmentWriter(segmentPath(source.docBase, 0), 0, source.docBase)) {
+            for (int doc = 0; doc < source.docCount; doc++) {
+                writer.addDoc(source.lengths[doc], source.keyHashes[doc], source.keys.get(doc).getBytes(StandardCharsets.UTF_8));
+            }
+            writer.endDocs();
+            for (i = 0; i < terms.length; i++) {
+                int previous = 0;
+                for (int p = 0; p < postings[i].size; p += 2) {
+                    writer.writeVarint(postings[i].data[p] - previous);
+                    writer.writeVarint(postings[i].data[p + 1]);
+                    previous = postings[i].data[p];
+                }
+                writer.endTerm(terms[i], postings[i].size / 2);
+            }
+            return writer.finish();
+        }
+    }
+
+    private Segment mergeSegments(List<Segment> sources) throws IOException {
+        Segment first = sources.get(0);
+        try (SegmentWriter writer = new SegmentWriter(segmentPath(first.docBase, first.level + 1), first.level + 1, first.docBase)) {
+            for (Segment source : sources) {
+                for (int doc = 0; doc < source.docCount; doc++) {
+                    writer.addDoc(source.docLength(doc), source.keyHash(doc), source.keyBytes(doc));
+                }
+            }
+            writer.endDocs();
+
+            // Merge the sorted term lists; equal terms are taken in segment order so documents stay sorted
+            int[] positions = new int[sources.size()];
+            PriorityQueue<Integer> next = new PriorityQueue<>((a, b) -> {
+                int order = Arrays.compareUnsigned(sources.get(a).term(positions[a]), sources.get(b).term(positions[b]));
+                return order != 0 ? order : Integer.compare(a, b);
+            });
+            for (int s = 0; s < sources.size(); s++) {
+                if (sources.get(s).termCount > 0) {
+                    next.add(s);
+                }
+            }
+            List<Integer> sharing = new ArrayList<>();
+            while (!next.isEmpty()) {
+                int s = next.poll();
+                byte[] term = sources.get(s).term(positions[s]);
+                sharing.clear();
+                sharing.add(s);
+                while (!next.isEmpty() && Arrays.equals(sources.get(next.peek()).term(positions[next.peek()]), term)) {
+                    sharing.add(next.poll());
+                }
+                sharing.sort(null);
+
+                int docFrequency = 0;
+                int previous = 0;
+                for (int source : sharing) {
+                    Segment segment = sources.get(source);
+                    int term0 = positions[source];
+                    int offset = segment.docBase - first.docBase;
+                    ByteBuffer postings = segment.postings(term0);
+                    int doc = 0;
+                    while (postings.hasRemaining()) {
+                        doc += readVarint(postings);
+                        int frequency = readVarint(postings);
+                        writer.writeVarint(offset + doc - previous);
+                        writer.writeVarint(frequency);
+                        previous = offset + doc;
+                        docFrequency++;
+                    }
+                    if (++positions[source] < segment.termCount) {
+                        next.add(source);
+                    }
+                }
+                writer.endTerm(term, docFrequency);
+            }
+            return writer.finish();
+        }
+    }
+
+    private Path segmentPath(int docBase, int level) {
+        return directory.resolve(String.format("%s%010d-L%d%s", SEGMENT_PREFIX, docBase, level, SEGMENT_SUFFIX));
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * A candidate result. Ties are broken in favour of newer documents.
+     */
+    private record Hit(float score, int doc, String key, Segment segment) {
+        private static final Comparator<Hit> ORDER = Comparator.comparingDouble(Hit::score).thenComparingInt(Hit::doc);
+
+        private Hit(float score, int doc, String key) {
+            this(score, doc, key, null);
+        }
+    }
+
+    /**
+     * A growable list of (document, frequency) pairs of a term in the in-memory segment.
+     */
+    private static final class Postings {
+        private int[] data = new int[4];
+        private int size;
+
+        private void add(int doc, int frequency) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = doc;
+            data[size++] = frequency;
+        }
+    }
+
+    /**
+     * The documents added since the last flush.
+     */
+    private static final class MemorySegment {
+        private final int docBase;
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+        private int[] lengths = new int[16];
+        private long[] keyHashes = new long[16];
+        private int docCount;
+        private long totalLength;
+
+        private MemorySegment(int docBase) {
+            this.docBase = docBase;
+        }
+
+        private int add(String key, long keyHash, int length, Map<String, Integer> frequencies) {
+            int doc = docCount++;
+            if (doc == lengths.length) {
+                lengths = Arrays.copyOf(lengths, doc * 2);
+                keyHashes = Arrays.copyOf(keyHashes, doc * 2);
+            }
+            lengths[doc] = length;
+            keyHashes[doc] = keyHash;
+            keys.add(key);
+            totalLength += length;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(doc, entry.getValue());
+            }
+            return docBase + doc;
+        }
+    }
+
+    /**
+     * An immutable, memory-mapped segment file.
+     */
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final int level;
+        private final int docBase;
+        private final int docCount;
+        private final int termCount;
+        private final long totalLength;
+        private final int keyHashesOffset;
+        private final int keyOffsetsOffset;
+        private final int keysOffset;
+        private final int postingsOffset;
+        private final int termTableOffset;
+        private final int termDataOffset;
+
+        private Segment(Path path, MappedByteBuffer buffer) throws IOException {
+            this.path = path;
+            this.buffer = buffer;
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not an index segment: " + path);
+            }
+            level = buffer.getInt(8);
+            docBase = buffer.getInt(12);
+            docCount = buffer.getInt(16);
+            termCount = buffer.getInt(20);
+            totalLength = buffer.getLong(24);
+            int keysBytes = buffer.getInt(32);
+            int postingsBytes = buffer.getInt(36);
+            int termDataBytes = buffer.getInt(40);
+            keyHashesOffset = HEADER_BYTES + docCount * 4;
+            keyOffsetsOffset = keyHashesOffset + docCount * 8;
+            keysOffset = keyOffsetsOffset + (docCount + 1) * 4;
+            postingsOffset = keysOffset + keysBytes;
+            termTableOffset = postingsOffset + postingsBytes;
+            termDataOffset = termTableOffset + (termCount + 1) * TERM_ENTRY_BYTES;
+            if ((long) termDataOffset + termDataBytes != buffer.capacity()) {
+                throw new IOException("Truncated index segment: " + path);
+            }
+        }
+
+        private static Segment open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Index segment too large: " + path);
+                }
+                return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        private int docLength(int doc) {
+            return buffer.getInt(HEADER_BYTES + doc * 4);
+        }
+
+        private long keyHash(int doc) {
+            return buffer.getLong(keyHashesOffset + doc * 8);
+        }
+
+        private byte[] keyBytes(int doc) {
+            int start = buffer.getInt(keyOffsetsOffset + doc * 4);
+            byte[] key = new byte[buffer.getInt(keyOffsetsOffset + (doc + 1) * 4) - start];
+            buffer.get(keysOffset + start, key);
+            return key;
+        }
+
+        private String key(int doc) {
+            return new String(keyBytes(doc), StandardCharsets.UTF_8);
+        }
+
+        private byte[] term(int term) {
+            int start = buffer.getInt(termTableOffset + term * TERM_ENTRY_BYTES);
+            byte[] bytes = new byte[buffer.getInt(termTableOffset + (term + 1) * TERM_ENTRY_BYTES) - start];
+            buffer.get(termDataOffset + start, bytes);
+            return bytes;
+        }
+
+        private int docFrequency(int term) {
+            return buffer.getInt(termTableOffset + term * TERM_ENTRY_BYTES + 4);
+        }
+
+        private ByteBuffer postings(int term) {
+            int start = buffer.getInt(termTableOffset + term * TERM_ENTRY_BYTES + 8);
+            int end = buffer.getInt(termTableOffset + (term + 1) * TERM_ENTRY_BYTES + 8);
+            return buffer.slice(postingsOffset + start, end - start);
+        }
+
+        /**
+         * Binary search of the term table, comparing the mapped bytes in place.
+         */
+        private int findTerm(byte[] term) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int start = buffer.getInt(termTableOffset + middle * TERM_ENTRY_BYTES);
+                int end = buffer.getInt(termTableOffset + (middle + 1) * TERM_ENTRY_BYTES);
+                int order = compare(termDataOffset + start, end - start, term);
+                if (order < 0) {
+                    low = middle + 1;
+                } else if (order > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        private int compare(int position, int length, byte[] term) {
+            int common = Math.min(length, term.length);
+            for (int i = 0; i < common; i++) {
+                int order = Integer.compare(buffer.get(position + i) & 0xff, term[i] & 0xff);
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return Integer.compare(length, term.length);
+        }
+
+        private void search(List<byte[]> terms, float[] idfs, float averageLength, BitSet removed,
+                            PriorityQueue<Hit> hits, int limit) {
+            float[] scores = null;
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            for (int t = 0; t < terms.size(); t++) {
+                int term = findTerm(terms.get(t));
+                if (term < 0) {
+                    continue;
+                }
+                if (scores == null) {
+                    scores = new float[docCount];
+                }
+                ByteBuffer postings = postings(term);
+                int doc = 0;
+                while (postings.hasRemaining()) {
+                    doc += readVarint(postings);
+                    int frequency = readVarint(postings);
+                    if (scores[doc] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = doc;
+                    }
+                    scores[doc] += bm25(idfs[t], frequency, docLength(doc), averageLength);
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (removed.get(docBase + doc)) {
+                    continue;
+                }
+                // Most documents of common terms do not make it, so they are compared before a hit is created
+                if (hits.size() < limit || scores[doc] >= hits.peek().score) {
+                    offer(hits, new Hit(scores[doc], docBase + doc, null, this), limit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a segment file: the documents first, then the postings term by term in term order.
+     */
+    private static final class SegmentWriter implements AutoCloseable {
+        private final Path path;
+        private final Path temporary;
+        private final int level;
+        private final int docBase;
+        private final CountingOutputStream out;
+        // Collected while the documents are added, written by endDocs()
+        private int[] lengths = new int[16];
+        private long[] keyHashes = new long[16];
+        private final ByteArrayOutputStream keys = new ByteArrayOutputStream();
+        private int[] keyOffsets = new int[17];
+        private int docCount;
+        private long totalLength;
+        private int keysBytes;
+        private int postingsStart;
+        // Collected while the postings are written, written by finish()
+        private int[] termTable = new int[3 * 16];
+        private final ByteArrayOutputStream termData = new ByteArrayOutputStream();
+        private int termCount;
+        private boolean finished;
+
+        private SegmentWriter(Path path, int level, int docBase) throws IOException {
+            this.path = path;
+            this.temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            this.level = level;
+            this.docBase = docBase;
+            this.out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16));
+            out.write(new byte[HEADER_BYTES]);
+        }
+
+        private void addDoc(int length, long keyHash, byte[] key) {
+            if (docCount == lengths.length) {
+                lengths = Arrays.copyOf(lengths, docCount * 2);
+                keyHashes = Arrays.copyOf(keyHashes, docCount * 2);
+                keyOffsets = Arrays.copyOf(keyOffsets, docCount * 2 + 1);
+            }
+            lengths[docCount] = length;
+            keyHashes[docCount] = keyHash;
+            keys.writeBytes(key);
+            keyOffsets[++docCount] = keys.size();
+            totalLength += length;
+        }
+
+        private void endDocs() throws IOException {
+            ByteBuffer docs = ByteBuffer.allocate(docCount * 12 + (docCount + 1) * 4);
+            docs.asIntBuffer().put(lengths, 0, docCount);
+            docs.position(docCount * 4);
+            docs.asLongBuffer().put(keyHashes, 0, docCount);
+            docs.position(docCount * 12);
+            docs.asIntBuffer().put(keyOffsets, 0, docCount + 1);
+            out.write(docs.array());
+            keysBytes = keys.size();
+            keys.writeTo(out);
+            postingsStart = out.count;
+            addTermEntry();
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        /**
+         * Ends the postings of a term, written with {@link #writeVarint(int)} since the previous term.
+         */
+        private void endTerm(byte[] term, int docFrequency) {
+            termTable[termCount * 3 + 1] = docFrequency;
+            termData.writeBytes(term);
+            termCount++;
+            addTermEntry();
+        }
+
+        // Starts the entry of the next term (or the end entry) at the current term data and postings offsets
+        private void addTermEntry() {
+            if (termTable.length < (termCount + 1) * 3) {
+                termTable = Arrays.copyOf(termTable, termTable.length * 2);
+            }
+            termTable[termCount * 3] = termData.size();
+            termTable[termCount * 3 + 2] = out.count - postingsStart;
+        }
+
+        private Segment finish() throws IOException {
+            int postingsBytes = out.count - postingsStart;
+            ByteBuffer table = ByteBuffer.allocate((termCount + 1) * TERM_ENTRY_BYTES);
+            table.asIntBuffer().put(termTable, 0, (termCount + 1) * 3);
+            out.write(table.array());
+            termData.writeTo(out);
+            if ((long) out.count > Integer.MAX_VALUE - HEADER_BYTES) {
+                throw new IOException("Index segment too large: " + path);
+            }
+            out.close();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(level).putInt(docBase).putInt(docCount).putInt(termCount)
+                    .putLong(totalLength).putInt(keysBytes).putInt(postingsBytes).putInt(termData.size()).flip();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            finished = true;
+            return Segment.open(path);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes written, i.e. the current offset in the segment file.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private int count;
+
+        private CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
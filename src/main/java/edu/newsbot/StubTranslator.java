@@ -0,0 +1,65 @@
+package edu.newsbot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local {@link Translator} that needs no provider: it prefixes every text with the target language,
+ * e.g. "[ru] text". Used for tests and the load test ({@code translation.provider=stub}), where it shows whether
+ * an article was translated and how many requests were made.
+ */
+public class StubTranslator implements Translator {
+
+    private final int maxTexts;
+    private final int maxChars;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Creates a stub with the limits of the Google Cloud Translation API.
+     */
+    public StubTranslator() {
+        this(GoogleTranslator.MAX_TEXTS_PER_REQUEST, GoogleTranslator.MAX_CHARS_PER_REQUEST);
+    }
+
+    /**
+     * Creates a stub with the given limits.
+     *
+     * @param maxTexts The maximum number of texts in one request.
+     * @param maxChars The maximum total number of characters in one request.
+     */
+    public StubTranslator(int maxTexts, int maxChars) {
+        this.maxTexts = maxTexts;
+        this.maxChars = maxChars;
+    }
+
+    @Override
+    public List<String> translate(List<String> texts, String sourceLanguage, String targetLanguage) {
+        if (texts.size() > maxTexts) {
+            throw new IllegalArgumentException("Too many texts in one request: " + texts.size());
+        }
+        requests.incrementAndGet();
+        List<String> translated = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            translated.add("[" + targetLanguage + "] " + text);
+        }
+        return translated;
+    }
+
+    @Override
+    public int maxTextsPerRequest() {
+        return maxTexts;
+    }
+
+    @Override
+    public int maxCharsPerRequest() {
+        return maxChars;
+    }
+
+    /**
+     * @return The number of requests made so far.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+}
@@ -0,0 +1,230 @@
+package edu.newsbot;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * In-memory copy of the {@code user_subscription} table: the chat IDs subscribed to each feed as a sorted
+ * {@code long[]}, and the feed IDs of each user. The crawl pipeline finds the subscribers of a feed with an array
+ * lookup instead of querying the database.
+ * <p>
+ * Telegram IDs are never boxed. The subscriber arrays are indexed by feed ID in one snapshot array; arrays are
+ * never modified once published (copy-on-write, including the snapshot itself), so {@link #getSubscribers(int)}
+ * reads a volatile field and needs no locking. The feeds of each user are found through a {@link LongIntMap}
+ * from telegram ID to a slot of {@code feedsBySlot}; slots of users who unsubscribed from everything are reused.
+ * <p>
+ * The index is loaded at startup and updated by {@link DB#toggleSubscription(long, String)} after each change of
+ * the table. Writes and per-user reads are serialized on the class.
+ */
+public class SubscriptionIndex {
+
+    private static final long[] NO_SUBSCRIBERS = new long[0];
+    private static final int[] NO_FEEDS = new int[0];
+
+    // Sorted subscribers by feed ID, null for feeds without subscribers; replaced as a whole on every change
+    private static volatile long[][] subscribersByFeed = new long[0][];
+
+    // All guarded by SubscriptionIndex.class
+    private static final LongIntMap slotsByUser = new LongIntMap();
+    private static int[][] feedsBySlot = new int[16][];
+    // Slots freed by users without subscriptions, reused before feedsBySlot grows
+    private static int[] freeSlots = new int[16];
+    private static int freeSlotCount;
+    private static int usedSlots;
+    // Number of (user, feed) pairs
+    private static long subscriptions;
+
+    static {
+        Metrics.gauge("newsbot_subscriptions", "Feed subscriptions of all users", null, null, SubscriptionIndex::getSubscriptionCount);
+    }
+
+    /**
+     * Default constructor.
+     * The index is used through its static methods only.
+     */
+    public SubscriptionIndex() {
+        super();
+    }
+
+    /**
+     * Loads (or reloads) all subscriptions from the {@code user_subscription} table into memory.
+     */
+    public static synchronized void load() {
+        subscribersByFeed = new long[0][];
+        slotsByUser.clear();
+        feedsBySlot = new int[16][];
+        freeSlotCount = 0;
+        usedSlots = 0;
+        subscriptions = 0;
+
+        // Rows arrive sorted, so each subscriber array is built in one pass rather than copied per row
+        long[][] loaded = new long[0][];
+        try (Connection conn = DB.connect();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT feed_id, telegram_id FROM user_subscription ORDER BY feed_id, telegram_id")) {
+
+            int currentFeed = -1;
+            long[] subscribers = new long[16];
+            int count = 0;
+            while (rs.next()) {
+                int feedId = rs.getInt("feed_id");
+                long userId = rs.getLong("telegram_id");
+                if (feedId != currentFeed) {
+                    loaded = withSubscribers(loaded, currentFeed, subscribers, count);
+                    currentFeed = feedId;
+                    count = 0;
+                }
+                if (count == subscribers.length) {
+                    subscribers = Arrays.copyOf(subscribers, count * 2);
+                }
+                subscribers[count++] = userId;
+                addFeedOfUser(userId, feedId);
+            }
+            loaded = withSubscribers(loaded, currentFeed, subscribers, count);
+        } catch (SQLException e) {
+            Log.error("SubscriptionIndex", "Error loading subscriptions", e);
+            return;
+        }
+        subscribersByFeed = loaded;
+        Log.info("SubscriptionIndex", "Subscriptions loaded", "subscriptions", subscriptions);
+    }
+
+    /**
+     * Records a subscription of a user to a feed; does nothing if it is already known.
+     *
+     * @param userId The telegram user ID.
+     * @param feedId The ID of the feed in {@code science_daily_feeds}.
+     */
+    public static synchronized void add(long userId, int feedId) {
+        long[] subscribers = getSubscribers(feedId);
+        int index = Arrays.binarySearch(subscribers, userId);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        long[] updated = new long[subscribers.length + 1];
+        System.arraycopy(subscribers, 0, updated, 0, insertAt);
+        updated[insertAt] = userId;
+        System.arraycopy(subscribers, insertAt, updated, insertAt + 1, subscribers.length - insertAt);
+        publish(feedId, updated);
+        addFeedOfUser(userId, feedId);
+    }
+
+    /**
+     * Removes a subscription of a user to a feed; does nothing if it is not known.
+     *
+     * @param userId The telegram user ID.
+     * @param feedId The ID of the feed in {@code science_daily_feeds}.
+     */
+    public static synchronized void remove(long userId, int feedId) {
+        long[] subscribers = getSubscribers(feedId);
+        int index = Arrays.binarySearch(subscribers, userId);
+        if (index < 0) {
+            return;
+        }
+        if (subscribers.length == 1) {
+            publish(feedId, null);
+        } else {
+            long[] updated = new long[subscribers.length - 1];
+            System.arraycopy(subscribers, 0, updated, 0, index);
+            System.arraycopy(subscribers, index + 1, updated, index, subscribers.length - index - 1);
+            publish(feedId, updated);
+        }
+
+        int slot = slotsByUser.get(userId);
+        int[] updatedFeeds = Arrays.stream(feedsBySlot[slot]).filter(feed -> feed != feedId).toArray();
+        if (updatedFeeds.length == 0) {
+            slotsByUser.remove(userId);
+            feedsBySlot[slot] = null;
+            if (freeSlotCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+            }
+            freeSlots[freeSlotCount++] = slot;
+        } else {
+            feedsBySlot[slot] = updatedFeeds;
+        }
+        subscriptions--;
+    }
+
+    /**
+     * Returns the subscribers of a feed.
+     *
+     * @param feedId The ID of the feed in {@code science_daily_feeds}.
+     * @return The sorted chat IDs of the subscribers; must not be modified.
+     */
+    public static long[] getSubscribers(int feedId) {
+        long[][] snapshot = subscribersByFeed;
+        if (feedId < 0 || feedId >= snapshot.length || snapshot[feedId] == null) {
+            return NO_SUBSCRIBERS;
+        }
+        return snapshot[feedId];
+    }
+
+    /**
+     * Returns the feeds a user is subscribed to.
+     *
+     * @param userId The telegram user ID.
+     * @return The feed IDs in subscription order; must not be modified.
+     */
+    public static synchronized int[] getFeeds(long userId) {
+        int slot = slotsByUser.get(userId);
+        return slot == LongIntMap.NO_VALUE ? NO_FEEDS : feedsBySlot[slot];
+    }
+
+    /**
+     * Publishes a new snapshot in which a feed has the given subscribers.
+     */
+    private static void publish(int feedId, long[] subscribers) {
+        long[][] snapshot = subscribersByFeed;
+        long[][] updated = Arrays.copyOf(snapshot, Math.max(snapshot.length, feedId + 1));
+        updated[feedId] = subscribers;
+        subscribersByFeed = updated;
+    }
+
+    /**
+     * Returns a snapshot (the given one if there is nothing to add) with the first subscribers of a buffer as the
+     * subscribers of a feed; used while loading.
+     */
+    private static long[][] withSubscribers(long[][] snapshot, int feedId, long[] subscribers, int count) {
+        if (count == 0) {
+            return snapshot;
+        }
+        long[][] updated = snapshot.length > feedId ? snapshot : Arrays.copyOf(snapshot, feedId + 1);
+        updated[feedId] = Arrays.copyOf(subscribers, count);
+        return updated;
+    }
+
+    /**
+     * Appends a feed to the feeds of a user and counts the subscription.
+     */
+    private static void addFeedOfUser(long userId, int feedId) {
+        int slot = slotsByUser.get(userId);
+        if (slot == LongIntMap.NO_VALUE) {
+            slot = allocateSlot();
+            slotsByUser.put(userId, slot);
+            feedsBySlot[slot] = NO_FEEDS;
+        }
+        int[] feeds = feedsBySlot[slot];
+        int[] updatedFeeds = Arrays.copyOf(feeds, feeds.length + 1);
+        updatedFeeds[feeds.length] = feedId;
+        feedsBySlot[slot] = updatedFeeds;
+        subscriptions++;
+    }
+
+    private static int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (usedSlots == feedsBySlot.length) {
+            feedsBySlot = Arrays.copyOf(feedsBySlot, usedSlots * 2);
+        }
+        return usedSlots++;
+    }
+
+    private static synchronized double getSubscriptionCount() {
+        return subscriptions;
+    }
+}
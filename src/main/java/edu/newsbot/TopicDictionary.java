@@ -0,0 +1,193 @@
+package edu.newsbot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Dictionary of the related topics and terms of the articles, which are stored as dense integer IDs instead of
+ * the lists ScienceDaily shows ({@code "Space & Time; Astronomy;"}).
+ * <p>
+ * Topic and term names are interned as they are seen: the first name gets ID 0, the next new one ID 1, and so on,
+ * case-insensitively within a {@link Kind}. An article stores the IDs of its topics and terms in
+ * {@code article.topic_ids INT[]}, in the order the page lists them; the GIN index on that column serves topic
+ * filters ({@code topic_ids && ARRAY[...]}) without scanning text. The dictionary is kept in memory only: the
+ * articles are cleared on every start, so the IDs never outlive it.
+ * <p>
+ * IDs are dense, so a set of topics, e.g. the topics a user follows, is a {@link BitSet} of a few hundred bytes,
+ * and testing an article against it takes one bit lookup per topic of the article ({@link #matches(int[], BitSet)}).
+ */
+public class TopicDictionary {
+
+    /**
+     * Whether a name is a related topic or a related term of the page.
+     */
+    public enum Kind {
+        TOPIC,
+        TERM
+    }
+
+    // All state below is guarded by TopicDictionary.class
+    // IDs by kind and lower-case name, see key()
+    private static final Map<String, Integer> ids = new HashMap<>();
+    // Names as first seen and kinds, by ID
+    private static final List<String> names = new ArrayList<>();
+    private static final List<Kind> kinds = new ArrayList<>();
+
+    static {
+        Metrics.gauge("newsbot_topics", "Related topics and terms in the topic dictionary", null, null, TopicDictionary::getSizeMetric);
+    }
+
+    /**
+     * Default constructor.
+     * The dictionary is used through its static methods only.
+     */
+    public TopicDictionary() {
+        super();
+    }
+
+    /**
+     * Encodes the related topics and terms of an article, adding the names seen for the first time.
+     *
+     * @param relatedTopics The related topics, separated by semicolons, or null.
+     * @param relatedTerms The related terms, separated by semicolons, or null.
+     * @return The IDs of the topics followed by those of the terms, in the order listed, without duplicates.
+     */
+    public static synchronized int[] encode(String relatedTopics, String relatedTerms) {
+        int[] encoded = new int[0];
+        int count = 0;
+        for (Kind kind : Kind.values()) {
+            for (String name : split(kind == Kind.TOPIC ? relatedTopics : relatedTerms)) {
+                Integer id = ids.get(key(kind, name));
+                if (id == null) {
+                    id = names.size();
+                    ids.put(key(kind, name), id);
+                    names.add(name);
+                    kinds.add(kind);
+                }
+                if (!contains(encoded, count, id)) {
+                    if (count == encoded.length) {
+                        encoded = Arrays.copyOf(encoded, Math.max(8, count * 2));
+                    }
+                    encoded[count++] = id;
+                }
+            }
+        }
+        return Arrays.copyOf(encoded, count);
+    }
+
+    /**
+     * Decodes the topics or the terms of an article into the list ScienceDaily shows.
+     *
+     * @param topicIds The IDs stored with the article.
+     * @param kind The kind of names to list.
+     * @return The names of that kind separated by semicolons, e.g. "Space &amp; Time; Astronomy;", or "" if none.
+     */
+    public static synchronized String decode(int[] topicIds, Kind kind) {
+        StringBuilder list = new StringBuilder();
+        for (int id : topicIds) {
+            if (id >= 0 && id < names.size() && kinds.get(id) == kind) {
+                list.append(list.isEmpty() ? "" : " ").append(names.get(id)).append(';');
+            }
+        }
+        return list.toString();
+    }
+
+    /**
+     * Finds the ID of a topic or term.
+     *
+     * @param kind The kind of the name.
+     * @param name The name, in any case.
+     * @return The ID, or -1 if no article has this topic or term.
+     */
+    public static synchronized int lookup(Kind kind, String name) {
+        return ids.getOrDefault(key(kind, name.trim()), -1);
+    }
+
+    /**
+     * Returns the name of a topic or term.
+     *
+     * @param id The ID.
+     * @return The name as first seen, or null if the ID is unknown.
+     */
+    public static synchronized String getName(int id) {
+        return id >= 0 && id < names.size() ? names.get(id) : null;
+    }
+
+    /**
+     * @return The number of topics and terms.
+     */
+    public static synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * Builds the bitmap of a set of topic IDs.
+     *
+     * @param topicIds The IDs.
+     * @return The bitmap with the bits of the IDs set.
+     */
+    public static BitSet bitmap(int[] topicIds) {
+        BitSet bitmap = new BitSet();
+        for (int id : topicIds) {
+            bitmap.set(id);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Tells whether an article has any of a set of topics.
+     *
+     * @param topicIds The IDs of the article's topics and terms.
+     * @param topics The bitmap of the topics.
+     * @return true if one of the article's IDs is set in the bitmap.
+     */
+    public static boolean matches(int[] topicIds, BitSet topics) {
+        for (int id : topicIds) {
+            if (topics.get(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits a list of names separated by semicolons, as {@link Parser#parseCategory} builds them.
+     *
+     * @param list The list, or null.
+     * @return The trimmed, non-empty names.
+     */
+    static List<String> split(String list) {
+        List<String> split = new ArrayList<>();
+        if (list == null) {
+            return split;
+        }
+        for (String name : list.split(";")) {
+            if (!name.isBlank()) {
+                split.add(name.trim());
+            }
+        }
+        return split;
+    }
+
+    private static String key(Kind kind, String name) {
+        return kind.ordinal() + name.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double getSizeMetric() {
+        return size();
+    }
+}
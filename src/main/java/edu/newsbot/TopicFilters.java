@@ -0,0 +1,147 @@
+package edu.newsbot;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The topic filters of the users: the topics and terms a user follows (include) and mutes (exclude), as
+ * {@link BitSet}s over the IDs of the {@link TopicDictionary}.
+ * <p>
+ * An article passes a user's filter if it has no muted topic and, when the user follows any, at least one followed
+ * topic: two bitmap intersections with the article's topic IDs, a few nanoseconds per user and article. The
+ * fan-out stage of the {@link CrawlPipeline} evaluates the filters of a feed's subscribers against each batch of new
+ * articles and marks only the subscribers with a matching article for the {@link NotificationEngine}, so the others
+ * are not even counted. The same filter is stored in {@code bot_user.include_topics} and
+ * {@code bot_user.exclude_topics}, so the unread queries of {@link DB} leave out the filtered articles.
+ * <p>
+ * Filters are immutable and replaced as a whole, so a caller can evaluate one outside the lock. The filter of a
+ * user lives in a slot found through a {@link LongIntMap}; slots are never freed, like those of the
+ * {@link NotificationEngine}. Since {@code bot_user} is cleared on every start, nothing is loaded.
+ */
+public class TopicFilters {
+
+    /**
+     * The filter of a user. The bitmaps must not be modified.
+     *
+     * @param include The followed topic IDs; empty to follow everything.
+     * @param exclude The muted topic IDs.
+     */
+    public record Filter(BitSet include, BitSet exclude) {
+
+        /**
+         * Tells whether an article passes the filter.
+         *
+         * @param topicIds The topic IDs of the article ({@link TopicDictionary#encode(String, String)}).
+         * @return true if the article has no muted topic and, if the filter follows any, a followed one.
+         */
+        public boolean matches(int[] topicIds) {
+            return !TopicDictionary.matches(topicIds, exclude)
+                    && (include.isEmpty() || TopicDictionary.matches(topicIds, include));
+        }
+
+        /**
+         * @return true if the filter lets every article pass.
+         */
+        public boolean isEmpty() {
+            return include.isEmpty() && exclude.isEmpty();
+        }
+    }
+
+    private static final Filter NO_FILTER = new Filter(new BitSet(), new BitSet());
+
+    // All guarded by TopicFilters.class
+    private static final LongIntMap slotsByUser = new LongIntMap();
+    // The filter of each slot, null if the user has none
+    private static Filter[] filtersBySlot = new Filter[16];
+
+    /**
+     * Default constructor.
+     * The filters are used through the static methods only.
+     */
+    public TopicFilters() {
+        super();
+    }
+
+    /**
+     * Returns the filter of a user.
+     *
+     * @param userId The telegram user ID.
+     * @return The filter; an empty filter if the user has none.
+     */
+    public static synchronized Filter get(long userId) {
+        int slot = slotsByUser.get(userId);
+        return slot == LongIntMap.NO_VALUE || filtersBySlot[slot] == null ? NO_FILTER : filtersBySlot[slot];
+    }
+
+    /**
+     * Returns the filters of several users under a single lock.
+     *
+     * @param userIds The telegram user IDs.
+     * @return The filters, in the order of the user IDs; an empty filter for users who have none.
+     */
+    public static synchronized Filter[] get(long[] userIds) {
+        Filter[] filters = new Filter[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            filters[i] = get(userIds[i]);
+        }
+        return filters;
+    }
+
+    /**
+     * Follows a topic: articles without any followed topic are filtered out. Unmutes it if it was muted.
+     *
+     * @param userId The telegram user ID.
+     * @param topicId The ID of the topic or term in the {@link TopicDictionary}.
+     */
+    public static void follow(long userId, int topicId) {
+        update(userId, topicId, true, false);
+    }
+
+    /**
+     * Mutes a topic: articles with it are filtered out. Unfollows it if it was followed.
+     *
+     * @param userId The telegram user ID.
+     * @param topicId The ID of the topic or term in the {@link TopicDictionary}.
+     */
+    public static void mute(long userId, int topicId) {
+        update(userId, topicId, false, true);
+    }
+
+    /**
+     * Neither follows nor mutes a topic any more.
+     *
+     * @param userId The telegram user ID.
+     * @param topicId The ID of the topic or term in the {@link TopicDictionary}.
+     */
+    public static void reset(long userId, int topicId) {
+        update(userId, topicId, false, false);
+    }
+
+    /**
+     * Replaces the filter of a user with a copy that follows and mutes a topic as given, and stores it.
+     */
+    private static void update(long userId, int topicId, boolean included, boolean excluded) {
+        Filter updated;
+        synchronized (TopicFilters.class) {
+            Filter current = get(userId);
+            BitSet include = (BitSet) current.include().clone();
+            BitSet exclude = (BitSet) current.exclude().clone();
+            include.set(topicId, included);
+            exclude.set(topicId, excluded);
+            updated = new Filter(include, exclude);
+
+            int slot = slotsByUser.get(userId);
+            if (slot == LongIntMap.NO_VALUE) {
+                slot = slotsByUser.size();
+                slotsByUser.put(userId, slot);
+                if (slot == filtersBySlot.length) {
+                    filtersBySlot = Arrays.copyOf(filtersBySlot, slot * 2);
+                }
+            }
+            filtersBySlot[slot] = updated.isEmpty() ? null : updated;
+        }
+        DB.saveTopicFilter(userId, updated.include().stream().toArray(), updated.exclude().stream().toArray());
+        // Articles filtered out so far may pass the new filter
+        NotificationEngine.markNewArticles(userId);
+    }
+}
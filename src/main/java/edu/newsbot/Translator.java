@@ -0,0 +1,35 @@
+package edu.newsbot;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A machine translation provider used by the {@link ArticleTranslator}.
+ * <p>
+ * Implementations translate a batch of texts in one request. They announce the limits of a request, and the
+ * {@link ArticleTranslator} never sends more texts or characters at once; a single text longer than
+ * {@link #maxCharsPerRequest()} is sent alone.
+ */
+public interface Translator {
+
+    /**
+     * Translates a batch of texts.
+     *
+     * @param texts The texts to translate, within the limits of a request.
+     * @param sourceLanguage The ISO 639-1 code of the language of the texts, e.g. "en".
+     * @param targetLanguage The ISO 639-1 code of the language to translate to, e.g. "ru".
+     * @return The translated texts, in the order of {@code texts}.
+     * @throws IOException if the provider cannot be reached or rejects the request.
+     */
+    List<String> translate(List<String> texts, String sourceLanguage, String targetLanguage) throws IOException;
+
+    /**
+     * @return The maximum number of texts in one request.
+     */
+    int maxTextsPerRequest();
+
+    /**
+     * @return The maximum total number of characters in one request.
+     */
+    int maxCharsPerRequest();
+}
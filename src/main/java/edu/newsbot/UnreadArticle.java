@@ -0,0 +1,19 @@
+package edu.newsbot;
+
+/**
+ * The first unread article of a user together with the number of unread articles.
+ *
+ * @param article      The first unread article, or null if the user has nothing to read.
+ * @param unreadNumber The total number of unread articles of the user.
+ */
+public record UnreadArticle(Article article, int unreadNumber) {
+
+    /**
+     * Tells whether the user has any unread articles.
+     *
+     * @return true if there is at least one unread article.
+     */
+    public boolean hasUnread() {
+        return unreadNumber > 0 && article != null;
+    }
+}
@@ -0,0 +1,115 @@
+package edu.newsbot;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalizes article URLs, so that the same article linked in different ways by different feeds is fetched and
+ * stored once.
+ * <p>
+ * {@link #canonicalize(String)} gives the URL that is fetched and stored: scheme and host in lower case, no
+ * default port, no fragment, no tracking parameters ({@code utm_*}, {@code fbclid}, ...) and the remaining query
+ * parameters sorted by name. {@link #key(String)} additionally drops the scheme and a leading {@code www.}; it
+ * identifies an article in the database, so http/https and www/non-www variants are the same article.
+ */
+public class UrlCanonicalizer {
+
+    // Query parameters that only track where a click came from; utm_* parameters are matched by prefix
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "fbclid", "gclid", "dclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "cmpid", "ref", "ref_src",
+            "_ga", "_hsenc", "_hsmi", "spm");
+
+    /**
+     * Default constructor.
+     * The canonicalizer is used through its static methods only.
+     */
+    public UrlCanonicalizer() {
+        super();
+    }
+
+    /**
+     * Returns the canonical form of a URL.
+     *
+     * @param url The URL as found in a feed.
+     * @return The canonical URL, or the trimmed input if it is not an absolute URL.
+     */
+    public static String canonicalize(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.getRawAuthority() == null || uri.getHost() == null) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder canonical = new StringBuilder(trimmed.length());
+        canonical.append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        canonical.append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(scheme.equals("http") && port == 80) && !(scheme.equals("https") && port == 443)) {
+            canonical.append(':').append(port);
+        }
+        String path = uri.getRawPath();
+        canonical.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = canonicalQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Returns the key identifying the article behind a URL: the canonical URL without scheme and leading
+     * {@code www.}.
+     *
+     * @param url The URL, canonical or not.
+     * @return The key.
+     */
+    public static String key(String url) {
+        String canonical = canonicalize(url);
+        int schemeEnd = canonical.indexOf("://");
+        String key = schemeEnd == -1 ? canonical : canonical.substring(schemeEnd + 3);
+        return key.startsWith("www.") ? key.substring(4) : key;
+    }
+
+    /**
+     * Drops empty and tracking parameters and sorts the others by name, keeping the order of repeated names.
+     */
+    private static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            String name = parameterName(parameter).toLowerCase(Locale.ROOT);
+            if (name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name)) {
+                continue;
+            }
+            parameters.add(parameter);
+        }
+        // List.sort is stable
+        parameters.sort(Comparator.comparing(UrlCanonicalizer::parameterName));
+        return String.join("&", parameters);
+    }
+
+    private static String parameterName(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals == -1 ? parameter : parameter.substring(0, equals);
+    }
+}
@@ -0,0 +1,47 @@
+package edu.newsbot;
+
+import java.util.List;
+
+/**
+ * An immutable snapshot of a row of the {@code bot_user} table and of the user's subscriptions.
+ * Settings the user has not chosen yet are null (or 0 for {@code deltaTime}).
+ *
+ * @param telegramId The telegram ID of the user.
+ * @param sources    The links of the subscribed RSS feeds, in catalog order (empty if none).
+ * @param age        The chosen age group, or null.
+ * @param language   The chosen language, or null.
+ * @param deltaTime  The chosen update interval in minutes, or 0 if not chosen.
+ * @param timezone   The IANA time zone ID of the user ("UTC" unless chosen).
+ * @param quietHours The quiet hours as "HH-HH", or null/"off".
+ * @param digest     The digest mode ("hourly" or "daily-HH"), or null/"off".
+ */
+public record UserProfile(long telegramId, List<String> sources, String age, String language, int deltaTime,
+                          String timezone, String quietHours, String digest) {
+
+    /**
+     * Tells whether the user is subscribed to at least one feed.
+     *
+     * @return true if {@code sources} is not empty.
+     */
+    public boolean hasSources() {
+        return !sources.isEmpty();
+    }
+
+    /**
+     * Tells whether the user has chosen an update interval.
+     *
+     * @return true if {@code deltaTime} is set.
+     */
+    public boolean hasDeltaTime() {
+        return deltaTime > 0;
+    }
+
+    /**
+     * Returns the delivery window built from the user's delivery settings.
+     *
+     * @return The window.
+     */
+    public DeliveryWindow deliveryWindow() {
+        return DeliveryWindow.parse(timezone, quietHours, digest, deltaTime);
+    }
+}
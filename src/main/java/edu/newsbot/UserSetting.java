@@ -0,0 +1,60 @@
+package edu.newsbot;
+
+/**
+ * The user settings that can be changed through the registration/settings keyboards.
+ * Each constant maps to a column of the {@code bot_user} table and knows whether changing it
+ * requires the user's parsing task to be rescheduled. The news sources are not a column of {@code bot_user} but
+ * rows of {@code user_subscription}, see {@link DB#toggleSubscription(long, String)}.
+ */
+public enum UserSetting {
+    LANGUAGE("language", false),
+    AGE("age", false),
+    DELTA_TIME("delta_time", true),
+    // The delivery settings are chosen in a row, but the user may leave it after any of them, so each reschedules;
+    // a reschedule only replaces the user's window in the dispatcher
+    TIMEZONE("timezone", true),
+    QUIET_HOURS("quiet_hours", true),
+    DIGEST("digest", true);
+
+    private final String column;
+    private final boolean reschedules;
+
+    UserSetting(String column, boolean reschedules) {
+        this.column = column;
+        this.reschedules = reschedules;
+    }
+
+    /**
+     * Returns the {@code bot_user} column backing this setting.
+     *
+     * @return The column name.
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Tells whether a change of this setting requires the user's task to be rescheduled.
+     *
+     * @return true if the parsing task has to be rescheduled.
+     */
+    public boolean reschedules() {
+        return reschedules;
+    }
+
+    /**
+     * Resolves a setting by its {@code bot_user} column name (as used in the callback data).
+     *
+     * @param column The column name, e.g. "delta_time".
+     * @return The matching setting.
+     * @throws IllegalArgumentException if no setting is backed by the given column.
+     */
+    public static UserSetting fromColumn(String column) {
+        for (UserSetting setting : values()) {
+            if (setting.column.equals(column)) {
+                return setting;
+            }
+        }
+        throw new IllegalArgumentException("Unknown user setting column: " + column);
+    }
+}
@@ -0,0 +1,150 @@
+package edu.newsbot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests how {@link ArticleTranslator} batches the texts of articles into requests and handles a failed request,
+ * with a {@link StubTranslator} as provider. Storing the translations fails without a database; that failure is
+ * only logged and does not change the result.
+ */
+class ArticleTranslatorTest {
+
+    @AfterEach
+    void tearDown() {
+        ArticleTranslator.setTranslator(null);
+    }
+
+    @Test
+    void requestsAreLimitedByTheNumberOfTexts() {
+        RecordingTranslator provider = new RecordingTranslator(2, 1000);
+        ArticleTranslator.setTranslator(provider);
+
+        List<Article> localized = ArticleTranslator.translateArticles("rus", List.of(1, 2, 3),
+                List.of(article(1, "t1", "s1"), article(2, "t2", "s2"), article(3, "t3", "s3")));
+
+        // Title and summary of each article, two texts per request
+        assertEquals(List.of(List.of("t1", "s1"), List.of("t2", "s2"), List.of("t3", "s3")), provider.requests);
+        assertEquals("[ru] t2", localized.get(1).title());
+        assertEquals("[ru] s3", localized.get(2).summary());
+    }
+
+    @Test
+    void requestsAreLimitedByTheNumberOfCharacters() {
+        RecordingTranslator provider = new RecordingTranslator(10, 25);
+        ArticleTranslator.setTranslator(provider);
+
+        ArticleTranslator.translateArticles("rus", List.of(1, 2),
+                List.of(article(1, "aaaaaaaaaa", "bbbbbbbbbb"), article(2, "cccccccccc", "dddddddddd")));
+
+        // 20 characters fit, a third text of 10 would exceed 25
+        assertEquals(List.of(List.of("aaaaaaaaaa", "bbbbbbbbbb"), List.of("cccccccccc", "dddddddddd")),
+                provider.requests);
+    }
+
+    @Test
+    void textLongerThanTheCharacterLimitIsSentAlone() {
+        RecordingTranslator provider = new RecordingTranslator(10, 20);
+        ArticleTranslator.setTranslator(provider);
+        String longSummary = "s".repeat(50);
+
+        List<Article> localized = ArticleTranslator.translateArticles("rus", List.of(1, 2),
+                List.of(article(1, "t1", longSummary), article(2, "t2", "s2")));
+
+        assertEquals(List.of(List.of("t1"), List.of(longSummary), List.of("t2", "s2")), provider.requests);
+        assertEquals("[ru] " + longSummary, localized.get(0).summary());
+    }
+
+    @Test
+    void failedRequestKeepsTheTranslationsBeforeIt() {
+        // Article 2 is split over both requests, article 3 is only in the failed one
+        RecordingTranslator provider = new RecordingTranslator(3, 1000);
+        provider.failingRequest = 2;
+        ArticleTranslator.setTranslator(provider);
+
+        List<Article> localized = ArticleTranslator.translateArticles("rus", List.of(1, 2, 3),
+                List.of(article(1, "t1", "s1"), article(2, "t2", "s2"), article(3, "t3", "s3")));
+
+        assertEquals(2, provider.requests.size());
+        assertEquals(3, localized.size());
+        assertEquals("[ru] t1", localized.get(0).title());
+        assertEquals("[ru] s1", localized.get(0).summary());
+        assertNull(localized.get(1));
+        assertNull(localized.get(2));
+    }
+
+    @Test
+    void requestsStopAtTheFirstFailure() {
+        RecordingTranslator provider = new RecordingTranslator(1, 1000);
+        provider.failingRequest = 1;
+        ArticleTranslator.setTranslator(provider);
+
+        List<Article> localized = ArticleTranslator.translateArticles("rus", List.of(1, 2),
+                List.of(article(1, "t1", "s1"), article(2, "t2", "s2")));
+
+        assertEquals(1, provider.requests.size());
+        assertNull(localized.get(0));
+        assertNull(localized.get(1));
+    }
+
+    @Test
+    void fieldsWithoutTextAreNotSent() {
+        RecordingTranslator provider = new RecordingTranslator(10, 1000);
+        ArticleTranslator.setTranslator(provider);
+
+        List<Article> localized = ArticleTranslator.translateArticles("rus", List.of(1),
+                List.of(new Article(1, "t1", " ", "https://example.org/1", null, null, null, null, null, null, null,
+                        null, null, null)));
+
+        assertEquals(List.of(List.of("t1")), provider.requests);
+        assertEquals(" ", localized.get(0).summary());
+    }
+
+    @Test
+    void articlesAreReturnedAsTheyAreWithoutTranslation() {
+        List<Article> articles = List.of(article(1, "t1", "s1"));
+        assertSame(articles, ArticleTranslator.translateArticles("rus", List.of(1), articles));
+        assertSame(articles.get(0), ArticleTranslator.localize(articles.get(0), "rus"));
+
+        RecordingTranslator provider = new RecordingTranslator(10, 1000);
+        ArticleTranslator.setTranslator(provider);
+        String english = ArticleTranslator.SOURCE_LANGUAGE;
+        assertSame(articles, ArticleTranslator.translateArticles(english, List.of(1), articles));
+        assertSame(articles.get(0), ArticleTranslator.localize(articles.get(0), english));
+        assertEquals(0, provider.requests.size());
+    }
+
+    private static Article article(int id, String title, String summary) {
+        return new Article(id, title, summary, "https://example.org/" + id, null, null, null, null, null, null, null,
+                null, null, null);
+    }
+
+    /**
+     * A stub that records the texts of every request and can fail one of them.
+     */
+    private static final class RecordingTranslator extends StubTranslator {
+        private final List<List<String>> requests = new ArrayList<>();
+        // The number of the request that fails (1 for the first), or 0
+        private int failingRequest;
+
+        private RecordingTranslator(int maxTexts, int maxChars) {
+            super(maxTexts, maxChars);
+        }
+
+        @Override
+        public List<String> translate(List<String> texts, String sourceLanguage, String targetLanguage) {
+            requests.add(List.copyOf(texts));
+            if (requests.size() == failingRequest) {
+                throw new IllegalStateException("request failed");
+            }
+            return super.translate(texts, sourceLanguage, targetLanguage);
+        }
+    }
+}
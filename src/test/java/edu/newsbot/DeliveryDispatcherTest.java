@@ -0,0 +1,324 @@
+package edu.newsbot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link DeliveryDispatcher} with a controlled clock and an executor whose timers are run by hand.
+ */
+class DeliveryDispatcherTest {
+
+    private static final Instant START = Instant.parse("2024-01-10T10:07:00Z");
+    private static final DeliveryWindow EVERY_15_MINUTES =
+            new DeliveryWindow(ZoneOffset.UTC, -1, -1, DeliveryWindow.Digest.OFF, 0, 15);
+    private static final DeliveryWindow HOURLY =
+            new DeliveryWindow(ZoneOffset.UTC, -1, -1, DeliveryWindow.Digest.HOURLY, 0, 15);
+
+    private MutableClock clock;
+    private ManualExecutor executor;
+    private List<String> delivered;
+    private DeliveryDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(START);
+        executor = new ManualExecutor();
+        delivered = new ArrayList<>();
+        dispatcher = new DeliveryDispatcher(clock, executor,
+                (userId, links, firstRun) -> delivered.add(userId + (firstRun ? " first" : "") + " " + links));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void firstDeliveryIsImmediateAndTheFollowingOnesOnBoundaries() {
+        dispatcher.schedule(1, List.of("a"), EVERY_15_MINUTES);
+
+        assertEquals(1, dispatcher.dispatchDue());
+        assertEquals(List.of("1 first [a]"), delivered);
+        // Nothing is due before 10:15
+        clock.set(Instant.parse("2024-01-10T10:14:59Z"));
+        assertEquals(0, dispatcher.dispatchDue());
+
+        clock.set(Instant.parse("2024-01-10T10:15:00Z"));
+        assertEquals(1, dispatcher.dispatchDue());
+        assertEquals(List.of("1 first [a]", "1 [a]"), delivered);
+    }
+
+    @Test
+    void usersSharingABoundaryAreDeliveredInOneBatch() {
+        dispatcher.schedule(1, List.of("a"), EVERY_15_MINUTES);
+        dispatcher.schedule(2, List.of("b"), HOURLY);
+        dispatcher.schedule(3, List.of("c"), EVERY_15_MINUTES);
+        dispatcher.dispatchDue();
+        delivered.clear();
+
+        clock.set(Instant.parse("2024-01-10T11:00:00Z"));
+        // 10:15, 10:30 and 10:45 passed without a dispatch: each user is delivered once and filed after now
+        assertEquals(3, dispatcher.dispatchDue());
+        assertEquals(List.of("1 [a]", "3 [c]", "2 [b]"), delivered);
+        clock.set(Instant.parse("2024-01-10T11:15:00Z"));
+        assertEquals(2, dispatcher.dispatchDue());
+    }
+
+    @Test
+    void rescheduledUserIsSkippedAtTheOldBoundary() {
+        dispatcher.schedule(1, List.of("a"), HOURLY);
+        dispatcher.dispatchDue();
+        delivered.clear();
+
+        // Filed under 11:00, then under 10:15 with the new links; the 11:00 entry is stale
+        clock.set(Instant.parse("2024-01-10T10:10:00Z"));
+        dispatcher.schedule(1, List.of("b"), EVERY_15_MINUTES);
+        assertEquals(1, dispatcher.dispatchDue());
+        assertEquals(List.of("1 first [b]"), delivered);
+
+        clock.set(Instant.parse("2024-01-10T11:00:00Z"));
+        assertEquals(1, dispatcher.dispatchDue());
+        assertEquals(List.of("1 first [b]", "1 [b]"), delivered);
+        assertEquals(1, dispatcher.getScheduledUserCount());
+    }
+
+    @Test
+    void removedUserIsSkipped() {
+        dispatcher.schedule(1, List.of("a"), EVERY_15_MINUTES);
+        dispatcher.schedule(2, List.of("b"), EVERY_15_MINUTES);
+        dispatcher.dispatchDue();
+        delivered.clear();
+
+        assertTrue(dispatcher.remove(1));
+        assertFalse(dispatcher.remove(1));
+        clock.set(Instant.parse("2024-01-10T10:15:00Z"));
+        assertEquals(1, dispatcher.dispatchDue());
+        assertEquals(List.of("2 [b]"), delivered);
+        assertEquals(1, dispatcher.getScheduledUserCount());
+    }
+
+    @Test
+    void removedAndScheduledAgainUserIsDeliveredOnce() {
+        dispatcher.schedule(1, List.of("a"), EVERY_15_MINUTES);
+        dispatcher.dispatchDue();
+        dispatcher.remove(1);
+        dispatcher.schedule(1, List.of("b"), EVERY_15_MINUTES);
+        delivered.clear();
+
+        assertEquals(1, dispatcher.dispatchDue());
+        clock.set(Instant.parse("2024-01-10T10:15:00Z"));
+        assertEquals(1, dispatcher.dispatchDue());
+        assertEquals(List.of("1 first [b]", "1 [b]"), delivered);
+    }
+
+    @Test
+    void failingDeliveryDoesNotHoldUpTheBatch() {
+        List<Long> users = new ArrayList<>();
+        DeliveryDispatcher failing = new DeliveryDispatcher(clock, executor, (userId, links, firstRun) -> {
+            users.add(userId);
+            if (userId == 1) {
+                throw new IllegalStateException("delivery failed");
+            }
+        });
+        failing.schedule(1, List.of("a"), EVERY_15_MINUTES);
+        failing.schedule(2, List.of("b"), EVERY_15_MINUTES);
+
+        assertEquals(2, failing.dispatchDue());
+        assertEquals(List.of(1L, 2L), users);
+    }
+
+    @Test
+    void timerIsArmedForTheEarliestBoundary() {
+        dispatcher.schedule(1, List.of("a"), HOURLY);
+        // The first delivery is due now
+        assertEquals(Duration.ZERO, executor.pending().delay());
+
+        executor.runPending();
+        assertEquals(List.of("1 first [a]"), delivered);
+        // Re-armed for 11:00
+        assertEquals(Duration.ofMinutes(53), executor.pending().delay());
+
+        // An earlier boundary replaces the timer
+        clock.set(Instant.parse("2024-01-10T10:10:00Z"));
+        dispatcher.schedule(2, List.of("b"), EVERY_15_MINUTES);
+        executor.runPending();
+        assertEquals(Duration.ofMinutes(5), executor.pending().delay());
+        assertEquals(1, executor.activeCount());
+    }
+
+    @Test
+    void timerIsReArmedForBatchesFiledBeforeTheDispatch() {
+        // User 1 is delivered without the timer and filed under 10:15; the timer still waits for 10:07
+        dispatcher.schedule(1, List.of("a"), EVERY_15_MINUTES);
+        dispatcher.dispatchDue();
+        dispatcher.schedule(2, List.of("b"), HOURLY);
+
+        executor.runPending();
+        assertEquals(List.of("1 first [a]", "2 first [b]"), delivered);
+        // User 2, filed under 11:00 during the dispatch, armed the timer first; the batch of 10:15 comes before
+        assertEquals(Duration.ofMinutes(8), executor.pending().delay());
+    }
+
+    @Test
+    void timerKeepsFiringOnTheFollowingBoundaries() {
+        dispatcher.schedule(1, List.of("a"), EVERY_15_MINUTES);
+        dispatcher.schedule(2, List.of("b"), HOURLY);
+        executor.runPending();
+        delivered.clear();
+
+        clock.set(Instant.parse("2024-01-10T10:15:00Z"));
+        executor.runPending();
+        assertEquals(List.of("1 [a]"), delivered);
+        // User 1 is now filed under 10:30, before user 2 at 11:00
+        assertEquals(Duration.ofMinutes(15), executor.pending().delay());
+
+        clock.set(Instant.parse("2024-01-10T11:00:00Z"));
+        executor.runPending();
+        assertEquals(List.of("1 [a]", "1 [a]", "2 [b]"), delivered);
+        assertEquals(Duration.ofMinutes(15), executor.pending().delay());
+        assertEquals(1, executor.activeCount());
+    }
+
+    /**
+     * A clock that only moves when it is set.
+     */
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void set(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    /**
+     * An executor that keeps the scheduled timers until the test runs them.
+     */
+    private static final class ManualExecutor extends ScheduledThreadPoolExecutor {
+        private final List<Timer> timers = new ArrayList<>();
+
+        private ManualExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Timer timer = new Timer(command, Duration.ofMillis(unit.toMillis(delay)));
+            timers.add(timer);
+            return timer;
+        }
+
+        private List<Timer> active() {
+            return timers.stream().filter(timer -> !timer.isDone()).toList();
+        }
+
+        private int activeCount() {
+            return active().size();
+        }
+
+        /**
+         * @return The only timer that is neither cancelled nor run.
+         */
+        private Timer pending() {
+            List<Timer> active = active();
+            assertEquals(1, active.size(), "pending timers");
+            return active.get(0);
+        }
+
+        private void runPending() {
+            Timer timer = pending();
+            timer.ran = true;
+            timer.command.run();
+        }
+    }
+
+    /**
+     * A timer of the {@link ManualExecutor}.
+     */
+    private static final class Timer implements ScheduledFuture<Object> {
+        private final Runnable command;
+        private final Duration delay;
+        private boolean cancelled;
+        private boolean ran;
+
+        private Timer(Runnable command, Duration delay) {
+            this.command = command;
+            this.delay = delay;
+        }
+
+        private Duration delay() {
+            return delay;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delay);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelled = !ran;
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled || ran;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package edu.newsbot;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the delivery boundaries of {@link DeliveryWindow}: the three digest modes, quiet hours and DST changes.
+ */
+class DeliveryWindowTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @Test
+    void intervalBoundariesAreMultiplesOfTheIntervalSinceTheEpoch() {
+        DeliveryWindow window = new DeliveryWindow(ZoneOffset.UTC, -1, -1, DeliveryWindow.Digest.OFF, 0, 15);
+
+        assertEquals(Instant.parse("2024-01-10T10:15:00Z"), window.nextDelivery(Instant.parse("2024-01-10T10:07:30Z")));
+        // Strictly after: a boundary is not due again at its own instant
+        assertEquals(Instant.parse("2024-01-10T10:30:00Z"), window.nextDelivery(Instant.parse("2024-01-10T10:15:00Z")));
+        assertEquals(Duration.ofMinutes(15), window.nominalInterval());
+    }
+
+    @Test
+    void hourlyDigestFollowsTheLocalHour() {
+        // Half an hour off UTC, so local hours do not start on UTC hours
+        ZoneId kolkata = ZoneId.of("Asia/Kolkata");
+        DeliveryWindow window = new DeliveryWindow(kolkata, -1, -1, DeliveryWindow.Digest.HOURLY, 0, 15);
+
+        assertEquals(Instant.parse("2024-01-10T10:30:00Z"), window.nextDelivery(Instant.parse("2024-01-10T10:07:00Z")));
+        assertEquals(Instant.parse("2024-01-10T11:30:00Z"), window.nextDelivery(Instant.parse("2024-01-10T10:30:00Z")));
+        assertEquals(Duration.ofHours(1), window.nominalInterval());
+    }
+
+    @Test
+    void dailyDigestIsTodayUntilTheDigestHourAndTomorrowFromIt() {
+        DeliveryWindow window = new DeliveryWindow(BERLIN, -1, -1, DeliveryWindow.Digest.DAILY, 8, 15);
+
+        // 07:00 and 08:00 in Berlin (UTC+1 in winter)
+        assertEquals(Instant.parse("2024-01-10T07:00:00Z"), window.nextDelivery(Instant.parse("2024-01-10T06:00:00Z")));
+        assertEquals(Instant.parse("2024-01-11T07:00:00Z"), window.nextDelivery(Instant.parse("2024-01-10T07:00:00Z")));
+        assertEquals(Duration.ofDays(1), window.nominalInterval());
+    }
+
+    @Test
+    void quietHoursSpanningMidnight() {
+        DeliveryWindow window = new DeliveryWindow(ZoneOffset.UTC, 22, 7, DeliveryWindow.Digest.OFF, 0, 60);
+
+        assertFalse(window.isQuiet(Instant.parse("2024-01-10T21:59:00Z")));
+        assertTrue(window.isQuiet(Instant.parse("2024-01-10T22:00:00Z")));
+        assertTrue(window.isQuiet(Instant.parse("2024-01-11T03:00:00Z")));
+        assertFalse(window.isQuiet(Instant.parse("2024-01-11T07:00:00Z")));
+
+        // A boundary before midnight moves to the end of the quiet hours on the next day, one after midnight
+        // to the end on the same day
+        assertEquals(Instant.parse("2024-01-11T07:00:00Z"), window.nextDelivery(Instant.parse("2024-01-10T22:30:00Z")));
+        assertEquals(Instant.parse("2024-01-11T07:00:00Z"), window.nextDelivery(Instant.parse("2024-01-11T00:30:00Z")));
+        assertEquals(Instant.parse("2024-01-11T08:00:00Z"), window.nextDelivery(Instant.parse("2024-01-11T07:00:00Z")));
+    }
+
+    @Test
+    void quietHoursWithinADay() {
+        DeliveryWindow window = new DeliveryWindow(ZoneOffset.UTC, 12, 14, DeliveryWindow.Digest.HOURLY, 0, 15);
+
+        assertTrue(window.isQuiet(Instant.parse("2024-01-10T13:59:00Z")));
+        assertFalse(window.isQuiet(Instant.parse("2024-01-10T23:00:00Z")));
+        assertEquals(Instant.parse("2024-01-10T14:00:00Z"), window.nextDelivery(Instant.parse("2024-01-10T11:30:00Z")));
+    }
+
+    @Test
+    void dailyDigestInADstGapIsDeliveredAfterTheGap() {
+        // Berlin skips 02:00-03:00 on 2024-03-31; 03:00 CEST is 01:00 UTC
+        DeliveryWindow window = new DeliveryWindow(BERLIN, -1, -1, DeliveryWindow.Digest.DAILY, 2, 15);
+
+        assertEquals(Instant.parse("2024-03-31T01:00:00Z"), window.nextDelivery(Instant.parse("2024-03-30T12:00:00Z")));
+        // The next day is back to 02:00 CEST
+        assertEquals(Instant.parse("2024-04-01T00:00:00Z"), window.nextDelivery(Instant.parse("2024-03-31T01:00:00Z")));
+    }
+
+    @Test
+    void quietHoursEndingInADstGapEndAfterTheGap() {
+        DeliveryWindow window = new DeliveryWindow(BERLIN, 23, 2, DeliveryWindow.Digest.HOURLY, 0, 15);
+
+        // 00:00 CET is quiet; the end of the quiet hours (02:00) does not exist that night
+        assertEquals(Instant.parse("2024-03-31T01:00:00Z"), window.nextDelivery(Instant.parse("2024-03-30T22:30:00Z")));
+    }
+
+    @Test
+    void dailyDigestOnTheDayClocksGoBack() {
+        // Berlin goes back from 03:00 CEST to 02:00 CET on 2024-10-27, so 08:00 is UTC+1 again
+        DeliveryWindow window = new DeliveryWindow(BERLIN, -1, -1, DeliveryWindow.Digest.DAILY, 8, 15);
+
+        assertEquals(Instant.parse("2024-10-27T07:00:00Z"), window.nextDelivery(Instant.parse("2024-10-26T06:00:00Z")));
+    }
+
+    @Test
+    void parseFallsBackForMissingOrMalformedSettings() {
+        DeliveryWindow window = DeliveryWindow.parse("Mars/Olympus", "22-22", "weekly", 0);
+
+        assertEquals(ZoneOffset.UTC, window.zone());
+        assertEquals(-1, window.quietStart());
+        assertEquals(DeliveryWindow.Digest.OFF, window.digest());
+        assertEquals(1, window.intervalMinutes());
+    }
+
+    @Test
+    void parseReadsTheSettings() {
+        DeliveryWindow window = DeliveryWindow.parse("Europe/Berlin", "22-07", "daily-08", 30);
+
+        assertEquals(new DeliveryWindow(BERLIN, 22, 7, DeliveryWindow.Digest.DAILY, 8, 30), window);
+        assertEquals(DeliveryWindow.Digest.HOURLY, DeliveryWindow.parse(null, null, "hourly", 30).digest());
+    }
+}